@@ -12,6 +12,7 @@ import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.layers.Layer;
 import gov.nasa.worldwind.pick.*;
 import gov.nasa.worldwind.render.*;
+import gov.nasa.worldwind.retrieve.TilePrefetcher;
 import gov.nasa.worldwind.terrain.*;
 import gov.nasa.worldwind.util.*;
 
@@ -83,10 +84,15 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
     protected ClutterFilter clutterFilter = new BasicClutterFilter();
     //protected Map<String, GroupingFilter> groupingFilters = new HashMap<String, GroupingFilter>();
     protected boolean deferOrderedRendering;
+    /** Requests the tiles the view is moving towards. Null if tile prefetching is disabled. */
+    protected TilePrefetcher tilePrefetcher;
 
     public AbstractSceneController()
     {
         this.setVerticalExaggeration(Configuration.getDoubleValue(AVKey.VERTICAL_EXAGGERATION, 1d));
+
+        if (Configuration.getBooleanValue(AVKey.TILE_PREFETCH_ENABLED, false))
+            this.tilePrefetcher = new TilePrefetcher();
     }
 
     public void reinitialize()
@@ -112,6 +118,29 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
 
         if (this.textRendererCache != null)
             this.textRendererCache.dispose();
+
+        if (this.tilePrefetcher != null)
+            this.tilePrefetcher.dispose();
+    }
+
+    /**
+     * Returns the tile prefetcher, which requests the tiles a moving view will need after each frame is drawn.
+     *
+     * @return the tile prefetcher, or null if tile prefetching is disabled.
+     */
+    public TilePrefetcher getTilePrefetcher()
+    {
+        return this.tilePrefetcher;
+    }
+
+    /**
+     * Specifies the tile prefetcher. The scene controller's previous prefetcher, if any, is not disposed.
+     *
+     * @param tilePrefetcher the tile prefetcher. May be null to disable tile prefetching.
+     */
+    public void setTilePrefetcher(TilePrefetcher tilePrefetcher)
+    {
+        this.tilePrefetcher = tilePrefetcher;
     }
 
     public GpuResourceCache getGpuResourceCache()
@@ -398,6 +427,7 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
         this.glRuntimeCaps.initialize(GLContext.getCurrent());
         this.initializeDrawContext(this.dc);
         this.doRepaint(this.dc);
+        this.updateTilePrefetcher(this.dc);
 
         ++this.frame;
         long time = System.currentTimeMillis();
@@ -419,6 +449,9 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
         if (perfKeys.contains(PerformanceStatistic.MEMORY_CACHE) || perfKeys.contains(PerformanceStatistic.ALL))
         {
             this.dc.setPerFrameStatistics(WorldWind.getMemoryCacheSet().getPerformanceStatistics());
+
+            if (WorldWind.getMemoryCacheGovernor() != null)
+                this.dc.setPerFrameStatistics(WorldWind.getMemoryCacheGovernor().getPerformanceStatistics());
         }
 
         if (perfKeys.contains(PerformanceStatistic.TEXTURE_CACHE) || perfKeys.contains(PerformanceStatistic.ALL))
@@ -428,6 +461,18 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
                     "Texture Cache size (Kb)", this.dc.getTextureCache().getUsedCapacity() / 1000);
         }
 
+        if (perfKeys.contains(PerformanceStatistic.TILE_PREFETCH) || perfKeys.contains(PerformanceStatistic.ALL))
+        {
+            if (this.tilePrefetcher != null)
+                this.dc.setPerFrameStatistics(this.tilePrefetcher.getPerformanceStatistics());
+        }
+
+        if (perfKeys.contains(PerformanceStatistic.RETRIEVAL_PIPELINE) || perfKeys.contains(PerformanceStatistic.ALL))
+        {
+            if (WorldWind.getRetrievalPipeline() != null)
+                this.dc.setPerFrameStatistics(WorldWind.getRetrievalPipeline().getPerformanceStatistics());
+        }
+
         if (perfKeys.contains(PerformanceStatistic.JVM_HEAP) || perfKeys.contains(PerformanceStatistic.ALL))
         {
             long totalMemory = Runtime.getRuntime().totalMemory();
@@ -443,6 +488,23 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
 
     abstract protected void doRepaint(DrawContext dc);
 
+    protected void updateTilePrefetcher(DrawContext dc)
+    {
+        if (this.tilePrefetcher == null)
+            return;
+
+        try
+        {
+            this.tilePrefetcher.update(dc);
+        }
+        catch (Exception e)
+        {
+            // Prefetching only saves time later, so a failure doesn't affect the frame.
+            Logging.logger().log(Level.FINE,
+                Logging.getMessage("TilePrefetcher.ExceptionPrefetching", this.tilePrefetcher), e);
+        }
+    }
+
     protected void initializeDrawContext(DrawContext dc)
     {
         dc.initialize(GLContext.getCurrent());
@@ -10,12 +10,13 @@ import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.cache.*;
 import gov.nasa.worldwind.exception.WWRuntimeException;
 import gov.nasa.worldwind.formats.tiff.GeotiffImageReaderSpi;
-import gov.nasa.worldwind.retrieve.RetrievalService;
+import gov.nasa.worldwind.retrieve.*;
 import gov.nasa.worldwind.util.*;
 
 import javax.imageio.spi.IIORegistry;
 import javax.media.opengl.GL;
 import java.beans.PropertyChangeListener;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 /**
@@ -46,9 +47,11 @@ public final class WorldWind
 
     private WWObjectImpl wwo;
     private MemoryCacheSet memoryCacheSet;
+    private MemoryCacheGovernor memoryCacheGovernor;
     private FileStore dataFileStore;
     private RetrievalService remoteRetrievalService;
     private RetrievalService localRetrievalService;
+    private RetrievalPipeline retrievalPipeline;
     private TaskService taskService;
     private ScheduledTaskService scheduledTaskService;
     private NetworkStatus networkStatus;
@@ -62,6 +65,7 @@ public final class WorldWind
     private void initialize()
     {
         this.wwo = new WWObjectImpl();
+        this.retrievalPipeline = new RetrievalPipeline();
         this.remoteRetrievalService = (RetrievalService) createConfigurationComponent(
             AVKey.RETRIEVAL_SERVICE_CLASS_NAME);
         this.localRetrievalService = (RetrievalService) createConfigurationComponent(
@@ -73,6 +77,15 @@ public final class WorldWind
         this.sessionCache = (SessionCache) createConfigurationComponent(AVKey.SESSION_CACHE_CLASS_NAME);
         this.scheduledTaskService = new BasicScheduledTaskService();
 
+        long memoryCacheBudget = Configuration.getLongValue(AVKey.MEMORY_CACHE_BUDGET, 0L);
+        if (memoryCacheBudget > 0)
+        {
+            this.memoryCacheGovernor = new MemoryCacheGovernor(this.memoryCacheSet, memoryCacheBudget);
+            this.scheduledTaskService.addRepeatingTask(this.memoryCacheGovernor,
+                MemoryCacheGovernor.DEFAULT_REBALANCE_PERIOD, MemoryCacheGovernor.DEFAULT_REBALANCE_PERIOD,
+                TimeUnit.MILLISECONDS);
+        }
+
         // Seems like an unlikely place to load the tiff reader, but do it here nonetheless.
         IIORegistry.getDefaultInstance().registerServiceProvider(GeotiffImageReaderSpi.inst());
     }
@@ -85,6 +98,10 @@ public final class WorldWind
             this.remoteRetrievalService.shutdown(true);
         if (this.localRetrievalService != null)
             this.localRetrievalService.shutdown(true);
+        if (this.retrievalPipeline != null)
+            this.retrievalPipeline.shutdown(true);
+        if (this.memoryCacheGovernor != null)
+            this.memoryCacheGovernor.dispose();
         if (this.memoryCacheSet != null)
             this.memoryCacheSet.clear();
         if (this.sessionCache != null)
@@ -117,6 +134,18 @@ public final class WorldWind
         return instance.memoryCacheSet;
     }
 
+    /**
+     * Returns the governor dividing the memory cache budget among the memory caches.
+     *
+     * @return the memory cache governor, or null if no memory cache budget is configured.
+     *
+     * @see AVKey#MEMORY_CACHE_BUDGET
+     */
+    public static MemoryCacheGovernor getMemoryCacheGovernor()
+    {
+        return instance.memoryCacheGovernor;
+    }
+
     public static synchronized MemoryCache getMemoryCache(String key)
     {
         return instance.memoryCacheSet.getCache(key);
@@ -142,6 +171,17 @@ public final class WorldWind
         return instance.localRetrievalService;
     }
 
+    /**
+     * Returns the pipeline that post-processes and saves the data retrieved by the retrieval services, off the threads
+     * that retrieve it.
+     *
+     * @return the retrieval pipeline.
+     */
+    public static RetrievalPipeline getRetrievalPipeline()
+    {
+        return instance.retrievalPipeline;
+    }
+
     public static TaskService getTaskService()
     {
         return instance.taskService;
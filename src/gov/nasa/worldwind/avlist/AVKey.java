@@ -42,6 +42,9 @@ public interface AVKey // TODO: Eliminate unused constants, if any
 
     final String BLACK_GAPS_DETECTION = "gov.nasa.worldwind.avkey.DetectBlackGaps";
     final String BOUNDS = "gov.nasa.worldwind.avkey.Bounds";
+    final String BULK_RETRIEVAL_ENUMERATION_POOL_SIZE = "gov.nasa.worldwind.avkey.BulkRetrievalEnumerationPoolSize";
+    final String BULK_RETRIEVAL_MAX_BYTES_PER_SECOND = "gov.nasa.worldwind.avkey.BulkRetrievalMaxBytesPerSecond";
+    final String BULK_RETRIEVAL_MAX_REQUESTS_PER_SECOND = "gov.nasa.worldwind.avkey.BulkRetrievalMaxRequestsPerSecond";
 
     final String CACHE_CONTENT_TYPES = "gov.nasa.worldwind.avkey.CacheContentTypes";
     final String CENTER = "gov.nasa.worldwind.avkey.Center";
@@ -135,6 +138,8 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String FILE_NAME = "gov.nasa.worldwind.avkey.FileName";
     final String FILE_SIZE = "gov.nasa.worldwind.avkey.FileSize";
     final String FILE_STORE = "gov.nasa.worldwind.avkey.FileStore";
+    final String FILE_STORE_COMPRESS_CONTENT = "gov.nasa.worldwind.avkey.FileStoreCompressContent";
+    final String FILE_STORE_INDEX_ENABLED = "gov.nasa.worldwind.avkey.FileStoreIndexEnabled";
     final String FILE_STORE_LOCATION = "gov.nasa.worldwind.avkey.FileStoreLocation";
     final String FLOAT32 = "gov.nasa.worldwind.avkey.Float32";
     final String FLOAT64 = "gov.nasa.worldwind.avkey.Float64";
@@ -164,6 +169,7 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String HEADING = "gov.nasa.worldwind.avkey.Heading";
     final String HEIGHT = "gov.nasa.worldwind.avkey.Height";
     final String HIDDEN = "gov.nasa.worldwind.avkey.Hidden";
+    final String HORIZON_CULLING_ENABLED = "gov.nasa.worldwind.avkey.HorizonCullingEnabled";
     final String HORIZONTAL = "gov.nasa.worldwind.avkey.Horizontal";
     final String HOT_SPOT = "gov.nasa.worldwind.avkey.HotSpot";
     final String HOVER_TEXT = "gov.nasa.worldwind.avkey.HoverText";
@@ -226,6 +232,14 @@ public interface AVKey // TODO: Eliminate unused constants, if any
 
     final String MAX_ACTIVE_ALTITUDE = "gov.nasa.worldwind.avkey.MaxActiveAltitude";
     final String MAX_MESSAGE_REPEAT = "gov.nasa.worldwind.avkey.MaxMessageRepeat";
+    /**
+     * Names the {@link gov.nasa.worldwind.cache.MemoryCache} class created by {@link
+     * gov.nasa.worldwind.cache.MemoryCacheSet#createCache(long, long)}. The class must have a public constructor
+     * taking the low water level and the capacity.
+     */
+    final String MEMORY_CACHE_BUDGET = "gov.nasa.worldwind.avkey.MemoryCacheBudget";
+    final String MEMORY_CACHE_CLASS_NAME = "gov.nasa.worldwind.avkey.MemoryCacheClassName";
+    final String MEMORY_CACHE_JMX_ENABLED = "gov.nasa.worldwind.avkey.MemoryCacheJMXEnabled";
     final String MEMORY_CACHE_SET_CLASS_NAME = "gov.nasa.worldwind.avkey.MemoryCacheSetClassName";
     /**
      * Indicates the location that MIL-STD-2525 tactical symbols and tactical point graphics retrieve their icons from.
@@ -265,6 +279,9 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String NETWORK_RETRIEVAL_ENABLED = "gov.nasa.worldwind.avkey.NetworkRetrievalEnabled";
     final String NORTH = "gov.nasa.worldwind.avkey.North";
 
+    final String OCCLUSION_CULLING_ENABLED = "gov.nasa.worldwind.avkey.OcclusionCullingEnabled";
+    final String OFF_HEAP_TILE_CACHE_FILE = "gov.nasa.worldwind.avkey.OffHeapTileCacheFile";
+    final String OFF_HEAP_TILE_CACHE_SIZE = "gov.nasa.worldwind.avkey.OffHeapTileCacheSize";
     final String OFFLINE_MODE = "gov.nasa.worldwind.avkey.OfflineMode";
     final String OPACITY = "gov.nasa.worldwind.avkey.Opacity";
     /**
@@ -343,7 +360,12 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String RASTER_PIXEL = "gov.nasa.worldwind.avkey.RasterPixel";
     final String RASTER_PIXEL_IS_AREA = "gov.nasa.worldwind.avkey.RasterPixelIsArea";
     final String RASTER_PIXEL_IS_POINT = "gov.nasa.worldwind.avkey.RasterPixelIsPoint";
+    final String RECTANGULAR_TESSELLATOR_MAX_FRAME_WAIT =
+        "gov.nasa.worldwind.avkey.RectangularTessellatorMaxFrameWait";
     final String RECTANGULAR_TESSELLATOR_MAX_LEVEL = "gov.nasa.worldwind.avkey.RectangularTessellatorMaxLevel";
+    final String RECTANGULAR_TESSELLATOR_PARALLELISM = "gov.nasa.worldwind.avkey.RectangularTessellatorParallelism";
+    final String RECTANGULAR_TESSELLATOR_QUANTIZE_VERTICES =
+        "gov.nasa.worldwind.avkey.RectangularTessellatorQuantizeVertices";
     final String REPAINT = "gov.nasa.worldwind.avkey.Repaint";
     final String REPEAT_NONE = "gov.nasa.worldwind.avkey.RepeatNone";
     final String REPEAT_X = "gov.nasa.worldwind.avkey.RepeatX";
@@ -361,10 +383,17 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     /** Does not modify the item size when the window changes size. */
     final String RESIZE_KEEP_FIXED_SIZE = "gov.nasa.worldwind.CompassLayer.ResizeKeepFixedSize";
     final String RETAIN_LEVEL_ZERO_TILES = "gov.nasa.worldwind.avkey.RetainLevelZeroTiles";
+    final String RETRIEVAL_ASYNC_CONNECTION_LIMIT = "gov.nasa.worldwind.avkey.RetrievalAsyncConnectionLimit";
+    final String RETRIEVAL_ASYNC_MAX_RESPONSE_SIZE = "gov.nasa.worldwind.avkey.RetrievalAsyncMaxResponseSize";
+    final String RETRIEVAL_DISK_POOL_SIZE = "gov.nasa.worldwind.avkey.RetrievalDiskPoolSize";
+    final String RETRIEVAL_HOST_CONNECTION_LIMIT = "gov.nasa.worldwind.avkey.RetrievalHostConnectionLimit";
+    final String RETRIEVAL_PIPELINE_QUEUE_SIZE = "gov.nasa.worldwind.avkey.RetrievalPipelineQueueSize";
     final String RETRIEVAL_POOL_SIZE = "gov.nasa.worldwind.avkey.RetrievalPoolSize";
+    final String RETRIEVAL_PROCESSING_POOL_SIZE = "gov.nasa.worldwind.avkey.RetrievalProcessingPoolSize";
     final String RETRIEVE_PROPERTIES_FROM_SERVICE = "gov.nasa.worldwind.avkey.RetrievePropertiesFromService";
     final String RETRIEVAL_QUEUE_SIZE = "gov.nasa.worldwind.avkey.RetrievalQueueSize";
     final String RETRIEVAL_QUEUE_STALE_REQUEST_LIMIT = "gov.nasa.worldwind.avkey.RetrievalStaleRequestLimit";
+    final String RETRIEVAL_QUEUE_UNUSED_REQUEST_LIMIT = "gov.nasa.worldwind.avkey.RetrievalUnusedRequestLimit";
     final String RETRIEVAL_SERVICE_CLASS_NAME = "gov.nasa.worldwind.avkey.RetrievalServiceClassName";
     final String RETRIEVER_FACTORY_LOCAL = "gov.nasa.worldwind.avkey.RetrieverFactoryLocal";
     final String RETRIEVER_FACTORY_REMOTE = "gov.nasa.worldwind.avkey.RetrieverFactoryRemote";
@@ -400,6 +429,8 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String SERVICE_NAME_LOCAL_RASTER_SERVER = "LocalRasterServer";
     final String SERVICE_NAME_OFFLINE = "Offline";
     final String SESSION_CACHE_CLASS_NAME = "gov.nasa.worldwind.avkey.SessionCacheClassName";
+    final String SESSION_CACHE_MAX_WEIGHT = "gov.nasa.worldwind.avkey.SessionCacheMaxWeight";
+    final String SESSION_CACHE_TIME_TO_LIVE = "gov.nasa.worldwind.avkey.SessionCacheTimeToLive";
     final String SHAPE_ATTRIBUTES = "gov.nasa.worldwind.avkey.ShapeAttributes";
     final String SHAPE_CIRCLE = "gov.nasa.worldwind.avkey.ShapeCircle";
     final String SHAPE_ELLIPSE = "gov.nasa.worldwind.avkey.ShapeEllipse";
@@ -446,9 +477,14 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String TEXT_EFFECT_NONE = "gov.nasa.worldwind.avkey.TextEffectNone";
     final String TEXT_EFFECT_OUTLINE = "gov.nasa.worldwind.avkey.TextEffectOutline";
     final String TEXT_EFFECT_SHADOW = "gov.nasa.worldwind.avkey.TextEffectShadow";
+    final String TILE_CONTENT_SHARING_ENABLED = "gov.nasa.worldwind.avkey.TileContentSharingEnabled";
     final String TILE_DELTA = "gov.nasa.worldwind.avkey.TileDeltaKey";
     final String TILE_HEIGHT = "gov.nasa.worldwind.avkey.TileHeightKey";
     final String TILE_ORIGIN = "gov.nasa.worldwind.avkey.TileOrigin";
+    final String TILE_PREFETCH_ENABLED = "gov.nasa.worldwind.avkey.TilePrefetchEnabled";
+    final String TILE_PREFETCH_LOOK_AHEAD = "gov.nasa.worldwind.avkey.TilePrefetchLookAhead";
+    final String TILE_PREFETCH_MAX_BYTES_PER_SECOND = "gov.nasa.worldwind.avkey.TilePrefetchMaxBytesPerSecond";
+    final String TILE_PREFETCH_MAX_REQUESTS_PER_SECOND = "gov.nasa.worldwind.avkey.TilePrefetchMaxRequestsPerSecond";
     final String TILE_RETRIEVER = "gov.nasa.worldwind.avkey.TileRetriever";
     final String TILE_URL_BUILDER = "gov.nasa.worldwind.avkey.TileURLBuilder";
     final String TILE_WIDTH = "gov.nasa.worldwind.avkey.TileWidthKey";
@@ -20,6 +20,9 @@ public abstract class AbstractFileStore extends WWObjectImpl implements FileStor
     protected static class StoreLocation extends AVListImpl
     {
         protected boolean markWhenUsed = false;
+        protected long maxSize = 0;
+        protected double evictionTarget = FileStoreEvictor.DEFAULT_EVICTION_TARGET;
+        protected long evictionInterval = FileStoreEvictor.DEFAULT_EVICTION_INTERVAL;
 
         public StoreLocation(java.io.File file, boolean isInstall)
         {
@@ -63,6 +66,39 @@ public abstract class AbstractFileStore extends WWObjectImpl implements FileStor
         {
             this.markWhenUsed = markWhenUsed;
         }
+
+        /** @return the size, in bytes, above which files are evicted from this location, or zero if unbounded. */
+        public long getMaxSize()
+        {
+            return maxSize;
+        }
+
+        public void setMaxSize(long maxSize)
+        {
+            this.maxSize = maxSize;
+        }
+
+        /** @return the fraction of the maximum size that eviction reduces this location to. */
+        public double getEvictionTarget()
+        {
+            return evictionTarget;
+        }
+
+        public void setEvictionTarget(double evictionTarget)
+        {
+            this.evictionTarget = evictionTarget;
+        }
+
+        /** @return the time, in milliseconds, between eviction runs. */
+        public long getEvictionInterval()
+        {
+            return evictionInterval;
+        }
+
+        public void setEvictionInterval(long evictionInterval)
+        {
+            this.evictionInterval = evictionInterval;
+        }
     }
 
     // Retrieval could be occurring on several threads when the app adds a read location, so protect the list of read
@@ -71,6 +107,16 @@ public abstract class AbstractFileStore extends WWObjectImpl implements FileStor
         new java.util.concurrent.CopyOnWriteArrayList<StoreLocation>();
     protected StoreLocation writeLocation = null;
     private final Object fileLock = new Object();
+    /** The index of each read location, if indexing is enabled. */
+    protected final java.util.Map<java.io.File, FileStoreIndex> indexes =
+        new java.util.concurrent.ConcurrentHashMap<java.io.File, FileStoreIndex>();
+    protected boolean indexEnabled;
+    /** The evictor of each location that has a maximum size. */
+    protected final java.util.Map<java.io.File, FileStoreEvictor> evictors =
+        new java.util.concurrent.ConcurrentHashMap<java.io.File, FileStoreEvictor>();
+    protected ScheduledTaskService evictionService;
+    protected final java.util.Map<java.io.File, java.util.concurrent.ScheduledFuture<?>> evictionTasks =
+        new java.util.concurrent.ConcurrentHashMap<java.io.File, java.util.concurrent.ScheduledFuture<?>>();
 
     //**************************************************************//
     //********************  File Store Configuration  **************//
@@ -103,6 +149,21 @@ public abstract class AbstractFileStore extends WWObjectImpl implements FileStor
                 Logging.logger().severe(message);
                 throw new IllegalStateException(message);
             }
+
+            if (this.writeLocation != null && Configuration.getBooleanValue(AVKey.FILE_STORE_INDEX_ENABLED, false))
+            {
+                this.indexEnabled = true;
+                for (StoreLocation location : this.readLocations)
+                {
+                    this.createIndex(location);
+                }
+            }
+
+            for (StoreLocation location : this.readLocations)
+            {
+                if (location.getMaxSize() > 0)
+                    this.createEvictor(location);
+            }
         }
         catch (javax.xml.parsers.ParserConfigurationException e)
         {
@@ -174,6 +235,7 @@ public abstract class AbstractFileStore extends WWObjectImpl implements FileStor
                 if (isMarkWhenUsed != null && isMarkWhenUsed.length() > 0)
                     newStore.setMarkWhenUsed(isMarkWhenUsed.toLowerCase().contains("t"));
 
+                this.readEvictionAttributes(pathFinder, location, newStore);
                 this.readLocations.add(newStore);
             }
         }
@@ -225,6 +287,7 @@ public abstract class AbstractFileStore extends WWObjectImpl implements FileStor
                 {
                     Logging.logger().log(Level.FINER, "FileStore.WriteLocationSuccessful", path);
                     this.writeLocation = new StoreLocation(pathFile);
+                    this.readEvictionAttributes(pathFinder, location, this.writeLocation);
 
                     // Remove the writable location from search path if it already exists.
                     StoreLocation oldLocation = this.storeLocationFor(path);
@@ -246,6 +309,77 @@ public abstract class AbstractFileStore extends WWObjectImpl implements FileStor
         }
     }
 
+    /**
+     * Reads the attributes of a location element that bound the location's size: <code>maxSize</code>, the size above
+     * which files are evicted, in bytes or with a suffix of K, M or G; <code>evictionTarget</code>, the fraction of the
+     * maximum size that eviction reduces the location to; and <code>evictionInterval</code>, the time in seconds
+     * between eviction runs.
+     *
+     * @param pathFinder   the XPath used to read the attributes.
+     * @param locationNode the location element.
+     * @param location     the location to configure.
+     *
+     * @throws javax.xml.xpath.XPathExpressionException if an attribute cannot be read.
+     */
+    protected void readEvictionAttributes(javax.xml.xpath.XPath pathFinder, org.w3c.dom.Node locationNode,
+        StoreLocation location) throws javax.xml.xpath.XPathExpressionException
+    {
+        String maxSize = pathFinder.evaluate("@maxSize", locationNode);
+        String evictionTarget = pathFinder.evaluate("@evictionTarget", locationNode);
+        String evictionInterval = pathFinder.evaluate("@evictionInterval", locationNode);
+
+        if (!WWUtil.isEmpty(maxSize))
+        {
+            Long size = parseSize(maxSize);
+            if (size != null && size > 0)
+                location.setMaxSize(size);
+            else
+                Logging.logger().log(Level.WARNING, "FileStore.InvalidLocationAttribute", "maxSize=" + maxSize);
+        }
+
+        if (!WWUtil.isEmpty(evictionTarget))
+        {
+            Double target = WWUtil.convertStringToDouble(evictionTarget);
+            if (target != null && target > 0 && target <= 1)
+                location.setEvictionTarget(target);
+            else
+                Logging.logger().log(Level.WARNING, "FileStore.InvalidLocationAttribute",
+                    "evictionTarget=" + evictionTarget);
+        }
+
+        if (!WWUtil.isEmpty(evictionInterval))
+        {
+            Double seconds = WWUtil.convertStringToDouble(evictionInterval);
+            if (seconds != null && seconds > 0)
+                location.setEvictionInterval((long) (seconds * 1000));
+            else
+                Logging.logger().log(Level.WARNING, "FileStore.InvalidLocationAttribute",
+                    "evictionInterval=" + evictionInterval);
+        }
+    }
+
+    /**
+     * Parses a size in bytes, optionally followed by a suffix of K, M or G.
+     *
+     * @param size the size to parse.
+     *
+     * @return the size in bytes, or null if the string is not a size.
+     */
+    protected static Long parseSize(String size)
+    {
+        String s = size.trim().toUpperCase();
+        long multiplier = 1;
+        if (s.endsWith("K"))
+            multiplier = 1L << 10;
+        else if (s.endsWith("M"))
+            multiplier = 1L << 20;
+        else if (s.endsWith("G"))
+            multiplier = 1L << 30;
+
+        Double value = WWUtil.convertStringToDouble(multiplier > 1 ? s.substring(0, s.length() - 1).trim() : s);
+        return value != null ? (long) (value * multiplier) : null;
+    }
+
     protected static String buildLocationPath(String property, String append, String wwDir)
     {
         String path = propertyToPath(property);
@@ -404,6 +538,9 @@ public abstract class AbstractFileStore extends WWObjectImpl implements FileStor
         java.io.File newFile = new java.io.File(newPath);
         StoreLocation newLocation = new StoreLocation(newFile, isInstall);
         this.readLocations.add(index, newLocation);
+
+        if (this.indexEnabled)
+            this.createIndex(newLocation);
     }
 
     public void removeLocation(String path)
@@ -428,6 +565,15 @@ public abstract class AbstractFileStore extends WWObjectImpl implements FileStor
         }
 
         this.readLocations.remove(location);
+
+        FileStoreIndex index = this.indexes.remove(location.getFile());
+        if (index != null)
+            index.close();
+
+        this.evictors.remove(location.getFile());
+        java.util.concurrent.ScheduledFuture<?> evictionTask = this.evictionTasks.remove(location.getFile());
+        if (evictionTask != null)
+            evictionTask.cancel(false);
     }
 
     public boolean isInstallLocation(String path)
@@ -472,6 +618,8 @@ public abstract class AbstractFileStore extends WWObjectImpl implements FileStor
 
             if (fileName.startsWith(dir.getAbsolutePath()))
                 file = new java.io.File(fileName);
+            else if (this.isIndexedAbsent(location, fileName))
+                continue;
             else
                 file = makeAbsoluteFile(dir, fileName);
 
@@ -519,6 +667,9 @@ public abstract class AbstractFileStore extends WWObjectImpl implements FileStor
 
         for (StoreLocation location : this.readLocations)
         {
+            if (this.isIndexedAbsent(location, fileName))
+                continue;
+
             java.io.File dir = location.getFile();
             if (!dir.exists())
                 continue;
@@ -528,7 +679,10 @@ public abstract class AbstractFileStore extends WWObjectImpl implements FileStor
             {
                 try
                 {
-                    if (location.isMarkWhenUsed())
+                    FileStoreEvictor evictor = this.evictors.get(dir);
+                    if (evictor != null)
+                        evictor.recordAccess(normalizeFileStoreName(fileName));
+                    else if (location.isMarkWhenUsed())
                         markFileUsed(file);
                     else
                         markFileUsed(file.getParentFile());
@@ -600,7 +754,18 @@ public abstract class AbstractFileStore extends WWObjectImpl implements FileStor
             }
 
             if (canCreateFile)
+            {
+                // Index the file now so that it can be found as soon as it's written. Its size and expiration time are
+                // recorded when known, by updateIndexEntry.
+                FileStoreIndex index = this.indexes.get(this.writeLocation.getFile());
+                if (index != null)
+                {
+                    String path = normalizeFileStoreName(fileName);
+                    index.put(path, 0, 0, WWIO.makeMimeTypeForSuffix(WWIO.getSuffix(path)), false);
+                }
+
                 return file;
+            }
             else
             {
                 String msg = Logging.getMessage("generic.CannotCreateFile", fullPath);
@@ -647,6 +812,11 @@ public abstract class AbstractFileStore extends WWObjectImpl implements FileStor
                     file.delete();
                 }
             }
+
+            StoreLocation location = this.storeLocationForFile(file);
+            FileStoreIndex index = location != null ? this.indexes.get(location.getFile()) : null;
+            if (index != null)
+                index.remove(indexPathForFile(location, file));
         }
         catch (java.net.URISyntaxException e)
         {
@@ -655,6 +825,176 @@ public abstract class AbstractFileStore extends WWObjectImpl implements FileStor
         }
     }
 
+    //**************************************************************//
+    //********************  File Store Index  **********************//
+    //**************************************************************//
+
+    /**
+     * Opens the index of a read location, and starts building it in the background if it's missing or out of date, or
+     * validating it if the location is modified only outside the file store. The indexes are kept in the
+     * <code>.index</code> directory of the write location.
+     *
+     * @param location the location to index.
+     */
+    protected void createIndex(StoreLocation location)
+    {
+        java.io.File dir = location.getFile();
+        if (this.writeLocation == null || dir == null || !dir.isDirectory())
+            return;
+
+        String name = Long.toHexString(FileStoreIndex.hash(dir.getAbsolutePath())) + ".idx";
+        java.io.File indexFile = new java.io.File(new java.io.File(this.writeLocation.getFile(), ".index"), name);
+
+        try
+        {
+            // The write location changes as files are retrieved, so its modification times don't indicate that its
+            // index is out of date. Other locations are modified only outside the file store, so their indexes are
+            // not relied on until the modification times of their directories have been checked.
+            FileStoreIndex index = new FileStoreIndex(dir, indexFile, !location.equals(this.writeLocation));
+            this.indexes.put(dir, index);
+
+            if (index.needsRebuild())
+                index.startRebuild();
+            else if (index.needsValidation())
+                index.startValidation();
+        }
+        catch (gov.nasa.worldwind.exception.WWRuntimeException e)
+        {
+            // The file store works without the index, only more slowly. The index logs the exception.
+        }
+    }
+
+    /**
+     * Indicates whether a location's index shows that a file is not in that location, in which case there is no need
+     * to look for it. The write location's index is never relied on for this, because applications and data
+     * installers write files there without going through the file store.
+     *
+     * @param location the location to check.
+     * @param fileName the file's path relative to the location.
+     *
+     * @return true if the file is known not to be in the location, false if it is, or might be.
+     */
+    protected boolean isIndexedAbsent(StoreLocation location, String fileName)
+    {
+        if (location.equals(this.writeLocation))
+            return false;
+
+        FileStoreIndex index = this.indexes.get(location.getFile());
+        return index != null && index.isComplete() && !index.contains(normalizeFileStoreName(fileName));
+    }
+
+    /**
+     * Returns the index entry of a file in the file store.
+     *
+     * @param file the file.
+     *
+     * @return the file's index entry, or null if the file is not indexed.
+     */
+    protected FileStoreIndex.Entry getIndexEntry(java.io.File file)
+    {
+        StoreLocation location = this.storeLocationForFile(file);
+        FileStoreIndex index = location != null ? this.indexes.get(location.getFile()) : null;
+        return index != null ? index.getEntry(indexPathForFile(location, file)) : null;
+    }
+
+    /**
+     * Records a file's size, expiration time and content type in the index of the location containing it. Does nothing
+     * if the file is not in a read location or the location is not indexed.
+     *
+     * @param file        the file.
+     * @param expiration  the time (in milliseconds since the Epoch) at which the file expires, or zero if it does not.
+     * @param contentType the file's mime type. May be null.
+     */
+    protected void updateIndexEntry(java.io.File file, long expiration, String contentType)
+    {
+        StoreLocation location = this.storeLocationForFile(file);
+        FileStoreIndex index = location != null ? this.indexes.get(location.getFile()) : null;
+        if (index != null)
+        {
+            index.put(indexPathForFile(location, file), file.length(), expiration, contentType, true);
+        }
+    }
+
+    protected StoreLocation storeLocationForFile(java.io.File file)
+    {
+        String path = file.getAbsolutePath();
+
+        for (StoreLocation location : this.readLocations)
+        {
+            String locationPath = location.getFile().getAbsolutePath();
+            if (path.startsWith(locationPath) && path.length() > locationPath.length()
+                && path.charAt(locationPath.length()) == java.io.File.separatorChar)
+                return location;
+        }
+
+        return null;
+    }
+
+    //**************************************************************//
+    //********************  File Store Eviction  *******************//
+    //**************************************************************//
+
+    /**
+     * Creates the evictor that keeps a location within its maximum size, and schedules it to run at the location's
+     * eviction interval. Installed-data locations are never evicted from, so they get no evictor.
+     *
+     * @param location the location to bound.
+     */
+    protected void createEvictor(StoreLocation location)
+    {
+        java.io.File dir = location.getFile();
+        if (dir == null || !dir.isDirectory() || location.isInstall())
+            return;
+
+        FileStoreEvictor evictor = new FileStoreEvictor(dir, location.getMaxSize(), location.getEvictionTarget(),
+            this.indexes.get(dir))
+        {
+            @Override
+            protected void deleted(String path, java.io.File file)
+            {
+                fileEvicted(path, file);
+            }
+        };
+        this.evictors.put(dir, evictor);
+
+        synchronized (this.fileLock)
+        {
+            if (this.evictionService == null)
+                this.evictionService = new BasicScheduledTaskService();
+        }
+
+        this.evictionTasks.put(dir, this.evictionService.addRepeatingTask(evictor, location.getEvictionInterval(),
+            location.getEvictionInterval(), java.util.concurrent.TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Called after the evictor of one of this file store's locations has removed a file or packed tile. The default
+     * implementation does nothing.
+     *
+     * @param path the evicted entry's path relative to its location.
+     * @param file the evicted file, or null if the entry was a packed tile.
+     */
+    protected void fileEvicted(String path, java.io.File file)
+    {
+    }
+
+    /**
+     * Returns the evictor of a location.
+     *
+     * @param location the location's directory.
+     *
+     * @return the location's evictor, or null if the location has no maximum size.
+     */
+    public FileStoreEvictor getEvictor(java.io.File location)
+    {
+        return location != null ? this.evictors.get(location) : null;
+    }
+
+    protected static String indexPathForFile(StoreLocation location, java.io.File file)
+    {
+        return normalizeFileStoreName(file.getAbsolutePath().substring(location.getFile().getAbsolutePath().length()));
+    }
+
     protected static java.io.File makeAbsoluteFile(java.io.File file, String fileName)
     {
         return new java.io.File(file.getAbsolutePath() + "/" + fileName);
@@ -15,6 +15,7 @@ import java.io.*;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Basic implementation of {@link FileStore}.
@@ -38,8 +39,16 @@ public class BasicDataFileStore extends AbstractFileStore
         "image/png"
     );
 
+    /** The suffixes of the files kept compressed when content compression is enabled. */
+    protected static final List<String> COMPRESSED_SUFFIXES = Arrays.asList("bil", "xml", "kml", "json", "geojson");
+
     /** The map of cached entries. */
     protected BasicMemoryCache db = new BasicMemoryCache((long) 3e5, (long) 5e5);
+    /**
+     * The addresses of the cached entries' local files, keyed by the files' URLs, so that an entry is discarded when
+     * its file is removed.
+     */
+    protected final ConcurrentHashMap<String, String> localAddresses = new ConcurrentHashMap<String, String>();
     /**
      * Absent-resource list to keep track of resources that were requested by requestFile but failed. The default list
      * holds a maximum of 2000 entries, allows 3 attempts separated by 500 milliseconds before marking a resource
@@ -63,6 +72,11 @@ public class BasicDataFileStore extends AbstractFileStore
      * parameter <code>gov.nasa.worldwind.avkey.CacheContentTypes</code>.
      */
     protected List<String> cacheContentTypes = new ArrayList<String>(DEFAULT_CACHE_CONTENT_TYPES);
+    /**
+     * Indicates whether retrieved elevation tiles and XML and JSON documents are kept gzip-compressed. Initialized from
+     * the World Wind configuration parameter <code>gov.nasa.worldwind.avkey.FileStoreCompressContent</code>.
+     */
+    protected boolean compressContent;
 
     /**
      * Create an instance.
@@ -138,6 +152,23 @@ public class BasicDataFileStore extends AbstractFileStore
     {
         super.initialize(xmlConfigStream);
 
+        this.db.addCacheListener(new MemoryCache.CacheListener()
+        {
+            public void entryRemoved(Object key, Object clientObject)
+            {
+                URL localUrl = ((DBEntry) clientObject).localUrl;
+                if (localUrl != null)
+                    localAddresses.remove(localUrl.toString(), key);
+            }
+
+            public void removalException(Throwable exception, Object key, Object clientObject)
+            {
+                Logging.logger().log(java.util.logging.Level.FINE, exception.getMessage(), exception);
+            }
+        });
+
+        this.compressContent = Configuration.getBooleanValue(AVKey.FILE_STORE_COMPRESS_CONTENT, false);
+
         String s = Configuration.getStringValue(AVKey.CACHE_CONTENT_TYPES);
         if (s != null)
         {
@@ -153,6 +184,59 @@ public class BasicDataFileStore extends AbstractFileStore
         }
     }
 
+    /**
+     * Indicates whether retrieved elevation tiles and XML and JSON documents are kept gzip-compressed.
+     *
+     * @return true if content is kept compressed, otherwise false.
+     *
+     * @see #setCompressContent(boolean)
+     */
+    public boolean isCompressContent()
+    {
+        return this.compressContent;
+    }
+
+    /**
+     * Specifies whether retrieved elevation tiles and XML and JSON documents are kept gzip-compressed. Elevation tiles
+     * typically compress to a third or less of their size, which reduces both the space they take and the time to read
+     * them. Compressed files keep their names and are marked as compressed by their gzip header, as written by {@link
+     * WWIO#saveBufferToCompressedFile(java.nio.ByteBuffer, File)}. Elevation models, {@link WWXML}'s URL readers and
+     * KML documents inflate them as they're read; other readers of the file store's files must open them through
+     * {@link WWIO#openInflatingStream(InputStream)}. Files already in the file store are unaffected.
+     *
+     * @param compressContent true to keep content compressed, otherwise false.
+     */
+    public void setCompressContent(boolean compressContent)
+    {
+        this.compressContent = compressContent;
+    }
+
+    /**
+     * Indicates whether a file written to this file store should be compressed, as determined by whether content
+     * compression is enabled and by the file's suffix.
+     *
+     * @param fileName the file's name.
+     *
+     * @return true if the file should be compressed, otherwise false.
+     *
+     * @throws IllegalArgumentException if the file name is null.
+     */
+    public boolean isCompressed(String fileName)
+    {
+        if (fileName == null)
+        {
+            String message = Logging.getMessage("nullValue.FilePathIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (!this.compressContent)
+            return false;
+
+        String suffix = WWIO.getSuffix(fileName);
+        return suffix != null && COMPRESSED_SUFFIXES.contains(suffix.toLowerCase());
+    }
+
     /**
      * Returns this file store's absent-resource list.
      *
@@ -273,7 +357,8 @@ public class BasicDataFileStore extends AbstractFileStore
             long now = System.currentTimeMillis();
             boolean expired = entry.expiration != 0 && now > entry.expiration;
 
-            // Return the resource if it is local and has not expired.
+            // Return the resource if it is local and has not expired. The entry is discarded when its file is
+            // removed, evicted or packed.
             if (entry.state == DBEntry.LOCAL && !expired)
                 return entry.localUrl;
 
@@ -304,6 +389,55 @@ public class BasicDataFileStore extends AbstractFileStore
         return null;
     }
 
+    @Override
+    public void removeFile(URL url)
+    {
+        super.removeFile(url);
+        this.forgetLocalUrl(url);
+    }
+
+    /**
+     * Discards the cached entry whose local copy is at a URL, once the copy has been removed or moved.
+     *
+     * @param localUrl the URL of the local copy.
+     */
+    protected void forgetLocalUrl(URL localUrl)
+    {
+        String address = localUrl != null ? this.localAddresses.get(localUrl.toString()) : null;
+        if (address != null)
+            this.db.remove(address);
+    }
+
+    /**
+     * Records the local copy of a cached entry's resource.
+     *
+     * @param address  the entry's address.
+     * @param entry    the entry.
+     * @param localUrl the URL of the local copy.
+     */
+    protected void setLocalUrl(String address, DBEntry entry, URL localUrl)
+    {
+        if (entry.localUrl != null)
+            this.localAddresses.remove(entry.localUrl.toString(), address);
+
+        entry.localUrl = localUrl;
+        this.localAddresses.put(localUrl.toString(), address);
+    }
+
+    @Override
+    protected void fileEvicted(String path, File file)
+    {
+        try
+        {
+            if (file != null)
+                this.forgetLocalUrl(file.toURI().toURL());
+        }
+        catch (MalformedURLException e)
+        {
+            // A file's URL is always well formed.
+        }
+    }
+
     /**
      * Returns a file from the cache, the local file system or the classpath if the file exists. The specified address
      * may be a jar URL. See {@link java.net.JarURLConnection} for a description of jar URLs. If
@@ -398,10 +532,22 @@ public class BasicDataFileStore extends AbstractFileStore
         if (cacheFileUrl != null)
         {
             DBEntry entry = new DBEntry(address);
-            entry.localUrl = cacheFileUrl;
             entry.state = DBEntry.LOCAL;
             entry.contentType = WWIO.makeMimeTypeForSuffix(WWIO.getSuffix(cacheFileUrl.getPath()));
+
+            // Restore the expiration time and content type recorded when the file was retrieved, possibly in an
+            // earlier session.
+            File file = WWIO.convertURLToFile(cacheFileUrl);
+            FileStoreIndex.Entry indexEntry = file != null ? this.getIndexEntry(file) : null;
+            if (indexEntry != null)
+            {
+                entry.expiration = indexEntry.getExpiration();
+                if (indexEntry.getContentType() != null)
+                    entry.contentType = indexEntry.getContentType();
+            }
+
             this.db.add(address, entry);
+            this.setLocalUrl(address, entry, cacheFileUrl);
             this.getAbsentResourceList().unmarkResourceAbsent(address);
 
             return cacheFileUrl;
@@ -518,6 +664,13 @@ public class BasicDataFileStore extends AbstractFileStore
             }
         }
 
+        @Override
+        protected boolean compressOutputFile()
+        {
+            File file = this.doGetOutputFile();
+            return this.saveInLocalCache && file != null && BasicDataFileStore.this.isCompressed(file.getName());
+        }
+
         @Override
         protected boolean saveBuffer() throws IOException
         {
@@ -570,10 +723,14 @@ public class BasicDataFileStore extends AbstractFileStore
             return;
 
         entry.state = DBEntry.LOCAL;
-        entry.localUrl = localFileUrl;
+        this.setLocalUrl(address, entry, localFileUrl);
         entry.contentType = WWIO.makeMimeTypeForSuffix(WWIO.getSuffix(localFileUrl.getPath()));
         entry.expiration = expiration;
         entry.lastUpdateTime = System.currentTimeMillis();
+
+        File file = WWIO.convertURLToFile(localFileUrl);
+        if (file != null)
+            this.updateIndexEntry(file, expiration, entry.contentType);
     }
 
     /**
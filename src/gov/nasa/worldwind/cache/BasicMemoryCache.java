@@ -52,6 +52,7 @@ public class BasicMemoryCache implements MemoryCache
     protected java.util.concurrent.CopyOnWriteArrayList<MemoryCache.CacheListener> listeners;
     protected AtomicLong capacity = new AtomicLong();
     protected AtomicLong currentUsedCapacity = new AtomicLong();
+    protected MemoryCacheStatistics statistics = new MemoryCacheStatistics();
     protected Long lowWater;
     protected String name = "";
 
@@ -96,6 +97,21 @@ public class BasicMemoryCache implements MemoryCache
         return Math.max(this.capacity.get() - this.currentUsedCapacity.get(), 0);
     }
 
+    public long getHitCount()
+    {
+        return this.statistics.getHitCount();
+    }
+
+    public long getMissCount()
+    {
+        return this.statistics.getMissCount();
+    }
+
+    public MemoryCacheStatistics getStatistics()
+    {
+        return new MemoryCacheStatistics().add(this.statistics);
+    }
+
     public void setName(String name)
     {
         this.name = name != null ? name : "";
@@ -153,8 +169,15 @@ public class BasicMemoryCache implements MemoryCache
      */
     public void setCapacity(long newCapacity)
     {
-//        this.makeSpace(this.capacity - newCapacity);
         this.capacity.set(newCapacity);
+
+        if (this.currentUsedCapacity.get() > newCapacity)
+        {
+            synchronized (this.lock)
+            {
+                this.makeSpace(0);
+            }
+        }
     }
 
     /**
@@ -264,6 +287,8 @@ public class BasicMemoryCache implements MemoryCache
             this.entries.putIfAbsent(entry.key, entry);
         }
 
+        this.statistics.recordAdd();
+
         return true;
     }
 
@@ -316,19 +341,25 @@ public class BasicMemoryCache implements MemoryCache
             return null;
         }
 
+        long start = this.statistics.startLookup();
         CacheEntry entry; // don't need to lock because call is atomic
         synchronized (this.lock)
         {
             entry = this.entries.get(key);
 
             if (entry == null)
+            {
+                this.statistics.endLookup(false, start);
                 return null;
+            }
 
             entry.lastUsed = System.nanoTime(); // nanoTime overflows once every 292 years
             // which will result in a slowing of the cache
             // until ww is restarted or the cache is cleared.
         }
 
+        this.statistics.endLookup(true, start);
+
         return entry.clientObject;
     }
 
@@ -374,7 +405,8 @@ public class BasicMemoryCache implements MemoryCache
 
     /**
      * Makes at least <code>spaceRequired</code> space in the cache. If spaceRequired is less than (capacity-lowWater),
-     * makes more space. Does nothing if capacity is less than spaceRequired.
+     * makes more space. Does nothing if capacity is less than spaceRequired. Also removes items until the cache is
+     * within its capacity, which may have been reduced.
      *
      * @param spaceRequired the amount of space required.
      */
@@ -386,13 +418,14 @@ public class BasicMemoryCache implements MemoryCache
         CacheEntry[] timeOrderedEntries = new CacheEntry[this.entries.size()];
         java.util.Arrays.sort(this.entries.values().toArray(timeOrderedEntries)); // TODO
 
+        long target = Math.min(this.lowWater, this.capacity.get());
         int i = 0;
-        while (this.getFreeCapacity() < spaceRequired || this.getUsedCapacity() > this.lowWater)
+        while (i < timeOrderedEntries.length
+            && (this.getFreeCapacity() < spaceRequired || this.getUsedCapacity() > target))
         {
-            if (i < timeOrderedEntries.length)
-            {
-                this.removeEntry(timeOrderedEntries[i++]);
-            }
+            CacheEntry entry = timeOrderedEntries[i++];
+            this.removeEntry(entry);
+            this.statistics.recordEviction(entry.clientObjectSize);
         }
     }
 
@@ -5,10 +5,13 @@
  */
 package gov.nasa.worldwind.cache;
 
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.util.*;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 
 /**
  * @author tag
@@ -60,9 +63,38 @@ public class BasicMemoryCacheSet implements MemoryCacheSet
 
         this.caches.put(key, cache);
 
+        if (Configuration.getBooleanValue(AVKey.MEMORY_CACHE_JMX_ENABLED, false))
+            MemoryCacheMonitor.register(key, cache);
+
         return cache;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The configured class must provide a public constructor taking the low water level and the capacity, as {@link
+     * BasicMemoryCache} and {@link ConcurrentMemoryCache} do. If the class cannot be created, this logs the failure
+     * and returns a <code>BasicMemoryCache</code>.
+     */
+    public MemoryCache createCache(long loWater, long capacity)
+    {
+        String className = Configuration.getStringValue(AVKey.MEMORY_CACHE_CLASS_NAME);
+        if (WWUtil.isEmpty(className) || className.trim().equals(BasicMemoryCache.class.getName()))
+            return new BasicMemoryCache(loWater, capacity);
+
+        try
+        {
+            Class<?> c = Class.forName(className.trim());
+            return (MemoryCache) c.getConstructor(long.class, long.class).newInstance(loWater, capacity);
+        }
+        catch (Exception e)
+        {
+            String message = Logging.getMessage("WorldWind.ExceptionCreatingComponent", className);
+            Logging.logger().log(Level.SEVERE, message, e);
+            return new BasicMemoryCache(loWater, capacity);
+        }
+    }
+
     public synchronized void clear()
     {
         for (MemoryCache cache : this.caches.values())
@@ -79,6 +111,15 @@ public class BasicMemoryCacheSet implements MemoryCacheSet
         {
             stats.add(new PerformanceStatistic(PerformanceStatistic.MEMORY_CACHE, "Cache Size (Kb): " + cache.getName(),
                 cache.getUsedCapacity() / 1000));
+
+            MemoryCacheStatistics cacheStats = cache.getStatistics();
+            stats.add(new PerformanceStatistic(PerformanceStatistic.MEMORY_CACHE,
+                "Cache Hit Ratio (%): " + cache.getName(), (int) (100 * cacheStats.getHitRatio())));
+            stats.add(new PerformanceStatistic(PerformanceStatistic.MEMORY_CACHE,
+                "Cache Evictions: " + cache.getName(), cacheStats.getEvictionCount()));
+            stats.add(new PerformanceStatistic(PerformanceStatistic.MEMORY_CACHE,
+                "Cache Lookup 99th Percentile (ns): " + cache.getName(),
+                cacheStats.getLookupLatency().getPercentile(99)));
         }
 
         return stats;
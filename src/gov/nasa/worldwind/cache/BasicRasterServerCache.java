@@ -83,6 +83,8 @@ public class BasicRasterServerCache extends BasicMemoryCache
             this.updateMemorySemaphore();
         }
 
+        this.statistics.recordAdd();
+
         return true;
     }
 
@@ -127,6 +129,7 @@ public class BasicRasterServerCache extends BasicMemoryCache
                     if (null != entry && (System.nanoTime() - entry.lastUsed) > this.getLeastRecentUseTimeout())
                     {
                         this.removeEntry(entry);
+                        this.statistics.recordEviction(entry.clientObjectSize);
                     }
                 }
             }
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+/**
+ * Decides whether a memory cache should keep a newly cached entry at the expense of an entry already in the cache. A
+ * policy observes every lookup made to the cache, hits and misses alike, and uses that history to reject entries that
+ * are unlikely to be used again, such as tiles touched once during a fast pan or a bulk retrieval.
+ *
+ * @see ConcurrentMemoryCache#setAdmissionPolicy(CacheAdmissionPolicy)
+ */
+public interface CacheAdmissionPolicy
+{
+    /**
+     * Records a lookup of a key. Called by the cache for every lookup, whether or not the key is in the cache. This
+     * method is called on the render thread and must not block.
+     *
+     * @param key the key looked up.
+     */
+    void recordAccess(Object key);
+
+    /**
+     * Indicates whether a candidate entry should replace an eviction victim.
+     *
+     * @param candidateKey the key of the entry seeking admission.
+     * @param victimKey    the key of the entry that would be evicted in its place.
+     *
+     * @return true if the victim should be evicted and the candidate kept, false if the candidate should be evicted.
+     */
+    boolean admit(Object candidateKey, Object victimKey);
+
+    /**
+     * Informs the policy of the number of entries the cache currently holds, allowing it to size its history. The
+     * cache calls this while evicting, so the policy should only do work when the size has changed substantially.
+     *
+     * @param numEntries the number of entries in the cache.
+     */
+    void ensureCapacity(int numEntries);
+}
@@ -0,0 +1,766 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link MemoryCache} that partitions its entries into independently locked segments. Lookups never lock, and adds
+ * and removes lock only the segment the key hashes to, so threads working on different keys rarely contend. This
+ * makes the cache suitable for caches shared by the render thread and the retrieval and task service threads.
+ * <p/>
+ * Eviction approximates least-recently-used order with the CLOCK algorithm: each segment keeps its entries on a ring,
+ * and <code>getObject</code> sets a reference bit on the entry found. When the cache exceeds its capacity, a clock
+ * hand sweeps the segments in turn, clearing reference bits and evicting the first unreferenced entry it meets, until
+ * the used capacity falls to the low water level. Capacity, low water and {@link MemoryCache.CacheListener} semantics
+ * are the same as those of {@link BasicMemoryCache}, except that listeners are notified after the segment lock is
+ * released.
+ * <p/>
+ * An optional {@link CacheAdmissionPolicy} makes the cache resistant to scans, such as a fast pan or a bulk retrieval
+ * touching many tiles exactly once. New entries then enter a small admission window holding a fraction of the
+ * capacity. Entries leaving the window when the cache is full must win a contest against the entry the clock hand
+ * would evict; the policy decides which of the two stays. While a policy is set the cache evicts only down to its
+ * capacity rather than to the low water level, since evicting in batches would discard entries without a contest.
+ */
+public class ConcurrentMemoryCache implements MemoryCache
+{
+    /** The default number of segments. Rounded up to a power of two. */
+    protected static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    /** The default fraction of the capacity given to the admission window when an admission policy is set. */
+    protected static final double DEFAULT_WINDOW_FRACTION = 0.05;
+
+    protected static class CacheEntry
+    {
+        protected final Object key;
+        protected final Object clientObject;
+        protected final long clientObjectSize;
+        /** Set by lookups, cleared by the clock hand. */
+        protected volatile boolean referenced;
+        /** True while the entry is in the admission window. Changed only while holding the segment's monitor. */
+        protected volatile boolean inWindow;
+        // Ring links, guarded by the owning segment's monitor.
+        protected CacheEntry prev;
+        protected CacheEntry next;
+
+        protected CacheEntry(Object key, Object clientObject, long clientObjectSize)
+        {
+            this.key = key;
+            this.clientObject = clientObject;
+            this.clientObjectSize = clientObjectSize;
+        }
+
+        public String toString()
+        {
+            return key.toString() + " " + clientObject.toString() + " " + referenced + " " + clientObjectSize;
+        }
+    }
+
+    /**
+     * One lock stripe of the cache. The entry map is read without locking; the map and the clock ring are modified
+     * only while holding the segment's monitor.
+     */
+    protected static class Segment
+    {
+        protected final ConcurrentHashMap<Object, CacheEntry> entries = new ConcurrentHashMap<Object, CacheEntry>();
+        /** Statistics for the segment's keys, striped so that lookups of different keys don't contend. */
+        protected final MemoryCacheStatistics statistics = new MemoryCacheStatistics();
+        /** The clock hand, the next entry to examine for eviction. Null when the segment is empty. */
+        protected CacheEntry hand;
+
+        /** Inserts an entry just behind the hand, making it the last entry the hand will examine. */
+        protected void link(CacheEntry entry) // MUST BE CALLED WITHIN SYNCHRONIZED
+        {
+            if (this.hand == null)
+            {
+                entry.prev = entry;
+                entry.next = entry;
+                this.hand = entry;
+            }
+            else
+            {
+                entry.next = this.hand;
+                entry.prev = this.hand.prev;
+                this.hand.prev.next = entry;
+                this.hand.prev = entry;
+            }
+        }
+
+        protected void unlink(CacheEntry entry) // MUST BE CALLED WITHIN SYNCHRONIZED
+        {
+            if (entry.next == null) // not on the ring
+                return;
+
+            if (entry.next == entry)
+            {
+                this.hand = null;
+            }
+            else
+            {
+                entry.prev.next = entry.next;
+                entry.next.prev = entry.prev;
+                if (this.hand == entry)
+                    this.hand = entry.next;
+            }
+
+            entry.prev = null;
+            entry.next = null;
+        }
+
+        /**
+         * Advances the clock hand to the first unreferenced entry outside the admission window, clearing reference bits
+         * along the way. The entry is left in the segment.
+         *
+         * @return the entry under the hand, or null if the segment holds no entries outside the admission window.
+         */
+        protected CacheEntry advance() // MUST BE CALLED WITHIN SYNCHRONIZED
+        {
+            // Bound the sweep so that concurrent lookups setting reference bits cannot keep the hand moving forever.
+            int maxSteps = 2 * this.entries.size() + 1;
+            for (int i = 0; this.hand != null && i < maxSteps; i++)
+            {
+                if (!this.hand.inWindow && !this.hand.referenced)
+                    break;
+
+                this.hand.referenced = false;
+                this.hand = this.hand.next;
+            }
+
+            return this.hand != null && !this.hand.inWindow ? this.hand : null;
+        }
+
+        /**
+         * Removes an entry if it is still the entry mapped to its key.
+         *
+         * @param entry the entry to remove.
+         *
+         * @return true if the entry was removed, false if it had already been removed or replaced.
+         */
+        protected boolean remove(CacheEntry entry) // MUST BE CALLED WITHIN SYNCHRONIZED
+        {
+            if (!this.entries.remove(entry.key, entry))
+                return false;
+
+            this.unlink(entry);
+            return true;
+        }
+    }
+
+    protected final Segment[] segments;
+    protected final int segmentMask;
+    protected java.util.concurrent.CopyOnWriteArrayList<MemoryCache.CacheListener> listeners;
+    protected AtomicLong capacity = new AtomicLong();
+    protected AtomicLong currentUsedCapacity = new AtomicLong();
+    protected volatile long lowWater;
+    protected String name = "";
+
+    /** Serializes eviction sweeps. Never held while a segment monitor is held by the same thread on entry. */
+    protected final Object evictionLock = new Object();
+    /** The segment the clock hand visits next. Guarded by <code>evictionLock</code>. */
+    protected int evictionSegment;
+
+    protected volatile CacheAdmissionPolicy admissionPolicy;
+    protected volatile double windowFraction = DEFAULT_WINDOW_FRACTION;
+    /** Entries in the admission window, oldest first. May also hold entries since removed from the cache. */
+    protected ConcurrentLinkedQueue<CacheEntry> window = new ConcurrentLinkedQueue<CacheEntry>();
+    protected AtomicLong windowUsedCapacity = new AtomicLong();
+
+    /**
+     * Constructs a new cache using <code>capacity</code> for maximum size, and <code>loWater</code> for the low water.
+     *
+     * @param loWater  the low water level.
+     * @param capacity the maximum capacity.
+     */
+    public ConcurrentMemoryCache(long loWater, long capacity)
+    {
+        this(loWater, capacity, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Constructs a new cache using <code>capacity</code> for maximum size, <code>loWater</code> for the low water, and
+     * the specified number of lock segments.
+     *
+     * @param loWater          the low water level.
+     * @param capacity         the maximum capacity.
+     * @param concurrencyLevel the number of segments, rounded up to a power of two. Should be roughly the number of
+     *                         threads expected to modify the cache concurrently.
+     *
+     * @throws IllegalArgumentException if <code>concurrencyLevel</code> is less than 1.
+     */
+    public ConcurrentMemoryCache(long loWater, long capacity, int concurrencyLevel)
+    {
+        if (concurrencyLevel < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "concurrencyLevel < 1");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int numSegments = 1;
+        while (numSegments < concurrencyLevel && numSegments < (1 << 16))
+        {
+            numSegments <<= 1;
+        }
+
+        this.segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++)
+        {
+            this.segments[i] = new Segment();
+        }
+        this.segmentMask = numSegments - 1;
+
+        this.listeners = new java.util.concurrent.CopyOnWriteArrayList<MemoryCache.CacheListener>();
+        this.capacity.set(capacity);
+        this.lowWater = loWater;
+    }
+
+    /** @return the number of objects currently stored in this cache. */
+    public int getNumObjects()
+    {
+        int count = 0;
+        for (Segment segment : this.segments)
+        {
+            count += segment.entries.size();
+        }
+
+        return count;
+    }
+
+    /** @return the capacity of the cache. */
+    public long getCapacity()
+    {
+        return this.capacity.get();
+    }
+
+    /** @return the number of cache units that the cache currently holds. */
+    public long getUsedCapacity()
+    {
+        return this.currentUsedCapacity.get();
+    }
+
+    /** @return the amount of free space left in the cache (in cache units). */
+    public long getFreeCapacity()
+    {
+        return Math.max(this.capacity.get() - this.currentUsedCapacity.get(), 0);
+    }
+
+    public long getHitCount()
+    {
+        long count = 0;
+        for (Segment segment : this.segments)
+        {
+            count += segment.statistics.getHitCount();
+        }
+
+        return count;
+    }
+
+    public long getMissCount()
+    {
+        long count = 0;
+        for (Segment segment : this.segments)
+        {
+            count += segment.statistics.getMissCount();
+        }
+
+        return count;
+    }
+
+    public MemoryCacheStatistics getStatistics()
+    {
+        MemoryCacheStatistics statistics = new MemoryCacheStatistics();
+        for (Segment segment : this.segments)
+        {
+            statistics.add(segment.statistics);
+        }
+
+        return statistics;
+    }
+
+    public void setName(String name)
+    {
+        this.name = name != null ? name : "";
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Adds a cache listener, MemoryCache listeners are used to notify classes when an item is removed from the cache.
+     *
+     * @param listener The new <code>CacheListener</code>.
+     *
+     * @throws IllegalArgumentException is <code>listener</code> is null.
+     */
+    public void addCacheListener(MemoryCache.CacheListener listener)
+    {
+        if (listener == null)
+        {
+            String message = Logging.getMessage("BasicMemoryCache.nullListenerAdded");
+            Logging.logger().warning(message);
+            throw new IllegalArgumentException(message);
+        }
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a cache listener, objects using this listener will no longer receive notification of cache events.
+     *
+     * @param listener The <code>CacheListener</code> to remove.
+     *
+     * @throws IllegalArgumentException if <code>listener</code> is null.
+     */
+    public void removeCacheListener(MemoryCache.CacheListener listener)
+    {
+        if (listener == null)
+        {
+            String message = Logging.getMessage("BasicMemoryCache.nullListenerRemoved");
+            Logging.logger().warning(message);
+            throw new IllegalArgumentException(message);
+        }
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Returns the admission policy deciding which new entries may displace existing ones.
+     *
+     * @return the admission policy, or null if every new entry is admitted.
+     */
+    public CacheAdmissionPolicy getAdmissionPolicy()
+    {
+        return this.admissionPolicy;
+    }
+
+    /**
+     * Specifies the admission policy deciding which new entries may displace existing ones. Entries added while a
+     * policy is set enter the admission window; see the class description.
+     *
+     * @param admissionPolicy the admission policy. May be null, in which case every new entry is admitted and the cache
+     *                        evicts in clock order down to the low water level.
+     */
+    public void setAdmissionPolicy(CacheAdmissionPolicy admissionPolicy)
+    {
+        this.admissionPolicy = admissionPolicy;
+    }
+
+    /**
+     * Returns the fraction of the capacity given to the admission window.
+     *
+     * @return the admission window fraction.
+     */
+    public double getWindowFraction()
+    {
+        return this.windowFraction;
+    }
+
+    /**
+     * Specifies the fraction of the capacity given to the admission window while an admission policy is set. Larger
+     * windows favour recently added entries; smaller windows favour frequently used entries.
+     *
+     * @param windowFraction the admission window fraction, in the range [0, 1].
+     *
+     * @throws IllegalArgumentException if the fraction is outside the range [0, 1].
+     */
+    public void setWindowFraction(double windowFraction)
+    {
+        if (windowFraction < 0 || windowFraction > 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "windowFraction=" + windowFraction);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.windowFraction = windowFraction;
+    }
+
+    /**
+     * Sets the new capacity for the cache. If the new capacity is less than the used capacity, entries are evicted
+     * until the used capacity falls to the low water level or the new capacity, whichever is less.
+     *
+     * @param newCapacity the new capacity of the cache.
+     */
+    public void setCapacity(long newCapacity)
+    {
+        this.capacity.set(newCapacity);
+
+        if (this.currentUsedCapacity.get() > newCapacity)
+            this.makeSpace();
+    }
+
+    /**
+     * Sets the new low water level in cache units, which controls how aggressively the cache discards items.
+     * <p/>
+     * When the cache fills, it removes items until it reaches the low water level.
+     *
+     * @param loWater the new low water level.
+     */
+    public void setLowWater(long loWater)
+    {
+        if (loWater < this.capacity.get() && loWater >= 0)
+        {
+            this.lowWater = loWater;
+        }
+    }
+
+    /**
+     * Returns the low water level in cache units. When the cache fills, it removes items until it reaches the low water
+     * level.
+     *
+     * @return the low water level.
+     */
+    public long getLowWater()
+    {
+        return this.lowWater;
+    }
+
+    /**
+     * Returns true if the cache contains the item referenced by key. No guarantee is made as to whether or not the item
+     * will remain in the cache for any period of time.
+     * <p/>
+     * This function does not cause the object referenced by the key to be marked as accessed. <code>getObject()</code>
+     * should be used for that purpose.
+     *
+     * @param key The key of a specific object.
+     *
+     * @return true if the cache holds the item referenced by key.
+     *
+     * @throws IllegalArgumentException if <code>key</code> is null.
+     */
+    public boolean contains(Object key)
+    {
+        if (key == null)
+        {
+            String msg = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        return this.segmentFor(key).entries.containsKey(key);
+    }
+
+    /**
+     * Adds an object to the cache. The add fails if the object or key is null, or if the size is zero, negative or
+     * greater than the maximum capacity.
+     *
+     * @param key              The unique reference key that identifies this object.
+     * @param clientObject     The actual object to be cached.
+     * @param clientObjectSize The size of the object in cache units.
+     *
+     * @return returns true if clientObject was added, false otherwise.
+     */
+    public boolean add(Object key, Object clientObject, long clientObjectSize)
+    {
+        long cap = this.capacity.get();
+
+        if (key == null || clientObject == null || clientObjectSize <= 0 || clientObjectSize > cap)
+        {
+            String message = Logging.getMessage("BasicMemoryCache.CacheItemNotAdded");
+
+            if (clientObjectSize > cap)
+            {
+                message += " - " + Logging.getMessage("BasicMemoryCache.ItemTooLargeForCache");
+            }
+
+            Logging.logger().warning(message);
+
+            return false;
+        }
+
+        CacheEntry entry = new CacheEntry(key, clientObject, clientObjectSize);
+        entry.inWindow = this.admissionPolicy != null;
+        CacheEntry existing;
+
+        Segment segment = this.segmentFor(key);
+        synchronized (segment)
+        {
+            existing = segment.entries.put(key, entry);
+            if (existing != null) // replacing
+                segment.unlink(existing);
+            segment.link(entry);
+        }
+
+        segment.statistics.recordAdd();
+        this.currentUsedCapacity.addAndGet(clientObjectSize);
+        if (entry.inWindow)
+        {
+            this.windowUsedCapacity.addAndGet(clientObjectSize);
+            this.window.offer(entry);
+        }
+
+        if (existing != null)
+            this.entryRemoved(existing);
+
+        if (this.currentUsedCapacity.get() > cap)
+            this.makeSpace();
+        else if (this.windowUsedCapacity.get() > this.getWindowCapacity())
+            this.drainWindow(null); // the cache has room, so entries leave the window without a contest
+
+        return true;
+    }
+
+    public boolean add(Object key, Cacheable clientObject)
+    {
+        return this.add(key, clientObject, clientObject.getSizeInBytes());
+    }
+
+    /**
+     * Remove the object reference by key from the cache. If no object with the corresponding key is found, this method
+     * returns immediately.
+     *
+     * @param key the key of the object to be removed.
+     */
+    public void remove(Object key)
+    {
+        if (key == null)
+        {
+            Logging.logger().finer("nullValue.KeyIsNull");
+
+            return;
+        }
+
+        CacheEntry entry;
+        Segment segment = this.segmentFor(key);
+        synchronized (segment)
+        {
+            entry = segment.entries.remove(key);
+            if (entry != null)
+                segment.unlink(entry);
+        }
+
+        if (entry != null)
+            this.entryRemoved(entry);
+    }
+
+    /**
+     * Obtain the object referenced by key without removing it. Apart from adding an object, this is the only way to
+     * mark an object as recently used. This method does not lock.
+     *
+     * @param key The key for the object to be found.
+     *
+     * @return the object referenced by key if it is present, null otherwise.
+     */
+    public Object getObject(Object key)
+    {
+        if (key == null)
+        {
+            Logging.logger().finer("nullValue.KeyIsNull");
+
+            return null;
+        }
+
+        CacheAdmissionPolicy policy = this.admissionPolicy;
+        if (policy != null)
+            policy.recordAccess(key);
+
+        Segment segment = this.segmentFor(key);
+        long start = segment.statistics.startLookup();
+        CacheEntry entry = segment.entries.get(key);
+        segment.statistics.endLookup(entry != null, start);
+        if (entry == null)
+            return null;
+
+        if (!entry.referenced) // avoid a volatile write, and the cache line invalidation, on hot entries
+            entry.referenced = true;
+
+        return entry.clientObject;
+    }
+
+    /** Empties the cache. */
+    public void clear()
+    {
+        for (Segment segment : this.segments)
+        {
+            ArrayList<CacheEntry> removed;
+            synchronized (segment)
+            {
+                removed = new ArrayList<CacheEntry>(segment.entries.values());
+                segment.entries.clear();
+                segment.hand = null;
+            }
+
+            // Drop references to removed entries from the window. Entries added concurrently with the clear stay.
+            this.window.removeAll(new HashSet<CacheEntry>(removed));
+
+            for (CacheEntry entry : removed)
+            {
+                entry.prev = null;
+                entry.next = null;
+                this.entryRemoved(entry);
+            }
+        }
+    }
+
+    protected Segment segmentFor(Object key)
+    {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+
+        return this.segments[h & this.segmentMask];
+    }
+
+    /**
+     * Accounts for an entry that has already been taken out of its segment and notifies the cache listeners. Must be
+     * called without holding a segment lock so that listeners may safely call back into the cache.
+     *
+     * @param entry the removed entry.
+     */
+    protected void entryRemoved(CacheEntry entry)
+    {
+        this.currentUsedCapacity.addAndGet(-entry.clientObjectSize);
+        if (entry.inWindow) // the flag no longer changes once the entry is out of its segment
+            this.windowUsedCapacity.addAndGet(-entry.clientObjectSize);
+
+        for (MemoryCache.CacheListener listener : this.listeners)
+        {
+            try
+            {
+                listener.entryRemoved(entry.key, entry.clientObject);
+            }
+            catch (Exception e)
+            {
+                listener.removalException(e, entry.key, entry.clientObject);
+            }
+        }
+    }
+
+    /**
+     * Evicts entries until the used capacity is no greater than the low water level, or than the capacity when the low
+     * water level is not less than the capacity or an admission policy is set. Only one thread sweeps at a time;
+     * threads arriving while a sweep is in progress wait for it and then re-check the used capacity.
+     */
+    protected void makeSpace()
+    {
+        synchronized (this.evictionLock)
+        {
+            CacheAdmissionPolicy policy = this.admissionPolicy;
+            if (policy != null)
+                policy.ensureCapacity(this.getNumObjects());
+
+            // Entries pushed out of the admission window must win a contest against a clock victim to stay.
+            ArrayDeque<CacheEntry> candidates = new ArrayDeque<CacheEntry>();
+            this.drainWindow(candidates);
+
+            int emptySegments = 0;
+            while (emptySegments < this.segments.length)
+            {
+                long cap = this.capacity.get();
+                long target = policy == null && this.lowWater < cap ? this.lowWater : cap;
+                if (this.currentUsedCapacity.get() <= target)
+                    return;
+
+                Segment segment = this.segments[this.evictionSegment];
+                this.evictionSegment = (this.evictionSegment + 1) & this.segmentMask;
+
+                CacheEntry victim;
+                synchronized (segment)
+                {
+                    victim = segment.advance();
+                }
+
+                if (victim == null)
+                {
+                    emptySegments++;
+                    continue;
+                }
+
+                emptySegments = 0;
+
+                CacheEntry candidate = candidates.poll();
+                if (candidate != null && candidate != victim && policy != null
+                    && !policy.admit(candidate.key, victim.key))
+                {
+                    victim = candidate;
+                }
+
+                this.evict(victim);
+            }
+
+            // Only entries in the admission window remain; evict them oldest first.
+            CacheEntry entry;
+            while (this.currentUsedCapacity.get() > this.capacity.get() && (entry = this.window.poll()) != null)
+            {
+                this.evict(entry);
+            }
+        }
+    }
+
+    /**
+     * Moves the oldest entries out of the admission window until the window is within its share of the capacity.
+     *
+     * @param candidates receives the entries moved out of the window. May be null.
+     */
+    protected void drainWindow(Collection<CacheEntry> candidates)
+    {
+        long windowCapacity = this.getWindowCapacity();
+
+        CacheEntry entry;
+        while (this.windowUsedCapacity.get() > windowCapacity && (entry = this.window.poll()) != null)
+        {
+            boolean moved = false;
+            Segment segment = this.segmentFor(entry.key);
+            synchronized (segment)
+            {
+                if (entry.inWindow && segment.entries.get(entry.key) == entry) // skip removed entries
+                {
+                    entry.inWindow = false;
+                    moved = true;
+                }
+            }
+
+            if (moved)
+            {
+                this.windowUsedCapacity.addAndGet(-entry.clientObjectSize);
+                if (candidates != null)
+                    candidates.add(entry);
+            }
+        }
+    }
+
+    /** @return the capacity of the admission window, zero if no admission policy is set. */
+    protected long getWindowCapacity()
+    {
+        return this.admissionPolicy != null ? (long) (this.windowFraction * this.capacity.get()) : 0;
+    }
+
+    /**
+     * Removes an entry chosen for eviction, if it is still in the cache, and notifies the listeners.
+     *
+     * @param entry the entry to evict.
+     */
+    protected void evict(CacheEntry entry)
+    {
+        boolean removed;
+        Segment segment = this.segmentFor(entry.key);
+        synchronized (segment)
+        {
+            removed = segment.remove(entry);
+        }
+
+        if (removed)
+        {
+            segment.statistics.recordEviction(entry.clientObjectSize);
+            this.entryRemoved(entry);
+        }
+    }
+
+    /**
+     * a <code>String</code> representation of this object is returned.&nbsp; This representation consists of maximum
+     * size, current used capacity and number of currently cached items.
+     *
+     * @return a <code>String</code> representation of this object.
+     */
+    @Override
+    public String toString()
+    {
+        return "MemoryCache " + this.name + " max size = " + this.getCapacity() + " current size = "
+            + this.currentUsedCapacity.get() + " number of items: " + this.getNumObjects();
+    }
+}
@@ -0,0 +1,503 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.util.Logging;
+
+import java.nio.Buffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link SessionCache} for use by many threads at once. Lookups don't lock, entries expire after a time to live, the
+ * cache is bounded by the total weight of its values as well as by its number of entries, and threads loading the same
+ * key share one load.
+ * <p/>
+ * Each entry expires a time to live after it is added; an expired entry is never returned, and is removed when next
+ * looked up or when the cache is trimmed. The time to live is given per entry by {@link #put(Object, Object, long,
+ * long)}, or defaults to {@link #getTimeToLive()}. A value's weight is its approximate size in bytes: the size of a
+ * {@link Cacheable}, or the capacity of a byte buffer, byte array or string. Values of other types, such as parsed
+ * capabilities documents, weigh nothing unless a weight is given when they are added, and are bounded only by the
+ * entry capacity. When either bound is exceeded, the least recently used entries are evicted.
+ * <p/>
+ * {@link #load(Object, Callable)} and {@link #getOrLoad(Object, Callable)} run a loader for a key, such as the
+ * retrieval of a capabilities document, unless a load of that key is already under way; in that case they wait for
+ * that load and return its result. Threads asking for the same document therefore cause one retrieval rather than one
+ * each.
+ * <p/>
+ * Eviction scans the entries to find the least recently used, so the cache is intended for the small number of large
+ * documents held by session caches rather than for many small values.
+ */
+public class ConcurrentSessionCache implements SessionCache
+{
+    protected static final int DEFAULT_CAPACITY = 8;
+
+    protected static class Entry
+    {
+        protected final Object value;
+        protected final long weight;
+        /** The time at which the entry expires, or zero if it doesn't expire. */
+        protected final long expiration;
+        protected volatile long lastUsed;
+
+        protected Entry(Object value, long weight, long expiration, long lastUsed)
+        {
+            this.value = value;
+            this.weight = weight;
+            this.expiration = expiration;
+            this.lastUsed = lastUsed;
+        }
+
+        protected boolean isExpired(long now)
+        {
+            return this.expiration > 0 && now >= this.expiration;
+        }
+    }
+
+    protected final ConcurrentHashMap<Object, Entry> entries = new ConcurrentHashMap<Object, Entry>();
+    protected final ConcurrentHashMap<Object, FutureTask<Object>> loads =
+        new ConcurrentHashMap<Object, FutureTask<Object>>();
+    /** Orders uses of entries; a logical clock is cheaper and more precise than the system time. */
+    protected final AtomicLong useCounter = new AtomicLong();
+    protected final AtomicLong weight = new AtomicLong();
+    protected final Object trimLock = new Object();
+    protected volatile int capacity;
+    protected volatile long maxWeight;
+    protected volatile long timeToLive;
+
+    /**
+     * Creates a cache with specified bounds and default time to live.
+     *
+     * @param capacity   the maximum number of entries.
+     * @param maxWeight  the maximum total weight of the entries' values, in bytes.
+     * @param timeToLive the time, in milliseconds, after which entries expire by default, or zero if they don't.
+     *
+     * @throws IllegalArgumentException if any argument is negative.
+     */
+    public ConcurrentSessionCache(int capacity, long maxWeight, long timeToLive)
+    {
+        if (capacity < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "capacity < 0");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (maxWeight < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "maxWeight < 0");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (timeToLive < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "timeToLive < 0");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.capacity = capacity;
+        this.maxWeight = maxWeight;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Creates a cache with the default capacity, and the maximum weight and time to live given by the configuration
+     * values {@link AVKey#SESSION_CACHE_MAX_WEIGHT} and {@link AVKey#SESSION_CACHE_TIME_TO_LIVE}. Without those values
+     * the cache's weight is unbounded and its entries don't expire.
+     */
+    public ConcurrentSessionCache()
+    {
+        this(DEFAULT_CAPACITY, Configuration.getLongValue(AVKey.SESSION_CACHE_MAX_WEIGHT, Long.MAX_VALUE),
+            Configuration.getLongValue(AVKey.SESSION_CACHE_TIME_TO_LIVE, 0L));
+    }
+
+    public int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * Sets the maximum number of entries in the cache. If the new capacity is less than the number of cache entries,
+     * this evicts the least recently used entries until the cache size is equal to its capacity.
+     *
+     * @param capacity maximum number of entries in the cache.
+     *
+     * @throws IllegalArgumentException if capacity is negative.
+     */
+    public void setCapacity(int capacity)
+    {
+        if (capacity < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "capacity < 0");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.capacity = capacity;
+        this.trim();
+    }
+
+    /** @return the maximum total weight of the entries' values, in bytes. */
+    public long getMaxWeight()
+    {
+        return this.maxWeight;
+    }
+
+    /**
+     * Sets the maximum total weight of the entries' values, evicting the least recently used entries if the cache now
+     * exceeds it.
+     *
+     * @param maxWeight the maximum weight, in bytes.
+     *
+     * @throws IllegalArgumentException if the weight is negative.
+     */
+    public void setMaxWeight(long maxWeight)
+    {
+        if (maxWeight < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "maxWeight < 0");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.maxWeight = maxWeight;
+        this.trim();
+    }
+
+    /** @return the total weight of the entries' values, in bytes. */
+    public long getWeight()
+    {
+        return this.weight.get();
+    }
+
+    /** @return the time, in milliseconds, after which entries expire by default, or zero if they don't expire. */
+    public long getTimeToLive()
+    {
+        return this.timeToLive;
+    }
+
+    /**
+     * Specifies the time after which entries added without a time to live expire. Entries already in the cache keep
+     * their expiration time.
+     *
+     * @param timeToLive the time to live, in milliseconds, or zero for entries not to expire.
+     *
+     * @throws IllegalArgumentException if the time is negative.
+     */
+    public void setTimeToLive(long timeToLive)
+    {
+        if (timeToLive < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "timeToLive < 0");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.timeToLive = timeToLive;
+    }
+
+    public int getEntryCount()
+    {
+        this.removeExpiredEntries();
+        return this.entries.size();
+    }
+
+    public Set<Object> getKeySet()
+    {
+        this.removeExpiredEntries();
+        return Collections.unmodifiableSet(new HashSet<Object>(this.entries.keySet()));
+    }
+
+    public boolean contains(Object key)
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return this.getLiveEntry(key, false) != null;
+    }
+
+    public Object get(Object key)
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        Entry entry = this.getLiveEntry(key, true);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Adds an entry with the cache's default time to live. The value's weight is computed by {@link
+     * #computeWeight(Object)}.
+     *
+     * @param key   the entry's key. A null value is not permitted.
+     * @param value the entry's value. A null value is permitted.
+     *
+     * @throws IllegalArgumentException if the key is null.
+     */
+    public void put(Object key, Object value)
+    {
+        this.put(key, value, this.computeWeight(value), this.timeToLive);
+    }
+
+    /**
+     * Adds an entry with a specified weight and time to live, replacing any entry with the same key. If the cache
+     * then exceeds its capacity or maximum weight, this evicts the least recently used entries.
+     *
+     * @param key        the entry's key. A null value is not permitted.
+     * @param value      the entry's value. A null value is permitted.
+     * @param weight     the value's weight, in bytes.
+     * @param timeToLive the time, in milliseconds, after which the entry expires, or zero if it doesn't expire.
+     *
+     * @throws IllegalArgumentException if the key is null, or the weight or time to live is negative.
+     */
+    public void put(Object key, Object value, long weight, long timeToLive)
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (weight < 0 || timeToLive < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange",
+                "weight=" + weight + ", timeToLive=" + timeToLive);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        long expiration = timeToLive > 0 ? System.currentTimeMillis() + timeToLive : 0;
+        Entry entry = new Entry(value, weight, expiration, this.useCounter.incrementAndGet());
+
+        this.weight.addAndGet(weight);
+        Entry old = this.entries.put(key, entry);
+        if (old != null)
+            this.weight.addAndGet(-old.weight);
+
+        this.trim();
+    }
+
+    public Object remove(Object key)
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        Entry entry = this.entries.remove(key);
+        if (entry == null)
+            return null;
+
+        this.weight.addAndGet(-entry.weight);
+        return entry.isExpired(System.currentTimeMillis()) ? null : entry.value;
+    }
+
+    public void clear()
+    {
+        for (Object key : this.entries.keySet())
+        {
+            this.remove(key);
+        }
+    }
+
+    /**
+     * Runs a loader for a key, unless a load of the key is already running, in which case this waits for that load to
+     * finish. A non-null result of the loader is added to the cache. A loader returning null may add its result to
+     * the cache itself.
+     *
+     * @param key    the key to load.
+     * @param loader the loader.
+     *
+     * @return the loader's result if it's not null, otherwise the cache's value for the key after the load.
+     *
+     * @throws IllegalArgumentException if the key or loader is null.
+     * @throws Exception                if the loader throws an exception. Every thread waiting for the load receives
+     *                                  the exception.
+     */
+    public Object load(Object key, Callable<?> loader) throws Exception
+    {
+        return this.load(key, loader, false);
+    }
+
+    /**
+     * Returns the cache's value for a key if the cache holds one, and otherwise loads it as {@link #load(Object,
+     * Callable)} does.
+     *
+     * @param key    the key to look up or load.
+     * @param loader the loader.
+     *
+     * @return the cached or loaded value.
+     *
+     * @throws IllegalArgumentException if the key or loader is null.
+     * @throws Exception                if the loader throws an exception.
+     */
+    public Object getOrLoad(Object key, Callable<?> loader) throws Exception
+    {
+        return this.load(key, loader, true);
+    }
+
+    protected Object load(final Object key, final Callable<?> loader, final boolean useCachedValue) throws Exception
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (loader == null)
+        {
+            String message = Logging.getMessage("nullValue.CallableIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (useCachedValue)
+        {
+            Entry entry = this.getLiveEntry(key, true);
+            if (entry != null)
+                return entry.value;
+        }
+
+        FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>()
+        {
+            public Object call() throws Exception
+            {
+                // Another thread's load may have finished since the lookup above.
+                Entry entry = useCachedValue ? getLiveEntry(key, true) : null;
+                if (entry != null)
+                    return entry.value;
+
+                Object value = loader.call();
+                if (value != null)
+                    put(key, value);
+
+                return value != null ? value : get(key);
+            }
+        });
+
+        FutureTask<Object> running = this.loads.putIfAbsent(key, task);
+        if (running == null)
+        {
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                this.loads.remove(key, task);
+            }
+            running = task;
+        }
+
+        try
+        {
+            return running.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Computes the weight of a value added without one.
+     *
+     * @param value the value.
+     *
+     * @return the value's approximate size in bytes, or zero if its size is unknown.
+     */
+    protected long computeWeight(Object value)
+    {
+        if (value instanceof Cacheable)
+            return ((Cacheable) value).getSizeInBytes();
+        else if (value instanceof Buffer)
+            return value instanceof java.nio.ByteBuffer ? ((Buffer) value).capacity() : 0;
+        else if (value instanceof byte[])
+            return ((byte[]) value).length;
+        else if (value instanceof CharSequence)
+            return 2L * ((CharSequence) value).length();
+        else
+            return 0;
+    }
+
+    protected Entry getLiveEntry(Object key, boolean markUsed)
+    {
+        Entry entry = this.entries.get(key);
+        if (entry == null)
+            return null;
+
+        if (entry.isExpired(System.currentTimeMillis()))
+        {
+            if (this.entries.remove(key, entry))
+                this.weight.addAndGet(-entry.weight);
+            return null;
+        }
+
+        if (markUsed)
+            entry.lastUsed = this.useCounter.incrementAndGet();
+
+        return entry;
+    }
+
+    protected void removeExpiredEntries()
+    {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Object, Entry> mapEntry : this.entries.entrySet())
+        {
+            if (mapEntry.getValue().isExpired(now) && this.entries.remove(mapEntry.getKey(), mapEntry.getValue()))
+                this.weight.addAndGet(-mapEntry.getValue().weight);
+        }
+    }
+
+    /** Removes expired entries, then the least recently used entries until the cache is within its bounds. */
+    protected void trim()
+    {
+        if (this.entries.size() <= this.capacity && this.weight.get() <= this.maxWeight)
+            return;
+
+        synchronized (this.trimLock)
+        {
+            this.removeExpiredEntries();
+
+            while (this.entries.size() > this.capacity || this.weight.get() > this.maxWeight)
+            {
+                Map.Entry<Object, Entry> eldest = null;
+                for (Map.Entry<Object, Entry> mapEntry : this.entries.entrySet())
+                {
+                    if (eldest == null || mapEntry.getValue().lastUsed < eldest.getValue().lastUsed)
+                        eldest = mapEntry;
+                }
+
+                if (eldest == null)
+                    break;
+
+                if (this.entries.remove(eldest.getKey(), eldest.getValue()))
+                    this.weight.addAndGet(-eldest.getValue().weight);
+            }
+        }
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.regex.*;
+
+/**
+ * Keeps the files of one file store location within a size limit by deleting the least recently used files. Each run
+ * measures the location, and if it holds more than its maximum size, deletes files in order of last use until it holds
+ * no more than the target size. It then compacts the location: it removes empty directories, and rewrites the pack
+ * files of a {@link PackFileStore} to reclaim the space of removed tiles.
+ * <p/>
+ * A file's last use is the later of its modification time and the last access recorded by {@link
+ * #recordAccess(String)}. Accesses are held in memory and written to the location's {@link FileStoreIndex} in batches,
+ * so reading a file neither touches its modification time nor writes to the disk. Without an index, accesses are not
+ * remembered from one session to the next.
+ * <p/>
+ * Only retrieved tiles, whose paths match {@link TilePackStore#TILE_PATH_PATTERN}, are evicted, together with their
+ * sidecar files: files named by appending a suffix to a tile's name, such as the tile's cache validators. Sidecars
+ * whose tile is gone are evicted on their own. Configuration files and other files are counted in the location's size
+ * but never deleted. Files used or written within the last minute are never deleted, so files being written are left
+ * alone.
+ */
+public class FileStoreEvictor implements Runnable
+{
+    /** The default fraction of the maximum size that eviction reduces a location to. */
+    public static final double DEFAULT_EVICTION_TARGET = 0.9;
+    /** The default time, in milliseconds, between runs. */
+    public static final long DEFAULT_EVICTION_INTERVAL = 300000;
+
+    protected static final long MIN_AGE = 60000;
+    protected static final int MAX_PENDING_ACCESSES = 100000;
+    protected static final double COMPACTION_THRESHOLD = 0.25;
+
+    protected static class Candidate implements Comparable<Candidate>
+    {
+        protected final String path;
+        protected final File file;
+        protected long size;
+        protected final long lastUsed;
+        /** The tile's sidecar files, evicted with it. Null if it has none. */
+        protected List<Candidate> sidecars;
+
+        protected Candidate(String path, File file, long size, long lastUsed)
+        {
+            this.path = path;
+            this.file = file;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+
+        public int compareTo(Candidate that)
+        {
+            return this.lastUsed < that.lastUsed ? -1 : this.lastUsed == that.lastUsed ? 0 : 1;
+        }
+
+        protected void addSidecar(Candidate sidecar)
+        {
+            if (this.sidecars == null)
+                this.sidecars = new ArrayList<Candidate>(1);
+
+            this.sidecars.add(sidecar);
+            this.size += sidecar.size;
+        }
+    }
+
+    protected final File location;
+    protected final long maxSize;
+    protected final double evictionTarget;
+    protected final FileStoreIndex index;
+    protected final Set<File> excludedDirs = new HashSet<File>();
+    protected TilePackStore packStore;
+    protected final ConcurrentHashMap<String, Long> pendingAccesses = new ConcurrentHashMap<String, Long>();
+    protected volatile long locationSize;
+    protected volatile long evictedCount;
+    protected volatile long evictedBytes;
+
+    /**
+     * Creates an evictor for a location.
+     *
+     * @param location       the location to bound.
+     * @param maxSize        the size, in bytes, above which files are evicted.
+     * @param evictionTarget the fraction of the maximum size to reduce the location to, in the range (0, 1].
+     * @param index          the location's index, used to record accesses. May be null.
+     *
+     * @throws IllegalArgumentException if the location is null, or the size or target is out of range.
+     */
+    public FileStoreEvictor(File location, long maxSize, double evictionTarget, FileStoreIndex index)
+    {
+        if (location == null)
+        {
+            String message = Logging.getMessage("nullValue.FileStorePathIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (maxSize <= 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "maxSize=" + maxSize);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (evictionTarget <= 0 || evictionTarget > 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "evictionTarget=" + evictionTarget);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.location = location;
+        this.maxSize = maxSize;
+        this.evictionTarget = evictionTarget;
+        this.index = index;
+
+        if (index != null)
+            this.excludedDirs.add(index.getIndexFile().getParentFile());
+    }
+
+    /** @return the location this evictor bounds. */
+    public File getLocation()
+    {
+        return this.location;
+    }
+
+    /** @return the size, in bytes, above which files are evicted. */
+    public long getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    /** @return the size of the location, in bytes, measured by the last run. */
+    public long getLocationSize()
+    {
+        return this.locationSize;
+    }
+
+    /** @return the number of files evicted since this evictor was created. */
+    public long getEvictedCount()
+    {
+        return this.evictedCount;
+    }
+
+    /** @return the number of bytes evicted since this evictor was created. */
+    public long getEvictedBytes()
+    {
+        return this.evictedBytes;
+    }
+
+    /**
+     * Specifies the pack store of a {@link PackFileStore} whose pack files are in this location. Its tiles are evicted
+     * along with the location's files, and its pack files are compacted.
+     *
+     * @param packStore the pack store. May be null.
+     */
+    public void setPackStore(TilePackStore packStore)
+    {
+        if (this.packStore != null)
+            this.excludedDirs.remove(this.packStore.getDirectory());
+
+        this.packStore = packStore;
+
+        if (packStore != null)
+            this.excludedDirs.add(packStore.getDirectory());
+    }
+
+    /**
+     * Records that a file has been used. This only updates memory; accesses are written to the index by {@link
+     * #flushAccesses()}.
+     *
+     * @param path the file's path relative to the location, with forward slashes and no leading separator.
+     */
+    public void recordAccess(String path)
+    {
+        if (path == null)
+            return;
+
+        this.pendingAccesses.put(path, System.currentTimeMillis());
+
+        if (this.pendingAccesses.size() > MAX_PENDING_ACCESSES)
+            this.flushAccesses();
+    }
+
+    /** Writes the accesses recorded since the last call to the index, or discards them if there is no index. */
+    public void flushAccesses()
+    {
+        Iterator<Map.Entry<String, Long>> iter = this.pendingAccesses.entrySet().iterator();
+        while (iter.hasNext())
+        {
+            Map.Entry<String, Long> entry = iter.next();
+            iter.remove();
+
+            if (this.index != null)
+                this.index.setLastAccess(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public void run()
+    {
+        try
+        {
+            List<File> dirs = new ArrayList<File>();
+            List<Candidate> candidates = this.findCandidates(dirs);
+            this.evict(candidates);
+            this.flushAccesses();
+            this.compact(dirs);
+        }
+        catch (Exception e)
+        {
+            Logging.logger().log(Level.SEVERE,
+                Logging.getMessage("FileStoreEvictor.ExceptionEvicting", this.location.getPath()), e);
+        }
+    }
+
+    /**
+     * Walks the location, measuring its size and listing the files that may be evicted.
+     *
+     * @param dirs a list to receive the location's subdirectories, parents before children.
+     *
+     * @return the tile files and packed tiles in the location, with their sidecars, and sidecars without a tile.
+     */
+    protected List<Candidate> findCandidates(List<File> dirs)
+    {
+        Map<String, Candidate> tiles = new HashMap<String, Candidate>();
+        List<Candidate> sidecars = new ArrayList<Candidate>();
+        long size = 0;
+
+        String rootPath = this.location.getAbsolutePath();
+        ArrayDeque<File> stack = new ArrayDeque<File>();
+        stack.push(this.location);
+
+        while (!stack.isEmpty())
+        {
+            File[] files = stack.pop().listFiles();
+            if (files == null)
+                continue;
+
+            for (File file : files)
+            {
+                if (file.isDirectory())
+                {
+                    if (!this.excludedDirs.contains(file))
+                    {
+                        stack.push(file);
+                        dirs.add(file);
+                    }
+                    continue;
+                }
+
+                String path = AbstractFileStore.normalizeFileStoreName(
+                    file.getAbsolutePath().substring(rootPath.length()));
+                long length = file.length();
+                size += length;
+
+                if (TilePackStore.TILE_PATH_PATTERN.matcher(path).matches())
+                    tiles.put(path, new Candidate(path, file, length, this.lastUsed(path, file.lastModified())));
+                else if (TilePackStore.SIDECAR_PATH_PATTERN.matcher(path).matches())
+                    sidecars.add(new Candidate(path, file, length, this.lastUsed(path, file.lastModified())));
+            }
+        }
+
+        if (this.packStore != null)
+        {
+            for (String path : this.packStore.getPaths())
+            {
+                // Tiles sharing their contents with other tiles are charged a share of the space the contents take.
+                long length = this.packStore.getStoredSize(path);
+                size += length;
+
+                if (TilePackStore.TILE_PATH_PATTERN.matcher(path).matches())
+                    tiles.put(path, new Candidate(path, null, length,
+                        this.lastUsed(path, this.packStore.getLastModified(path))));
+                else if (TilePackStore.SIDECAR_PATH_PATTERN.matcher(path).matches())
+                    sidecars.add(new Candidate(path, null, length,
+                        this.lastUsed(path, this.packStore.getLastModified(path))));
+            }
+
+            size += this.packStore.getDeadBytes();
+        }
+
+        List<Candidate> candidates = new ArrayList<Candidate>(tiles.values());
+        for (Candidate sidecar : sidecars)
+        {
+            Matcher matcher = TilePackStore.SIDECAR_PATH_PATTERN.matcher(sidecar.path);
+            Candidate tile = matcher.matches() ? tiles.get(matcher.group(1)) : null;
+            if (tile != null)
+                tile.addSidecar(sidecar);
+            else
+                candidates.add(sidecar);
+        }
+
+        this.locationSize = size;
+        return candidates;
+    }
+
+    protected long lastUsed(String path, long lastModified)
+    {
+        long lastUsed = lastModified;
+
+        Long pending = this.pendingAccesses.get(path);
+        if (pending != null && pending > lastUsed)
+            lastUsed = pending;
+
+        FileStoreIndex.Entry entry = this.index != null ? this.index.getEntry(path) : null;
+        if (entry != null && entry.getLastAccess() > lastUsed)
+            lastUsed = entry.getLastAccess();
+
+        return lastUsed;
+    }
+
+    /** Deletes the least recently used candidates until the location is within its target size. */
+    protected void evict(List<Candidate> candidates)
+    {
+        if (this.locationSize <= this.maxSize)
+            return;
+
+        long target = (long) (this.maxSize * this.evictionTarget);
+        long excess = this.locationSize - target;
+        long cutoff = System.currentTimeMillis() - MIN_AGE;
+
+        Collections.sort(candidates);
+        for (Candidate candidate : candidates)
+        {
+            if (excess <= 0 || candidate.lastUsed > cutoff)
+                break;
+
+            if (!this.evict(candidate))
+                continue;
+
+            excess -= candidate.size;
+            this.locationSize -= candidate.size;
+            this.evictedCount++;
+            this.evictedBytes += candidate.size;
+        }
+
+        Logging.logger().fine(Logging.getMessage("FileStoreEvictor.Evicted", this.location.getPath(),
+            this.evictedCount, this.evictedBytes));
+    }
+
+    protected boolean evict(Candidate candidate)
+    {
+        if (!this.delete(candidate))
+            return false;
+
+        // A sidecar that can't be deleted now is evicted on its own by a later run.
+        if (candidate.sidecars != null)
+        {
+            for (Candidate sidecar : candidate.sidecars)
+            {
+                this.delete(sidecar);
+            }
+        }
+
+        return true;
+    }
+
+    protected boolean delete(Candidate candidate)
+    {
+        if (candidate.file != null)
+        {
+            if (!candidate.file.delete())
+                return false;
+        }
+        else
+        {
+            try
+            {
+                this.packStore.remove(candidate.path);
+            }
+            catch (IOException e)
+            {
+                Logging.logger().log(Level.WARNING, Logging.getMessage("generic.CannotDeleteFile", candidate.path), e);
+                return false;
+            }
+        }
+
+        this.pendingAccesses.remove(candidate.path);
+        if (this.index != null)
+            this.index.remove(candidate.path);
+
+        this.deleted(candidate.path, candidate.file);
+        return true;
+    }
+
+    /**
+     * Called after a file or packed tile has been evicted. The default implementation does nothing.
+     *
+     * @param path the evicted entry's path relative to the location.
+     * @param file the evicted file, or null if the entry was a packed tile.
+     */
+    protected void deleted(String path, File file)
+    {
+    }
+
+    /** Removes empty directories, and rewrites the pack files if much of them is taken by removed tiles. */
+    protected void compact(List<File> dirs) throws IOException
+    {
+        long cutoff = System.currentTimeMillis() - MIN_AGE;
+
+        // Children are listed after their parents, so visit the list backwards to remove nested empty directories.
+        for (int i = dirs.size() - 1; i >= 0; i--)
+        {
+            File dir = dirs.get(i);
+            String[] names = dir.list();
+            if (names != null && names.length == 0 && dir.lastModified() < cutoff)
+            {
+                //noinspection ResultOfMethodCallIgnored
+                dir.delete();
+            }
+        }
+
+        if (this.packStore != null)
+        {
+            long dead = this.packStore.getDeadBytes();
+            if (dead > COMPACTION_THRESHOLD * (dead + this.packStore.getLiveBytes()))
+                this.packStore.compact();
+        }
+    }
+}
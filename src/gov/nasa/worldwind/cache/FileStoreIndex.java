@@ -0,0 +1,905 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.exception.WWRuntimeException;
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.logging.Level;
+
+/**
+ * A persistent index of the files beneath one file store location, held in a memory-mapped file. Each entry records a
+ * file's size, expiration time, content type and time of last use under the file's path relative to the location. The
+ * index lets a file store answer "is this file here?" without probing the file system, which matters when a store holds
+ * millions of files spread over several locations and most lookups miss.
+ * <p/>
+ * Entries are kept in an open-addressing hash table keyed by a 64-bit hash of the path. The path itself is not stored,
+ * so two paths may share an entry; callers confirm a positive answer by checking the file itself, which they must do
+ * anyway because files may be deleted outside the file store. A negative answer is reliable only once the index is
+ * complete, that is, once it has been built by walking the location. {@link #startRebuild()} builds the index on a
+ * background thread; until that finishes, {@link #isComplete()} returns false and callers fall back to the file
+ * system.
+ * <p/>
+ * An index file is rebuilt when it is missing, unreadable, or, if requested, when the location's directory has been
+ * modified since the index was built. The index is updated as files are added and removed, and the operating system
+ * writes the mapped pages to disk, so it survives from one session to the next.
+ * <p/>
+ * Files added to a nested directory outside the file store change only that directory's modification time, so an index
+ * opened with validation records a digest of the modification times of every directory in its location. Such an index
+ * is not complete until {@link #startValidation()} has walked the location's directories and found the digest
+ * unchanged, or has rebuilt the index. Rebuilds keep the expiration times and last use times of files still present.
+ */
+public class FileStoreIndex
+{
+    /** The metadata recorded for a file. */
+    public static class Entry
+    {
+        protected final long size;
+        protected final long expiration;
+        protected final String contentType;
+        protected final long lastAccess;
+
+        public Entry(long size, long expiration, String contentType, long lastAccess)
+        {
+            this.size = size;
+            this.expiration = expiration;
+            this.contentType = contentType;
+            this.lastAccess = lastAccess;
+        }
+
+        /** @return the file's size in bytes, or zero if it was not known when the entry was made. */
+        public long getSize()
+        {
+            return this.size;
+        }
+
+        /** @return the time (in milliseconds since the Epoch) at which the file expires, or zero if it does not. */
+        public long getExpiration()
+        {
+            return this.expiration;
+        }
+
+        /** @return the file's mime type, or null if it is not known. */
+        public String getContentType()
+        {
+            return this.contentType;
+        }
+
+        /**
+         * @return the time the file was last used, as recorded by {@link FileStoreIndex#setLastAccess(String, long)},
+         *         or zero if no use has been recorded.
+         */
+        public long getLastAccess()
+        {
+            return this.lastAccess;
+        }
+    }
+
+    protected static final int MAGIC = 0x57574958;
+    protected static final int VERSION = 3;
+    protected static final int INITIAL_CAPACITY = 1 << 14;
+    /** The largest table, whose file, like any single mapping, is smaller than 2 GB. */
+    protected static final int MAX_CAPACITY = 1 << 25;
+    protected static final double MAX_LOAD_FACTOR = 0.6;
+
+    // Header layout.
+    protected static final int MAGIC_OFFSET = 0;
+    protected static final int VERSION_OFFSET = 4;
+    protected static final int CAPACITY_OFFSET = 8;
+    protected static final int COUNT_OFFSET = 12;
+    protected static final int REMOVED_COUNT_OFFSET = 16;
+    protected static final int COMPLETE_OFFSET = 20;
+    protected static final int LOCATION_MODIFIED_OFFSET = 24;
+    protected static final int CONTENT_TYPE_COUNT_OFFSET = 32;
+    protected static final int DIRECTORY_DIGEST_OFFSET = 40;
+    protected static final int CONTENT_TYPE_TABLE_OFFSET = 64;
+    protected static final int CONTENT_TYPE_LENGTH = 64;
+    protected static final int MAX_CONTENT_TYPES = 63;
+    protected static final int HEADER_SIZE = CONTENT_TYPE_TABLE_OFFSET + MAX_CONTENT_TYPES * CONTENT_TYPE_LENGTH;
+
+    // Slot layout.
+    protected static final int SLOT_SIZE = 40;
+    protected static final int SLOT_HASH = 0;
+    protected static final int SLOT_SIZE_IN_BYTES = 8;
+    protected static final int SLOT_EXPIRATION = 16;
+    protected static final int SLOT_CONTENT_TYPE = 24;
+    protected static final int SLOT_STATE = 28;
+    protected static final int SLOT_LAST_ACCESS = 32;
+
+    protected static final int EMPTY = 0;
+    protected static final int LIVE = 1;
+    protected static final int REMOVED = 2;
+    /** An entry recorded before the running rebuild started, and not yet found by it. Counted as removed. */
+    protected static final int STALE = 3;
+
+    protected final File location;
+    protected final File indexFile;
+    protected final File excludedDir;
+    protected final boolean validateModified;
+    protected RandomAccessFile raf;
+    protected MappedByteBuffer buffer;
+    protected int capacity;
+    protected final List<String> contentTypes = new ArrayList<String>();
+    protected boolean needsRebuild;
+    /** False until the directory digest of an index opened with validation has been checked. */
+    protected boolean validated;
+    /** True if entries were dropped because the table could not grow, in which case a rebuild is not complete. */
+    protected boolean truncated;
+    protected volatile Thread rebuildThread;
+
+    /**
+     * Opens the index of a file store location, creating an empty index if the index file does not exist or cannot be
+     * used. Call {@link #needsRebuild()} to determine whether the index must be built.
+     *
+     * @param location         the location to index.
+     * @param indexFile        the file holding the index.
+     * @param validateModified true to discard the index if the location's directory has been modified since the index
+     *                         was built, and to treat the index as incomplete until {@link #startValidation()} has
+     *                         checked the location's nested directories. Use this for locations that are only modified
+     *                         outside the file store.
+     *
+     * @throws IllegalArgumentException if the location or the index file is null.
+     * @throws WWRuntimeException       if the index file cannot be created.
+     */
+    public FileStoreIndex(File location, File indexFile, boolean validateModified)
+    {
+        if (location == null)
+        {
+            String message = Logging.getMessage("nullValue.FileStorePathIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (indexFile == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.location = location;
+        this.indexFile = indexFile;
+        this.excludedDir = indexFile.getParentFile();
+        this.validateModified = validateModified;
+        this.validated = !validateModified;
+
+        try
+        {
+            //noinspection ResultOfMethodCallIgnored
+            indexFile.getParentFile().mkdirs();
+            this.raf = new RandomAccessFile(indexFile, "rw");
+
+            if (!this.open(validateModified))
+            {
+                this.create(INITIAL_CAPACITY);
+                this.needsRebuild = true;
+            }
+        }
+        catch (IOException e)
+        {
+            this.close();
+            String message = Logging.getMessage("FileStoreIndex.CannotOpenIndex", indexFile.getPath());
+            Logging.logger().log(Level.SEVERE, message, e);
+            throw new WWRuntimeException(message, e);
+        }
+    }
+
+    /** @return the indexed location. */
+    public File getLocation()
+    {
+        return this.location;
+    }
+
+    /** @return the file holding the index. */
+    public File getIndexFile()
+    {
+        return this.indexFile;
+    }
+
+    /** @return true if the index was created or discarded when opened, and has not been rebuilt since. */
+    public synchronized boolean needsRebuild()
+    {
+        return this.needsRebuild;
+    }
+
+    /**
+     * @return true if the index was opened with validation and its location's directories have not yet been checked
+     *         by {@link #validate()}.
+     */
+    public synchronized boolean needsValidation()
+    {
+        return !this.validated;
+    }
+
+    /**
+     * Indicates whether the index holds every file in its location, in which case a path not in the index names a file
+     * that does not exist.
+     *
+     * @return true if the index is complete.
+     */
+    public synchronized boolean isComplete()
+    {
+        return this.buffer != null && this.validated && this.buffer.getInt(COMPLETE_OFFSET) != 0;
+    }
+
+    /** @return the number of files in the index. */
+    public synchronized int getCount()
+    {
+        return this.buffer != null ? this.buffer.getInt(COUNT_OFFSET) : 0;
+    }
+
+    /**
+     * Indicates whether the index holds a path.
+     *
+     * @param path the path relative to the location, with forward slashes and no leading separator.
+     *
+     * @return true if the index holds the path.
+     */
+    public synchronized boolean contains(String path)
+    {
+        return path != null && this.buffer != null && this.findSlot(hash(path)) >= 0;
+    }
+
+    /**
+     * Returns the metadata recorded for a path.
+     *
+     * @param path the path relative to the location, with forward slashes and no leading separator.
+     *
+     * @return the path's entry, or null if the index does not hold the path.
+     */
+    public synchronized Entry getEntry(String path)
+    {
+        if (path == null || this.buffer == null)
+            return null;
+
+        int slot = this.findSlot(hash(path));
+        if (slot < 0)
+            return null;
+
+        int offset = (int) slotOffset(slot);
+        int typeIndex = this.buffer.getInt(offset + SLOT_CONTENT_TYPE);
+        return new Entry(this.buffer.getLong(offset + SLOT_SIZE_IN_BYTES),
+            this.buffer.getLong(offset + SLOT_EXPIRATION),
+            typeIndex >= 0 && typeIndex < this.contentTypes.size() ? this.contentTypes.get(typeIndex) : null,
+            this.buffer.getLong(offset + SLOT_LAST_ACCESS));
+    }
+
+    /**
+     * Adds a path to the index, or updates its entry.
+     *
+     * @param path        the path relative to the location, with forward slashes and no leading separator.
+     * @param size        the file's size in bytes, or zero if it is not known.
+     * @param expiration  the time (in milliseconds since the Epoch) at which the file expires, or zero if it does not.
+     * @param contentType the file's mime type. May be null.
+     * @param replace     true to replace an existing entry for the path, false to leave it unchanged.
+     */
+    public synchronized void put(String path, long size, long expiration, String contentType, boolean replace)
+    {
+        if (path == null || this.buffer == null)
+            return;
+
+        long hash = hash(path);
+        int slot = this.findSlot(hash);
+        if (slot >= 0 && !replace)
+            return;
+
+        long lastAccess = 0;
+        if (slot >= 0)
+        {
+            lastAccess = this.buffer.getLong((int) slotOffset(slot) + SLOT_LAST_ACCESS);
+        }
+        else
+        {
+            if (this.isFull())
+                this.resize();
+
+            if (this.isFull())
+            {
+                // The table can't grow, so the index can no longer answer that a file is absent.
+                this.buffer.putInt(COMPLETE_OFFSET, 0);
+                this.truncated = true;
+                return;
+            }
+
+            slot = this.findFreeSlot(hash);
+            if (this.buffer.getInt((int) slotOffset(slot) + SLOT_STATE) == REMOVED)
+                this.addToHeader(REMOVED_COUNT_OFFSET, -1);
+            this.addToHeader(COUNT_OFFSET, 1);
+        }
+
+        this.writeSlot(slot, hash, size, expiration, this.indexOfContentType(contentType), lastAccess);
+    }
+
+    /**
+     * Records the time a file was last used. Callers should record accesses in batches rather than on every read, since
+     * each call modifies the index file's pages.
+     *
+     * @param path       the path relative to the location, with forward slashes and no leading separator.
+     * @param lastAccess the time the file was last used, in milliseconds since the Epoch.
+     *
+     * @return true if the index holds the path, otherwise false.
+     */
+    public synchronized boolean setLastAccess(String path, long lastAccess)
+    {
+        if (path == null || this.buffer == null)
+            return false;
+
+        int slot = this.findSlot(hash(path));
+        if (slot < 0)
+            return false;
+
+        this.buffer.putLong((int) slotOffset(slot) + SLOT_LAST_ACCESS, lastAccess);
+        return true;
+    }
+
+    /**
+     * Removes a path from the index.
+     *
+     * @param path the path relative to the location, with forward slashes and no leading separator.
+     */
+    public synchronized void remove(String path)
+    {
+        if (path == null || this.buffer == null)
+            return;
+
+        int slot = this.findSlot(hash(path));
+        if (slot < 0)
+            return;
+
+        this.buffer.putInt((int) slotOffset(slot) + SLOT_STATE, REMOVED);
+        this.addToHeader(COUNT_OFFSET, -1);
+        this.addToHeader(REMOVED_COUNT_OFFSET, 1);
+    }
+
+    /** Rebuilds the index on a background thread, unless a rebuild or validation is already running. */
+    public void startRebuild()
+    {
+        this.startBackgroundTask(new Runnable()
+        {
+            public void run()
+            {
+                rebuild();
+            }
+        });
+    }
+
+    /**
+     * Validates the index on a background thread, unless a rebuild or validation is already running. See {@link
+     * #validate()}.
+     */
+    public void startValidation()
+    {
+        this.startBackgroundTask(new Runnable()
+        {
+            public void run()
+            {
+                validate();
+            }
+        });
+    }
+
+    protected synchronized void startBackgroundTask(final Runnable task)
+    {
+        if (this.rebuildThread != null)
+            return;
+
+        this.rebuildThread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    rebuildThread = null;
+                }
+            }
+        });
+        this.rebuildThread.setName("World Wind File Store Indexer");
+        this.rebuildThread.setDaemon(true);
+        this.rebuildThread.setPriority(Thread.MIN_PRIORITY);
+        this.rebuildThread.start();
+    }
+
+    /** @return true if a rebuild or validation started by {@link #startRebuild()} or {@link #startValidation()} is running. */
+    public boolean isRebuilding()
+    {
+        return this.rebuildThread != null;
+    }
+
+    /**
+     * Checks the modification times of the directories in the index's location against those recorded when the index
+     * was built, and rebuilds the index if they differ. The index is complete once this returns, unless it was closed.
+     */
+    public void validate()
+    {
+        long digest = this.walk(false);
+
+        synchronized (this)
+        {
+            if (this.buffer == null)
+                return;
+
+            if (this.buffer.getInt(COMPLETE_OFFSET) != 0 && this.buffer.getLong(DIRECTORY_DIGEST_OFFSET) == digest)
+            {
+                this.validated = true;
+                return;
+            }
+        }
+
+        this.rebuild();
+    }
+
+    /**
+     * Rebuilds the index by walking its location. The index is marked incomplete while it is rebuilt. Entries added
+     * while the walk runs are kept, so the index may be used and updated during the rebuild. Entries of files found by
+     * the walk keep their expiration and last use times.
+     */
+    public void rebuild()
+    {
+        long locationModified = this.location.lastModified();
+
+        synchronized (this)
+        {
+            if (this.buffer == null)
+                return;
+
+            this.buffer.putInt(COMPLETE_OFFSET, 0);
+            this.truncated = false;
+            this.markStale();
+        }
+
+        long digest = this.walk(true);
+
+        synchronized (this)
+        {
+            if (this.buffer == null)
+                return;
+
+            this.removeStale();
+            this.buffer.putLong(DIRECTORY_DIGEST_OFFSET, digest);
+            this.buffer.putLong(LOCATION_MODIFIED_OFFSET, locationModified);
+            this.buffer.putInt(COMPLETE_OFFSET, this.truncated ? 0 : 1);
+            this.buffer.force();
+            this.needsRebuild = false;
+            this.validated = true;
+        }
+
+        Logging.logger().fine(Logging.getMessage("FileStoreIndex.IndexBuilt", this.location.getPath(),
+            this.getCount()));
+    }
+
+    /**
+     * Walks the directories of the index's location, skipping the directory holding the index, and computes a digest
+     * of their paths and modification times that doesn't depend on the order of the walk.
+     *
+     * @param addFiles true to add the files found to the index.
+     *
+     * @return the digest, or zero if the index was closed during the walk.
+     */
+    protected long walk(boolean addFiles)
+    {
+        String rootPath = this.location.getAbsolutePath();
+        ArrayDeque<File> dirs = new ArrayDeque<File>();
+        dirs.push(this.location);
+        long digest = 0;
+
+        while (!dirs.isEmpty())
+        {
+            File dir = dirs.pop();
+            digest += mix(hash(dir.getAbsolutePath().substring(rootPath.length())) ^ dir.lastModified());
+
+            File[] files = dir.listFiles();
+            if (files == null)
+                continue;
+
+            for (File file : files)
+            {
+                if (file.isDirectory())
+                {
+                    if (!file.equals(this.excludedDir))
+                        dirs.push(file);
+                    continue;
+                }
+
+                if (addFiles)
+                {
+                    String path = AbstractFileStore.normalizeFileStoreName(
+                        file.getAbsolutePath().substring(rootPath.length()));
+                    this.putFound(path, file.length(), WWIO.makeMimeTypeForSuffix(WWIO.getSuffix(path)));
+                }
+            }
+
+            synchronized (this)
+            {
+                if (this.buffer == null)
+                    return 0; // Closed during the walk.
+            }
+        }
+
+        return digest;
+    }
+
+    /**
+     * Adds a file found by a rebuild. An entry the index held before the rebuild keeps its expiration and last use
+     * times, and an entry added during the rebuild is left unchanged.
+     */
+    protected synchronized void putFound(String path, long size, String contentType)
+    {
+        if (this.buffer == null)
+            return;
+
+        long hash = hash(path);
+        if (this.findSlot(hash) >= 0)
+            return;
+
+        int slot = this.findSlot(hash, STALE);
+        if (slot < 0)
+        {
+            this.put(path, size, 0, contentType, false);
+            return;
+        }
+
+        int offset = (int) slotOffset(slot);
+        this.buffer.putLong(offset + SLOT_SIZE_IN_BYTES, size);
+        this.buffer.putInt(offset + SLOT_STATE, LIVE);
+        this.addToHeader(COUNT_OFFSET, 1);
+        this.addToHeader(REMOVED_COUNT_OFFSET, -1);
+    }
+
+    /** Marks every live entry stale, at the start of a rebuild. */
+    protected void markStale()
+    {
+        this.setStates(LIVE, STALE);
+        this.addToHeader(REMOVED_COUNT_OFFSET, this.buffer.getInt(COUNT_OFFSET));
+        this.buffer.putInt(COUNT_OFFSET, 0);
+    }
+
+    /** Removes the entries a rebuild did not find. They are already counted as removed. */
+    protected void removeStale()
+    {
+        this.setStates(STALE, REMOVED);
+    }
+
+    protected void setStates(int from, int to)
+    {
+        for (int slot = 0; slot < this.capacity; slot++)
+        {
+            int offset = (int) slotOffset(slot) + SLOT_STATE;
+            if (this.buffer.getInt(offset) == from)
+                this.buffer.putInt(offset, to);
+        }
+    }
+
+    /** Writes the index to disk and releases the index file. The index cannot be used afterwards. */
+    public synchronized void close()
+    {
+        if (this.buffer != null)
+        {
+            this.buffer.force();
+            this.buffer = null;
+        }
+
+        WWIO.closeStream(this.raf, this.indexFile.getPath());
+        this.raf = null;
+    }
+
+    /**
+     * Maps an existing index file.
+     *
+     * @return true if the file holds a usable index, otherwise false.
+     */
+    protected boolean open(boolean validateModified) throws IOException
+    {
+        // Check the header before mapping the file, so that an unusable file can be resized by create() without a
+        // live mapping, which some platforms don't allow.
+        if (this.raf.length() < HEADER_SIZE)
+            return false;
+
+        if (this.readHeaderInt(MAGIC_OFFSET) != MAGIC || this.readHeaderInt(VERSION_OFFSET) != VERSION)
+            return false;
+
+        int capacity = this.readHeaderInt(CAPACITY_OFFSET);
+        if (capacity <= 0 || capacity > MAX_CAPACITY || Integer.bitCount(capacity) != 1
+            || this.raf.length() != slotOffset(capacity))
+            return false;
+
+        if (this.readHeaderInt(COMPLETE_OFFSET) == 0)
+            return false;
+
+        this.raf.seek(LOCATION_MODIFIED_OFFSET);
+        if (validateModified && this.raf.readLong() != this.location.lastModified())
+            return false;
+
+        this.capacity = capacity;
+        this.map(this.raf.length());
+
+        int numTypes = Math.min(this.buffer.getInt(CONTENT_TYPE_COUNT_OFFSET), MAX_CONTENT_TYPES);
+        for (int i = 0; i < numTypes; i++)
+        {
+            this.contentTypes.add(this.readContentType(i));
+        }
+
+        return true;
+    }
+
+    protected int readHeaderInt(int offset) throws IOException
+    {
+        this.raf.seek(offset);
+        return this.raf.readInt();
+    }
+
+    /**
+     * Creates an empty index with a specified number of slots, replacing the file's contents. The file may be mapped
+     * already only if the new index is at least as large as the file.
+     */
+    protected void create(int capacity) throws IOException
+    {
+        this.map(slotOffset(capacity));
+
+        this.capacity = capacity;
+        this.clearSlots();
+        this.contentTypes.clear();
+        this.buffer.putInt(MAGIC_OFFSET, MAGIC);
+        this.buffer.putInt(VERSION_OFFSET, VERSION);
+        this.buffer.putInt(CAPACITY_OFFSET, capacity);
+        this.buffer.putInt(COUNT_OFFSET, 0);
+        this.buffer.putInt(REMOVED_COUNT_OFFSET, 0);
+        this.buffer.putInt(COMPLETE_OFFSET, 0);
+        this.buffer.putLong(LOCATION_MODIFIED_OFFSET, 0);
+        this.buffer.putInt(CONTENT_TYPE_COUNT_OFFSET, 0);
+        this.buffer.putLong(DIRECTORY_DIGEST_OFFSET, 0);
+    }
+
+    /**
+     * Maps the index file. A mapped file is grown by the new mapping rather than by setting its length, which some
+     * platforms refuse while an earlier mapping of the file is live. The file's length is set only while unmapped.
+     */
+    protected void map(long length) throws IOException
+    {
+        if (this.buffer == null)
+            this.raf.setLength(length);
+        this.buffer = this.raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+    }
+
+    /** Indicates whether adding an entry would exceed the table's load factor. */
+    protected boolean isFull()
+    {
+        int used = this.buffer.getInt(COUNT_OFFSET) + this.buffer.getInt(REMOVED_COUNT_OFFSET);
+        return used + 1 > this.capacity * MAX_LOAD_FACTOR;
+    }
+
+    /**
+     * Doubles the table when it is mostly live and stale entries, otherwise rehashes at the same size to drop removed
+     * slots. The table does not grow beyond {@link #MAX_CAPACITY} slots.
+     */
+    protected void resize()
+    {
+        int count = this.buffer.getInt(COUNT_OFFSET);
+        int numKept = 0;
+        for (int slot = 0; slot < this.capacity; slot++)
+        {
+            int state = this.buffer.getInt((int) slotOffset(slot) + SLOT_STATE);
+            if (state == LIVE || state == STALE)
+                numKept++;
+        }
+
+        int newCapacity = numKept + 1 > this.capacity * MAX_LOAD_FACTOR / 2 && this.capacity < MAX_CAPACITY
+            ? this.capacity * 2 : this.capacity;
+
+        // Copy the live and stale slots out before the file is remapped.
+        ByteBuffer live = ByteBuffer.allocate(numKept * SLOT_SIZE);
+        for (int slot = 0; slot < this.capacity; slot++)
+        {
+            int offset = (int) slotOffset(slot);
+            int state = this.buffer.getInt(offset + SLOT_STATE);
+            if (state == LIVE || state == STALE)
+            {
+                ByteBuffer src = this.buffer.duplicate();
+                src.position(offset).limit(offset + SLOT_SIZE);
+                live.put(src);
+            }
+        }
+        live.flip();
+
+        try
+        {
+            int complete = this.buffer.getInt(COMPLETE_OFFSET);
+            long locationModified = this.buffer.getLong(LOCATION_MODIFIED_OFFSET);
+            long directoryDigest = this.buffer.getLong(DIRECTORY_DIGEST_OFFSET);
+            List<String> types = new ArrayList<String>(this.contentTypes);
+
+            this.create(newCapacity);
+
+            this.buffer.putInt(COMPLETE_OFFSET, complete);
+            this.buffer.putLong(LOCATION_MODIFIED_OFFSET, locationModified);
+            this.buffer.putLong(DIRECTORY_DIGEST_OFFSET, directoryDigest);
+            for (String type : types)
+            {
+                this.indexOfContentType(type);
+            }
+        }
+        catch (IOException e)
+        {
+            String message = Logging.getMessage("FileStoreIndex.CannotOpenIndex", this.indexFile.getPath());
+            Logging.logger().log(Level.SEVERE, message, e);
+            throw new WWRuntimeException(message, e);
+        }
+
+        while (live.hasRemaining())
+        {
+            int start = live.position();
+            long hash = live.getLong(start + SLOT_HASH);
+            int slot = this.findFreeSlot(hash);
+            this.writeSlot(slot, hash, live.getLong(start + SLOT_SIZE_IN_BYTES),
+                live.getLong(start + SLOT_EXPIRATION), live.getInt(start + SLOT_CONTENT_TYPE),
+                live.getLong(start + SLOT_LAST_ACCESS));
+            this.buffer.putInt((int) slotOffset(slot) + SLOT_STATE, live.getInt(start + SLOT_STATE));
+            live.position(start + SLOT_SIZE);
+        }
+        this.buffer.putInt(COUNT_OFFSET, count);
+        this.buffer.putInt(REMOVED_COUNT_OFFSET, numKept - count);
+    }
+
+    protected void clearSlots()
+    {
+        for (int slot = 0; slot < this.capacity; slot++)
+        {
+            this.buffer.putInt((int) slotOffset(slot) + SLOT_STATE, EMPTY);
+        }
+        this.buffer.putInt(COUNT_OFFSET, 0);
+        this.buffer.putInt(REMOVED_COUNT_OFFSET, 0);
+    }
+
+    /** Returns the live slot holding a hash, or -1 if there is none. */
+    protected int findSlot(long hash)
+    {
+        return this.findSlot(hash, LIVE);
+    }
+
+    /** Returns the slot in a specified state holding a hash, or -1 if there is none. */
+    protected int findSlot(long hash, int wantedState)
+    {
+        int mask = this.capacity - 1;
+        for (int i = 0, slot = (int) (hash ^ (hash >>> 32)) & mask; i < this.capacity; i++, slot = (slot + 1) & mask)
+        {
+            int offset = (int) slotOffset(slot);
+            int state = this.buffer.getInt(offset + SLOT_STATE);
+            if (state == EMPTY)
+                return -1;
+            if (state == wantedState && this.buffer.getLong(offset + SLOT_HASH) == hash)
+                return slot;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the first empty or removed slot in a hash's probe sequence. Stale slots are kept for the rebuild that
+     * may find their files. The table must not be full.
+     */
+    protected int findFreeSlot(long hash)
+    {
+        int mask = this.capacity - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        int state;
+        while ((state = this.buffer.getInt((int) slotOffset(slot) + SLOT_STATE)) == LIVE || state == STALE)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    protected void writeSlot(int slot, long hash, long size, long expiration, int contentType, long lastAccess)
+    {
+        int offset = (int) slotOffset(slot);
+        this.buffer.putLong(offset + SLOT_HASH, hash);
+        this.buffer.putLong(offset + SLOT_SIZE_IN_BYTES, size);
+        this.buffer.putLong(offset + SLOT_EXPIRATION, expiration);
+        this.buffer.putInt(offset + SLOT_CONTENT_TYPE, contentType);
+        this.buffer.putInt(offset + SLOT_STATE, LIVE);
+        this.buffer.putLong(offset + SLOT_LAST_ACCESS, lastAccess);
+    }
+
+    protected void addToHeader(int offset, int delta)
+    {
+        this.buffer.putInt(offset, this.buffer.getInt(offset) + delta);
+    }
+
+    /** Returns the index of a content type in the header's table, adding it if there is room, or -1. */
+    protected int indexOfContentType(String contentType)
+    {
+        if (contentType == null)
+            return -1;
+
+        int index = this.contentTypes.indexOf(contentType);
+        if (index >= 0)
+            return index;
+
+        byte[] bytes;
+        try
+        {
+            bytes = contentType.getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            return -1; // UTF-8 is always supported.
+        }
+
+        if (this.contentTypes.size() >= MAX_CONTENT_TYPES || bytes.length > CONTENT_TYPE_LENGTH - 1)
+            return -1;
+
+        index = this.contentTypes.size();
+        int offset = CONTENT_TYPE_TABLE_OFFSET + index * CONTENT_TYPE_LENGTH;
+        this.buffer.put(offset, (byte) bytes.length);
+        for (int i = 0; i < bytes.length; i++)
+        {
+            this.buffer.put(offset + 1 + i, bytes[i]);
+        }
+        this.contentTypes.add(contentType);
+        this.buffer.putInt(CONTENT_TYPE_COUNT_OFFSET, this.contentTypes.size());
+
+        return index;
+    }
+
+    protected String readContentType(int index)
+    {
+        int offset = CONTENT_TYPE_TABLE_OFFSET + index * CONTENT_TYPE_LENGTH;
+        byte[] bytes = new byte[Math.min(this.buffer.get(offset) & 0xff, CONTENT_TYPE_LENGTH - 1)];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = this.buffer.get(offset + 1 + i);
+        }
+
+        try
+        {
+            return new String(bytes, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            return null; // UTF-8 is always supported.
+        }
+    }
+
+    /**
+     * Returns the offset of a slot in the index file. Computed in long arithmetic; offsets within a table of at most
+     * {@link #MAX_CAPACITY} slots fit in an int, as buffer indices must.
+     */
+    protected static long slotOffset(int slot)
+    {
+        return HEADER_SIZE + (long) slot * SLOT_SIZE;
+    }
+
+    /** Spreads the bits of a hash, so that sums of hashes are well distributed. */
+    protected static long mix(long h)
+    {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+
+        return h;
+    }
+
+    /** Computes the 64-bit FNV-1a hash of a path. Zero is reserved, so it is never returned. */
+    protected static long hash(String path)
+    {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++)
+        {
+            h ^= path.charAt(i);
+            h *= 0x100000001b3L;
+        }
+
+        return h != 0 ? h : 1;
+    }
+}
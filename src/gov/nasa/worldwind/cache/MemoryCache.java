@@ -167,6 +167,30 @@ public interface MemoryCache
      */
     long getLowWater();
 
+    /**
+     * Returns the number of calls to {@link #getObject(Object)} that found the requested object, since the cache was
+     * created.
+     *
+     * @return the number of cache hits.
+     */
+    long getHitCount();
+
+    /**
+     * Returns the number of calls to {@link #getObject(Object)} that did not find the requested object, since the
+     * cache was created.
+     *
+     * @return the number of cache misses.
+     */
+    long getMissCount();
+
+    /**
+     * Returns a snapshot of the cache's lookup, add and eviction counts and lookup times, accumulated since the cache
+     * was created.
+     *
+     * @return the cache's statistics.
+     */
+    MemoryCacheStatistics getStatistics();
+
     /* *******************************************************************************/
     //capacity related mutators
 
@@ -0,0 +1,576 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.*;
+
+import javax.management.*;
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Divides one memory budget among the caches of a {@link MemoryCacheSet}, moving capacity from caches that are idle or
+ * rarely miss to caches that are full and missing often. The governor runs periodically, typically on the {@link
+ * gov.nasa.worldwind.WorldWind#getScheduledTaskService() scheduled task service}. Each run samples every cache's hit
+ * and miss counts, then:
+ * <ol> <li>shrinks the least valuable caches until the total capacity fits the budget,</li> <li>reclaims capacity from
+ * idle caches holding far less than their capacity,</li> <li>grants unallocated budget to full caches that are
+ * missing,</li> <li>and, when no budget is unallocated, moves capacity from the least valuable cache to the most
+ * valuable full cache if the difference is large.</li> </ol> A cache's value is its recent miss rate, weighted by its
+ * miss cost, per byte of capacity. The miss cost defaults to 1 and may be raised for caches whose misses are expensive
+ * to satisfy. No cache is shrunk below a fraction of the capacity it had when the governor first saw it.
+ * <p/>
+ * The governor also watches the Java heap. It sets a collection usage threshold on each heap memory pool, and when
+ * memory in use after a garbage collection exceeds the threshold it immediately halves the budget, shrinking the
+ * caches. The full budget is restored once usage after collection falls back below the threshold.
+ * <p/>
+ * The governor's decisions are reported by {@link #getPerformanceStatistics()}, which the scene controller includes in
+ * the per-frame statistics under the key {@link PerformanceStatistic#MEMORY_CACHE}.
+ */
+public class MemoryCacheGovernor implements Runnable
+{
+    /** The default period between rebalancing runs, in milliseconds. */
+    public static final long DEFAULT_REBALANCE_PERIOD = 2000;
+    /** The default heap usage threshold, as a fraction of each heap pool's maximum size. */
+    public static final double DEFAULT_HEAP_THRESHOLD = 0.8;
+
+    /** The weight of the latest sample in the smoothed miss rate. */
+    protected static final double DEMAND_SMOOTHING = 0.5;
+    /** The fraction of a cache's capacity that must be used for the cache to be considered full. */
+    protected static final double FULL_FRACTION = 0.9;
+    /** The fraction of a cache's capacity below which an idle cache gives up capacity. */
+    protected static final double SLACK_FRACTION = 0.5;
+    /** The factor by which the most valuable cache's value must exceed the least valuable's to move capacity. */
+    protected static final double TRANSFER_RATIO = 2;
+    /** The fraction of the budget applied while the heap is under pressure. */
+    protected static final double HEAP_PRESSURE_BUDGET_FRACTION = 0.5;
+
+    /** The governor's view of one cache. */
+    protected static class CacheState
+    {
+        protected final String key;
+        protected final MemoryCache cache;
+        protected final long minCapacity;
+        protected final double lowWaterFraction;
+        protected double missCost = 1;
+        protected long lastHitCount;
+        protected long lastMissCount;
+        /** Smoothed misses per run, weighted by the miss cost. */
+        protected double demand;
+        protected double hitRate;
+
+        protected CacheState(String key, MemoryCache cache, double minCapacityFraction)
+        {
+            this.key = key;
+            this.cache = cache;
+            this.minCapacity = (long) (minCapacityFraction * cache.getCapacity());
+            this.lowWaterFraction = cache.getCapacity() > 0 ?
+                Math.min((double) cache.getLowWater() / cache.getCapacity(), 1) : 0.85;
+            this.lastHitCount = cache.getHitCount();
+            this.lastMissCount = cache.getMissCount();
+        }
+
+        protected void sample()
+        {
+            long hits = this.cache.getHitCount();
+            long misses = this.cache.getMissCount();
+            long dh = hits - this.lastHitCount;
+            long dm = misses - this.lastMissCount;
+            this.lastHitCount = hits;
+            this.lastMissCount = misses;
+
+            this.demand = DEMAND_SMOOTHING * dm * this.missCost + (1 - DEMAND_SMOOTHING) * this.demand;
+            if (dh + dm > 0)
+                this.hitRate = (double) dh / (dh + dm);
+        }
+
+        protected double getValue()
+        {
+            long capacity = this.cache.getCapacity();
+            return capacity > 0 ? this.demand / capacity : Double.MAX_VALUE;
+        }
+
+        protected boolean isFull()
+        {
+            return this.cache.getUsedCapacity() >= FULL_FRACTION * this.cache.getCapacity();
+        }
+
+        protected long getShrinkableCapacity()
+        {
+            return Math.max(this.cache.getCapacity() - this.minCapacity, 0);
+        }
+    }
+
+    protected final MemoryCacheSet cacheSet;
+    protected final Map<String, CacheState> states = new LinkedHashMap<String, CacheState>();
+    protected final Map<String, Double> missCosts = new ConcurrentHashMap<String, Double>();
+    protected volatile long budget;
+    protected double minCapacityFraction = 0.25;
+    protected final double heapThreshold;
+    protected final List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+    protected NotificationListener heapListener;
+    protected volatile boolean heapPressure;
+    protected volatile String lastDecision = "";
+
+    /**
+     * Constructs a governor for the caches of a cache set, monitoring the heap with the default threshold.
+     *
+     * @param cacheSet the caches to govern.
+     * @param budget   the total capacity to divide among the caches.
+     *
+     * @throws IllegalArgumentException if the cache set is null or the budget is not positive.
+     */
+    public MemoryCacheGovernor(MemoryCacheSet cacheSet, long budget)
+    {
+        this(cacheSet, budget, DEFAULT_HEAP_THRESHOLD);
+    }
+
+    /**
+     * Constructs a governor for the caches of a cache set.
+     *
+     * @param cacheSet      the caches to govern.
+     * @param budget        the total capacity to divide among the caches.
+     * @param heapThreshold the heap usage after garbage collection, as a fraction of each heap pool's maximum size,
+     *                      above which the budget is reduced. Zero disables heap monitoring.
+     *
+     * @throws IllegalArgumentException if the cache set is null, the budget is not positive or the threshold is not
+     *                                  in the range [0, 1).
+     */
+    public MemoryCacheGovernor(MemoryCacheSet cacheSet, long budget, double heapThreshold)
+    {
+        if (cacheSet == null)
+        {
+            String message = Logging.getMessage("nullValue.CacheIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (budget <= 0)
+        {
+            String message = Logging.getMessage("generic.CapacityIsInvalid", budget);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (heapThreshold < 0 || heapThreshold >= 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "heapThreshold=" + heapThreshold);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.cacheSet = cacheSet;
+        this.budget = budget;
+        this.heapThreshold = heapThreshold;
+
+        if (heapThreshold > 0)
+            this.installHeapMonitor();
+    }
+
+    /** @return the total capacity divided among the caches when the heap is not under pressure. */
+    public long getBudget()
+    {
+        return this.budget;
+    }
+
+    /**
+     * Specifies the total capacity to divide among the caches. The caches are resized at the next run.
+     *
+     * @param budget the new budget.
+     *
+     * @throws IllegalArgumentException if the budget is not positive.
+     */
+    public void setBudget(long budget)
+    {
+        if (budget <= 0)
+        {
+            String message = Logging.getMessage("generic.CapacityIsInvalid", budget);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.budget = budget;
+    }
+
+    /** @return the budget currently applied, which is reduced while the heap is under pressure. */
+    public long getEffectiveBudget()
+    {
+        return this.heapPressure ? (long) (HEAP_PRESSURE_BUDGET_FRACTION * this.budget) : this.budget;
+    }
+
+    /** @return true if heap usage after the last garbage collection exceeded the heap threshold. */
+    public boolean isHeapPressure()
+    {
+        return this.heapPressure;
+    }
+
+    /**
+     * Returns the relative cost of a miss in a cache.
+     *
+     * @param cacheKey the cache's key in the cache set.
+     *
+     * @return the miss cost. The default is 1.
+     */
+    public double getMissCost(String cacheKey)
+    {
+        Double cost = cacheKey != null ? this.missCosts.get(cacheKey) : null;
+        return cost != null ? cost : 1;
+    }
+
+    /**
+     * Specifies the relative cost of a miss in a cache. A cache whose misses cost more keeps its capacity over caches
+     * that miss as often. For example, a miss in a cache of decoded images costs a file read and an image decode, while
+     * a miss in a cache of computed geometry may only cost a little computation.
+     *
+     * @param cacheKey the cache's key in the cache set.
+     * @param missCost the miss cost, greater than zero.
+     *
+     * @throws IllegalArgumentException if the key is null or the cost is not positive.
+     */
+    public void setMissCost(String cacheKey, double missCost)
+    {
+        if (cacheKey == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (missCost <= 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "missCost=" + missCost);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.missCosts.put(cacheKey, missCost);
+    }
+
+    /** @return the fraction of its initial capacity below which a cache is never shrunk. */
+    public double getMinCapacityFraction()
+    {
+        return this.minCapacityFraction;
+    }
+
+    /**
+     * Specifies the fraction of its initial capacity below which a cache is never shrunk. Applies to caches the
+     * governor has not yet seen.
+     *
+     * @param minCapacityFraction the fraction, in the range [0, 1].
+     *
+     * @throws IllegalArgumentException if the fraction is out of range.
+     */
+    public void setMinCapacityFraction(double minCapacityFraction)
+    {
+        if (minCapacityFraction < 0 || minCapacityFraction > 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange",
+                "minCapacityFraction=" + minCapacityFraction);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.minCapacityFraction = minCapacityFraction;
+    }
+
+    /** @return a description of the capacity changes made by the most recent run. Empty if nothing changed. */
+    public String getLastDecision()
+    {
+        return this.lastDecision;
+    }
+
+    public void run()
+    {
+        try
+        {
+            this.rebalance();
+        }
+        catch (Exception e)
+        {
+            // Don't let an exception stop the repeating task.
+            String message = Logging.getMessage("MemoryCacheGovernor.ExceptionRebalancing");
+            Logging.logger().log(Level.FINE, message, e);
+        }
+    }
+
+    /** Samples the caches and moves capacity among them. Called periodically by {@link #run()}. */
+    public synchronized void rebalance()
+    {
+        this.updateHeapPressure();
+        this.updateStates();
+
+        long budget = this.getEffectiveBudget();
+        long step = Math.max(budget / 20, 1);
+        StringBuilder decision = new StringBuilder();
+
+        long total = 0;
+        for (CacheState state : this.states.values())
+        {
+            total += state.cache.getCapacity();
+        }
+
+        // Shrink the least valuable caches until the total fits the budget.
+        while (total > budget)
+        {
+            CacheState donor = this.findLeastValuable(null);
+            if (donor == null)
+                break;
+
+            long amount = Math.min(total - budget, donor.getShrinkableCapacity());
+            this.resize(donor, donor.cache.getCapacity() - amount, decision);
+            total -= amount;
+        }
+
+        // Reclaim slack from caches that are idle and hold far less than their capacity.
+        for (CacheState state : this.states.values())
+        {
+            long capacity = state.cache.getCapacity();
+            long used = state.cache.getUsedCapacity();
+            if (state.demand < 1 && used < SLACK_FRACTION * capacity)
+            {
+                long newCapacity = Math.max(state.minCapacity, Math.max(used + used / 4, capacity - step));
+                if (newCapacity < capacity)
+                {
+                    this.resize(state, newCapacity, decision);
+                    total -= capacity - newCapacity;
+                }
+            }
+        }
+
+        // Grant unallocated budget to full caches that are missing, neediest first.
+        List<CacheState> receivers = new ArrayList<CacheState>();
+        for (CacheState state : this.states.values())
+        {
+            if (state.demand >= 1 && state.isFull())
+                receivers.add(state);
+        }
+        Collections.sort(receivers, new Comparator<CacheState>()
+        {
+            public int compare(CacheState a, CacheState b)
+            {
+                return Double.compare(b.getValue(), a.getValue());
+            }
+        });
+
+        long free = budget - total;
+        for (CacheState receiver : receivers)
+        {
+            long grant = Math.min(step, free);
+            if (grant <= 0)
+                break;
+
+            this.resize(receiver, receiver.cache.getCapacity() + grant, decision);
+            free -= grant;
+        }
+
+        // With nothing left to grant, move capacity from the least valuable cache to the most valuable full cache.
+        if (free <= 0 && !receivers.isEmpty())
+        {
+            CacheState receiver = receivers.get(0);
+            CacheState donor = this.findLeastValuable(receiver);
+            if (donor != null && TRANSFER_RATIO * donor.getValue() < receiver.getValue())
+            {
+                long amount = Math.min(step, donor.getShrinkableCapacity());
+                this.resize(donor, donor.cache.getCapacity() - amount, decision);
+                this.resize(receiver, receiver.cache.getCapacity() + amount, decision);
+            }
+        }
+
+        this.lastDecision = decision.toString();
+    }
+
+    /**
+     * Returns statistics describing the budget, the capacity and hit rate of each governed cache, and the changes made
+     * by the most recent run.
+     *
+     * @return the governor's statistics.
+     */
+    public synchronized Collection<PerformanceStatistic> getPerformanceStatistics()
+    {
+        ArrayList<PerformanceStatistic> stats = new ArrayList<PerformanceStatistic>();
+
+        stats.add(new PerformanceStatistic(PerformanceStatistic.MEMORY_CACHE, "Cache Budget (Kb)",
+            this.getEffectiveBudget() / 1000));
+        stats.add(new PerformanceStatistic(PerformanceStatistic.MEMORY_CACHE, "Cache Heap Pressure",
+            this.heapPressure));
+
+        for (CacheState state : this.states.values())
+        {
+            stats.add(new PerformanceStatistic(PerformanceStatistic.MEMORY_CACHE,
+                "Cache Capacity (Kb): " + state.cache.getName(), state.cache.getCapacity() / 1000));
+            stats.add(new PerformanceStatistic(PerformanceStatistic.MEMORY_CACHE,
+                "Cache Recent Hit Rate (%): " + state.cache.getName(), (int) (100 * state.hitRate)));
+        }
+
+        if (!WWUtil.isEmpty(this.lastDecision))
+            stats.add(new PerformanceStatistic(PerformanceStatistic.MEMORY_CACHE, "Cache Governor", this.lastDecision));
+
+        return stats;
+    }
+
+    /** Stops monitoring the heap. The governor may still be run, but no longer reacts to heap pressure. */
+    public void dispose()
+    {
+        if (this.heapListener != null)
+        {
+            try
+            {
+                ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(
+                    this.heapListener);
+            }
+            catch (ListenerNotFoundException e)
+            {
+                Logging.logger().finest(e.getMessage());
+            }
+            this.heapListener = null;
+        }
+
+        for (MemoryPoolMXBean pool : this.heapPools)
+        {
+            pool.setCollectionUsageThreshold(0); // disables the threshold
+        }
+        this.heapPools.clear();
+        this.heapPressure = false;
+    }
+
+    protected void updateStates() // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        Map<String, MemoryCache> caches = this.cacheSet.getAllCaches();
+
+        this.states.keySet().retainAll(caches.keySet());
+        for (Map.Entry<String, MemoryCache> entry : caches.entrySet())
+        {
+            CacheState state = this.states.get(entry.getKey());
+            if (state == null || state.cache != entry.getValue())
+            {
+                state = new CacheState(entry.getKey(), entry.getValue(), this.minCapacityFraction);
+                this.states.put(entry.getKey(), state);
+            }
+
+            state.missCost = this.getMissCost(entry.getKey());
+            state.sample();
+        }
+    }
+
+    protected CacheState findLeastValuable(CacheState exclude) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        CacheState leastValuable = null;
+        for (CacheState state : this.states.values())
+        {
+            if (state == exclude || state.getShrinkableCapacity() <= 0)
+                continue;
+
+            if (leastValuable == null || state.getValue() < leastValuable.getValue())
+                leastValuable = state;
+        }
+
+        return leastValuable;
+    }
+
+    /**
+     * Sets a cache's capacity, keeping its low water level at the same fraction of its capacity. The low water level is
+     * lowered before the capacity when shrinking, so that the cache evicts down to the new low water level.
+     *
+     * @param state       the cache.
+     * @param newCapacity the new capacity.
+     * @param decision    the description of this run's changes, to append to.
+     */
+    protected void resize(CacheState state, long newCapacity, StringBuilder decision)
+    {
+        MemoryCache cache = state.cache;
+        long oldCapacity = cache.getCapacity();
+        if (newCapacity == oldCapacity)
+            return;
+
+        long newLowWater = (long) (state.lowWaterFraction * newCapacity);
+        if (newCapacity < oldCapacity)
+        {
+            cache.setLowWater(newLowWater);
+            cache.setCapacity(newCapacity);
+        }
+        else
+        {
+            cache.setCapacity(newCapacity);
+            cache.setLowWater(newLowWater);
+        }
+
+        if (decision.length() > 0)
+            decision.append(", ");
+        decision.append(cache.getName()).append(newCapacity > oldCapacity ? " +" : " -")
+            .append(Math.abs(newCapacity - oldCapacity) / 1000).append(" Kb");
+    }
+
+    protected void installHeapMonitor()
+    {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported())
+                continue;
+
+            long max = pool.getUsage().getMax();
+            if (max <= 0)
+                continue;
+
+            pool.setCollectionUsageThreshold((long) (this.heapThreshold * max));
+            this.heapPools.add(pool);
+        }
+
+        if (this.heapPools.isEmpty())
+            return;
+
+        this.heapListener = new NotificationListener()
+        {
+            public void handleNotification(Notification notification, Object handback)
+            {
+                if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType()))
+                    onHeapThresholdExceeded();
+            }
+        };
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(this.heapListener, null,
+            null);
+    }
+
+    /** Called when heap usage after garbage collection exceeds the threshold. Shrinks the caches immediately. */
+    protected void onHeapThresholdExceeded()
+    {
+        if (this.heapPressure)
+            return;
+
+        this.heapPressure = true;
+        String message = Logging.getMessage("MemoryCacheGovernor.HeapPressure", this.getEffectiveBudget());
+        Logging.logger().info(message);
+
+        this.run();
+    }
+
+    /** Clears the heap pressure state once usage after collection in every monitored pool is below its threshold. */
+    protected void updateHeapPressure()
+    {
+        if (!this.heapPressure || this.heapPools.isEmpty())
+            return;
+
+        for (MemoryPoolMXBean pool : this.heapPools)
+        {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null && usage.getUsed() >= pool.getCollectionUsageThreshold())
+                return;
+        }
+
+        this.heapPressure = false;
+    }
+
+    /**
+     * Sets the heap pressure state directly, as a heap threshold notification would. Intended for testing.
+     *
+     * @param heapPressure true to apply the reduced budget.
+     */
+    protected void setHeapPressure(boolean heapPressure)
+    {
+        this.heapPressure = heapPressure;
+    }
+}
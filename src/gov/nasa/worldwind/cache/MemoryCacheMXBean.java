@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+/**
+ * The management interface of a {@link MemoryCache}, registered with the platform MBean server by {@link
+ * BasicMemoryCacheSet} under the name <code>gov.nasa.worldwind:type=MemoryCache,name=<i>cache key</i></code>. Sizes
+ * are in cache units, which for most caches are bytes. Latencies are in nanoseconds.
+ *
+ * @see MemoryCacheStatistics
+ */
+public interface MemoryCacheMXBean
+{
+    String getName();
+
+    long getCapacity();
+
+    long getUsedCapacity();
+
+    int getNumObjects();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    double getHitRatio();
+
+    long getAddCount();
+
+    long getEvictionCount();
+
+    long getEvictedBytes();
+
+    double getLookupLatencyMean();
+
+    long getLookupLatencyMedian();
+
+    long getLookupLatency99thPercentile();
+}
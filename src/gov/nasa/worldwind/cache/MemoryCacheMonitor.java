@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.Logging;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+
+/**
+ * Exposes a {@link MemoryCache} and its {@link MemoryCacheStatistics} through JMX.
+ *
+ * @see MemoryCacheMXBean
+ */
+public class MemoryCacheMonitor implements MemoryCacheMXBean
+{
+    protected final MemoryCache cache;
+
+    /**
+     * Constructs a monitor for a cache.
+     *
+     * @param cache the cache to monitor.
+     *
+     * @throws IllegalArgumentException if the cache is null.
+     */
+    public MemoryCacheMonitor(MemoryCache cache)
+    {
+        if (cache == null)
+        {
+            String message = Logging.getMessage("nullValue.CacheIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.cache = cache;
+    }
+
+    /**
+     * Registers a monitor for a cache with the platform MBean server, replacing any monitor already registered under
+     * the same cache key. Failures are logged and otherwise ignored, since monitoring is not essential.
+     *
+     * @param cacheKey the cache's key in its cache set.
+     * @param cache    the cache to monitor.
+     */
+    public static void register(String cacheKey, MemoryCache cache)
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = createObjectName(cacheKey);
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+
+            server.registerMBean(new MemoryCacheMonitor(cache), name);
+        }
+        catch (Exception e)
+        {
+            String message = Logging.getMessage("MemoryCacheSet.CannotRegisterMBean", cacheKey);
+            Logging.logger().log(Level.FINE, message, e);
+        }
+    }
+
+    /**
+     * Creates the JMX object name of a cache's monitor.
+     *
+     * @param cacheKey the cache's key in its cache set.
+     *
+     * @return the object name.
+     *
+     * @throws MalformedObjectNameException if the name cannot be formed.
+     */
+    public static ObjectName createObjectName(String cacheKey) throws MalformedObjectNameException
+    {
+        return new ObjectName("gov.nasa.worldwind:type=MemoryCache,name=" + ObjectName.quote(cacheKey));
+    }
+
+    public String getName()
+    {
+        return this.cache.getName();
+    }
+
+    public long getCapacity()
+    {
+        return this.cache.getCapacity();
+    }
+
+    public long getUsedCapacity()
+    {
+        return this.cache.getUsedCapacity();
+    }
+
+    public int getNumObjects()
+    {
+        return this.cache.getNumObjects();
+    }
+
+    public long getHitCount()
+    {
+        return this.cache.getHitCount();
+    }
+
+    public long getMissCount()
+    {
+        return this.cache.getMissCount();
+    }
+
+    public double getHitRatio()
+    {
+        return this.cache.getStatistics().getHitRatio();
+    }
+
+    public long getAddCount()
+    {
+        return this.cache.getStatistics().getAddCount();
+    }
+
+    public long getEvictionCount()
+    {
+        return this.cache.getStatistics().getEvictionCount();
+    }
+
+    public long getEvictedBytes()
+    {
+        return this.cache.getStatistics().getEvictedBytes();
+    }
+
+    public double getLookupLatencyMean()
+    {
+        return this.cache.getStatistics().getLookupLatency().getMean();
+    }
+
+    public long getLookupLatencyMedian()
+    {
+        return this.cache.getStatistics().getLookupLatency().getPercentile(50);
+    }
+
+    public long getLookupLatency99thPercentile()
+    {
+        return this.cache.getStatistics().getLookupLatency().getPercentile(99);
+    }
+}
@@ -21,6 +21,18 @@ public interface MemoryCacheSet
 
     MemoryCache addCache(String key, MemoryCache cache);
 
+    /**
+     * Creates a new memory cache of the class named by the configuration value {@link
+     * gov.nasa.worldwind.avlist.AVKey#MEMORY_CACHE_CLASS_NAME}, or a {@link BasicMemoryCache} if no class is
+     * configured. The cache is not added to this set; use {@link #addCache(String, MemoryCache)} to add it.
+     *
+     * @param loWater  the low water level of the new cache.
+     * @param capacity the capacity of the new cache.
+     *
+     * @return the new memory cache.
+     */
+    MemoryCache createCache(long loWater, long capacity);
+
     Collection<PerformanceStatistic> getPerformanceStatistics();
 
     void clear();
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the lookups, adds and evictions of a {@link MemoryCache}, and records the time taken by a sample of its
+ * lookups. Counters are updated without locking and may be read at any time. Evictions count only entries removed to
+ * make room for others, not entries removed explicitly, replaced or cleared.
+ * <p/>
+ * Caches time one lookup in every {@link #getLatencySampleInterval()} by bracketing it with {@link #startLookup()} and
+ * {@link #endLookup(boolean, long)}, so that reading the clock doesn't add to the cost of every lookup.
+ *
+ * @see MemoryCache#getStatistics()
+ */
+public class MemoryCacheStatistics
+{
+    /** The default number of lookups per timed lookup. */
+    public static final int DEFAULT_LATENCY_SAMPLE_INTERVAL = 16;
+    /** The value {@link #startLookup()} returns for a lookup that is not timed. */
+    public static final long UNTIMED = Long.MIN_VALUE;
+
+    protected final AtomicLong hitCount = new AtomicLong();
+    protected final AtomicLong missCount = new AtomicLong();
+    protected final AtomicLong addCount = new AtomicLong();
+    protected final AtomicLong evictionCount = new AtomicLong();
+    protected final AtomicLong evictedBytes = new AtomicLong();
+    protected final LatencyHistogram lookupLatency = new LatencyHistogram();
+    protected volatile int latencySampleInterval = DEFAULT_LATENCY_SAMPLE_INTERVAL;
+    /**
+     * Counts down the lookups until the next timed one. Updated without synchronization, since a lost update only
+     * shifts which lookup is timed.
+     */
+    protected int lookupsUntilSample;
+
+    /**
+     * Indicates how many lookups there are for each one whose time is recorded.
+     *
+     * @return the number of lookups per timed lookup, or zero if no lookups are timed.
+     */
+    public int getLatencySampleInterval()
+    {
+        return this.latencySampleInterval;
+    }
+
+    /**
+     * Specifies how many lookups there are for each one whose time is recorded. The default is {@link
+     * #DEFAULT_LATENCY_SAMPLE_INTERVAL}.
+     *
+     * @param interval the number of lookups per timed lookup. 1 times every lookup and 0 times none.
+     *
+     * @throws IllegalArgumentException if the interval is negative.
+     */
+    public void setLatencySampleInterval(int interval)
+    {
+        if (interval < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "interval=" + interval);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.latencySampleInterval = interval;
+    }
+
+    /**
+     * Called before a lookup. Returns the current time if this lookup is one of those timed.
+     *
+     * @return the lookup's start time in nanoseconds, or {@link #UNTIMED} if the lookup is not timed.
+     */
+    public long startLookup()
+    {
+        int interval = this.latencySampleInterval;
+        if (interval <= 0 || --this.lookupsUntilSample > 0)
+            return UNTIMED;
+
+        this.lookupsUntilSample = interval;
+        return System.nanoTime();
+    }
+
+    /**
+     * Called after a lookup. Counts the lookup, and records its time if it was timed.
+     *
+     * @param hit       true if the lookup found the requested object.
+     * @param startTime the value returned by {@link #startLookup()} for this lookup.
+     */
+    public void endLookup(boolean hit, long startTime)
+    {
+        if (hit)
+            this.hitCount.incrementAndGet();
+        else
+            this.missCount.incrementAndGet();
+
+        if (startTime != UNTIMED)
+            this.lookupLatency.record(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Records a lookup and its time.
+     *
+     * @param hit          true if the lookup found the requested object.
+     * @param latencyNanos the time taken by the lookup, in nanoseconds.
+     */
+    public void recordLookup(boolean hit, long latencyNanos)
+    {
+        if (hit)
+            this.hitCount.incrementAndGet();
+        else
+            this.missCount.incrementAndGet();
+
+        this.lookupLatency.record(latencyNanos);
+    }
+
+    /** Records an object added to the cache. */
+    public void recordAdd()
+    {
+        this.addCount.incrementAndGet();
+    }
+
+    /**
+     * Records an object evicted from the cache to make room for others.
+     *
+     * @param size the size of the evicted object, in cache units.
+     */
+    public void recordEviction(long size)
+    {
+        this.evictionCount.incrementAndGet();
+        this.evictedBytes.addAndGet(size);
+    }
+
+    /**
+     * Adds the counts of other statistics to these. Used to combine the statistics of independently counted parts of a
+     * cache.
+     *
+     * @param that the statistics to add.
+     *
+     * @return these statistics.
+     *
+     * @throws IllegalArgumentException if the statistics are null.
+     */
+    public MemoryCacheStatistics add(MemoryCacheStatistics that)
+    {
+        if (that == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.hitCount.addAndGet(that.hitCount.get());
+        this.missCount.addAndGet(that.missCount.get());
+        this.addCount.addAndGet(that.addCount.get());
+        this.evictionCount.addAndGet(that.evictionCount.get());
+        this.evictedBytes.addAndGet(that.evictedBytes.get());
+        this.lookupLatency.add(that.lookupLatency);
+
+        return this;
+    }
+
+    /** @return the number of lookups that found the requested object. */
+    public long getHitCount()
+    {
+        return this.hitCount.get();
+    }
+
+    /** @return the number of lookups that did not find the requested object. */
+    public long getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    /** @return the fraction of lookups that found the requested object, or zero if there have been no lookups. */
+    public double getHitRatio()
+    {
+        long hits = this.hitCount.get();
+        long lookups = hits + this.missCount.get();
+        return lookups > 0 ? (double) hits / lookups : 0;
+    }
+
+    /** @return the number of objects added to the cache, including replacements. */
+    public long getAddCount()
+    {
+        return this.addCount.get();
+    }
+
+    /** @return the number of objects evicted to make room for others. */
+    public long getEvictionCount()
+    {
+        return this.evictionCount.get();
+    }
+
+    /** @return the total size, in cache units, of the objects evicted to make room for others. */
+    public long getEvictedBytes()
+    {
+        return this.evictedBytes.get();
+    }
+
+    /** @return the histogram of the times of the lookups sampled. */
+    public LatencyHistogram getLookupLatency()
+    {
+        return this.lookupLatency;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "hits " + this.getHitCount() + " misses " + this.getMissCount() + " adds " + this.getAddCount()
+            + " evictions " + this.getEvictionCount() + " evicted bytes " + this.getEvictedBytes()
+            + " mean lookup ns " + (long) this.lookupLatency.getMean();
+    }
+}
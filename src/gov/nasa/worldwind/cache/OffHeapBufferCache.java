@@ -0,0 +1,519 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.exception.WWRuntimeException;
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * A byte buffer cache whose contents live outside the Java heap, either in direct byte buffers or in a memory-mapped
+ * arena file. Its capacity is bounded independently of the heap size, so it can hold gigabytes of tile data while the
+ * heap stays small, without adding to garbage collection work.
+ * <p/>
+ * The cache is used as a second-level tier for tile data evicted from the memory caches: elevation tiles store their
+ * elevation buffers here when evicted, and texture tiles store their texture data when it is converted to a texture.
+ * Loading a tile then checks this cache before reading and decoding the tile's file.
+ * <p/>
+ * Storage is divided into fixed-size blocks, and each entry occupies as many blocks as its length requires, so the
+ * storage never fragments. When there are too few free blocks for a new entry, the least recently used entries are
+ * evicted. Entries carry an attachment, a small heap object describing how to interpret the bytes, and a timestamp
+ * that callers compare with their expiry time. Data is copied in and out, so buffers returned by {@link #get(Object)}
+ * remain valid after the entry is evicted. Callers that pass the data on to native code, such as texture uploads, use
+ * {@link #get(Object, ByteBuffer)} to copy it into a direct buffer rather than the heap.
+ */
+public class OffHeapBufferCache
+{
+    /** The default block size, in bytes. */
+    protected static final int DEFAULT_BLOCK_SIZE = 16384;
+    /** The largest single direct buffer or file mapping. */
+    protected static final long MAX_SLAB_SIZE = 1L << 30;
+
+    /** The data, attachment and timestamp of an entry returned by {@link OffHeapBufferCache#get(Object)}. */
+    public static class Payload
+    {
+        protected final ByteBuffer buffer;
+        protected final Object attachment;
+        protected final long timestamp;
+
+        public Payload(ByteBuffer buffer, Object attachment, long timestamp)
+        {
+            this.buffer = buffer;
+            this.attachment = attachment;
+            this.timestamp = timestamp;
+        }
+
+        /** @return a buffer holding a copy of the entry's data, positioned at zero. */
+        public ByteBuffer getBuffer()
+        {
+            return this.buffer;
+        }
+
+        /** @return the attachment specified when the entry was added. May be null. */
+        public Object getAttachment()
+        {
+            return this.attachment;
+        }
+
+        /** @return the timestamp specified when the entry was added. */
+        public long getTimestamp()
+        {
+            return this.timestamp;
+        }
+    }
+
+    protected static class Entry
+    {
+        protected final int[] blocks;
+        protected final int length;
+        protected final Object attachment;
+        protected final long timestamp;
+
+        protected Entry(int[] blocks, int length, Object attachment, long timestamp)
+        {
+            this.blocks = blocks;
+            this.length = length;
+            this.attachment = attachment;
+            this.timestamp = timestamp;
+        }
+    }
+
+    protected static OffHeapBufferCache tileBufferCache;
+    protected static boolean tileBufferCacheInitialized;
+
+    /**
+     * Returns the cache shared by the tiled image layers and elevation models, creating it on first use. Its size is
+     * given by the configuration value {@link AVKey#OFF_HEAP_TILE_CACHE_SIZE}. If the configuration value {@link
+     * AVKey#OFF_HEAP_TILE_CACHE_FILE} names a file, the cache is mapped to that file rather than held in direct
+     * memory.
+     *
+     * @return the shared tile buffer cache, or null if no size is configured or the cache cannot be created.
+     */
+    public static synchronized OffHeapBufferCache getTileBufferCache()
+    {
+        if (!tileBufferCacheInitialized)
+        {
+            tileBufferCacheInitialized = true;
+
+            long size = Configuration.getLongValue(AVKey.OFF_HEAP_TILE_CACHE_SIZE, 0L);
+            if (size > 0)
+            {
+                String fileName = Configuration.getStringValue(AVKey.OFF_HEAP_TILE_CACHE_FILE);
+                File file = !WWUtil.isEmpty(fileName) ? new File(fileName) : null;
+                try
+                {
+                    tileBufferCache = new OffHeapBufferCache(size, DEFAULT_BLOCK_SIZE, file);
+                }
+                catch (Exception e)
+                {
+                    String message = Logging.getMessage("OffHeapBufferCache.CannotCreateCache", size);
+                    Logging.logger().log(java.util.logging.Level.SEVERE, message, e);
+                }
+            }
+        }
+
+        return tileBufferCache;
+    }
+
+    protected final int blockSize;
+    protected final int blocksPerSlab;
+    protected final ByteBuffer[] slabs;
+    protected final int numBlocks;
+    /** Stack of free block indices. Guarded by this cache's monitor. */
+    protected final int[] freeBlocks;
+    protected int numFreeBlocks;
+    /** Entries in access order, least recently used first. Guarded by this cache's monitor. */
+    protected final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+    protected long hitCount;
+    protected long missCount;
+    protected long evictionCount;
+
+    /**
+     * Constructs a cache of the specified capacity held in direct memory.
+     *
+     * @param capacity the capacity in bytes.
+     *
+     * @throws IllegalArgumentException if the capacity is less than the block size.
+     */
+    public OffHeapBufferCache(long capacity)
+    {
+        this(capacity, DEFAULT_BLOCK_SIZE, null);
+    }
+
+    /**
+     * Constructs a cache of the specified capacity and block size. If a file is specified the cache storage is mapped
+     * to that file, which is created or truncated and is deleted when the virtual machine exits. Otherwise the storage
+     * is allocated as direct byte buffers, which count against the <code>-XX:MaxDirectMemorySize</code> limit rather
+     * than the heap.
+     *
+     * @param capacity  the capacity in bytes. Rounded down to a multiple of the block size.
+     * @param blockSize the block size in bytes. Entries use a whole number of blocks.
+     * @param arenaFile the file to map the storage to. May be null.
+     *
+     * @throws IllegalArgumentException if the block size is not positive or the capacity is less than the block size.
+     * @throws WWRuntimeException       if the arena file cannot be mapped.
+     */
+    public OffHeapBufferCache(long capacity, int blockSize, File arenaFile)
+    {
+        if (blockSize <= 0 || capacity < blockSize)
+        {
+            String message = Logging.getMessage("generic.CapacityIsInvalid", capacity);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        long totalBlocks = Math.min(capacity / blockSize, Integer.MAX_VALUE);
+        this.blockSize = blockSize;
+        this.numBlocks = (int) totalBlocks;
+        this.blocksPerSlab = (int) Math.min(MAX_SLAB_SIZE / blockSize, totalBlocks);
+
+        int numSlabs = (int) ((totalBlocks + this.blocksPerSlab - 1) / this.blocksPerSlab);
+        this.slabs = new ByteBuffer[numSlabs];
+
+        if (arenaFile == null)
+        {
+            for (int i = 0; i < numSlabs; i++)
+            {
+                this.slabs[i] = ByteBuffer.allocateDirect(this.slabLength(i));
+            }
+        }
+        else
+        {
+            this.mapArenaFile(arenaFile);
+        }
+
+        this.freeBlocks = new int[this.numBlocks];
+        for (int i = 0; i < this.numBlocks; i++)
+        {
+            this.freeBlocks[i] = this.numBlocks - 1 - i;
+        }
+        this.numFreeBlocks = this.numBlocks;
+    }
+
+    protected int slabLength(int slab)
+    {
+        long firstBlock = (long) slab * this.blocksPerSlab;
+        return (int) (Math.min(this.blocksPerSlab, this.numBlocks - firstBlock) * this.blockSize);
+    }
+
+    protected void mapArenaFile(File file)
+    {
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(0);
+            raf.setLength((long) this.numBlocks * this.blockSize);
+            file.deleteOnExit();
+
+            FileChannel channel = raf.getChannel();
+            for (int i = 0; i < this.slabs.length; i++)
+            {
+                long offset = (long) i * this.blocksPerSlab * this.blockSize;
+                this.slabs[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset, this.slabLength(i));
+            }
+        }
+        catch (IOException e)
+        {
+            String message = Logging.getMessage("generic.CannotOpenFile", file.getPath());
+            Logging.logger().severe(message);
+            throw new WWRuntimeException(message, e);
+        }
+        finally
+        {
+            // The mappings stay valid after the channel is closed.
+            WWIO.closeStream(raf, file.getPath());
+        }
+    }
+
+    /** @return the capacity of the cache in bytes. */
+    public long getCapacity()
+    {
+        return (long) this.numBlocks * this.blockSize;
+    }
+
+    /** @return the number of bytes of storage occupied by entries, including the unused ends of their last blocks. */
+    public synchronized long getUsedCapacity()
+    {
+        return (long) (this.numBlocks - this.numFreeBlocks) * this.blockSize;
+    }
+
+    /** @return the number of entries in the cache. */
+    public synchronized int getNumEntries()
+    {
+        return this.entries.size();
+    }
+
+    /** @return the number of calls to {@link #get(Object)} that found an entry. */
+    public synchronized long getHitCount()
+    {
+        return this.hitCount;
+    }
+
+    /** @return the number of calls to {@link #get(Object)} that found no entry. */
+    public synchronized long getMissCount()
+    {
+        return this.missCount;
+    }
+
+    /** @return the number of entries evicted to make room for others. */
+    public synchronized long getEvictionCount()
+    {
+        return this.evictionCount;
+    }
+
+    /**
+     * Indicates whether the cache holds an entry for a key. Does not affect the entry's recency.
+     *
+     * @param key the key.
+     *
+     * @return true if the cache holds an entry for the key.
+     */
+    public synchronized boolean contains(Object key)
+    {
+        return key != null && this.entries.containsKey(key);
+    }
+
+    /**
+     * Copies the remaining bytes of the specified buffers, in order, into a new entry for a key, replacing any existing
+     * entry. If the existing entry's timestamp is not older than the specified one, the existing entry is kept and
+     * only marked as recently used, which avoids copying data that is evicted from the heap repeatedly. The positions
+     * of the specified buffers are not changed.
+     *
+     * @param key        the entry's key.
+     * @param attachment a small heap object describing the data. May be null.
+     * @param timestamp  the time the data was created or last validated, in milliseconds since the epoch.
+     * @param data       the buffers holding the entry's data.
+     *
+     * @return true if the cache holds the data on return, false if the data is larger than the cache.
+     *
+     * @throws IllegalArgumentException if the key or the data is null.
+     */
+    public boolean put(Object key, Object attachment, long timestamp, ByteBuffer... data)
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (data == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        long length = 0;
+        for (ByteBuffer buffer : data)
+        {
+            length += buffer.remaining();
+        }
+
+        long blocksNeeded = (length + this.blockSize - 1) / this.blockSize;
+        if (length == 0 || blocksNeeded > this.numBlocks)
+            return false;
+
+        synchronized (this)
+        {
+            Entry existing = this.entries.get(key);
+            if (existing != null)
+            {
+                if (existing.timestamp >= timestamp)
+                    return true;
+
+                this.removeEntry(key);
+            }
+
+            while (this.numFreeBlocks < blocksNeeded)
+            {
+                Iterator<Map.Entry<Object, Entry>> iter = this.entries.entrySet().iterator();
+                Map.Entry<Object, Entry> eldest = iter.next();
+                iter.remove();
+                this.freeBlocks(eldest.getValue());
+                this.evictionCount++;
+            }
+
+            int[] blocks = new int[(int) blocksNeeded];
+            for (int i = 0; i < blocks.length; i++)
+            {
+                blocks[i] = this.freeBlocks[--this.numFreeBlocks];
+            }
+
+            int block = 0;
+            int blockOffset = 0;
+            for (ByteBuffer buffer : data)
+            {
+                ByteBuffer src = buffer.duplicate();
+                while (src.hasRemaining())
+                {
+                    ByteBuffer dst = this.blockBuffer(blocks[block], blockOffset);
+                    int n = Math.min(src.remaining(), dst.remaining());
+                    ByteBuffer chunk = src.duplicate();
+                    chunk.limit(chunk.position() + n);
+                    dst.put(chunk);
+                    src.position(src.position() + n);
+
+                    blockOffset += n;
+                    if (blockOffset == this.blockSize)
+                    {
+                        block++;
+                        blockOffset = 0;
+                    }
+                }
+            }
+
+            this.entries.put(key, new Entry(blocks, (int) length, attachment, timestamp));
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the length of the data for a key, for callers sizing the destination passed to {@link #get(Object,
+     * ByteBuffer)}. Does not affect the entry's recency.
+     *
+     * @param key the key.
+     *
+     * @return the length in bytes of the entry's data, or -1 if the cache holds no entry for the key.
+     */
+    public synchronized int getLength(Object key)
+    {
+        Entry entry = key != null ? this.entries.get(key) : null;
+
+        return entry != null ? entry.length : -1;
+    }
+
+    /**
+     * Returns a copy of the data for a key in a new heap buffer and marks the entry as recently used.
+     *
+     * @param key the key.
+     *
+     * @return the entry's data, attachment and timestamp, or null if the cache holds no entry for the key.
+     */
+    public Payload get(Object key)
+    {
+        return this.get(key, null, false);
+    }
+
+    /**
+     * Copies the data for a key into a destination buffer and marks the entry as recently used. The data is copied to
+     * the destination starting at its position, and the destination's position is not changed. If the destination is
+     * null or has fewer bytes remaining than the data's length, the data is copied to a new direct buffer instead.
+     *
+     * @param key         the key.
+     * @param destination the buffer to copy the data to. May be null.
+     *
+     * @return the entry's data, attachment and timestamp, or null if the cache holds no entry for the key. The data is
+     *         a view of the region of the destination, or of the new direct buffer, that holds it.
+     */
+    public Payload get(Object key, ByteBuffer destination)
+    {
+        return this.get(key, destination, true);
+    }
+
+    protected synchronized Payload get(Object key, ByteBuffer destination, boolean direct)
+    {
+        Entry entry = key != null ? this.entries.get(key) : null;
+        if (entry == null)
+        {
+            this.missCount++;
+            return null;
+        }
+
+        this.hitCount++;
+
+        ByteBuffer buffer;
+        if (destination != null && destination.remaining() >= entry.length)
+        {
+            buffer = destination.duplicate();
+            buffer.limit(buffer.position() + entry.length);
+            buffer = buffer.slice();
+        }
+        else
+        {
+            buffer = direct ? ByteBuffer.allocateDirect(entry.length) : ByteBuffer.allocate(entry.length);
+        }
+
+        for (int i = 0; i < entry.blocks.length; i++)
+        {
+            ByteBuffer src = this.blockBuffer(entry.blocks[i], 0);
+            src.limit(src.position() + Math.min(this.blockSize, buffer.remaining()));
+            buffer.put(src);
+        }
+        buffer.flip();
+
+        return new Payload(buffer, entry.attachment, entry.timestamp);
+    }
+
+    /**
+     * Removes the entry for a key, if any.
+     *
+     * @param key the key.
+     */
+    public synchronized void remove(Object key)
+    {
+        if (key != null)
+            this.removeEntry(key);
+    }
+
+    /** Removes all entries. */
+    public synchronized void clear()
+    {
+        for (Entry entry : this.entries.values())
+        {
+            this.freeBlocks(entry);
+        }
+        this.entries.clear();
+    }
+
+    protected void removeEntry(Object key) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        Entry entry = this.entries.remove(key);
+        if (entry != null)
+            this.freeBlocks(entry);
+    }
+
+    protected void freeBlocks(Entry entry) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        for (int block : entry.blocks)
+        {
+            this.freeBlocks[this.numFreeBlocks++] = block;
+        }
+    }
+
+    /**
+     * Returns a view of a block starting at an offset within it. The view's limit is the end of the block.
+     *
+     * @param block  the block index.
+     * @param offset the offset within the block.
+     *
+     * @return a buffer positioned at the offset and limited to the end of the block.
+     */
+    protected ByteBuffer blockBuffer(int block, int offset) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        ByteBuffer slab = this.slabs[block / this.blocksPerSlab].duplicate();
+        int start = (block % this.blocksPerSlab) * this.blockSize;
+        slab.limit(start + this.blockSize);
+        slab.position(start + offset);
+
+        return slab;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "OffHeapBufferCache capacity = " + this.getCapacity() + " used = " + this.getUsedCapacity()
+            + " number of entries: " + this.getNumEntries();
+    }
+}
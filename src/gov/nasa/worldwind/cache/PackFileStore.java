@@ -0,0 +1,453 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+/**
+ * A file store that keeps image and elevation tiles in a {@link TilePackStore} rather than one file per tile. Tiles are
+ * written as ordinary files, as with {@link BasicDataFileStore}, and a background thread later moves them into pack
+ * files in the <code>packs</code> directory of the write location. {@link #findFile(String, boolean)} returns a
+ * <code>wwpack:</code> URL for a packed tile; opening the URL reads the tile from a memory-mapped pack without
+ * copying it, and {@link #getPackedBuffer(URL)} returns the mapped bytes themselves. Layers and elevation models that
+ * read their tiles through the file store's URLs therefore use the packs without change.
+ * <p/>
+ * Only paths matching {@link TilePackStore#TILE_PATH_PATTERN} are packed, together with the tiles' sidecar files,
+ * whose paths match {@link TilePackStore#SIDECAR_PATH_PATTERN}, so configuration files and other files that are
+ * listed or opened as files stay as they are. Sidecars must therefore be read through their URLs. To use this file store, set the configuration property
+ * <code>gov.nasa.worldwind.avkey.DataFileStoreClassName</code> to this class's name. {@link #migrate()} packs the
+ * tiles already in the write location, and {@link TilePackStore#main(String[])} does so from the command line.
+ */
+public class PackFileStore extends BasicDataFileStore
+{
+    /** The name of the directory, within the write location, holding the pack files. */
+    public static final String PACK_DIRECTORY = "packs";
+    /** The URL protocol of packed tiles. */
+    public static final String PROTOCOL = "wwpack";
+    /** The time, in milliseconds, since a tile file was last written before it is packed. */
+    protected static final long PACK_DELAY = 10000;
+    /** Matches the paths of the files that are packed: tiles and their sidecars. */
+    protected static final Pattern PACKED_PATH_PATTERN = Pattern.compile(
+        "(" + TilePackStore.TILE_PATH_PATTERN.pattern() + ")(\\.[^/]+)?", Pattern.CASE_INSENSITIVE);
+
+    protected TilePackStore packStore;
+    protected final URLStreamHandler urlHandler = new PackURLStreamHandler();
+    // Written tiles waiting to be packed, in the order they were written.
+    protected final Map<String, File> pendingFiles = new LinkedHashMap<String, File>();
+    protected Thread packThread;
+
+    /**
+     * Create an instance.
+     *
+     * @throws IllegalStateException if the configuration file name cannot be determined from {@link
+     *                               gov.nasa.worldwind.Configuration} or the configuration file cannot be found.
+     */
+    public PackFileStore()
+    {
+        super();
+    }
+
+    /**
+     * Create an instance to manage a specified directory.
+     *
+     * @param directoryPath the directory to manage as a file store.
+     */
+    public PackFileStore(File directoryPath)
+    {
+        super(directoryPath);
+    }
+
+    @Override
+    protected void initialize(InputStream xmlConfigStream)
+    {
+        super.initialize(xmlConfigStream);
+
+        if (this.writeLocation != null)
+        {
+            this.packStore = new TilePackStore(new File(this.writeLocation.getFile(), PACK_DIRECTORY),
+                TilePackStore.DEFAULT_MAX_PACK_SIZE);
+
+            // A bounded write location evicts packed tiles along with its files.
+            FileStoreEvictor evictor = this.getEvictor(this.writeLocation.getFile());
+            if (evictor != null)
+                evictor.setPackStore(this.packStore);
+        }
+    }
+
+    /** @return the pack store holding this file store's tiles, or null if the file store has no write location. */
+    public TilePackStore getPackStore()
+    {
+        return this.packStore;
+    }
+
+    /**
+     * Moves the tiles in the write location into the pack files. Tiles written within the last few seconds are left in
+     * place, since they may still be being written.
+     *
+     * @return the number of tiles moved.
+     */
+    public int migrate()
+    {
+        if (this.packStore == null)
+            return 0;
+
+        int count = this.packStore.packDirectory(this.writeLocation.getFile(), PACKED_PATH_PATTERN, PACK_DELAY);
+        if (count > 0)
+            this.db.clear(); // Entries may name the moved files.
+
+        return count;
+    }
+
+    @Override
+    public boolean containsFile(String fileName)
+    {
+        return this.isPacked(fileName) || super.containsFile(fileName);
+    }
+
+    @Override
+    public URL findFile(String fileName, boolean checkClassPath)
+    {
+        if (this.isPacked(fileName))
+        {
+            FileStoreEvictor evictor = this.getEvictor(this.writeLocation.getFile());
+            if (evictor != null)
+                evictor.recordAccess(normalizeFileStoreName(fileName));
+
+            URL url = this.makePackedUrl(normalizeFileStoreName(fileName));
+            if (url != null)
+                return url;
+        }
+
+        return super.findFile(fileName, checkClassPath);
+    }
+
+    /**
+     * Creates the <code>wwpack:</code> URL of a packed tile.
+     *
+     * @param path the tile's path in the pack store.
+     *
+     * @return the tile's URL, or null if the URL can't be created.
+     */
+    protected URL makePackedUrl(String path)
+    {
+        try
+        {
+            return new URL(PROTOCOL, null, -1, path, this.urlHandler);
+        }
+        catch (MalformedURLException e)
+        {
+            Logging.logger().log(Level.SEVERE, Logging.getMessage("FileStore.ExceptionCreatingURLForFile", path), e);
+            return null;
+        }
+    }
+
+    @Override
+    public File newFile(String fileName)
+    {
+        File file = super.newFile(fileName);
+        if (file == null || this.packStore == null)
+            return file;
+
+        String path = normalizeFileStoreName(fileName);
+        if (!PACKED_PATH_PATTERN.matcher(path).matches())
+            return file;
+
+        try
+        {
+            // The tile is being written again, probably because it expired. Until the new file is packed, it's the
+            // current copy.
+            this.packStore.remove(path);
+            this.forgetLocalUrl(this.makePackedUrl(path));
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.WARNING, Logging.getMessage("TilePackStore.CannotPackFile", path), e);
+        }
+
+        synchronized (this.pendingFiles)
+        {
+            this.pendingFiles.remove(path);
+            this.pendingFiles.put(path, file);
+            this.startPacking();
+        }
+
+        return file;
+    }
+
+    @Override
+    public void removeFile(URL url)
+    {
+        if (url == null || !PROTOCOL.equals(url.getProtocol()))
+        {
+            super.removeFile(url);
+            return;
+        }
+
+        try
+        {
+            this.packStore.remove(url.getPath());
+            this.forgetLocalUrl(url);
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.SEVERE, Logging.getMessage("FileStore.ExceptionRemovingFile", url.toString()),
+                e);
+        }
+    }
+
+    @Override
+    protected void fileEvicted(String path, File file)
+    {
+        if (file != null)
+            super.fileEvicted(path, file);
+        else
+            this.forgetLocalUrl(this.makePackedUrl(path));
+    }
+
+    /**
+     * Changes the modification time of a packed file.
+     *
+     * @param url          the file's URL.
+     * @param lastModified the file's new modification time, in milliseconds since the Epoch.
+     *
+     * @return true if the file is packed and its modification time was changed, otherwise false.
+     *
+     * @throws IllegalArgumentException if the URL is null.
+     */
+    public boolean setPackedLastModified(URL url, long lastModified)
+    {
+        if (url == null)
+        {
+            String message = Logging.getMessage("nullValue.URLIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (!PROTOCOL.equals(url.getProtocol()) || this.packStore == null)
+            return false;
+
+        try
+        {
+            return this.packStore.setLastModified(url.getPath(), lastModified);
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.WARNING, Logging.getMessage("TilePackStore.CannotPackFile", url.getPath()), e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the bytes of a packed tile without copying them.
+     *
+     * @param url the tile's URL.
+     *
+     * @return a read-only buffer holding the tile's bytes, or null if the URL is not a <code>wwpack:</code> URL or the
+     *         tile is no longer in the pack store.
+     *
+     * @throws IllegalArgumentException if the URL is null.
+     */
+    public static ByteBuffer getPackedBuffer(URL url)
+    {
+        if (url == null)
+        {
+            String message = Logging.getMessage("nullValue.URLIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (!PROTOCOL.equals(url.getProtocol()))
+            return null;
+
+        try
+        {
+            URLConnection connection = url.openConnection();
+            return connection instanceof PackURLConnection ? ((PackURLConnection) connection).getBuffer() : null;
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    protected boolean isPacked(String fileName)
+    {
+        return this.packStore != null && fileName != null
+            && this.packStore.contains(normalizeFileStoreName(fileName));
+    }
+
+    /** Starts the thread that packs written tiles, unless it's running. Called with the pending files locked. */
+    protected void startPacking()
+    {
+        if (this.packThread != null)
+            return;
+
+        this.packThread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                packPendingFiles();
+            }
+        });
+        this.packThread.setName("World Wind Tile Packer");
+        this.packThread.setDaemon(true);
+        this.packThread.setPriority(Thread.MIN_PRIORITY);
+        this.packThread.start();
+    }
+
+    /** Packs written tiles once they're old enough, until there are none left. */
+    protected void packPendingFiles()
+    {
+        while (true)
+        {
+            Map.Entry<String, File> next;
+            synchronized (this.pendingFiles)
+            {
+                if (this.pendingFiles.isEmpty())
+                {
+                    this.packThread = null;
+                    return;
+                }
+
+                next = this.pendingFiles.entrySet().iterator().next();
+            }
+
+            long wait = PACK_DELAY - (System.currentTimeMillis() - next.getValue().lastModified());
+            if (next.getValue().exists() && wait > 0)
+            {
+                try
+                {
+                    Thread.sleep(wait);
+                }
+                catch (InterruptedException e)
+                {
+                    synchronized (this.pendingFiles)
+                    {
+                        this.packThread = null;
+                    }
+                    return;
+                }
+                continue; // The file may have been written again while waiting.
+            }
+
+            synchronized (this.pendingFiles)
+            {
+                // Pack only if the file wasn't rewritten while waiting; otherwise it's back at the end of the queue.
+                if (this.pendingFiles.get(next.getKey()) != next.getValue())
+                    continue;
+                this.pendingFiles.remove(next.getKey());
+            }
+
+            if (this.packStore.packFile(next.getKey(), next.getValue(), PACK_DELAY))
+                super.fileEvicted(next.getKey(), next.getValue()); // The file's URL no longer names the tile.
+        }
+    }
+
+    protected class PackURLStreamHandler extends URLStreamHandler
+    {
+        @Override
+        protected URLConnection openConnection(URL url) throws IOException
+        {
+            return new PackURLConnection(url);
+        }
+    }
+
+    /** A connection to a packed tile, reading the tile's bytes from the mapped pack. */
+    protected class PackURLConnection extends URLConnection
+    {
+        protected ByteBuffer buffer;
+
+        public PackURLConnection(URL url)
+        {
+            super(url);
+        }
+
+        @Override
+        public void connect() throws IOException
+        {
+            if (this.connected)
+                return;
+
+            this.buffer = packStore.getBuffer(this.url.getPath());
+            if (this.buffer == null)
+                throw new FileNotFoundException(this.url.toString());
+
+            this.connected = true;
+        }
+
+        public ByteBuffer getBuffer() throws IOException
+        {
+            this.connect();
+            return this.buffer;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException
+        {
+            final ByteBuffer bytes = this.getBuffer().duplicate();
+
+            return new InputStream()
+            {
+                @Override
+                public int read()
+                {
+                    return bytes.hasRemaining() ? bytes.get() & 0xff : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len)
+                {
+                    if (len == 0)
+                        return 0;
+                    if (!bytes.hasRemaining())
+                        return -1;
+
+                    len = Math.min(len, bytes.remaining());
+                    bytes.get(b, off, len);
+                    return len;
+                }
+
+                @Override
+                public int available()
+                {
+                    return bytes.remaining();
+                }
+            };
+        }
+
+        @Override
+        public int getContentLength()
+        {
+            try
+            {
+                return this.getBuffer().remaining();
+            }
+            catch (IOException e)
+            {
+                return -1;
+            }
+        }
+
+        @Override
+        public String getContentType()
+        {
+            return WWIO.makeMimeTypeForSuffix(WWIO.getSuffix(this.url.getPath()));
+        }
+
+        @Override
+        public long getLastModified()
+        {
+            return packStore.getLastModified(this.url.getPath());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+/**
+ * A {@link ConcurrentMemoryCache} that admits entries with a {@link TinyLFUAdmissionPolicy}. Tiles that are used once,
+ * as during a fast pan across the globe or a bulk retrieval, stay in the small admission window and do not displace
+ * the tiles revisited every frame. Select it for the memory caches created by {@link MemoryCacheSet#createCache(long,
+ * long)} by setting the configuration property {@link gov.nasa.worldwind.avlist.AVKey#MEMORY_CACHE_CLASS_NAME} to
+ * this class name.
+ */
+public class ScanResistantMemoryCache extends ConcurrentMemoryCache
+{
+    /**
+     * Constructs a new cache using <code>capacity</code> for maximum size, and <code>loWater</code> for the low water.
+     * The low water level is retained but not used while the admission policy is set.
+     *
+     * @param loWater  the low water level.
+     * @param capacity the maximum capacity.
+     */
+    public ScanResistantMemoryCache(long loWater, long capacity)
+    {
+        super(loWater, capacity);
+
+        this.setAdmissionPolicy(new TinyLFUAdmissionPolicy());
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.exception.WWRuntimeException;
+import gov.nasa.worldwind.util.Logging;
+
+import java.lang.ref.*;
+import java.nio.ByteBuffer;
+import java.security.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares decoded tile data among tiles whose files have identical bytes. Many tiles of an image or elevation pyramid
+ * are byte-for-byte the same, such as tiles of open ocean, of missing data or of a solid fill. A layer or elevation
+ * model computes the {@link ContentKey} of a tile's bytes before decoding them, and asks this cache for data already
+ * decoded from the same bytes; only the first tile with those bytes decodes them, and every other tile holds the same
+ * instance.
+ * <p/>
+ * The cache holds its values weakly, so a value stays shared only while some tile, typically in a memory cache, still
+ * refers to it. The cache therefore needs no capacity of its own. Keys identify content by its MD5 digest and length,
+ * and include a description of how the bytes were decoded, so data decoded with different parameters is never
+ * shared.
+ * <p/>
+ * Shared values must not be modified by the tiles holding them.
+ */
+public class SharedContentCache
+{
+    /** Identifies decoded content by its bytes and by the parameters it was decoded with. */
+    public static class ContentKey
+    {
+        protected final long digestHigh;
+        protected final long digestLow;
+        protected final int length;
+        protected final Object decoding;
+
+        protected ContentKey(long digestHigh, long digestLow, int length, Object decoding)
+        {
+            this.digestHigh = digestHigh;
+            this.digestLow = digestLow;
+            this.length = length;
+            this.decoding = decoding;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+                return true;
+            if (o == null || this.getClass() != o.getClass())
+                return false;
+
+            ContentKey that = (ContentKey) o;
+            return this.digestHigh == that.digestHigh && this.digestLow == that.digestLow
+                && this.length == that.length
+                && (this.decoding != null ? this.decoding.equals(that.decoding) : that.decoding == null);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = (int) (this.digestLow ^ (this.digestLow >>> 32));
+            result = 31 * result + this.length;
+            result = 31 * result + (this.decoding != null ? this.decoding.hashCode() : 0);
+            return result;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%016x%016x:%d:%s", this.digestHigh, this.digestLow, this.length, this.decoding);
+        }
+    }
+
+    protected static class ValueReference extends WeakReference<Object>
+    {
+        protected final ContentKey key;
+
+        protected ValueReference(ContentKey key, Object value, ReferenceQueue<Object> queue)
+        {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+
+    protected static SharedContentCache tileContentCache;
+    protected static boolean tileContentCacheInitialized;
+
+    /**
+     * Returns the cache shared by the tiled image layers and elevation models, creating it on first use.
+     *
+     * @return the shared tile content cache, or null if the configuration value {@link
+     *         AVKey#TILE_CONTENT_SHARING_ENABLED} is false.
+     */
+    public static synchronized SharedContentCache getTileContentCache()
+    {
+        if (!tileContentCacheInitialized)
+        {
+            tileContentCacheInitialized = true;
+
+            if (Configuration.getBooleanValue(AVKey.TILE_CONTENT_SHARING_ENABLED, false))
+                tileContentCache = new SharedContentCache();
+        }
+
+        return tileContentCache;
+    }
+
+    /**
+     * Computes the key of decoded content.
+     *
+     * @param content  the undecoded bytes, from the buffer's position to its limit. The buffer's position is not
+     *                 changed.
+     * @param decoding a description of how the bytes are decoded, such as the data type and byte order of elevations.
+     *                 Content decoded with unequal descriptions is never shared. May be null.
+     *
+     * @return the content's key.
+     *
+     * @throws IllegalArgumentException if the content is null.
+     */
+    public static ContentKey keyFor(ByteBuffer content, Object decoding)
+    {
+        if (content == null)
+        {
+            String message = Logging.getMessage("nullValue.ByteBufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("MD5");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new WWRuntimeException(e); // Every Java platform provides MD5.
+        }
+
+        digest.update(content.duplicate());
+        ByteBuffer bytes = ByteBuffer.wrap(digest.digest());
+
+        return new ContentKey(bytes.getLong(), bytes.getLong(), content.remaining(), decoding);
+    }
+
+    protected final ConcurrentHashMap<ContentKey, ValueReference> values =
+        new ConcurrentHashMap<ContentKey, ValueReference>();
+    protected final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+    protected final AtomicLong hitCount = new AtomicLong();
+    protected final AtomicLong missCount = new AtomicLong();
+
+    /** Creates an empty cache. */
+    public SharedContentCache()
+    {
+    }
+
+    /** @return the number of values the cache currently shares. */
+    public int getSize()
+    {
+        this.expungeCollectedValues();
+        return this.values.size();
+    }
+
+    /** @return the number of times {@link #get(ContentKey)} has returned a shared value. */
+    public long getHitCount()
+    {
+        return this.hitCount.get();
+    }
+
+    /** @return the number of times {@link #get(ContentKey)} has found no shared value. */
+    public long getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    /**
+     * Returns the value decoded from the content identified by a key, if some tile still holds it.
+     *
+     * @param key the content's key.
+     *
+     * @return the shared value, or null if there is none.
+     *
+     * @throws IllegalArgumentException if the key is null.
+     */
+    public Object get(ContentKey key)
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.expungeCollectedValues();
+
+        ValueReference ref = this.values.get(key);
+        Object value = ref != null ? ref.get() : null;
+
+        if (value != null)
+            this.hitCount.incrementAndGet();
+        else
+            this.missCount.incrementAndGet();
+
+        return value;
+    }
+
+    /**
+     * Shares a value decoded from the content identified by a key. If another thread has shared a value for the same
+     * key in the meantime, that value is kept and returned, so that all callers hold the same instance.
+     *
+     * @param key   the content's key.
+     * @param value the decoded value.
+     *
+     * @return the value to use: the shared value for the key.
+     *
+     * @throws IllegalArgumentException if the key or value is null.
+     */
+    public Object put(ContentKey key, Object value)
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (value == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.expungeCollectedValues();
+
+        ValueReference newRef = new ValueReference(key, value, this.queue);
+        while (true)
+        {
+            ValueReference oldRef = this.values.putIfAbsent(key, newRef);
+            if (oldRef == null)
+                return value;
+
+            Object oldValue = oldRef.get();
+            if (oldValue != null)
+                return oldValue;
+
+            // The previous value has been collected but not yet expunged; replace it.
+            if (this.values.replace(key, oldRef, newRef))
+                return value;
+        }
+    }
+
+    /** Removes all values from the cache. Tiles already holding a shared value keep it. */
+    public void clear()
+    {
+        this.values.clear();
+    }
+
+    /** Removes the keys of values that have been garbage collected. */
+    protected void expungeCollectedValues()
+    {
+        Reference<?> ref;
+        while ((ref = this.queue.poll()) != null)
+        {
+            ValueReference valueRef = (ValueReference) ref;
+            this.values.remove(valueRef.key, valueRef);
+        }
+    }
+}
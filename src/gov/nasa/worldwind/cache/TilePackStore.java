@@ -0,0 +1,1116 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.exception.WWRuntimeException;
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+/**
+ * Stores many small files, such as image and elevation tiles, in a few large pack files. Files are appended to the
+ * current pack file, and a hash index maps each file's path to its place in a pack. Reads return read-only slices of a
+ * memory-mapped pack, so a file's bytes are never copied onto the heap.
+ * <p/>
+ * Each record in a pack holds the file's path, its modification time, a hash of its contents and its bytes. Files with
+ * identical contents, such as tiles of open ocean or of missing data, are stored once: adding a file whose bytes match
+ * a stored file's appends a record that refers to the stored bytes rather than a copy of them. The index is rebuilt
+ * from the records when the store is opened, so the packs are the only state and cannot disagree with an index.
+ * Removing a file appends a removal record. A record left incomplete when the application stopped is discarded when
+ * the store is opened. Replaced and removed files leave dead space in the packs once no other file shares their bytes;
+ * {@link #getDeadBytes()} reports how much, and {@link #compact()} reclaims it. A compaction interrupted after its new
+ * packs were written is finished when the store is next opened.
+ * <p/>
+ * The pack being appended to is mapped with room to grow, so that it is mapped again only as often as its mapping
+ * doubles. The unused end of the file is removed when the store is closed, or when it is opened after the application
+ * stopped without closing it.
+ * <p/>
+ * {@link #packDirectory(File, Pattern, long)} moves the files of an existing cache directory into the store, and {@link
+ * #main(String[])} does so from the command line.
+ *
+ * @see PackFileStore
+ */
+public class TilePackStore
+{
+    /** The default largest size of a pack file. */
+    public static final long DEFAULT_MAX_PACK_SIZE = 1L << 29;
+    /**
+     * Matches the paths of the tiles written by tiled image layers and elevation models:
+     * <code>dataset/level/row/row_column.suffix</code>.
+     */
+    public static final Pattern TILE_PATH_PATTERN = Pattern.compile(
+        ".*/\\d+/\\d+/\\d+_\\d+\\.(dds|png|jpg|jpeg|gif|bil)", Pattern.CASE_INSENSITIVE);
+    /**
+     * Matches the paths of tile sidecar files, which are named by appending a suffix to a tile's path, such as the
+     * tile's cache validators. The first group is the path of the tile.
+     */
+    public static final Pattern SIDECAR_PATH_PATTERN = Pattern.compile(
+        "(" + TILE_PATH_PATTERN.pattern() + ")\\.[^/]+", Pattern.CASE_INSENSITIVE);
+
+    protected static final String PACK_PREFIX = "pack-";
+    protected static final String PACK_SUFFIX = ".wwp";
+    protected static final String COMPACT_DIRECTORY = "compact";
+    /**
+     * Written to the compaction directory once its packs are complete. Holds the number of new packs. The compaction
+     * is finished, rather than discarded, when the store is opened while this file exists.
+     */
+    protected static final String COMPACT_COMMIT_FILE = "commit";
+    /** The smallest room to grow given to the mapping of a pack being appended to. */
+    protected static final long MIN_MAPPING_HEADROOM = 1L << 20;
+    protected static final int RECORD_MAGIC = 0x5757544C;
+    // Record header: magic, path length, data length, modification time, content hash. The path follows the header,
+    // then the data, or for a reference the pack, offset and length of the shared data.
+    protected static final int RECORD_HEADER_SIZE = 28;
+    protected static final int REMOVAL = -1;
+    protected static final int REFERENCE = -2;
+    protected static final int REFERENCE_SIZE = 16;
+
+    protected static class Pack
+    {
+        protected final File file;
+        protected final RandomAccessFile raf;
+        /** The length of the pack's records. The file may be longer, by the room to grow of its mapping. */
+        protected long size;
+        protected MappedByteBuffer mapped;
+
+        protected Pack(File file) throws IOException
+        {
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.size = this.raf.length();
+        }
+    }
+
+    /** Stored file contents, shared by the entries of all files with those contents. */
+    protected static class Payload
+    {
+        protected final int pack;
+        protected final long dataOffset;
+        protected final int length;
+        protected final long contentHash;
+        protected int references;
+
+        protected Payload(int pack, long dataOffset, int length, long contentHash)
+        {
+            this.pack = pack;
+            this.dataOffset = dataOffset;
+            this.length = length;
+            this.contentHash = contentHash;
+        }
+    }
+
+    protected static class Entry
+    {
+        protected final int pack;
+        protected final long recordOffset;
+        protected final int pathLength;
+        protected final Payload payload;
+        protected final long lastModified;
+
+        protected Entry(int pack, long recordOffset, int pathLength, Payload payload, long lastModified)
+        {
+            this.pack = pack;
+            this.recordOffset = recordOffset;
+            this.pathLength = pathLength;
+            this.payload = payload;
+            this.lastModified = lastModified;
+        }
+    }
+
+    protected final File directory;
+    protected final long maxPackSize;
+    protected final List<Pack> packs = new ArrayList<Pack>();
+    // Keyed by a 64-bit hash of the path. The path is kept in the record and checked on every read.
+    protected final Map<Long, Entry> entries = new HashMap<Long, Entry>();
+    // Keyed by a 64-bit hash of the contents. The contents are compared before they're shared.
+    protected final Map<Long, Payload> payloads = new HashMap<Long, Payload>();
+    protected int payloadCount;
+    protected long liveBytes;
+    protected long deadBytes;
+    // The files put or removed while a compaction copies the store, or null if no compaction is under way.
+    protected Set<String> changedPaths;
+    protected boolean readOnly; // set when a compaction's packs cannot replace the old ones
+
+    /**
+     * Opens the pack files in a directory, creating the directory if necessary.
+     *
+     * @param directory   the directory holding the pack files.
+     * @param maxPackSize the size at which a pack file is closed to new records and a new one started. Must be less
+     *                    than 2 GB, the largest file that can be mapped.
+     *
+     * @throws IllegalArgumentException if the directory is null or the pack size is out of range.
+     * @throws WWRuntimeException       if the pack files cannot be opened.
+     */
+    public TilePackStore(File directory, long maxPackSize)
+    {
+        if (directory == null)
+        {
+            String message = Logging.getMessage("nullValue.FileStorePathIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (maxPackSize <= RECORD_HEADER_SIZE || maxPackSize > Integer.MAX_VALUE)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "maxPackSize=" + maxPackSize);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.directory = directory;
+        this.maxPackSize = maxPackSize;
+
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+        this.openPacks();
+    }
+
+    /** @return the directory holding the pack files. */
+    public File getDirectory()
+    {
+        return this.directory;
+    }
+
+    /** @return the number of files in the store. */
+    public synchronized int getEntryCount()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * @return the number of files in the store whose contents are shared with another file, and so take no space of
+     *         their own.
+     */
+    public synchronized int getDuplicateCount()
+    {
+        return this.entries.size() - this.payloadCount;
+    }
+
+    /** @return the total size of the distinct file contents in the store, in bytes. */
+    public synchronized long getLiveBytes()
+    {
+        return this.liveBytes;
+    }
+
+    /** @return the number of bytes in the pack files taken by files that have since been replaced or removed. */
+    public synchronized long getDeadBytes()
+    {
+        return this.deadBytes;
+    }
+
+    /** @return the paths of the files in the store. */
+    public synchronized List<String> getPaths()
+    {
+        List<String> paths = new ArrayList<String>(this.entries.size());
+        for (Entry entry : this.entries.values())
+        {
+            paths.add(this.readPath(entry));
+        }
+
+        return paths;
+    }
+
+    /**
+     * Returns the size of a file in the store.
+     *
+     * @param path the file's path, with forward slashes and no leading separator.
+     *
+     * @return the file's size in bytes, or zero if the store does not hold the file.
+     */
+    public synchronized long getSize(String path)
+    {
+        Entry entry = path != null ? this.findEntry(path) : null;
+        return entry != null ? entry.payload.length : 0;
+    }
+
+    /**
+     * Returns the space a file in the store takes: its size divided among all the files that share its contents.
+     * Summed over all files, this is the store's {@link #getLiveBytes()}.
+     *
+     * @param path the file's path, with forward slashes and no leading separator.
+     *
+     * @return the file's share of the store's space in bytes, or zero if the store does not hold the file.
+     */
+    public synchronized long getStoredSize(String path)
+    {
+        Entry entry = path != null ? this.findEntry(path) : null;
+        return entry != null ? entry.payload.length / Math.max(entry.payload.references, 1) : 0;
+    }
+
+    /**
+     * Indicates whether the store holds a file.
+     *
+     * @param path the file's path, with forward slashes and no leading separator.
+     *
+     * @return true if the store holds the file.
+     */
+    public synchronized boolean contains(String path)
+    {
+        return path != null && this.findEntry(path) != null;
+    }
+
+    /**
+     * Returns the modification time of a file in the store.
+     *
+     * @param path the file's path, with forward slashes and no leading separator.
+     *
+     * @return the file's modification time, or zero if the store does not hold the file.
+     */
+    public synchronized long getLastModified(String path)
+    {
+        Entry entry = path != null ? this.findEntry(path) : null;
+        return entry != null ? entry.lastModified : 0;
+    }
+
+    /**
+     * Changes the modification time of a file in the store. The new record shares the file's stored bytes.
+     *
+     * @param path         the file's path, with forward slashes and no leading separator.
+     * @param lastModified the file's new modification time.
+     *
+     * @return true if the store holds the file, otherwise false.
+     *
+     * @throws IOException if the change cannot be written.
+     */
+    public synchronized boolean setLastModified(String path, long lastModified) throws IOException
+    {
+        ByteBuffer data = path != null ? this.getBuffer(path) : null;
+        if (data == null)
+            return false;
+
+        this.put(path, data, lastModified);
+        return true;
+    }
+
+    /**
+     * Returns the bytes of a file in the store, without copying them.
+     *
+     * @param path the file's path, with forward slashes and no leading separator.
+     *
+     * @return a read-only buffer holding the file's bytes, positioned at zero, or null if the store does not hold the
+     *         file. The buffer remains valid after the file is replaced or removed.
+     */
+    public synchronized ByteBuffer getBuffer(String path)
+    {
+        Entry entry = path != null ? this.findEntry(path) : null;
+        if (entry == null)
+            return null;
+
+        return this.payloadBuffer(entry.payload).asReadOnlyBuffer();
+    }
+
+    /**
+     * Adds a file to the store, replacing any file with the same path. If the store already holds a file with the same
+     * contents, the new file shares them rather than storing another copy.
+     *
+     * @param path         the file's path, with forward slashes and no leading separator.
+     * @param data         the file's bytes, from the buffer's position to its limit. The buffer's position is not
+     *                     changed.
+     * @param lastModified the file's modification time.
+     *
+     * @throws IllegalArgumentException if the path or data is null, or the data is too large for a pack file.
+     * @throws IOException              if the data cannot be written.
+     */
+    public synchronized void put(String path, ByteBuffer data, long lastModified) throws IOException
+    {
+        if (path == null)
+        {
+            String message = Logging.getMessage("nullValue.PathIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (data == null)
+        {
+            String message = Logging.getMessage("nullValue.ByteBufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.checkWritable();
+
+        byte[] pathBytes = path.getBytes("UTF-8");
+        if (RECORD_HEADER_SIZE + pathBytes.length + (long) data.remaining() > this.maxPackSize)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "data.remaining=" + data.remaining());
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        long contentHash = contentHash(data);
+        Payload payload = this.findPayload(contentHash, data);
+        Pack pack;
+        long offset;
+
+        if (payload != null)
+        {
+            ByteBuffer reference = ByteBuffer.allocate(REFERENCE_SIZE);
+            reference.putInt(payload.pack).putLong(payload.dataOffset).putInt(payload.length);
+            reference.flip();
+
+            pack = this.packForRecord(RECORD_HEADER_SIZE + pathBytes.length + REFERENCE_SIZE);
+            offset = pack.size;
+            this.appendRecord(pack, this.makeHeader(pathBytes, REFERENCE, lastModified, contentHash), reference);
+        }
+        else
+        {
+            pack = this.packForRecord(RECORD_HEADER_SIZE + pathBytes.length + (long) data.remaining());
+            offset = pack.size;
+            this.appendRecord(pack, this.makeHeader(pathBytes, data.remaining(), lastModified, contentHash),
+                data.duplicate());
+            payload = new Payload(this.packs.indexOf(pack), offset + RECORD_HEADER_SIZE + pathBytes.length,
+                data.remaining(), contentHash);
+        }
+
+        this.index(FileStoreIndex.hash(path),
+            new Entry(this.packs.indexOf(pack), offset, pathBytes.length, payload, lastModified));
+
+        if (this.changedPaths != null)
+            this.changedPaths.add(path);
+    }
+
+    /**
+     * Removes a file from the store.
+     *
+     * @param path the file's path, with forward slashes and no leading separator.
+     *
+     * @throws IOException if the removal cannot be recorded.
+     */
+    public synchronized void remove(String path) throws IOException
+    {
+        if (path == null || this.findEntry(path) == null)
+            return;
+
+        this.checkWritable();
+
+        byte[] pathBytes = path.getBytes("UTF-8");
+        Pack pack = this.packForRecord(RECORD_HEADER_SIZE + pathBytes.length);
+        this.appendRecord(pack, this.makeHeader(pathBytes, REMOVAL, 0, 0), null);
+        this.index(FileStoreIndex.hash(path), null);
+
+        if (this.changedPaths != null)
+            this.changedPaths.add(path);
+    }
+
+    protected void checkWritable() throws IOException
+    {
+        if (this.readOnly)
+        {
+            String message = Logging.getMessage("TilePackStore.StoreIsReadOnly", this.directory.getPath());
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+    }
+
+    /**
+     * Moves files from a directory into the store. Each file's path in the store is its path relative to the
+     * directory. A file is deleted once it is stored; one that cannot be deleted, for example because it is open, is
+     * left in place and moved again on a later call.
+     *
+     * @param root    the directory to walk.
+     * @param pattern the pattern that the paths of the files to move must match. May be null to move all files.
+     * @param minAge  the time, in milliseconds, since a file was last modified before it is moved. Use this to avoid
+     *                moving files that are still being written.
+     *
+     * @return the number of files moved.
+     *
+     * @throws IllegalArgumentException if the directory is null.
+     */
+    public int packDirectory(File root, Pattern pattern, long minAge)
+    {
+        if (root == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        String rootPath = root.getAbsolutePath();
+        ArrayDeque<File> dirs = new ArrayDeque<File>();
+        dirs.push(root);
+        int count = 0;
+
+        while (!dirs.isEmpty())
+        {
+            File[] files = dirs.pop().listFiles();
+            if (files == null)
+                continue;
+
+            for (File file : files)
+            {
+                if (file.isDirectory())
+                {
+                    if (!file.equals(this.directory))
+                        dirs.push(file);
+                    continue;
+                }
+
+                String path = AbstractFileStore.normalizeFileStoreName(
+                    file.getAbsolutePath().substring(rootPath.length()));
+                if (pattern != null && !pattern.matcher(path).matches())
+                    continue;
+
+                if (this.packFile(path, file, minAge))
+                    count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Moves one file into the store, and deletes the file.
+     *
+     * @param path   the file's path in the store.
+     * @param file   the file to move.
+     * @param minAge the time, in milliseconds, since the file was last modified before it is moved.
+     *
+     * @return true if the file was moved, false if it's too recent, is missing or cannot be read.
+     */
+    public boolean packFile(String path, File file, long minAge)
+    {
+        long lastModified = file.lastModified();
+        if (lastModified == 0 || System.currentTimeMillis() - lastModified < minAge)
+            return false;
+
+        try
+        {
+            // A file that's already stored with the same modification time only needs deleting.
+            if (this.getLastModified(path) != lastModified)
+                this.put(path, WWIO.readFileToBuffer(file), lastModified);
+
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return true;
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.WARNING, Logging.getMessage("TilePackStore.CannotPackFile", file.getPath()), e);
+            return false;
+        }
+    }
+
+    /**
+     * Rewrites the pack files without the space taken by replaced and removed files, keeping files with identical
+     * contents shared. Buffers returned by {@link #getBuffer(String)} before compaction remain valid.
+     * <p/>
+     * The copy is written without holding the store's lock, so that files can be read and written meanwhile. Files
+     * changed meanwhile are copied again once the lock is held to replace the packs. Only one compaction runs at a
+     * time; a call made while another is under way returns at once.
+     * <p/>
+     * The new packs are written to a subdirectory and committed before any old pack is deleted, so a compaction
+     * interrupted before its commit leaves the old packs in place, and one interrupted after it is finished when the
+     * store is next opened.
+     *
+     * @throws IOException if the new pack files cannot be written, in which case the store is unchanged, or if they
+     *                     cannot replace the old ones, in which case the store holds no files and refuses writes, and
+     *                     the replacement is finished when the store is next opened.
+     */
+    public void compact() throws IOException
+    {
+        List<Entry> liveEntries;
+        ByteBuffer[] mappings;
+        synchronized (this)
+        {
+            if (this.deadBytes == 0 || this.changedPaths != null || this.readOnly)
+                return;
+
+            // The entries and payloads are immutable, and the mappings hold all their records, so they're read
+            // without the lock.
+            liveEntries = new ArrayList<Entry>(this.entries.values());
+            mappings = new ByteBuffer[this.packs.size()];
+            for (int i = 0; i < mappings.length; i++)
+            {
+                mappings[i] = this.mappedPack(i);
+            }
+
+            this.changedPaths = new HashSet<String>();
+        }
+
+        File compactDir = new File(this.directory, COMPACT_DIRECTORY);
+        TilePackStore compacted = null;
+        try
+        {
+            WWIO.deleteDirectory(compactDir);
+            compacted = new TilePackStore(compactDir, this.maxPackSize);
+            for (Entry entry : liveEntries)
+            {
+                ByteBuffer mapping = mappings[entry.pack];
+                compacted.put(readPath(mapping, entry), payloadBuffer(mapping, entry.payload), entry.lastModified);
+            }
+
+            compacted.force();
+
+            synchronized (this)
+            {
+                for (String path : this.changedPaths)
+                {
+                    Entry entry = this.findEntry(path);
+                    if (entry != null)
+                        compacted.put(path, this.payloadBuffer(entry.payload), entry.lastModified);
+                    else
+                        compacted.remove(path);
+                }
+
+                compacted.force();
+                int numPacks = compacted.packs.size();
+                compacted.close();
+                compacted = null;
+
+                writeCommit(new File(compactDir, COMPACT_COMMIT_FILE), numPacks);
+                this.replacePacks(compactDir, numPacks);
+            }
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                this.changedPaths = null;
+            }
+
+            if (compacted != null)
+                compacted.close();
+        }
+    }
+
+    /**
+     * Replaces the store's packs with those of a committed compaction, and opens them. A replacement that fails is
+     * tried again as the packs are opened. If that fails too, the store is left holding no files and refusing writes,
+     * rather than holding a mix of old and new packs, and the replacement is finished when the store is next opened.
+     *
+     * @throws IOException if the new packs cannot replace the old ones.
+     */
+    protected void replacePacks(File compactDir, int numPacks) throws IOException
+    {
+        this.close();
+        this.payloadCount = 0;
+        this.liveBytes = 0;
+        this.deadBytes = 0;
+
+        try
+        {
+            this.finishCompaction(compactDir, numPacks);
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.WARNING, Logging.getMessage("TilePackStore.CannotOpenPack",
+                compactDir.getPath()), e);
+        }
+
+        try
+        {
+            this.openPacks(); // Finishes the replacement if it failed above.
+        }
+        catch (WWRuntimeException e)
+        {
+            this.close();
+            this.readOnly = true;
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /** Closes the pack files. The store cannot be used afterwards. */
+    public synchronized void close()
+    {
+        for (Pack pack : this.packs)
+        {
+            this.trim(pack);
+            WWIO.closeStream(pack.raf, pack.file.getPath());
+            pack.mapped = null;
+        }
+
+        this.packs.clear();
+        this.entries.clear();
+        this.payloads.clear();
+    }
+
+    /** Writes the packs' records to the storage device. */
+    protected void force() throws IOException
+    {
+        for (Pack pack : this.packs)
+        {
+            this.trim(pack);
+            pack.raf.getChannel().force(true);
+        }
+    }
+
+    /** Removes the room to grow from the end of a pack file, if the platform allows it while the pack is mapped. */
+    protected void trim(Pack pack)
+    {
+        try
+        {
+            if (pack.raf.length() > pack.size)
+                pack.raf.getChannel().truncate(pack.size);
+        }
+        catch (IOException e)
+        {
+            // The pack is trimmed when it's next opened.
+            Logging.logger().log(Level.FINE, Logging.getMessage("TilePackStore.CannotOpenPack", pack.file.getPath()),
+                e);
+        }
+    }
+
+    /**
+     * Replaces the packs in the store's directory with those of a committed compaction, then deletes the compaction
+     * directory. Packs already moved by an interrupted call are not moved again, so this may be repeated until it
+     * succeeds.
+     */
+    protected void finishCompaction(File compactDir, int numPacks) throws IOException
+    {
+        // Delete the old packs that no new pack replaces, then move each new pack over the old pack of the same name.
+        File[] files = this.directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                if (isPackFile(file) && packNumber(file) >= numPacks)
+                    delete(file);
+            }
+        }
+
+        for (int i = 0; i < numPacks; i++)
+        {
+            File source = new File(compactDir, packName(i));
+            if (!source.exists())
+                continue; // Moved by an earlier attempt.
+
+            File target = new File(this.directory, packName(i));
+            if (target.exists())
+                delete(target);
+
+            if (!source.renameTo(target))
+            {
+                String message = Logging.getMessage("generic.CannotMoveFile", source.getPath(), target.getPath());
+                Logging.logger().severe(message);
+                throw new IOException(message);
+            }
+        }
+
+        delete(new File(compactDir, COMPACT_COMMIT_FILE));
+        WWIO.deleteDirectory(compactDir);
+        delete(compactDir);
+    }
+
+    protected void openPacks()
+    {
+        File compactDir = new File(this.directory, COMPACT_DIRECTORY);
+        if (compactDir.exists())
+        {
+            try
+            {
+                File commit = new File(compactDir, COMPACT_COMMIT_FILE);
+                if (commit.exists())
+                {
+                    this.finishCompaction(compactDir, readCommit(commit));
+                }
+                else
+                {
+                    // The compaction was interrupted before its packs were complete. The old packs are intact.
+                    WWIO.deleteDirectory(compactDir);
+                    delete(compactDir);
+                }
+            }
+            catch (IOException e)
+            {
+                String message = Logging.getMessage("TilePackStore.CannotOpenPack", compactDir.getPath());
+                Logging.logger().log(Level.SEVERE, message, e);
+                throw new WWRuntimeException(message, e);
+            }
+        }
+
+        File[] files = this.directory.listFiles();
+        if (files != null)
+        {
+            Arrays.sort(files);
+            for (File file : files)
+            {
+                if (isPackFile(file))
+                    this.openPack(file);
+            }
+        }
+    }
+
+    protected static String packName(int number)
+    {
+        return String.format("%s%05d%s", PACK_PREFIX, number, PACK_SUFFIX);
+    }
+
+    protected static boolean isPackFile(File file)
+    {
+        return file.getName().startsWith(PACK_PREFIX) && file.getName().endsWith(PACK_SUFFIX);
+    }
+
+    /** Returns the number in a pack file's name, or -1 if it has none. */
+    protected static int packNumber(File file)
+    {
+        String name = file.getName();
+        try
+        {
+            return Integer.parseInt(name.substring(PACK_PREFIX.length(), name.length() - PACK_SUFFIX.length()));
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    protected static void delete(File file) throws IOException
+    {
+        if (file.exists() && !file.delete())
+        {
+            String message = Logging.getMessage("generic.CannotDeleteFile", file.getPath());
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+    }
+
+    /** Writes a commit file. It's written under another name and renamed, so it's never seen incomplete. */
+    protected static void writeCommit(File file, int numPacks) throws IOException
+    {
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try
+        {
+            new DataOutputStream(out).writeInt(numPacks);
+            out.getFD().sync();
+        }
+        finally
+        {
+            WWIO.closeStream(out, tempFile.getPath());
+        }
+
+        if (!tempFile.renameTo(file))
+        {
+            String message = Logging.getMessage("generic.CannotMoveFile", tempFile.getPath(), file.getPath());
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+    }
+
+    protected static int readCommit(File file) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try
+        {
+            return in.readInt();
+        }
+        finally
+        {
+            WWIO.closeStream(in, file.getPath());
+        }
+    }
+
+    protected String readPath(Entry entry)
+    {
+        return readPath(this.mappedPack(entry.pack), entry);
+    }
+
+    protected static String readPath(ByteBuffer buffer, Entry entry)
+    {
+        byte[] pathBytes = new byte[entry.pathLength];
+        for (int i = 0; i < pathBytes.length; i++)
+        {
+            pathBytes[i] = buffer.get((int) entry.recordOffset + RECORD_HEADER_SIZE + i);
+        }
+
+        try
+        {
+            return new String(pathBytes, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            return null; // UTF-8 is always supported.
+        }
+    }
+
+    protected Entry findEntry(String path)
+    {
+        Entry entry = this.entries.get(FileStoreIndex.hash(path));
+        if (entry == null)
+            return null;
+
+        // Confirm that the record is for this path and not another with the same hash.
+        try
+        {
+            byte[] pathBytes = path.getBytes("UTF-8");
+            if (pathBytes.length != entry.pathLength)
+                return null;
+
+            ByteBuffer buffer = this.mappedPack(entry.pack);
+            int offset = (int) entry.recordOffset + RECORD_HEADER_SIZE;
+            for (int i = 0; i < pathBytes.length; i++)
+            {
+                if (buffer.get(offset + i) != pathBytes[i])
+                    return null;
+            }
+
+            return entry;
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            return null; // UTF-8 is always supported.
+        }
+    }
+
+    protected void index(long hash, Entry entry)
+    {
+        // Add the new reference before releasing the old, so that replacing a file with the same contents keeps them.
+        if (entry != null)
+            this.addReference(entry.payload);
+
+        Entry old = entry != null ? this.entries.put(hash, entry) : this.entries.remove(hash);
+        if (old != null)
+            this.releaseReference(old.payload);
+    }
+
+    protected void addReference(Payload payload)
+    {
+        if (payload.references++ > 0)
+            return;
+
+        this.payloadCount++;
+        this.liveBytes += payload.length;
+
+        // Contents whose hash matches another's but whose bytes differ are stored, but not shared.
+        if (!this.payloads.containsKey(payload.contentHash))
+            this.payloads.put(payload.contentHash, payload);
+    }
+
+    protected void releaseReference(Payload payload)
+    {
+        if (--payload.references > 0)
+            return;
+
+        this.payloadCount--;
+        this.liveBytes -= payload.length;
+        this.deadBytes += payload.length;
+
+        if (this.payloads.get(payload.contentHash) == payload)
+            this.payloads.remove(payload.contentHash);
+    }
+
+    /** Returns the stored contents equal to some data, or null if the store doesn't hold them. */
+    protected Payload findPayload(long contentHash, ByteBuffer data)
+    {
+        Payload payload = this.payloads.get(contentHash);
+        if (payload == null || payload.length != data.remaining())
+            return null;
+
+        return this.payloadBuffer(payload).equals(data.duplicate()) ? payload : null;
+    }
+
+    protected ByteBuffer payloadBuffer(Payload payload)
+    {
+        return payloadBuffer(this.mappedPack(payload.pack), payload);
+    }
+
+    protected static ByteBuffer payloadBuffer(ByteBuffer mapping, Payload payload)
+    {
+        ByteBuffer buffer = mapping.duplicate();
+        buffer.limit((int) payload.dataOffset + payload.length);
+        buffer.position((int) payload.dataOffset);
+
+        return buffer.slice();
+    }
+
+    protected ByteBuffer makeHeader(byte[] pathBytes, int length, long lastModified, long contentHash)
+    {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE + pathBytes.length);
+        header.putInt(RECORD_MAGIC).putInt(pathBytes.length).putInt(length).putLong(lastModified).putLong(contentHash);
+        header.put(pathBytes);
+        header.flip();
+
+        return header;
+    }
+
+    /** Returns the pack to append a record to, starting a new pack if the current one has no room for the record. */
+    protected Pack packForRecord(long recordSize) throws IOException
+    {
+        Pack pack = this.packs.isEmpty() ? null : this.packs.get(this.packs.size() - 1);
+        if (pack == null || pack.size + recordSize > this.maxPackSize)
+            pack = this.createPack();
+
+        return pack;
+    }
+
+    protected void appendRecord(Pack pack, ByteBuffer header, ByteBuffer body) throws IOException
+    {
+        long recordSize = header.remaining() + (body != null ? body.remaining() : 0);
+
+        FileChannel channel = pack.raf.getChannel();
+        channel.position(pack.size);
+        while (header.hasRemaining())
+        {
+            channel.write(header);
+        }
+        while (body != null && body.hasRemaining())
+        {
+            channel.write(body);
+        }
+        pack.size += recordSize;
+    }
+
+    /** Computes a 64-bit FNV-1a hash of the bytes between a buffer's position and limit. */
+    protected static long contentHash(ByteBuffer data)
+    {
+        long h = 0xcbf29ce484222325L;
+        for (int i = data.position(); i < data.limit(); i++)
+        {
+            h ^= data.get(i) & 0xff;
+            h *= 0x100000001b3L;
+        }
+
+        return h;
+    }
+
+    protected Pack createPack() throws IOException
+    {
+        File file = new File(this.directory, packName(this.packs.size()));
+        Pack pack = new Pack(file);
+        this.packs.add(pack);
+
+        return pack;
+    }
+
+    /**
+     * Returns a mapping of a pack that includes all its records, mapping the pack again if it has grown. A pack is
+     * first mapped as it is. One that has grown since is mapped with at least as much room to grow as it has records,
+     * up to the largest pack size, which extends the file.
+     */
+    protected MappedByteBuffer mappedPack(int index)
+    {
+        Pack pack = this.packs.get(index);
+        if (pack.mapped == null || pack.mapped.capacity() < pack.size)
+        {
+            long length = pack.size;
+            if (pack.mapped != null)
+            {
+                long headroom = Math.max(Math.max(pack.size, pack.mapped.capacity()), MIN_MAPPING_HEADROOM);
+                length = Math.max(pack.size, Math.min(pack.size + headroom, this.maxPackSize));
+            }
+
+            try
+            {
+                pack.mapped = pack.raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            }
+            catch (IOException e)
+            {
+                String message = Logging.getMessage("TilePackStore.CannotOpenPack", pack.file.getPath());
+                Logging.logger().log(Level.SEVERE, message, e);
+                throw new WWRuntimeException(message, e);
+            }
+        }
+
+        return pack.mapped;
+    }
+
+    /** Opens a pack and indexes its records, discarding an incomplete record at its end. */
+    protected void openPack(File file)
+    {
+        try
+        {
+            Pack pack = new Pack(file);
+            this.packs.add(pack);
+            int packIndex = this.packs.size() - 1;
+
+            MappedByteBuffer buffer = this.mappedPack(packIndex);
+            long offset = 0;
+            while (offset + RECORD_HEADER_SIZE <= pack.size)
+            {
+                int position = (int) offset;
+                int pathLength = buffer.getInt(position + 4);
+                int length = buffer.getInt(position + 8);
+                long bodySize = length >= 0 ? length : length == REFERENCE ? REFERENCE_SIZE : 0;
+                long recordSize = RECORD_HEADER_SIZE + (long) pathLength + bodySize;
+                if (buffer.getInt(position) != RECORD_MAGIC || pathLength < 0 || length < REFERENCE
+                    || offset + recordSize > pack.size)
+                    break;
+
+                byte[] pathBytes = new byte[pathLength];
+                for (int i = 0; i < pathLength; i++)
+                {
+                    pathBytes[i] = buffer.get(position + RECORD_HEADER_SIZE + i);
+                }
+                long hash = FileStoreIndex.hash(new String(pathBytes, "UTF-8"));
+
+                long lastModified = buffer.getLong(position + 12);
+                long contentHash = buffer.getLong(position + 20);
+                int bodyPosition = position + RECORD_HEADER_SIZE + pathLength;
+
+                Payload payload = null;
+                if (length >= 0)
+                {
+                    payload = new Payload(packIndex, bodyPosition, length, contentHash);
+                }
+                else if (length == REFERENCE)
+                {
+                    int dataPack = buffer.getInt(bodyPosition);
+                    long dataOffset = buffer.getLong(bodyPosition + 4);
+                    if (dataPack < 0 || dataPack > packIndex || dataOffset < 0)
+                        break;
+
+                    payload = this.payloads.get(contentHash);
+                    if (payload == null || payload.pack != dataPack || payload.dataOffset != dataOffset)
+                        payload = new Payload(dataPack, dataOffset, buffer.getInt(bodyPosition + 12), contentHash);
+                }
+
+                this.index(hash, payload != null ? new Entry(packIndex, offset, pathLength, payload, lastModified)
+                    : null);
+                offset += recordSize;
+            }
+
+            if (offset < pack.size)
+            {
+                // Zeros past the last record are room to grow left by a store that wasn't closed.
+                if (offset + 4 > pack.size || buffer.getInt((int) offset) != 0)
+                    Logging.logger().warning(Logging.getMessage("TilePackStore.TruncatingPack", file.getPath(),
+                        offset));
+                pack.raf.getChannel().truncate(offset);
+                pack.size = offset;
+                pack.mapped = null;
+            }
+        }
+        catch (IOException e)
+        {
+            String message = Logging.getMessage("TilePackStore.CannotOpenPack", file.getPath());
+            Logging.logger().log(Level.SEVERE, message, e);
+            throw new WWRuntimeException(message, e);
+        }
+    }
+
+    /**
+     * Moves the tiles of a file store directory into pack files in that directory's <code>packs</code> subdirectory,
+     * where a {@link PackFileStore} using that directory as its write location finds them.
+     *
+     * @param args the file store directory.
+     */
+    public static void main(String[] args)
+    {
+        if (args.length != 1)
+        {
+            System.out.println("Usage: TilePackStore <file store directory>");
+            return;
+        }
+
+        File root = new File(args[0]);
+        TilePackStore store = new TilePackStore(new File(root, PackFileStore.PACK_DIRECTORY), DEFAULT_MAX_PACK_SIZE);
+        try
+        {
+            int count = store.packDirectory(root, TILE_PATH_PATTERN, 0);
+            System.out.println("Packed " + count + " tiles, " + store.getEntryCount() + " tiles in "
+                + store.getDirectory().getPath());
+        }
+        finally
+        {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A {@link CacheAdmissionPolicy} that admits a candidate only if it has been looked up more often than the entry it
+ * would displace. Access frequencies are estimated with a count-min sketch of four-bit counters, sixteen to a
+ * <code>long</code>, probed at four positions per key. The counters are halved after every sample period of ten lookups
+ * per entry, so the history favours recent popularity over popularity long past.
+ * <p/>
+ * Counter updates use compare-and-set and never block. Under contention an increment may be dropped, which only makes
+ * the estimate slightly less precise.
+ */
+public class TinyLFUAdmissionPolicy implements CacheAdmissionPolicy
+{
+    protected static final long[] SEED = new long[] {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    protected static final long RESET_MASK = 0x7777777777777777L;
+    /** The smallest number of entries the sketch is sized for. */
+    protected static final int MIN_ENTRIES = 64;
+
+    protected volatile AtomicLongArray table;
+    protected volatile int sampleSize;
+    protected final AtomicInteger size = new AtomicInteger();
+
+    /** Constructs a policy sized for a small cache. The sketch grows as the cache reports more entries. */
+    public TinyLFUAdmissionPolicy()
+    {
+        this(MIN_ENTRIES);
+    }
+
+    /**
+     * Constructs a policy sized for the specified number of cache entries.
+     *
+     * @param expectedEntries the number of entries the cache is expected to hold.
+     */
+    public TinyLFUAdmissionPolicy(int expectedEntries)
+    {
+        this.allocate(Math.max(expectedEntries, MIN_ENTRIES));
+    }
+
+    public void recordAccess(Object key)
+    {
+        if (key == null)
+            return;
+
+        AtomicLongArray table = this.table;
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+
+        boolean added = false;
+        for (int i = 0; i < 4; i++)
+        {
+            added |= this.incrementAt(table, this.indexOf(table, hash, i), start + i);
+        }
+
+        if (added && this.size.incrementAndGet() >= this.sampleSize)
+            this.reset();
+    }
+
+    public boolean admit(Object candidateKey, Object victimKey)
+    {
+        return this.frequency(candidateKey) > this.frequency(victimKey);
+    }
+
+    public void ensureCapacity(int numEntries)
+    {
+        // Grow by at least a factor of two, so that resizing, which discards the history, stays rare.
+        if (numEntries > this.table.length())
+        {
+            synchronized (this)
+            {
+                if (numEntries > this.table.length())
+                    this.allocate(2 * numEntries);
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated number of times a key has been looked up during the current sample period, at most 15.
+     *
+     * @param key the key.
+     *
+     * @return the estimated access frequency of the key.
+     */
+    public int frequency(Object key)
+    {
+        if (key == null)
+            return 0;
+
+        AtomicLongArray table = this.table;
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++)
+        {
+            int offset = (start + i) << 2;
+            int count = (int) ((table.get(this.indexOf(table, hash, i)) >>> offset) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+
+        return frequency;
+    }
+
+    protected void allocate(int numEntries)
+    {
+        int length = 1;
+        while (length < numEntries && length < (1 << 30))
+        {
+            length <<= 1;
+        }
+
+        this.sampleSize = (int) Math.min(10L * length, Integer.MAX_VALUE);
+        this.size.set(0);
+        this.table = new AtomicLongArray(length);
+    }
+
+    protected boolean incrementAt(AtomicLongArray table, int index, int counter)
+    {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+
+        long value = table.get(index);
+        if ((value & mask) == mask) // saturated
+            return false;
+
+        return table.compareAndSet(index, value, value + (1L << offset));
+    }
+
+    /** Halves every counter, aging the history. */
+    protected void reset()
+    {
+        synchronized (this)
+        {
+            if (this.size.get() < this.sampleSize) // another thread reset first
+                return;
+
+            AtomicLongArray table = this.table;
+            for (int i = 0; i < table.length(); i++)
+            {
+                table.set(i, (table.get(i) >>> 1) & RESET_MASK);
+            }
+
+            this.size.set(this.size.get() / 2);
+        }
+    }
+
+    protected int indexOf(AtomicLongArray table, int hash, int i)
+    {
+        long h = (hash + SEED[i]) * SEED[i];
+        h += h >>> 32;
+        return ((int) h) & (table.length() - 1);
+    }
+
+    protected static int spread(int x)
+    {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -6,7 +6,7 @@
 
 package gov.nasa.worldwind.event;
 
-import gov.nasa.worldwind.retrieve.BulkRetrievable;
+import gov.nasa.worldwind.retrieve.*;
 
 /**
  * Notifies of bulk retrieval events.
@@ -25,6 +25,8 @@ public class BulkRetrievalEvent extends WWEvent
 
     protected String eventType;
     protected String item;
+    protected double throughput;
+    protected long estimatedTimeRemaining = -1;
 
     /**
      * Creates a new event.
@@ -43,6 +45,28 @@ public class BulkRetrievalEvent extends WWEvent
         this.item = item;
     }
 
+    /**
+     * Creates a new event that also reports the retrieval's throughput and estimated time remaining.
+     *
+     * @param source    the event source, typically either a tiled image layer, elevation model or placename layer.
+     * @param eventType indicates success or failure. One of {@link #RETRIEVAL_SUCCEEDED} or {@link #RETRIEVAL_FAILED}.
+     * @param item      the cache location of the item whose retrieval succeeded or failed.
+     * @param progress  the retrieval's progress, from which the throughput and estimated time remaining are taken when
+     *                  the event is created. May be null.
+     *
+     * @see gov.nasa.worldwind.retrieve.BulkRetrievable
+     */
+    public BulkRetrievalEvent(BulkRetrievable source, String eventType, String item, Progress progress)
+    {
+        this(source, eventType, item);
+
+        if (progress != null)
+        {
+            this.throughput = progress.getThroughput();
+            this.estimatedTimeRemaining = progress.getEstimatedTimeRemaining();
+        }
+    }
+
     /**
      * Returns the event source.
      *
@@ -74,4 +98,24 @@ public class BulkRetrievalEvent extends WWEvent
     {
         return item;
     }
+
+    /**
+     * Returns the retrieval's average throughput when the event was created.
+     *
+     * @return the throughput, in bytes per second, or zero if it's unknown.
+     */
+    public double getThroughput()
+    {
+        return this.throughput;
+    }
+
+    /**
+     * Returns the retrieval's estimated time remaining when the event was created.
+     *
+     * @return the estimated time remaining, in milliseconds, or -1 if it's unknown.
+     */
+    public long getEstimatedTimeRemaining()
+    {
+        return this.estimatedTimeRemaining;
+    }
 }
@@ -304,6 +304,56 @@ public interface ElevationModel extends WWObject, Restorable, Disposable
     double getUnmappedElevations(Sector sector, List<? extends LatLon> latlons, double targetResolution,
         double[] buffer);
 
+    /**
+     * Returns the elevations of a collection of locations specified as parallel arrays of latitudes and longitudes.
+     * This is the same as {@link #getElevations(gov.nasa.worldwind.geom.Sector, java.util.List, double, double[])}
+     * except that it does not require a <code>LatLon</code> for each location, so callers computing many locations,
+     * such as tessellators, need not allocate an object per location.
+     *
+     * @param sector           the sector in question.
+     * @param latitudes        the latitudes of the locations to return elevations for, in degrees.
+     * @param longitudes       the longitudes of the locations to return elevations for, in degrees. Must be the same
+     *                         length as the latitudes.
+     * @param targetResolution the desired horizontal resolution, in radians, of the raster or other elevation sample
+     *                         from which elevations are drawn.
+     * @param buffer           an array in which to place the returned elevations. The array must be pre-allocated and
+     *                         contain at least as many elements as there are locations.
+     *
+     * @return the resolution achieved, in radians, or {@link Double#MAX_VALUE} if individual elevations cannot be
+     *         determined for all of the locations.
+     *
+     * @throws IllegalArgumentException if the sector or any array is null, or if the arrays' lengths differ or the
+     *                                  buffer is too small.
+     * @see #setMissingDataSignal(double)
+     */
+    double getElevations(Sector sector, double[] latitudes, double[] longitudes, double targetResolution,
+        double[] buffer);
+
+    /**
+     * Returns the elevations of a collection of locations specified as parallel arrays of latitudes and longitudes.
+     * <em>Does not</em> replace any elevation values corresponding to the missing data signal with the elevation
+     * model's missing data replacement value. See {@link #getElevations(gov.nasa.worldwind.geom.Sector, double[],
+     * double[], double, double[])}.
+     *
+     * @param sector           the sector in question.
+     * @param latitudes        the latitudes of the locations to return elevations for, in degrees.
+     * @param longitudes       the longitudes of the locations to return elevations for, in degrees. Must be the same
+     *                         length as the latitudes.
+     * @param targetResolution the desired horizontal resolution, in radians, of the raster or other elevation sample
+     *                         from which elevations are drawn.
+     * @param buffer           an array in which to place the returned elevations. The array must be pre-allocated and
+     *                         contain at least as many elements as there are locations.
+     *
+     * @return the resolution achieved, in radians, or {@link Double#MAX_VALUE} if individual elevations cannot be
+     *         determined for all of the locations.
+     *
+     * @throws IllegalArgumentException if the sector or any array is null, or if the arrays' lengths differ or the
+     *                                  buffer is too small.
+     * @see #setMissingDataSignal(double)
+     */
+    double getUnmappedElevations(Sector sector, double[] latitudes, double[] longitudes, double targetResolution,
+        double[] buffer);
+
     /**
      * Returns the elevations of a collection of locations. <em>Does not</em> replace any elevation values corresponding
      * to the missing data signal with the elevation model's missing data replacement value. If a location within the
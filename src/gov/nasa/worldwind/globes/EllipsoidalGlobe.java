@@ -13,6 +13,7 @@ import gov.nasa.worldwind.terrain.*;
 import gov.nasa.worldwind.util.*;
 
 import java.io.IOException;
+import java.nio.FloatBuffer;
 import java.util.List;
 
 /**
@@ -466,6 +467,26 @@ public class EllipsoidalGlobe extends WWObjectImpl implements Globe
         return resolution;
     }
 
+    public double getElevations(Sector sector, double[] latitudes, double[] longitudes, double targetResolution,
+        double[] elevations)
+    {
+        if (this.elevationModel == null)
+            return 0;
+
+        double resolution = this.elevationModel.getElevations(sector, latitudes, longitudes, targetResolution,
+            elevations);
+
+        if (this.egm96 != null)
+        {
+            for (int i = 0; i < latitudes.length; i++)
+            {
+                elevations[i] = elevations[i] + this.egm96.getOffset(latitudes[i], longitudes[i]);
+            }
+        }
+
+        return resolution;
+    }
+
     public double[] getElevations(Sector sector, List<? extends LatLon> latLons, double[] targetResolution,
         double[] elevations)
     {
@@ -601,6 +622,51 @@ public class EllipsoidalGlobe extends WWObjectImpl implements Globe
         this.geodeticToCartesian(sector, numLat, numLon, metersElevation, out);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void computePointsFromPositions(double[] latitudes, double[] longitudes, double[] metersElevation,
+        Vec4 referencePoint, FloatBuffer out)
+    {
+        if (latitudes == null || longitudes == null)
+        {
+            String message = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (metersElevation == null)
+        {
+            String message = Logging.getMessage("nullValue.ElevationsIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int numPoints = latitudes.length * longitudes.length;
+        if (metersElevation.length < numPoints)
+        {
+            String message = Logging.getMessage("generic.ArrayInvalidLength", metersElevation.length);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (out == null)
+        {
+            String message = Logging.getMessage("nullValue.OutputIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (out.remaining() < 3 * numPoints)
+        {
+            String message = Logging.getMessage("generic.BufferOverflow", out.remaining(), 3 * numPoints);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.geodeticToCartesian(latitudes, longitudes, metersElevation,
+            referencePoint != null ? referencePoint : Vec4.ZERO, out);
+    }
+
     /**
      * Returns the normal to the Globe at the specified position.
      *
@@ -972,6 +1038,56 @@ public class EllipsoidalGlobe extends WWObjectImpl implements Globe
         }
     }
 
+    /**
+     * Maps a grid of geographic positions to Cartesian coordinates relative to a reference point, and writes them to a
+     * buffer. The coordinate system is that of {@link #geodeticToCartesian(gov.nasa.worldwind.geom.Angle,
+     * gov.nasa.worldwind.geom.Angle, double)}. Values that depend only on a row's latitude or a column's longitude are
+     * computed once per row or column, and no object is created per point.
+     *
+     * @param latitudes       the latitude of each row of the grid, in degrees.
+     * @param longitudes      the longitude of each column of the grid, in degrees.
+     * @param metersElevation the elevation of each grid point, in row major order.
+     * @param referencePoint  the point subtracted from each computed point.
+     * @param out             the buffer to receive the points' x, y and z coordinates, beginning at its current
+     *                        position.
+     */
+    protected void geodeticToCartesian(double[] latitudes, double[] longitudes, double[] metersElevation,
+        Vec4 referencePoint, FloatBuffer out)
+    {
+        // Convert degrees as Angle does, so that the points match those computed from angles.
+        final double degreesToRadians = Math.PI / 180d;
+        int numLon = longitudes.length;
+        int pos = 0;
+
+        double[] cosLon = new double[numLon];
+        double[] sinLon = new double[numLon];
+        for (int i = 0; i < numLon; i++)
+        {
+            double lon = degreesToRadians * longitudes[i];
+            cosLon[i] = Math.cos(lon);
+            sinLon[i] = Math.sin(lon);
+        }
+
+        for (double latitude : latitudes)
+        {
+            double lat = degreesToRadians * latitude;
+            double cosLat = Math.cos(lat);
+            double sinLat = Math.sin(lat);
+            double rpm = this.equatorialRadius / Math.sqrt(1.0 - this.es * sinLat * sinLat);
+
+            for (int i = 0; i < numLon; i++)
+            {
+                double elev = metersElevation[pos++];
+                double x = (rpm + elev) * cosLat * sinLon[i];
+                double y = (rpm * (1.0 - this.es) + elev) * sinLat;
+                double z = (rpm + elev) * cosLat * cosLon[i];
+                out.put((float) (x - referencePoint.x));
+                out.put((float) (y - referencePoint.y));
+                out.put((float) (z - referencePoint.z));
+            }
+        }
+    }
+
 //    protected Position cartesianToGeodeticOriginal(Vec4 cart)
 //    {
 //        if (cart == null)
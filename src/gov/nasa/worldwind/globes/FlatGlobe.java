@@ -12,6 +12,8 @@ import gov.nasa.worldwind.globes.projections.*;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.util.Logging;
 
+import java.nio.FloatBuffer;
+
 /**
  * Defines a globe represented as a projection onto a plane. The projection type is modifiable. The default projection
  * is Mercator. New projections may be added by extending this class and overriding {@link
@@ -402,6 +404,25 @@ public class FlatGlobe extends EllipsoidalGlobe implements Globe2D
         this.projection.geographicToCartesian(this, sector, numLat, numLon, metersElevation, this.offsetVector, out);
     }
 
+    @Override
+    protected void geodeticToCartesian(double[] latitudes, double[] longitudes, double[] metersElevation,
+        Vec4 referencePoint, FloatBuffer out)
+    {
+        int pos = 0;
+        for (double latitude : latitudes)
+        {
+            Angle lat = Angle.fromDegrees(latitude);
+            for (double longitude : longitudes)
+            {
+                Vec4 p = this.projection.geographicToCartesian(this, lat, Angle.fromDegrees(longitude),
+                    metersElevation[pos++], this.offsetVector);
+                out.put((float) (p.x - referencePoint.x));
+                out.put((float) (p.y - referencePoint.y));
+                out.put((float) (p.z - referencePoint.z));
+            }
+        }
+    }
+
     @Override
     protected Position cartesianToGeodetic(Vec4 cart)
     {
@@ -10,6 +10,7 @@ import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.terrain.*;
 
+import java.nio.FloatBuffer;
 import java.util.List;
 
 /**
@@ -130,6 +131,30 @@ public interface Globe extends WWObject, Extent
      */
     double getElevations(Sector sector, List<? extends LatLon> latlons, double targetResolution, double[] elevations);
 
+    /**
+     * Indicates the elevations of a collection of locations specified as parallel arrays of latitudes and longitudes.
+     * This is the same as {@link #getElevations(gov.nasa.worldwind.geom.Sector, java.util.List, double, double[])}
+     * except that it does not require a <code>LatLon</code> for each location.
+     *
+     * @param sector           the sector in question.
+     * @param latitudes        the latitudes of the locations to return elevations for, in degrees.
+     * @param longitudes       the longitudes of the locations to return elevations for, in degrees. Must be the same
+     *                         length as the latitudes.
+     * @param targetResolution the desired horizontal resolution, in radians, of the raster or other elevation sample
+     *                         from which elevations are drawn.
+     * @param elevations       an array in which to place the returned elevations. The array must be pre-allocated and
+     *                         contain at least as many elements as there are locations.
+     *
+     * @return the resolution achieved, in radians, or {@link Double#MAX_VALUE} if individual elevations cannot be
+     *         determined for all of the locations. Returns zero if an elevation model is not available.
+     *
+     * @throws IllegalArgumentException if the sector or any array is null, or if the arrays' lengths differ or the
+     *                                  elevations array is too small.
+     * @see #getElevationModel()
+     */
+    double getElevations(Sector sector, double[] latitudes, double[] longitudes, double targetResolution,
+        double[] elevations);
+
     /**
      * Indicates the elevations of a collection of locations. Replaces any elevation values corresponding to the missing
      * data signal with the elevation model's missing data replacement value. If a location within the elevation model's
@@ -266,6 +291,29 @@ public interface Globe extends WWObject, Extent
      */
     void computePointsFromPositions(Sector sector, int numLat, int numLon, double[] metersElevation, Vec4[] out);
 
+    /**
+     * Computes a grid of cartesian points corresponding to a grid of geographic positions, and writes them to a buffer
+     * relative to a reference point. This is the same computation as {@link #computePointsFromPositions(Sector, int,
+     * int, double[], Vec4[])}, but the grid's rows and columns may be spaced arbitrarily and no object is created per
+     * point, so it suits the generation of vertices for rendering.
+     *
+     * @param latitudes       the latitude of each row of the grid, in degrees.
+     * @param longitudes      the longitude of each column of the grid, in degrees.
+     * @param metersElevation an array of elevations, one for each grid point, in row major order beginning with the
+     *                        first latitude. It must have a length of at least <code>latitudes.length x
+     *                        longitudes.length</code>.
+     * @param referencePoint  the point subtracted from each computed point. May be null, in which case the points are
+     *                        not offset.
+     * @param out             the buffer to receive the points' x, y and z coordinates, in row major order. The
+     *                        coordinates are written beginning at the buffer's current position, which advances past
+     *                        them.
+     *
+     * @throws IllegalArgumentException if any array or the buffer is null, or if the elevations array or the buffer's
+     *                                  remaining space is too small.
+     */
+    void computePointsFromPositions(double[] latitudes, double[] longitudes, double[] metersElevation,
+        Vec4 referencePoint, FloatBuffer out);
+
     /**
      * Computes a vector perpendicular to the surface of this globe in cartesian coordinates.
      *
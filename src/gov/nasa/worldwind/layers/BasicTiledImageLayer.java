@@ -8,7 +8,7 @@ package gov.nasa.worldwind.layers;
 import com.jogamp.opengl.util.texture.TextureData;
 import gov.nasa.worldwind.*;
 import gov.nasa.worldwind.avlist.*;
-import gov.nasa.worldwind.cache.FileStore;
+import gov.nasa.worldwind.cache.*;
 import gov.nasa.worldwind.event.BulkRetrievalListener;
 import gov.nasa.worldwind.exception.WWRuntimeException;
 import gov.nasa.worldwind.formats.dds.*;
@@ -25,18 +25,44 @@ import java.io.*;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author tag
  * @version $Id: BasicTiledImageLayer.java 2684 2015-01-26 18:31:22Z tgaskins $
  */
-public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetrievable
+public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetrievable, Prefetchable
 {
     protected final Object fileLock = new Object();
 
     // Layer resource properties.
     protected static final int RESOURCE_ID_OGC_CAPABILITIES = 1;
 
+    protected static final long DEFAULT_UNUSED_REQUEST_LIMIT = 2000; // milliseconds
+
+    // Network retrievals submitted for the tiles this layer draws, keyed by tile path. Prefetch and bulk download
+    // retrievals are not tracked, so they are neither re-scored nor cancelled as unused.
+    protected final ConcurrentHashMap<String, PendingRetrieval> pendingRetrievals =
+        new ConcurrentHashMap<String, PendingRetrieval>();
+    // Cancel retrievals of tiles not requested for this long.
+    protected long unusedRequestLimit = Configuration.getLongValue(AVKey.RETRIEVAL_QUEUE_UNUSED_REQUEST_LIMIT,
+        DEFAULT_UNUSED_REQUEST_LIMIT);
+    // The prefetcher last requesting this layer's tiles, told when the layer draws them.
+    protected volatile TilePrefetcher prefetcher;
+
+    /** A network retrieval submitted for one of the layer's tiles, and the last time the layer requested the tile. */
+    protected static class PendingRetrieval
+    {
+        protected final Retriever retriever;
+        protected volatile long requestTime;
+
+        public PendingRetrieval(Retriever retriever)
+        {
+            this.retriever = retriever;
+            this.requestTime = System.currentTimeMillis();
+        }
+    }
+
     public BasicTiledImageLayer(LevelSet levelSet)
     {
         super(levelSet);
@@ -205,6 +231,9 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
 
     protected void forceTextureLoad(TextureTile tile)
     {
+        if (this.loadOffHeapTexture(tile))
+            return;
+
         final URL textureURL = this.getDataFileStore().findFile(tile.getPath(), true);
 
         if (textureURL != null && !this.isTextureFileExpired(tile, textureURL, this.getDataFileStore()))
@@ -220,10 +249,101 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         if (referencePoint != null)
             tile.setPriority(centroid.distanceTo3(referencePoint));
 
+        // A tile already being retrieved is re-scored rather than requested again.
+        if (this.updatePendingRetrieval(tile))
+            return;
+
         RequestTask task = this.createRequestTask(tile);
         this.getRequestQ().add(task);
     }
 
+    /**
+     * Passes a tile's current priority to the network retrieval already submitted for it, if any.
+     *
+     * @param tile the tile requested.
+     *
+     * @return true if the tile's retrieval is still pending or running, otherwise false.
+     */
+    protected boolean updatePendingRetrieval(TextureTile tile)
+    {
+        PendingRetrieval pending = this.pendingRetrievals.get(tile.getPath());
+        if (pending == null)
+            return false;
+
+        if (WorldWind.getRetrievalService().updatePriority(pending.retriever, tile.getPriority()))
+        {
+            pending.requestTime = System.currentTimeMillis();
+            return true;
+        }
+
+        this.pendingRetrievals.remove(tile.getPath(), pending);
+        return false;
+    }
+
+    /**
+     * Keeps the network retrieval already submitted for a tile from being cancelled as unused, without changing its
+     * priority.
+     *
+     * @param tile the tile requested.
+     *
+     * @return true if the tile's retrieval is still pending or running, otherwise false.
+     */
+    protected boolean keepPendingRetrieval(TextureTile tile)
+    {
+        PendingRetrieval pending = this.pendingRetrievals.get(tile.getPath());
+        if (pending == null)
+            return false;
+
+        if (WorldWind.getRetrievalService().contains(pending.retriever))
+        {
+            pending.requestTime = System.currentTimeMillis();
+            return true;
+        }
+
+        this.pendingRetrievals.remove(tile.getPath(), pending);
+        return false;
+    }
+
+    @Override
+    protected void addTileToCurrent(TextureTile tile)
+    {
+        super.addTileToCurrent(tile);
+
+        TilePrefetcher prefetcher = this.prefetcher;
+        if (prefetcher != null)
+            prefetcher.markUsed(tile.getTileKey());
+    }
+
+    @Override
+    protected void sendRequests()
+    {
+        super.sendRequests();
+        this.cancelUnusedRetrievals();
+    }
+
+    /**
+     * Cancels the network retrievals of tiles the layer has not requested recently, because they are no longer in view
+     * or no longer needed at their resolution. Retrievals that have not started are dropped before any network I/O is
+     * performed for them, leaving the retrieval threads to the tiles in view. A retrieval shared with other requests
+     * for the same tile, such as a prefetch or bulk download, continues for them without this layer's post-processor.
+     */
+    protected void cancelUnusedRetrievals()
+    {
+        if (this.pendingRetrievals.isEmpty())
+            return;
+
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, PendingRetrieval> entry : this.pendingRetrievals.entrySet())
+        {
+            PendingRetrieval pending = entry.getValue();
+            if (now - pending.requestTime > this.unusedRequestLimit)
+            {
+                WorldWind.getRetrievalService().cancel(pending.retriever);
+                this.pendingRetrievals.remove(entry.getKey(), pending);
+            }
+        }
+    }
+
     protected RequestTask createRequestTask(TextureTile tile)
     {
         return new RequestTask(tile, this);
@@ -245,6 +365,12 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
             if (Thread.currentThread().isInterrupted())
                 return; // the task was cancelled because it's a duplicate or for some other reason
 
+            if (this.layer.loadOffHeapTexture(this.tile))
+            {
+                this.layer.firePropertyChange(AVKey.LAYER, null, this);
+                return;
+            }
+
             final java.net.URL textureURL = this.layer.getDataFileStore().findFile(tile.getPath(), false);
             if (textureURL != null && !this.layer.isTextureFileExpired(tile, textureURL, this.layer.getDataFileStore()))
             {
@@ -263,7 +389,16 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
                 }
             }
 
-            this.layer.retrieveTexture(this.tile, this.layer.createDownloadPostProcessor(this.tile));
+            this.retrieve();
+        }
+
+        /**
+         * Retrieves the tile, which is neither in the off-heap cache nor current in the file store. The retrieval is
+         * tracked, so that it is re-scored while the layer requests the tile and cancelled once it stops.
+         */
+        protected void retrieve()
+        {
+            this.layer.retrieveTexture(this.tile, this.layer.createDownloadPostProcessor(this.tile), true);
         }
 
         /**
@@ -309,11 +444,163 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         }
     }
 
+    // *** Prefetch ***
+    // *** Prefetch ***
+    // *** Prefetch ***
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The tiles' level is the first whose texels are no larger than this layer would draw at the prediction's distance.
+     */
+    public int prefetch(TilePrefetcher.Prediction prediction, TilePrefetcher prefetcher)
+    {
+        if (prediction == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (prefetcher == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.prefetcher = prefetcher;
+
+        Sector sector = this.getLevels().getSector().intersection(prediction.getSector());
+        if (sector == null || sector.getDeltaLatRadians() <= 0 || sector.getDeltaLonRadians() <= 0)
+            return 0;
+
+        int levelNumber = this.computePrefetchLevel(prediction);
+        if (levelNumber < 0)
+            return 0;
+
+        int numSubmitted = 0;
+        for (TextureTile[] row : this.getTilesInSector(sector, levelNumber))
+        {
+            for (TextureTile tile : row)
+            {
+                if (tile == null || this.getLevels().isResourceAbsent(tile)
+                    || TextureTile.getMemoryCache().getObject(tile.getTileKey()) != null)
+                    continue;
+
+                // A tile already being retrieved keeps its priority, which is higher if it's also in view.
+                tile.setPriority(TilePrefetcher.RETRIEVAL_PRIORITY);
+                if (this.keepPendingRetrieval(tile))
+                    continue;
+
+                if (prefetcher.submit(tile.getTileKey(), this.createPrefetchTask(tile, prefetcher)))
+                    numSubmitted++;
+            }
+        }
+
+        return numSubmitted;
+    }
+
+    /**
+     * Computes the level this layer would draw at a predicted view's center.
+     *
+     * @param prediction the predicted view.
+     *
+     * @return the level number, or -1 if the view is too far away to draw this layer.
+     */
+    protected int computePrefetchLevel(TilePrefetcher.Prediction prediction)
+    {
+        double altitude = prediction.getDistance();
+        if (altitude < this.getMinActiveAltitude() || altitude > this.getMaxActiveAltitude())
+            return -1;
+
+        double texelSize = prediction.computeTexelSize(this.getDetailFactor());
+        for (Level level : this.getLevels().getLevels())
+        {
+            if (!level.isEmpty() && level.getTexelSize() <= texelSize)
+                return level.getLevelNumber();
+        }
+
+        return this.getLevels().getLastLevel().getLevelNumber();
+    }
+
+    protected RequestTask createPrefetchTask(TextureTile tile, TilePrefetcher prefetcher)
+    {
+        return new PrefetchTask(tile, this, prefetcher);
+    }
+
+    /**
+     * Loads a tile for a {@link TilePrefetcher}, or retrieves it at the prefetcher's priority if the prefetcher's budget
+     * allows.
+     */
+    protected static class PrefetchTask extends RequestTask
+    {
+        protected final TilePrefetcher prefetcher;
+
+        protected PrefetchTask(TextureTile tile, BasicTiledImageLayer layer, TilePrefetcher prefetcher)
+        {
+            super(tile, layer);
+
+            this.prefetcher = prefetcher;
+        }
+
+        @Override
+        protected void retrieve()
+        {
+            if (!this.prefetcher.tryAcquireRetrieval())
+            {
+                this.prefetcher.cancel(this.tile.getTileKey());
+                return;
+            }
+
+            this.layer.retrieveTexture(this.tile, new PrefetchPostProcessor(this.tile, this.layer, this.prefetcher));
+        }
+    }
+
+    /** Accounts a prefetched tile's retrieval to its prefetcher, and loads the tile once it's in the file store. */
+    protected static class PrefetchPostProcessor extends DownloadPostProcessor
+    {
+        protected final TilePrefetcher prefetcher;
+
+        public PrefetchPostProcessor(TextureTile tile, BasicTiledImageLayer layer, TilePrefetcher prefetcher)
+        {
+            super(tile, layer);
+
+            this.prefetcher = prefetcher;
+        }
+
+        @Override
+        public ByteBuffer run(Retriever retriever)
+        {
+            ByteBuffer buffer = super.run(retriever);
+            this.prefetcher.retrievalCompleted(retriever);
+
+            return buffer;
+        }
+
+        @Override
+        protected ByteBuffer handleSuccessfulRetrieval()
+        {
+            ByteBuffer buffer = super.handleSuccessfulRetrieval();
+
+            if (buffer != null)
+                this.layer.forceTextureLoad(this.tile);
+
+            return buffer;
+        }
+    }
+
     protected boolean isTextureFileExpired(TextureTile tile, java.net.URL textureURL, FileStore fileStore)
     {
         if (!WWIO.isFileOutOfDate(textureURL, tile.getLevel().getExpiryTime()))
             return false;
 
+        // A file with HTTP validators is kept, so that its retrieval can ask the server whether it has changed. A file
+        // revalidated since the expiry time is current.
+        CacheValidators validators = CacheValidators.read(fileStore, tile.getPath());
+        if (validators != null)
+            return validators.isExpired(tile.getLevel().getExpiryTime());
+
         // The file has expired. Delete it.
         fileStore.removeFile(textureURL);
         String message = Logging.getMessage("generic.DataFileExpired", textureURL);
@@ -340,6 +627,26 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         return true;
     }
 
+    /**
+     * Loads a tile's texture data from the off-heap tile cache, avoiding reading and decoding the tile's file, and adds
+     * the tile to the memory cache.
+     *
+     * @param tile the tile to load.
+     *
+     * @return true if the texture data was loaded, false if the off-heap cache is not configured or doesn't hold
+     *         current data for the tile.
+     */
+    protected boolean loadOffHeapTexture(TextureTile tile)
+    {
+        if (!tile.loadOffHeapTextureData())
+            return false;
+
+        if (tile.getLevelNumber() != 0 || !this.isRetainLevelZeroTiles())
+            this.addTileToCache(tile);
+
+        return true;
+    }
+
     /**
      * Reads and returns the texture data at the specified URL, optionally converting it to the specified format and
      * generating mip-maps. If <code>textureFormat</code> is a recognized mime type, this returns the texture data in
@@ -363,23 +670,26 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         {
             // If the caller has enabled texture compression, and the texture data is not a DDS file, then use read the
             // texture data and convert it to DDS.
-            if ("image/dds".equalsIgnoreCase(textureFormat) && !url.toString().toLowerCase().endsWith("dds"))
-            {
-                // Configure a DDS compressor to generate mipmaps based according to the 'useMipMaps' parameter, and
-                // convert the image URL to a compressed DDS format.
-                DXTCompressionAttributes attributes = DDSCompressor.getDefaultCompressionAttributes();
-                attributes.setBuildMipmaps(useMipMaps);
-                ByteBuffer buffer = DDSCompressor.compressImageURL(url, attributes);
-
-                return OGLUtil.newTextureData(Configuration.getMaxCompatibleGLProfile(),
-                    WWIO.getInputStreamFromByteBuffer(buffer), useMipMaps);
-            }
-            // If the caller has disabled texture compression, or if the texture data is already a DDS file, then read
-            // the texture data without converting it.
-            else
-            {
-                return OGLUtil.newTextureData(Configuration.getMaxCompatibleGLProfile(), url, useMipMaps);
-            }
+            boolean compress = "image/dds".equalsIgnoreCase(textureFormat)
+                && !url.toString().toLowerCase().endsWith("dds");
+
+            // Tiles with identical files share one decoded instance, so read the file's bytes before decoding them.
+            SharedContentCache contentCache = SharedContentCache.getTileContentCache();
+            if (contentCache == null)
+                return decodeTexture(url, null, compress, useMipMaps);
+
+            ByteBuffer buffer = PackFileStore.getPackedBuffer(url);
+            if (buffer == null)
+                buffer = WWIO.readURLContentToBuffer(url);
+
+            SharedContentCache.ContentKey key = SharedContentCache.keyFor(buffer, "texture:" + compress + ":"
+                + useMipMaps);
+            Object shared = contentCache.get(key);
+            if (shared instanceof TextureData)
+                return (TextureData) shared;
+
+            TextureData textureData = decodeTexture(url, buffer, compress, useMipMaps);
+            return textureData != null ? (TextureData) contentCache.put(key, textureData) : null;
         }
         catch (Exception e)
         {
@@ -389,6 +699,46 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         }
     }
 
+    /**
+     * Decodes texture data, either from a URL or from the bytes already read from it.
+     *
+     * @param url        the URL referencing the texture data.
+     * @param buffer     the bytes read from the URL, or null to read them from the URL.
+     * @param compress   true to convert the texture data to DDS.
+     * @param useMipMaps true to generate mip-maps for the texture data or use mip maps already in the texture data.
+     *
+     * @return the decoded texture data.
+     *
+     * @throws IOException if the texture data cannot be read.
+     */
+    protected static TextureData decodeTexture(java.net.URL url, ByteBuffer buffer, boolean compress,
+        boolean useMipMaps) throws IOException
+    {
+        if (compress)
+        {
+            // Configure a DDS compressor to generate mipmaps based according to the 'useMipMaps' parameter, and
+            // convert the image URL to a compressed DDS format.
+            DXTCompressionAttributes attributes = DDSCompressor.getDefaultCompressionAttributes();
+            attributes.setBuildMipmaps(useMipMaps);
+            ByteBuffer ddsBuffer = buffer != null ? DDSCompressor.compressImageBuffer(buffer.duplicate(), attributes)
+                : DDSCompressor.compressImageURL(url, attributes);
+
+            return OGLUtil.newTextureData(Configuration.getMaxCompatibleGLProfile(),
+                WWIO.getInputStreamFromByteBuffer(ddsBuffer), useMipMaps);
+        }
+        // If the caller has disabled texture compression, or if the texture data is already a DDS file, then read
+        // the texture data without converting it.
+        else if (buffer != null)
+        {
+            return OGLUtil.newTextureData(Configuration.getMaxCompatibleGLProfile(),
+                WWIO.getInputStreamFromByteBuffer(buffer.duplicate()), useMipMaps);
+        }
+        else
+        {
+            return OGLUtil.newTextureData(Configuration.getMaxCompatibleGLProfile(), url, useMipMaps);
+        }
+    }
+
     protected void addTileToCache(TextureTile tile)
     {
         TextureTile.getMemoryCache().add(tile.getTileKey(), tile);
@@ -505,17 +855,97 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         return downloader.getEstimatedMissingDataSize();
     }
 
+    /**
+     * Start a new {@link BulkRetrievalThread} that downloads all imagery for a given area, such as a list of sectors or
+     * a corridor along a route, to a specified {@link FileStore}, without downloading imagery that is already in
+     * the file store. Each part of the area is downloaded up to and including its own resolution.
+     * <p/>
+     * This method creates and starts a thread to perform the download. A reference to the thread is returned. To create
+     * a downloader that has not been started, construct a {@link BasicTiledImageLayerBulkDownloader}.
+     *
+     * @param area      the area to download data for.
+     * @param fileStore the file store in which to place the downloaded imagery. If null the current World Wind file
+     *                  cache is used.
+     * @param listener  an optional retrieval listener. May be null.
+     *
+     * @return the {@link BulkRetrievalThread} executing the retrieval or <code>null</code> if the specified area does
+     * not intersect the layer bounding sector.
+     *
+     * @throws IllegalArgumentException if the area is null.
+     * @see BulkRetrievalArea#fromCorridor(Iterable, double[], double[])
+     */
+    public BulkRetrievalThread makeLocal(BulkRetrievalArea area, FileStore fileStore, BulkRetrievalListener listener)
+    {
+        BulkRetrievalArea targetArea = this.intersectArea(area);
+        if (targetArea == null)
+            return null;
+
+        BasicTiledImageLayerBulkDownloader thread = new BasicTiledImageLayerBulkDownloader(this, targetArea,
+            fileStore != null ? fileStore : this.getDataFileStore(), listener);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Get the estimated size in bytes of the imagery not in a specified file store for a given area, such as a list of
+     * sectors or a corridor along a route.
+     *
+     * @param area      the area to estimate.
+     * @param fileStore the file store to examine. If null the current World Wind file cache is used.
+     *
+     * @return the estimated size in bytes of the missing imagery.
+     *
+     * @throws IllegalArgumentException if the area is null.
+     */
+    public long getEstimatedMissingDataSize(BulkRetrievalArea area, FileStore fileStore)
+    {
+        BulkRetrievalArea targetArea = this.intersectArea(area);
+        if (targetArea == null)
+            return 0;
+
+        BasicTiledImageLayerBulkDownloader downloader = new BasicTiledImageLayerBulkDownloader(this, targetArea,
+            fileStore != null ? fileStore : this.getDataFileStore(), null);
+
+        return downloader.getEstimatedMissingDataSize();
+    }
+
+    protected BulkRetrievalArea intersectArea(BulkRetrievalArea area)
+    {
+        if (area == null)
+        {
+            String message = Logging.getMessage("nullValue.AreaIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return area.intersection(this.getLevels().getSector());
+    }
+
     // *** Tile download ***
     // *** Tile download ***
     // *** Tile download ***
 
     protected void retrieveTexture(TextureTile tile, DownloadPostProcessor postProcessor)
+    {
+        this.retrieveTexture(tile, postProcessor, false);
+    }
+
+    /**
+     * Retrieves a tile.
+     *
+     * @param tile          the tile to retrieve.
+     * @param postProcessor the post-processor of the retrieval.
+     * @param track         true to track a network retrieval in this layer's pending retrievals, so that it is
+     *                      re-scored while the layer requests the tile and cancelled once it stops.
+     */
+    protected void retrieveTexture(TextureTile tile, DownloadPostProcessor postProcessor, boolean track)
     {
         if (this.getValue(AVKey.RETRIEVER_FACTORY_LOCAL) != null)
             this.retrieveLocalTexture(tile, postProcessor);
         else
             // Assume it's remote, which handles the legacy cases.
-            this.retrieveRemoteTexture(tile, postProcessor);
+            this.retrieveRemoteTexture(tile, postProcessor, track);
     }
 
     protected void retrieveLocalTexture(TextureTile tile, DownloadPostProcessor postProcessor)
@@ -536,9 +966,16 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         Retriever retriever = retrieverFactory.createRetriever(avList, postProcessor);
 
         WorldWind.getLocalRetrievalService().runRetriever(retriever, tile.getPriority());
+        if (postProcessor != null)
+            postProcessor.submitted = true;
     }
 
     protected void retrieveRemoteTexture(TextureTile tile, DownloadPostProcessor postProcessor)
+    {
+        this.retrieveRemoteTexture(tile, postProcessor, false);
+    }
+
+    protected void retrieveRemoteTexture(TextureTile tile, DownloadPostProcessor postProcessor, boolean track)
     {
         if (!this.isNetworkRetrievalEnabled())
         {
@@ -582,6 +1019,14 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         }
         retriever.setValue(URLRetriever.EXTRACT_ZIP_ENTRY, "true"); // supports legacy layers
 
+        // An expired tile still in the file store is revalidated rather than retrieved again.
+        if (retriever instanceof HTTPRetriever)
+        {
+            CacheValidators validators = CacheValidators.read(postProcessor.getFileStore(), tile.getPath());
+            if (validators != null)
+                validators.applyTo((HTTPRetriever) retriever);
+        }
+
         // Apply any overridden timeouts.
         Integer cto = AVListImpl.getIntegerValue(this, AVKey.URL_CONNECT_TIMEOUT);
         if (cto != null && cto > 0)
@@ -594,6 +1039,9 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
             retriever.setStaleRequestLimit(srl);
 
         WorldWind.getRetrievalService().runRetriever(retriever, tile.getPriority());
+        postProcessor.submitted = true;
+        if (track)
+            this.pendingRetrievals.put(tile.getPath(), new PendingRetrieval(retriever));
     }
 
     protected DownloadPostProcessor createDownloadPostProcessor(TextureTile tile)
@@ -606,6 +1054,8 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         protected final TextureTile tile;
         protected final BasicTiledImageLayer layer;
         protected final FileStore fileStore;
+        /** Whether a retriever using this post processor has been submitted to a retrieval service. */
+        protected volatile boolean submitted;
 
         public DownloadPostProcessor(TextureTile tile, BasicTiledImageLayer layer)
         {
@@ -627,6 +1077,12 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
             return this.fileStore != null ? this.fileStore : this.layer.getDataFileStore();
         }
 
+        /** @return true if a retriever using this post processor has been submitted to a retrieval service. */
+        public boolean isSubmitted()
+        {
+            return this.submitted;
+        }
+
         @Override
         protected void markResourceAbsent()
         {
@@ -652,6 +1108,9 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
 
             if (buffer != null)
             {
+                if (this.getRetriever() instanceof HTTPRetriever)
+                    CacheValidators.save(this.getFileStore(), this.tile.getPath(), (HTTPRetriever) this.getRetriever());
+
                 // We've successfully cached data. Check if there's a configuration file for this layer, create one
                 // if there's not.
                 this.layer.writeConfigurationFile(this.getFileStore());
@@ -663,6 +1122,14 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
             return buffer;
         }
 
+        @Override
+        protected void handleNotModified()
+        {
+            // The cached tile is current. Fire a property change so that it's loaded.
+            if (CacheValidators.markValidated(this.getFileStore(), this.tile.getPath()))
+                this.layer.firePropertyChange(AVKey.LAYER, null, this);
+        }
+
         @Override
         protected ByteBuffer handleTextContent() throws IOException
         {
@@ -15,6 +15,7 @@ import gov.nasa.worldwind.render.*;
 import gov.nasa.worldwind.util.*;
 
 import javax.media.opengl.*;
+import java.nio.*;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -33,6 +34,27 @@ public class TextureTile extends Tile implements SurfaceTile
     protected boolean hasMipmapData = false;
     protected AtomicLong updateTime = new AtomicLong(0);
 
+    /** Describes texture data held in the off-heap tile cache, so that the texture data can be reconstructed. */
+    protected static class OffHeapTextureInfo
+    {
+        protected GLProfile profile;
+        protected int internalFormat;
+        protected int width;
+        protected int height;
+        protected int border;
+        protected int pixelFormat;
+        protected int pixelType;
+        protected int alignment;
+        protected int rowLength;
+        protected boolean mipmap;
+        protected boolean dataIsCompressed;
+        protected boolean mustFlipVertically;
+        /** True if the data was held in an <code>IntBuffer</code> rather than a <code>ByteBuffer</code>. */
+        protected boolean intData;
+        /** The length in bytes of each mipmap level, or null if the data has no mipmap levels. */
+        protected int[] mipmapLengths;
+    }
+
     /**
      * Returns the memory cache used to cache tiles for this class and its subclasses, initializing the cache if it
      * doesn't yet exist.
@@ -44,7 +66,7 @@ public class TextureTile extends Tile implements SurfaceTile
         if (!WorldWind.getMemoryCacheSet().containsCache(TextureTile.class.getName()))
         {
             long size = Configuration.getLongValue(AVKey.TEXTURE_IMAGE_CACHE_SIZE, 3000000L);
-            MemoryCache cache = new BasicMemoryCache((long) (0.85 * size), size);
+            MemoryCache cache = WorldWind.getMemoryCacheSet().createCache((long) (0.85 * size), size);
             cache.setName("Texture Tiles");
             WorldWind.getMemoryCacheSet().addCache(TextureTile.class.getName(), cache);
         }
@@ -185,12 +207,138 @@ public class TextureTile extends Tile implements SurfaceTile
         tc.put(this.getTileKey(), texture);
         this.updateTime.set(System.currentTimeMillis());
 
+        // Keep a copy of the texture data off the heap, if so configured, so it needn't be read and decoded again
+        // after the texture is evicted from the texture cache.
+        if (this.textureData != null)
+            this.storeOffHeapTextureData(this.textureData);
+
         // No more need for texture data; allow garbage collector and memory cache to reclaim it.
         // This also signals that new texture data has been converted.
         this.textureData = null;
         this.updateMemoryCache();
     }
 
+    /**
+     * Copies texture data to the off-heap tile cache. Does nothing if the off-heap tile cache is not configured or the
+     * texture data is held in a buffer type other than <code>ByteBuffer</code> or <code>IntBuffer</code>.
+     *
+     * @param textureData the texture data to copy.
+     */
+    protected void storeOffHeapTextureData(TextureData textureData)
+    {
+        OffHeapBufferCache offHeapCache = OffHeapBufferCache.getTileBufferCache();
+        if (offHeapCache == null)
+            return;
+
+        Buffer[] buffers = textureData.getMipmapData() != null ? textureData.getMipmapData()
+            : new Buffer[] {textureData.getBuffer()};
+
+        OffHeapTextureInfo info = new OffHeapTextureInfo();
+        ByteBuffer[] data = new ByteBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++)
+        {
+            if (buffers[i] instanceof ByteBuffer)
+            {
+                data[i] = (ByteBuffer) ((ByteBuffer) buffers[i]).duplicate().rewind();
+            }
+            else if (buffers[i] instanceof IntBuffer)
+            {
+                IntBuffer src = (IntBuffer) ((IntBuffer) buffers[i]).duplicate().rewind();
+                data[i] = ByteBuffer.allocate(4 * src.remaining()).order(ByteOrder.nativeOrder());
+                data[i].asIntBuffer().put(src);
+                info.intData = true;
+            }
+            else
+            {
+                return;
+            }
+        }
+
+        info.profile = textureData.getGLProfile();
+        info.internalFormat = textureData.getInternalFormat();
+        info.width = textureData.getWidth();
+        info.height = textureData.getHeight();
+        info.border = textureData.getBorder();
+        info.pixelFormat = textureData.getPixelFormat();
+        info.pixelType = textureData.getPixelType();
+        info.alignment = textureData.getAlignment();
+        info.rowLength = textureData.getRowLength();
+        info.mipmap = textureData.getMipmap();
+        info.dataIsCompressed = textureData.isDataCompressed();
+        info.mustFlipVertically = textureData.getMustFlipVertically();
+
+        if (textureData.getMipmapData() != null)
+        {
+            info.mipmapLengths = new int[data.length];
+            for (int i = 0; i < data.length; i++)
+            {
+                info.mipmapLengths[i] = data[i].remaining();
+            }
+        }
+
+        offHeapCache.put(this.getTileKey(), info, this.updateTime.get(), data);
+    }
+
+    /**
+     * Sets this tile's texture data from the off-heap tile cache, if the cache holds current data for the tile. Data
+     * older than the tile's level expiry time is removed from the off-heap cache and not used.
+     *
+     * @return true if the texture data was set, false if the off-heap cache is not configured or doesn't hold current
+     *         data for this tile.
+     */
+    public boolean loadOffHeapTextureData()
+    {
+        OffHeapBufferCache offHeapCache = OffHeapBufferCache.getTileBufferCache();
+        if (offHeapCache == null)
+            return false;
+
+        // Copy the data into a direct buffer, which the texture upload passes to GL without copying it again.
+        OffHeapBufferCache.Payload payload = offHeapCache.get(this.getTileKey(), null);
+        if (payload == null || !(payload.getAttachment() instanceof OffHeapTextureInfo))
+            return false;
+
+        if (payload.getTimestamp() < this.getLevel().getExpiryTime())
+        {
+            offHeapCache.remove(this.getTileKey());
+            return false;
+        }
+
+        OffHeapTextureInfo info = (OffHeapTextureInfo) payload.getAttachment();
+        TextureData td;
+
+        if (info.mipmapLengths != null)
+        {
+            Buffer[] mipmapData = new Buffer[info.mipmapLengths.length];
+            ByteBuffer buffer = payload.getBuffer();
+            for (int i = 0; i < mipmapData.length; i++)
+            {
+                buffer.limit(buffer.position() + info.mipmapLengths[i]);
+                mipmapData[i] = this.wrapOffHeapBuffer(buffer.slice(), info);
+                buffer.position(buffer.limit());
+            }
+
+            td = new TextureData(info.profile, info.internalFormat, info.width, info.height, info.border, info.pixelFormat,
+                info.pixelType, info.dataIsCompressed, info.mustFlipVertically, mipmapData, null);
+        }
+        else
+        {
+            td = new TextureData(info.profile, info.internalFormat, info.width, info.height, info.border, info.pixelFormat,
+                info.pixelType, info.mipmap, info.dataIsCompressed, info.mustFlipVertically,
+                this.wrapOffHeapBuffer(payload.getBuffer(), info), null);
+        }
+
+        td.setAlignment(info.alignment);
+        td.setRowLength(info.rowLength);
+        this.setTextureData(td);
+
+        return true;
+    }
+
+    protected Buffer wrapOffHeapBuffer(ByteBuffer buffer, OffHeapTextureInfo info)
+    {
+        return info.intData ? buffer.order(ByteOrder.nativeOrder()).asIntBuffer() : buffer;
+    }
+
     public Vec4 getCentroidPoint(Globe globe)
     {
         if (globe == null)
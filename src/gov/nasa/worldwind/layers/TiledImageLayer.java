@@ -5,13 +5,14 @@
  */
 package gov.nasa.worldwind.layers;
 
-import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.*;
 import gov.nasa.worldwind.avlist.*;
 import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.geom.Box;
 import gov.nasa.worldwind.globes.Earth;
 import gov.nasa.worldwind.render.*;
 import gov.nasa.worldwind.retrieve.*;
+import gov.nasa.worldwind.terrain.HorizonCuller;
 import gov.nasa.worldwind.util.*;
 import org.w3c.dom.*;
 
@@ -55,6 +56,11 @@ public abstract class TiledImageLayer extends AbstractLayer
     protected TextureTile currentResourceTile;
     protected boolean atMaxResolution = false;
     protected PriorityBlockingQueue<Runnable> requestQ = new PriorityBlockingQueue<Runnable>(200);
+    protected HorizonCuller horizonCuller = new HorizonCuller();
+    protected boolean horizonCullingEnabled = true;
+    protected boolean occlusionCullingEnabled;
+    protected int horizonCulledTileCount;
+    protected int occludedTileCount;
 
     abstract protected void requestTexture(DrawContext dc, TextureTile tile);
 
@@ -74,6 +80,9 @@ public abstract class TiledImageLayer extends AbstractLayer
 
         this.setPickEnabled(false); // textures are assumed to be terrain unless specifically indicated otherwise.
         this.tileCountName = this.getName() + " Tiles";
+
+        this.horizonCullingEnabled = Configuration.getBooleanValue(AVKey.HORIZON_CULLING_ENABLED, true);
+        this.occlusionCullingEnabled = Configuration.getBooleanValue(AVKey.OCCLUSION_CULLING_ENABLED, false);
     }
 
     @Override
@@ -151,6 +160,48 @@ public abstract class TiledImageLayer extends AbstractLayer
         this.drawBoundingVolumes = drawBoundingVolumes;
     }
 
+    /**
+     * Indicates whether tiles beyond the horizon are culled. The initial value is taken from the configuration's
+     * <code>gov.nasa.worldwind.avkey.HorizonCullingEnabled</code> property.
+     *
+     * @return true if tiles beyond the horizon are culled, otherwise false.
+     */
+    public boolean isHorizonCullingEnabled()
+    {
+        return this.horizonCullingEnabled;
+    }
+
+    /**
+     * Specifies whether tiles beyond the horizon are culled.
+     *
+     * @param horizonCullingEnabled true to cull tiles beyond the horizon, otherwise false.
+     */
+    public void setHorizonCullingEnabled(boolean horizonCullingEnabled)
+    {
+        this.horizonCullingEnabled = horizonCullingEnabled;
+    }
+
+    /**
+     * Indicates whether tiles hidden behind nearer terrain are culled. The initial value is taken from the
+     * configuration's <code>gov.nasa.worldwind.avkey.OcclusionCullingEnabled</code> property.
+     *
+     * @return true if occluded tiles are culled, otherwise false.
+     */
+    public boolean isOcclusionCullingEnabled()
+    {
+        return this.occlusionCullingEnabled;
+    }
+
+    /**
+     * Specifies whether tiles hidden behind nearer terrain are culled.
+     *
+     * @param occlusionCullingEnabled true to cull occluded tiles, otherwise false.
+     */
+    public void setOcclusionCullingEnabled(boolean occlusionCullingEnabled)
+    {
+        this.occlusionCullingEnabled = occlusionCullingEnabled;
+    }
+
     /**
      * Indicates the layer's detail hint, which is described in {@link #setDetailHint(double)}.
      *
@@ -339,6 +390,7 @@ public abstract class TiledImageLayer extends AbstractLayer
     protected void assembleTiles(DrawContext dc)
     {
         this.currentTiles.clear();
+        this.updateHorizonCuller(dc);
 
         for (TextureTile tile : this.getTopLevels())
         {
@@ -471,7 +523,50 @@ public abstract class TiledImageLayer extends AbstractLayer
     protected boolean isTileVisible(DrawContext dc, TextureTile tile)
     {
         return tile.getExtent(dc).intersects(dc.getView().getFrustumInModelCoordinates()) &&
-            (dc.getVisibleSector() == null || dc.getVisibleSector().intersects(tile.getSector()));
+            (dc.getVisibleSector() == null || dc.getVisibleSector().intersects(tile.getSector())) &&
+            !this.isTileCulled(dc, tile);
+    }
+
+    /**
+     * Prepares this layer's horizon culler for the current frame. Tiles are culled against the terrain drawn this
+     * frame, so a culled tile is neither drawn nor requested.
+     *
+     * @param dc the current draw context.
+     */
+    protected void updateHorizonCuller(DrawContext dc)
+    {
+        this.horizonCulledTileCount = 0;
+        this.occludedTileCount = 0;
+
+        this.horizonCuller.update(dc);
+        if (this.occlusionCullingEnabled)
+            this.horizonCuller.setOccluders(dc.getSurfaceGeometry());
+    }
+
+    /**
+     * Determines whether a tile within the view frustum is hidden behind the horizon or, when occlusion culling is
+     * enabled, behind nearby terrain.
+     *
+     * @param dc   the current draw context.
+     * @param tile the tile to test.
+     *
+     * @return <code>true</code> if the tile is hidden, otherwise <code>false</code>.
+     */
+    protected boolean isTileCulled(DrawContext dc, TextureTile tile)
+    {
+        if (this.horizonCullingEnabled && this.horizonCuller.isBeyondHorizon(tile.getExtent(dc)))
+        {
+            ++this.horizonCulledTileCount;
+            return true;
+        }
+
+        if (this.occlusionCullingEnabled && this.horizonCuller.isOccluded(tile.getExtent(dc)))
+        {
+            ++this.occludedTileCount;
+            return true;
+        }
+
+        return false;
     }
 
     protected boolean meetsRenderCriteria(DrawContext dc, TextureTile tile)
@@ -601,6 +696,10 @@ public abstract class TiledImageLayer extends AbstractLayer
     protected void draw(DrawContext dc)
     {
         this.assembleTiles(dc); // Determine the tiles to draw.
+        dc.setPerFrameStatistic(PerformanceStatistic.HORIZON_CULLED_TILE_COUNT,
+            this.getName() + " Tiles Beyond Horizon", this.horizonCulledTileCount);
+        dc.setPerFrameStatistic(PerformanceStatistic.OCCLUDED_TILE_COUNT, this.getName() + " Tiles Occluded",
+            this.occludedTileCount);
 
         if (this.currentTiles.size() >= 1)
         {
@@ -94,7 +94,7 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
         if (!WorldWind.getMemoryCacheSet().containsCache(Tile.class.getName()))
         {
             long size = Configuration.getLongValue(AVKey.PLACENAME_LAYER_CACHE_SIZE, 2000000L);
-            MemoryCache cache = new BasicMemoryCache((long) (0.85 * size), size);
+            MemoryCache cache = WorldWind.getMemoryCacheSet().createCache((long) (0.85 * size), size);
             cache.setName("Placename Tiles");
             WorldWind.getMemoryCacheSet().addCache(Tile.class.getName(), cache);
         }
@@ -1335,4 +1335,65 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
             throw new RuntimeException(message);
         }
     }
+
+    /**
+     * Start a new {@link BulkRetrievalThread} that downloads all placenames for a given area, such as a list of sectors
+     * or a corridor along a route, to a specified file store. Each part of the area is downloaded for the placename
+     * services whose display distance exceeds the part's resolution.
+     * <p/>
+     * This method creates and starts a thread to perform the download. A reference to the thread is returned. To create
+     * a downloader that has not been started, construct a {@link PlaceNameLayerBulkDownloader}.
+     *
+     * @param area      the area to download data for.
+     * @param fileStore the file store in which to place the downloaded placenames. If null the current World Wind file
+     *                  cache is used.
+     * @param listener  an optional retrieval listener. May be null.
+     *
+     * @return the {@link PlaceNameLayerBulkDownloader} that executes the retrieval.
+     *
+     * @throws IllegalArgumentException if the area is null.
+     * @see BulkRetrievalArea#fromCorridor(Iterable, double[], double[])
+     */
+    public BulkRetrievalThread makeLocal(BulkRetrievalArea area, FileStore fileStore, BulkRetrievalListener listener)
+    {
+        PlaceNameLayerBulkDownloader thread = new PlaceNameLayerBulkDownloader(this, area,
+            fileStore != null ? fileStore : this.getDataFileStore(), listener);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Get the estimated size in bytes of the placenames not in a specified file store for a given area, such as a list
+     * of sectors or a corridor along a route.
+     *
+     * @param area      the area to estimate.
+     * @param fileStore the file store to examine. If null the current World Wind file cache is used.
+     *
+     * @return the estimated size in byte of the missing placenames.
+     *
+     * @throws IllegalArgumentException if the area is null.
+     */
+    public long getEstimatedMissingDataSize(BulkRetrievalArea area, FileStore fileStore)
+    {
+        if (area == null)
+        {
+            String message = Logging.getMessage("nullValue.AreaIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        try
+        {
+            PlaceNameLayerBulkDownloader downloader = new PlaceNameLayerBulkDownloader(this, area,
+                fileStore != null ? fileStore : this.getDataFileStore(), null);
+            return downloader.getEstimatedMissingDataSize();
+        }
+        catch (Exception e)
+        {
+            String message = Logging.getMessage("generic.ExceptionDuringDataSizeEstimate", this.getName());
+            Logging.logger().severe(message);
+            throw new RuntimeException(message);
+        }
+    }
 }
@@ -82,13 +82,36 @@ public class PlaceNameLayerBulkDownloader extends BulkRetrievalThread
         this.layer = layer;
     }
 
+    /**
+     * Constructs a downloader to retrieve placenames for an area, such as a corridor along a route, not currently
+     * available in a specified file store and places them there.
+     * <p/>
+     * The thread returned is not started during construction, the caller must start the thread.
+     *
+     * @param layer     the layer for which to download placenames.
+     * @param area      the area to download data for. This value is final.
+     * @param fileStore the file store in which to place the downloaded placenames.
+     * @param listener  an optional retrieval listener. May be null.
+     *
+     * @throws IllegalArgumentException if either the layer, the area or file store are null.
+     */
+    public PlaceNameLayerBulkDownloader(PlaceNameLayer layer, BulkRetrievalArea area, FileStore fileStore,
+        BulkRetrievalListener listener)
+    {
+        // Arguments checked in parent constructor
+        //each part's resolution is compared to the maxDistance value in each placenameservice
+        super(layer, area, fileStore, listener);
+
+        this.layer = layer;
+    }
+
     public void run()
     {
         try
         {
             // Cycle though placenameservices and find missing tiles
             this.missingTiles = new ArrayList<PlaceNameLayer.Tile>();
-            ArrayList<PlaceNameLayer.Tile> allMissingTiles = this.getMissingTilesInSector(this.sector);
+            ArrayList<PlaceNameLayer.Tile> allMissingTiles = this.getMissingTilesInArea();
 
             this.progress.setTotalCount(allMissingTiles.size());
             // Submit missing tiles requests at 10 sec intervals
@@ -194,7 +217,11 @@ public class PlaceNameLayerBulkDownloader extends BulkRetrievalThread
         int tileCount;
         try
         {
-            tileCount = this.getMissingTilesCountEstimate(sector, resolution);
+            tileCount = 0;
+            for (BulkRetrievalArea.Part part : this.area.getParts())
+            {
+                tileCount += this.getMissingTilesCountEstimate(part.getSector(), part.getResolution());
+            }
         }
         catch (Exception e)
         {
@@ -230,14 +257,36 @@ public class PlaceNameLayerBulkDownloader extends BulkRetrievalThread
         return tileCount;
     }
 
+    protected ArrayList<PlaceNameLayer.Tile> getMissingTilesInArea() throws InterruptedException
+    {
+        // Tiles shared by overlapping parts are retrieved once
+        LinkedHashMap<String, PlaceNameLayer.Tile> allMissingTiles = new LinkedHashMap<String, PlaceNameLayer.Tile>();
+        for (BulkRetrievalArea.Part part : this.area.getParts())
+        {
+            for (PlaceNameLayer.Tile tile : this.getMissingTilesInSector(part.getSector(), part.getResolution()))
+            {
+                if (!allMissingTiles.containsKey(tile.getFileCachePath()))
+                    allMissingTiles.put(tile.getFileCachePath(), tile);
+            }
+        }
+
+        return new ArrayList<PlaceNameLayer.Tile>(allMissingTiles.values());
+    }
+
     protected ArrayList<PlaceNameLayer.Tile> getMissingTilesInSector(Sector sector) throws InterruptedException
+    {
+        return this.getMissingTilesInSector(sector, this.resolution);
+    }
+
+    protected ArrayList<PlaceNameLayer.Tile> getMissingTilesInSector(Sector sector, double resolution)
+        throws InterruptedException
     {
         ArrayList<PlaceNameLayer.Tile> allMissingTiles = new ArrayList<PlaceNameLayer.Tile>();
         int serviceCount = this.layer.getPlaceNameServiceSet().getServiceCount();
         for (int i = 0; i < serviceCount; i++)
         {
             PlaceNameService service = this.layer.getPlaceNameServiceSet().getService(i);
-            if (service.getMaxDisplayDistance() > this.resolution)
+            if (service.getMaxDisplayDistance() > resolution)
             {
                 // get tiles in sector
                 ArrayList<PlaceNameLayer.Tile> baseTiles = new ArrayList<PlaceNameLayer.Tile>();
@@ -1043,7 +1043,8 @@ public class KMLRoot extends KMLAbstractObject implements KMLRenderable
     {
         KMLDoc kmlDoc;
 
-        InputStream refStream = url.openStream();
+        // The file store may keep the file compressed.
+        InputStream refStream = WWIO.openInflatingStream(url.openStream());
 
         if (KMLConstants.KMZ_MIME_TYPE.equals(contentType))
             kmlDoc = new KMZInputStream(refStream);
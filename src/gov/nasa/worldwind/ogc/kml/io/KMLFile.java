@@ -6,7 +6,7 @@
 
 package gov.nasa.worldwind.ogc.kml.io;
 
-import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.*;
 
 import java.io.*;
 
@@ -62,7 +62,8 @@ public class KMLFile implements KMLDoc
      */
     public InputStream getKMLStream() throws IOException
     {
-        return new FileInputStream(this.kmlFile);
+        // The file may be one that the file store keeps compressed.
+        return WWIO.openInflatingStream(new FileInputStream(this.kmlFile));
     }
 
     /**
@@ -89,7 +90,7 @@ public class KMLFile implements KMLDoc
 
         pathFile = new File(this.kmlFile.getParentFile(), path);
 
-        return pathFile.exists() ? new FileInputStream(pathFile) : null;
+        return pathFile.exists() ? WWIO.openInflatingStream(new FileInputStream(pathFile)) : null;
     }
 
     public String getSupportFilePath(String path)
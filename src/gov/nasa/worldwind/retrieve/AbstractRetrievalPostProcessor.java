@@ -82,6 +82,12 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
             return null;
         }
 
+        if (this.isNotModified())
+        {
+            this.handleNotModified();
+            return null;
+        }
+
         if (!this.validateResponseCode())
         {
             this.handleInvalidResponseCode();
@@ -101,6 +107,21 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
         return this.retriever;
     }
 
+    /**
+     * Indicates whether another post-processor handles a retrieval the same way as this one, so that a retrieval made
+     * for both need only be post-processed once. The default implementation considers post-processors of the same
+     * class and with the same attribute-value list, such as two requests for a tile by the same layer, equivalent.
+     *
+     * @param that the post-processor to compare with this one.
+     *
+     * @return true if the post-processors are equivalent, otherwise false.
+     */
+    public boolean isEquivalent(RetrievalPostProcessor that)
+    {
+        return that == this || (that != null && that.getClass() == this.getClass() && this.avList != null
+            && this.avList == ((AbstractRetrievalPostProcessor) that).avList);
+    }
+
     /**
      * Called when the retrieval state is other than {@link Retriever#RETRIEVER_STATE_SUCCESSFUL}. Can be overridden by
      * subclasses to handle special error cases. The default implementation calls {@link #markResourceAbsent()} if the
@@ -130,6 +151,36 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
         }
     }
 
+    /**
+     * Indicates whether the retrieval was a conditional request, one that revalidates a cached copy of the resource.
+     *
+     * @return true if the retriever is an {@link HTTPRetriever} making a conditional request, otherwise false.
+     */
+    protected boolean isConditionalRetrieval()
+    {
+        return this.getRetriever() instanceof HTTPRetriever && ((HTTPRetriever) this.getRetriever()).isConditional();
+    }
+
+    /**
+     * Indicates whether the server answered a conditional request with {@link HttpURLConnection#HTTP_NOT_MODIFIED},
+     * meaning the cached copy of the resource is current.
+     *
+     * @return true if the cached copy was found current, otherwise false.
+     */
+    protected boolean isNotModified()
+    {
+        return this.isConditionalRetrieval()
+            && ((HTTPRetriever) this.getRetriever()).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    /**
+     * Called when the server reports that the cached copy of the resource is current. Subclasses that make conditional
+     * requests override this method to record the revalidation. The default implementation does nothing.
+     */
+    protected void handleNotModified()
+    {
+    }
+
     /**
      * Checks the retrieval response code.
      *
@@ -218,6 +269,7 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
     /**
      * Saves the retrieved and possibly transformed data. The data may have been transformed during content handling.
      * The data is not saved if the output file already exists unless {@link #overwriteExistingFile()} returns true.
+     * The file is written by the {@link RetrievalPipeline}'s disk stage when this post-processor runs in the pipeline.
      *
      * @param buffer the buffer to save.
      *
@@ -228,7 +280,7 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
      */
     protected boolean saveBuffer(ByteBuffer buffer) throws IOException
     {
-        File outFile = this.getOutputFile();
+        final File outFile = this.getOutputFile();
 
         if (outFile == null)
             return false;
@@ -236,10 +288,20 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
         if (outFile.exists() && !this.overwriteExistingFile())
             return false;
 
-        synchronized (this.getFileLock()) // synchronize with read of file in another class
+        final ByteBuffer data = buffer != null ? buffer : this.getRetriever().getBuffer();
+        RetrievalPipeline.write(new RetrievalPipeline.FileWrite()
         {
-            WWIO.saveBuffer(buffer != null ? buffer : this.getRetriever().getBuffer(), outFile);
-        }
+            public void write() throws IOException
+            {
+                synchronized (getFileLock()) // synchronize with read of file in another class
+                {
+                    if (compressOutputFile())
+                        WWIO.saveBufferToCompressedFile(data, outFile);
+                    else
+                        WWIO.saveBuffer(data, outFile);
+                }
+            }
+        });
 
         return true;
     }
@@ -261,11 +323,25 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
 
     /**
      * Indicates whether the retrieved data should be written to the output file if a file of the same name already
-     * exists. The default implementation of this method returns false (files are not overwritten).
+     * exists. The default implementation of this method returns false (files are not overwritten) unless the retrieval
+     * revalidated the existing file, in which case the retrieved data replaces the file's out of date contents.
      *
      * @return true if an existing file should be overwritten, otherwise false.
      */
     protected boolean overwriteExistingFile()
+    {
+        return this.isConditionalRetrieval();
+    }
+
+    /**
+     * Indicates whether the data saved by {@link #saveBuffer(java.nio.ByteBuffer)} should be gzip-compressed, as by
+     * {@link WWIO#saveBufferToCompressedFile(ByteBuffer, File)}. Readers of the output file must inflate it, as {@link
+     * WWIO#openInflatingStream(java.io.InputStream)} does. The default implementation of this method returns false
+     * (files are written as retrieved).
+     *
+     * @return true if the output file should be compressed, otherwise false.
+     */
+    protected boolean compressOutputFile()
     {
         return false;
     }
@@ -537,14 +613,22 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
         if (outFile.getPath().endsWith("dds"))
             return this.saveDDS();
 
-        BufferedImage image = this.transformPixels();
+        final BufferedImage image = this.transformPixels();
 
         if (image != null)
         {
-            synchronized (this.getFileLock()) // synchronize with read of file in another class
+            final String formatName = this.getRetriever().getContentType().split("/")[1];
+            final File imageFile = outFile;
+            RetrievalPipeline.write(new RetrievalPipeline.FileWrite()
             {
-                ImageIO.write(image, this.getRetriever().getContentType().split("/")[1], outFile);
-            }
+                public void write() throws IOException
+                {
+                    synchronized (getFileLock()) // synchronize with read of file in another class
+                    {
+                        ImageIO.write(image, formatName, imageFile);
+                    }
+                }
+            });
         }
         else
             this.saveBuffer();
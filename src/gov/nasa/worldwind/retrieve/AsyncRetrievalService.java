@@ -0,0 +1,1208 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.exception.WWRuntimeException;
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * A retrieval service that performs HTTP retrievals with non-blocking I/O. A single thread multiplexes the connections
+ * of every retrieval in flight, so thousands of retrievals may wait on high-latency links at once without a thread
+ * each. Once a response has been received in full, the retriever reads it and runs its post-processor on the
+ * processing stage of the {@link RetrievalPipeline}, exactly as it would under {@link BasicRetrievalService}, so {@link
+ * Retriever} and {@link RetrievalPostProcessor} implementations need not change. While the processing stage's queue is
+ * full the I/O thread post-processes responses itself, and receives no more until it's done.
+ * <p/>
+ * Only plain HTTP retrievals made without a proxy are performed asynchronously. Requests are sent as HTTP/1.0 over one
+ * connection per retrieval, and redirects to other HTTP URLs are followed. HTTPS, proxied and non-HTTP retrievals are
+ * passed to a {@link BasicRetrievalService}, which runs them on threads of its own.
+ * <p/>
+ * At most {@link AVKey#RETRIEVAL_ASYNC_CONNECTION_LIMIT} retrievals are in flight at once. Further retrievals wait in
+ * a queue ordered as {@link BasicRetrievalService} orders its queue, and are cancelled if they wait longer than the
+ * stale request limit without being requested again. Host names are resolved on a few threads of their own, so a slow
+ * name server never stalls the I/O thread, and responses larger than {@link AVKey#RETRIEVAL_ASYNC_MAX_RESPONSE_SIZE}
+ * fail rather than exhaust memory. A connect or read timeout of 0 means no timeout, as it does for {@link
+ * URLConnection}. To use this service, set the configuration property {@link
+ * AVKey#RETRIEVAL_SERVICE_CLASS_NAME} to this class's name.
+ */
+public class AsyncRetrievalService extends WWObjectImpl implements RetrievalService
+{
+    protected static final int DEFAULT_CONNECTION_LIMIT = 1024;
+    protected static final int DEFAULT_QUEUE_SIZE = 100;
+    protected static final long DEFAULT_STALE_REQUEST_LIMIT = 30000; // milliseconds
+    protected static final int DEFAULT_TIME_PRIORITY_GRANULARITY = 500; // milliseconds
+    protected static final long SELECT_TIMEOUT = 100; // milliseconds between checks for timeouts and cancellations
+    protected static final int INITIAL_RESPONSE_CAPACITY = 16384;
+    protected static final int MAX_REDIRECTS = 5;
+    protected static final int DEFAULT_MAX_RESPONSE_SIZE = 64 * 1024 * 1024; // bytes
+    protected static final int RESOLVER_POOL_SIZE = 4;
+
+    /** A retrieval submitted to the service. The response it is completed with is set before it runs. */
+    protected class AsyncRetrievalTask extends FutureTask<Retriever> implements RetrievalFuture
+    {
+        protected final Retriever retriever;
+        protected final Completion completion;
+        protected volatile double priority; // secondary priority (primary priority is request time)
+        protected volatile long requestTime; // the last time the retrieval was requested
+        protected boolean started; // the task has left the queue. Guarded by the service's monitor.
+        protected QueueEntry entry; // the task's latest place in the queue, or null. Guarded by the service's monitor.
+
+        protected AsyncRetrievalTask(Retriever retriever, Completion completion, double priority)
+        {
+            super(completion);
+            this.retriever = retriever;
+            this.completion = completion;
+            this.priority = priority;
+            this.requestTime = System.currentTimeMillis();
+        }
+
+        public Retriever getRetriever()
+        {
+            return this.retriever;
+        }
+
+        @Override
+        protected void done()
+        {
+            AsyncRetrievalService.this.removeSubmittedTask(this);
+        }
+    }
+
+    /**
+     * A place of a waiting task in the queue. The queue cannot move a task without searching for it, so a task
+     * requested again in a different order is given a new entry instead, and the entries it supersedes are skipped
+     * when they're taken.
+     */
+    protected static class QueueEntry implements Comparable<QueueEntry>
+    {
+        protected final AsyncRetrievalTask task;
+        protected final double priority; // the task's priority when the entry was made
+        protected final long requestTime; // the task's request time when the entry was made
+
+        protected QueueEntry(AsyncRetrievalTask task)
+        {
+            this.task = task;
+            this.priority = task.priority;
+            this.requestTime = task.requestTime;
+        }
+
+        /** @return true if a later entry has replaced this one, or the task has been cancelled through the service. */
+        protected boolean isStale()
+        {
+            return this.task.entry != this;
+        }
+
+        /**
+         * Orders entries as {@link BasicRetrievalService} does: tasks last requested in different time-granularity
+         * periods are ordered most recent first, and the client-specified priority orders the others.
+         *
+         * @param that the entry to compare with this one.
+         *
+         * @return -1 if this entry's task runs before that one's, 1 if after, 0 if the order does not matter.
+         */
+        public int compareTo(QueueEntry that)
+        {
+            if (that == null)
+            {
+                String message = Logging.getMessage("nullValue.RetrieverIsNull");
+                Logging.logger().fine(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            if (this.priority > 0 && that.priority > 0)
+            {
+                long elapsed = that.requestTime - this.requestTime;
+                if (elapsed / DEFAULT_TIME_PRIORITY_GRANULARITY != 0)
+                    return elapsed > 0 ? -1 : 1;
+            }
+
+            return this.priority == that.priority ? 0 : this.priority < that.priority ? -1 : 1;
+        }
+    }
+
+    /** Hands a received response to a retriever, which reads it and runs its post-processor. */
+    protected static class Completion implements Callable<Retriever>
+    {
+        protected final URLRetriever retriever;
+        protected volatile URLConnection response;
+
+        protected Completion(URLRetriever retriever)
+        {
+            this.retriever = retriever;
+        }
+
+        public Retriever call() throws Exception
+        {
+            return this.retriever.call(this.response);
+        }
+    }
+
+    /** The connection of one retrieval in flight. Used only by the I/O thread. */
+    protected static class Exchange
+    {
+        protected final AsyncRetrievalTask task;
+        protected final URL url; // the URL requested, which differs from the retriever's after a redirect
+        protected final int redirects;
+        protected final SocketChannel channel;
+        protected final ByteBuffer request;
+        protected ByteBuffer response = ByteBuffer.allocate(INITIAL_RESPONSE_CAPACITY);
+        protected boolean connected;
+        protected long deadline;
+
+        protected Exchange(AsyncRetrievalTask task, URL url, int redirects, SocketChannel channel)
+        {
+            this.task = task;
+            this.url = url;
+            this.redirects = redirects;
+            this.channel = channel;
+            this.request = makeRequest(url, task.retriever);
+        }
+    }
+
+    /** The address of a host resolved for a retrieval, or the failure to resolve it. */
+    protected static class Resolution
+    {
+        protected final AsyncRetrievalTask task;
+        protected final URL url;
+        protected final int redirects;
+        protected InetSocketAddress address;
+        protected IOException failure;
+
+        protected Resolution(AsyncRetrievalTask task, URL url, int redirects)
+        {
+            this.task = task;
+            this.url = url;
+            this.redirects = redirects;
+        }
+    }
+
+    protected final BasicRetrievalService blockingService; // runs the retrievals not performed asynchronously
+    protected final ConcurrentHashMap<String, AsyncRetrievalTask> submittedTasks =
+        new ConcurrentHashMap<String, AsyncRetrievalTask>();
+    protected PriorityQueue<QueueEntry> waitingTasks = new PriorityQueue<QueueEntry>();
+    protected int numWaiting; // the waiting tasks, whose latest entries are queued. Guarded by the monitor.
+    protected final Set<Exchange> exchanges = new HashSet<Exchange>(); // used only by the I/O thread
+    protected volatile int numExchanges;
+    protected final ExecutorService resolver;
+    protected final Queue<Resolution> resolutions = new ConcurrentLinkedQueue<Resolution>(); // resolved host names
+    protected final AtomicInteger numResolving = new AtomicInteger(); // retrievals whose host is being resolved
+    protected final Selector selector;
+    protected final Thread ioThread;
+    protected volatile boolean shutdown;
+    protected int connectionLimit;
+    protected int queueSize;
+    protected long staleRequestLimit;
+    protected volatile int maxResponseSize;
+
+    public AsyncRetrievalService()
+    {
+        this.connectionLimit = Configuration.getIntegerValue(AVKey.RETRIEVAL_ASYNC_CONNECTION_LIMIT,
+            DEFAULT_CONNECTION_LIMIT);
+        this.queueSize = Configuration.getIntegerValue(AVKey.RETRIEVAL_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+        this.staleRequestLimit = Configuration.getLongValue(AVKey.RETRIEVAL_QUEUE_STALE_REQUEST_LIMIT,
+            DEFAULT_STALE_REQUEST_LIMIT);
+        this.maxResponseSize = Configuration.getIntegerValue(AVKey.RETRIEVAL_ASYNC_MAX_RESPONSE_SIZE,
+            DEFAULT_MAX_RESPONSE_SIZE);
+
+        this.blockingService = new BasicRetrievalService();
+        this.resolver = this.createResolver();
+
+        try
+        {
+            this.selector = Selector.open();
+        }
+        catch (IOException e)
+        {
+            throw new WWRuntimeException(e);
+        }
+
+        this.ioThread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                AsyncRetrievalService.this.runIOLoop();
+            }
+        }, Logging.getMessage("AsyncRetrievalService.IOThreadName"));
+        this.ioThread.setDaemon(true);
+        this.ioThread.start();
+    }
+
+    public void shutdown(boolean immediately)
+    {
+        this.shutdown = true;
+        this.selector.wakeup();
+
+        this.resolver.shutdownNow();
+        this.blockingService.shutdown(immediately);
+    }
+
+    protected ExecutorService createResolver()
+    {
+        return Executors.newFixedThreadPool(RESOLVER_POOL_SIZE, new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, Logging.getMessage("AsyncRetrievalService.ResolverThreadName"));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public RetrievalFuture runRetriever(Retriever retriever)
+    {
+        if (retriever == null)
+        {
+            String message = Logging.getMessage("nullValue.RetrieverIsNull");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        // Add with secondary priority that removes most recently added requests first.
+        return this.runRetriever(retriever, (double) (Long.MAX_VALUE - System.currentTimeMillis()));
+    }
+
+    /**
+     * @param retriever the retriever to run
+     * @param priority  the secondary priority of the retriever, or negative if it is to be the primary priority
+     *
+     * @return a future object that can be used to query the request status of cancel the request, or null if the
+     *         request is served by a retrieval already submitted.
+     *
+     * @throws IllegalArgumentException if <code>retriever</code> is null or has no name
+     */
+    public synchronized RetrievalFuture runRetriever(Retriever retriever, double priority)
+    {
+        this.checkRetriever(retriever);
+
+        if (!this.isAsynchronous(retriever))
+            return this.blockingService.runRetriever(retriever, priority);
+
+        // Do not queue duplicates. A request for the same URL by another layer or model shares the retrieval already
+        // submitted, which runs the request's post-processor too.
+        AsyncRetrievalTask submitted = this.submittedTasks.get(retriever.getName());
+        if (submitted != null && this.coalesce(submitted, retriever))
+        {
+            this.renew(submitted, priority);
+            return null;
+        }
+
+        AsyncRetrievalTask task = new AsyncRetrievalTask(retriever, new Completion((URLRetriever) retriever),
+            priority);
+        retriever.setSubmitTime(System.currentTimeMillis());
+
+        this.submittedTasks.put(retriever.getName(), task);
+        task.entry = new QueueEntry(task);
+        this.waitingTasks.add(task.entry);
+        this.numWaiting++;
+        this.selector.wakeup();
+
+        return task;
+    }
+
+    public synchronized boolean updatePriority(Retriever retriever, double priority)
+    {
+        this.checkRetriever(retriever);
+
+        AsyncRetrievalTask submitted = this.submittedTasks.get(retriever.getName());
+        if (submitted == null)
+            return this.blockingService.updatePriority(retriever, priority);
+
+        if (submitted.isDone())
+            return false;
+
+        this.renew(submitted, priority);
+        return true;
+    }
+
+    public synchronized boolean cancel(Retriever retriever)
+    {
+        this.checkRetriever(retriever);
+
+        AsyncRetrievalTask submitted = this.submittedTasks.get(retriever.getName());
+        if (submitted == null)
+            return this.blockingService.cancel(retriever);
+
+        if (submitted.started || submitted.isDone())
+            return false;
+
+        // A retrieval shared with other requests continues for them without the caller's post-processor.
+        RetrievalPostProcessor postProcessor = retriever instanceof URLRetriever
+            ? ((URLRetriever) retriever).getPostProcessor() : null;
+        URLRetriever submittedRetriever = (URLRetriever) submitted.getRetriever();
+        if (postProcessor != null)
+        {
+            if (!submittedRetriever.removePostProcessor(postProcessor))
+                return false;
+
+            if (submittedRetriever.hasPostProcessors())
+                return true;
+        }
+
+        if (!submitted.cancel(false))
+            return false;
+
+        // The task's entry is skipped when it's taken.
+        submitted.entry = null;
+        this.numWaiting--;
+        this.removeSubmittedTask(submitted);
+        return true;
+    }
+
+    public void setRetrieverPoolSize(int poolSize)
+    {
+        if (poolSize < 1)
+        {
+            String message = Logging.getMessage("BasicRetrievalService.RetrieverPoolSizeIsLessThanOne");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.blockingService.setRetrieverPoolSize(poolSize);
+    }
+
+    public int getRetrieverPoolSize()
+    {
+        return this.blockingService.getRetrieverPoolSize();
+    }
+
+    /**
+     * Specifies the maximum number of asynchronous retrievals in flight at once.
+     *
+     * @param limit the maximum number of connections.
+     *
+     * @throws IllegalArgumentException if <code>limit</code> is less than 1
+     */
+    public synchronized void setConnectionLimit(int limit)
+    {
+        if (limit < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "limit < 1");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.connectionLimit = limit;
+        this.selector.wakeup();
+    }
+
+    public synchronized int getConnectionLimit()
+    {
+        return this.connectionLimit;
+    }
+
+    /**
+     * Specifies the largest response, headers included, that an asynchronous retrieval may receive. Retrievals of
+     * larger responses fail.
+     *
+     * @param size the maximum response size in bytes.
+     *
+     * @throws IllegalArgumentException if <code>size</code> is less than 1
+     */
+    public void setMaxResponseSize(int size)
+    {
+        if (size < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "size < 1");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.maxResponseSize = size;
+    }
+
+    public int getMaxResponseSize()
+    {
+        return this.maxResponseSize;
+    }
+
+    public boolean hasActiveTasks()
+    {
+        return this.numExchanges > 0 || this.numResolving.get() > 0 || WorldWind.getRetrievalPipeline().getProcessingStage().getActiveCount() > 0
+            || this.blockingService.hasActiveTasks();
+    }
+
+    public synchronized boolean isAvailable()
+    {
+        return this.numWaiting < this.queueSize && this.blockingService.isAvailable();
+    }
+
+    public boolean contains(Retriever retriever)
+    {
+        if (retriever == null)
+        {
+            String message = Logging.getMessage("nullValue.RetrieverIsNull");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return (retriever.getName() != null && this.submittedTasks.containsKey(retriever.getName()))
+            || this.blockingService.contains(retriever);
+    }
+
+    public int getNumRetrieversPending()
+    {
+        return this.submittedTasks.size() + this.blockingService.getNumRetrieversPending();
+    }
+
+    public void setSSLExceptionListener(SSLExceptionListener listener)
+    {
+        // Only the blocking service performs HTTPS retrievals.
+        this.blockingService.setSSLExceptionListener(listener);
+    }
+
+    public SSLExceptionListener getSSLExceptionListener()
+    {
+        return this.blockingService.getSSLExceptionListener();
+    }
+
+    protected void checkRetriever(Retriever retriever)
+    {
+        if (retriever == null)
+        {
+            String message = Logging.getMessage("nullValue.RetrieverIsNull");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (retriever.getName() == null)
+        {
+            String message = Logging.getMessage("nullValue.RetrieverNameIsNull");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    /**
+     * Indicates whether this service performs a retrieval's I/O itself.
+     *
+     * @param retriever the retriever.
+     *
+     * @return true if the retriever is an {@link HTTPRetriever} for a plain HTTP URL and no proxy is configured,
+     *         otherwise false.
+     */
+    protected boolean isAsynchronous(Retriever retriever)
+    {
+        return retriever instanceof HTTPRetriever
+            && "http".equalsIgnoreCase(((HTTPRetriever) retriever).getUrl().getProtocol())
+            && WWIO.configureProxy() == null;
+    }
+
+    /**
+     * Attaches a retriever's post-processor to a submitted retrieval of the same URL.
+     *
+     * @param submitted the submitted task.
+     * @param retriever the retriever of the new request.
+     *
+     * @return true if the submitted retrieval serves the request, false if the request must be run on its own because
+     *         the submitted retrieval has finished.
+     */
+    protected boolean coalesce(AsyncRetrievalTask submitted, Retriever retriever)
+    {
+        RetrievalPostProcessor postProcessor = retriever instanceof URLRetriever
+            ? ((URLRetriever) retriever).getPostProcessor() : null;
+        if (postProcessor == null)
+            return !submitted.isDone();
+
+        return ((URLRetriever) submitted.getRetriever()).addPostProcessor(postProcessor);
+    }
+
+    /**
+     * Records that a submitted retrieval has been requested again, and with what priority. A waiting task whose
+     * priority or request-time period changes is given a new entry at its new place in the queue, and the entry it
+     * supersedes is skipped when taken.
+     *
+     * @param task     the submitted task.
+     * @param priority the priority of the latest request.
+     */
+    protected void renew(AsyncRetrievalTask task, double priority)
+    {
+        long now = System.currentTimeMillis();
+        task.requestTime = now;
+        task.priority = priority;
+
+        QueueEntry entry = task.entry;
+        if (entry == null || task.started)
+            return;
+
+        // Order only changes with the priority or the time-granularity period of the request.
+        if (priority == entry.priority && now - entry.requestTime < DEFAULT_TIME_PRIORITY_GRANULARITY)
+            return;
+
+        task.entry = new QueueEntry(task);
+        this.waitingTasks.add(task.entry);
+
+        if (this.waitingTasks.size() > 2 * Math.max(this.queueSize, this.numWaiting))
+            this.compactWaitingTasks();
+    }
+
+    /** Drops the superseded entries from the queue, once they outnumber the entries of waiting tasks. */
+    protected void compactWaitingTasks()
+    {
+        for (Iterator<QueueEntry> iter = this.waitingTasks.iterator(); iter.hasNext(); )
+        {
+            if (iter.next().isStale())
+                iter.remove();
+        }
+    }
+
+    /** Removes a finished task from the index, unless it has already been replaced by another task for its URL. */
+    protected void removeSubmittedTask(AsyncRetrievalTask task)
+    {
+        this.submittedTasks.remove(task.getRetriever().getName(), task);
+    }
+
+    /**
+     * Takes from the queue the tasks that may start now, discarding those cancelled or stale, and superseded entries.
+     *
+     * @return the tasks to start.
+     */
+    protected synchronized List<AsyncRetrievalTask> takeWaitingTasks()
+    {
+        long now = System.currentTimeMillis();
+
+        ArrayList<AsyncRetrievalTask> tasks = new ArrayList<AsyncRetrievalTask>();
+        int inFlight = this.numExchanges + this.numResolving.get();
+        while (inFlight + tasks.size() < this.connectionLimit && !this.waitingTasks.isEmpty())
+        {
+            QueueEntry entry = this.waitingTasks.poll();
+            if (entry.isStale())
+                continue;
+
+            AsyncRetrievalTask task = entry.task;
+            this.numWaiting--;
+            if (task.isCancelled())
+                continue;
+
+            task.started = true;
+
+            long limit = task.retriever.getStaleRequestLimit() >= 0
+                ? task.retriever.getStaleRequestLimit() : this.staleRequestLimit;
+            if (now - task.requestTime > limit)
+            {
+                // Task has been sitting on the queue too long without being requested again
+                Logging.logger().finer(Logging.getMessage("BasicRetrievalService.CancellingTooOldRetrieval",
+                    task.getRetriever().getName()));
+                task.cancel(false);
+                continue;
+            }
+
+            tasks.add(task);
+        }
+
+        return tasks;
+    }
+
+    /** Runs the I/O thread: connects, sends requests and receives responses until the service is shut down. */
+    protected void runIOLoop()
+    {
+        long lastExpirationCheck = System.currentTimeMillis();
+
+        while (!this.shutdown)
+        {
+            try
+            {
+                this.selector.select(SELECT_TIMEOUT);
+
+                Iterator<SelectionKey> iter = this.selector.selectedKeys().iterator();
+                while (iter.hasNext())
+                {
+                    SelectionKey key = iter.next();
+                    iter.remove();
+                    this.handleSelectedKey(key);
+                }
+
+                Resolution resolution;
+                while ((resolution = this.resolutions.poll()) != null)
+                {
+                    this.connect(resolution);
+                }
+
+                for (AsyncRetrievalTask task : this.takeWaitingTasks())
+                {
+                    HTTPRetriever retriever = (HTTPRetriever) task.retriever;
+                    retriever.setBeginTime(System.currentTimeMillis());
+                    this.startExchange(task, retriever.getUrl(), 0);
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - lastExpirationCheck >= SELECT_TIMEOUT)
+                {
+                    this.expireExchanges(now);
+                    lastExpirationCheck = now;
+                }
+            }
+            catch (Throwable t)
+            {
+                // Keep the I/O thread alive; individual retrievals fail through their own exchanges.
+                Logging.logger().log(Level.SEVERE,
+                    Logging.getMessage("AsyncRetrievalService.UnexpectedIOThreadException"), t);
+            }
+        }
+
+        for (Exchange exchange : this.exchanges)
+        {
+            exchange.task.cancel(false);
+            WWIO.closeStream(exchange.channel, exchange.url.toString());
+        }
+        this.exchanges.clear();
+        this.numExchanges = 0;
+        WWIO.closeStream(this.selector, null);
+    }
+
+    /**
+     * Resolves the host of a task's URL on the resolver threads, after which the I/O thread connects to it.
+     *
+     * @param task      the task.
+     * @param url       the URL to request.
+     * @param redirects the number of redirects followed so far.
+     */
+    protected void startExchange(AsyncRetrievalTask task, URL url, int redirects)
+    {
+        final Resolution resolution = new Resolution(task, url, redirects);
+        this.numResolving.incrementAndGet();
+
+        try
+        {
+            this.resolver.execute(new Runnable()
+            {
+                public void run()
+                {
+                    resolve(resolution);
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            this.numResolving.decrementAndGet();
+            task.cancel(false); // the service is shutting down
+        }
+    }
+
+    /**
+     * Resolves a retrieval's host and hands the result to the I/O thread. Called on a resolver thread.
+     *
+     * @param resolution the retrieval to resolve the host of.
+     */
+    protected void resolve(Resolution resolution)
+    {
+        if (!resolution.task.isCancelled())
+        {
+            URL url = resolution.url;
+            int port = url.getPort() >= 0 ? url.getPort() : url.getDefaultPort();
+            InetSocketAddress address = new InetSocketAddress(url.getHost(), port); // host names are cached
+            if (address.isUnresolved())
+                resolution.failure = new UnknownHostException(url.getHost());
+            else
+                resolution.address = address;
+        }
+
+        this.resolutions.add(resolution);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Opens a non-blocking connection for a task whose host has been resolved.
+     *
+     * @param resolution the task and the address of its host.
+     */
+    protected void connect(Resolution resolution)
+    {
+        AsyncRetrievalTask task = resolution.task;
+        URL url = resolution.url;
+        SocketChannel channel = null;
+        try
+        {
+            if (resolution.failure != null)
+                throw resolution.failure;
+            if (task.isCancelled())
+                return;
+
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+
+            Exchange exchange = new Exchange(task, url, resolution.redirects, channel);
+            exchange.connected = channel.connect(resolution.address);
+            exchange.deadline = deadline(exchange.connected
+                ? task.retriever.getReadTimeout() : task.retriever.getConnectTimeout());
+            channel.register(this.selector, exchange.connected ? SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT,
+                exchange);
+
+            this.exchanges.add(exchange);
+            this.numExchanges = this.exchanges.size();
+        }
+        catch (IOException e)
+        {
+            WWIO.closeStream(channel, url.toString());
+            this.complete(task, new ReceivedConnection(url, e));
+        }
+        finally
+        {
+            this.numResolving.decrementAndGet();
+        }
+    }
+
+    /**
+     * Computes when a connect or read started now times out.
+     *
+     * @param timeout the timeout in milliseconds, or 0 for no timeout.
+     *
+     * @return the time the operation times out, or {@link Long#MAX_VALUE} if it never does.
+     */
+    protected static long deadline(int timeout)
+    {
+        return timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+    }
+
+    protected void handleSelectedKey(SelectionKey key)
+    {
+        Exchange exchange = (Exchange) key.attachment();
+        try
+        {
+            if (!key.isValid())
+                return;
+
+            if (key.isConnectable() && exchange.channel.finishConnect())
+            {
+                exchange.connected = true;
+                exchange.deadline = deadline(exchange.task.retriever.getReadTimeout());
+                key.interestOps(SelectionKey.OP_WRITE);
+            }
+
+            if (key.isValid() && key.isWritable())
+            {
+                exchange.channel.write(exchange.request);
+                if (!exchange.request.hasRemaining())
+                    key.interestOps(SelectionKey.OP_READ);
+            }
+
+            if (key.isValid() && key.isReadable())
+            {
+                if (!exchange.response.hasRemaining())
+                {
+                    if (exchange.response.capacity() >= this.maxResponseSize)
+                    {
+                        throw new IOException(Logging.getMessage("AsyncRetrievalService.ResponseTooLarge",
+                            exchange.url, this.maxResponseSize));
+                    }
+
+                    ByteBuffer larger = ByteBuffer.allocate(
+                        (int) Math.min(2L * exchange.response.capacity(), this.maxResponseSize));
+                    exchange.response.flip();
+                    larger.put(exchange.response);
+                    exchange.response = larger;
+                }
+
+                int count = exchange.channel.read(exchange.response);
+                if (count < 0)
+                    this.finishExchange(exchange);
+                else
+                    exchange.deadline = deadline(exchange.task.retriever.getReadTimeout());
+            }
+        }
+        catch (IOException e)
+        {
+            this.endExchange(exchange);
+            this.complete(exchange.task, new ReceivedConnection(exchange.url, e));
+        }
+    }
+
+    /** Fails the exchanges that have timed out, and closes those whose tasks have been cancelled. */
+    protected void expireExchanges(long now)
+    {
+        for (Exchange exchange : new ArrayList<Exchange>(this.exchanges))
+        {
+            if (exchange.task.isCancelled())
+            {
+                this.endExchange(exchange);
+            }
+            else if (now > exchange.deadline)
+            {
+                this.endExchange(exchange);
+                String message = Logging.getMessage(exchange.connected ? "AsyncRetrievalService.ReadTimedOut"
+                    : "AsyncRetrievalService.ConnectTimedOut", exchange.url);
+                this.complete(exchange.task, new ReceivedConnection(exchange.url, new SocketTimeoutException(message)));
+            }
+        }
+    }
+
+    /** Completes an exchange whose response has been received in full, following a redirect if there is one. */
+    protected void finishExchange(Exchange exchange) throws IOException
+    {
+        this.endExchange(exchange);
+
+        exchange.response.flip();
+        ReceivedConnection connection = parseResponse(exchange.url, exchange.response);
+
+        int code = connection.getResponseCode();
+        String location = connection.getHeaderField("location");
+        if (location != null && exchange.redirects < MAX_REDIRECTS
+            && (code == HttpURLConnection.HTTP_MOVED_PERM || code == HttpURLConnection.HTTP_MOVED_TEMP
+            || code == HttpURLConnection.HTTP_SEE_OTHER || code == 307 || code == 308))
+        {
+            URL target = new URL(exchange.url, location);
+            if ("http".equalsIgnoreCase(target.getProtocol()))
+            {
+                this.startExchange(exchange.task, target, exchange.redirects + 1);
+                return;
+            }
+        }
+
+        this.complete(exchange.task, connection);
+    }
+
+    protected void endExchange(Exchange exchange)
+    {
+        WWIO.closeStream(exchange.channel, exchange.url.toString());
+        this.exchanges.remove(exchange);
+        this.numExchanges = this.exchanges.size();
+    }
+
+    /**
+     * Passes a task's response, or the failure to receive it, to the task's retriever on the retrieval pipeline's
+     * processing stage.
+     *
+     * @param task     the task.
+     * @param response the response.
+     */
+    protected void complete(AsyncRetrievalTask task, URLConnection response)
+    {
+        task.retriever.setEndTime(System.currentTimeMillis());
+        task.completion.response = response;
+
+        try
+        {
+            WorldWind.getRetrievalPipeline().process(task);
+        }
+        catch (RejectedExecutionException e)
+        {
+            task.cancel(false); // World Wind is shutting down
+        }
+    }
+
+    /**
+     * Creates the HTTP/1.0 request for a URL. The server closes the connection after the response, which marks the
+     * response's end.
+     *
+     * @param url       the URL.
+     * @param retriever the retriever making the request, whose validators, if any, make the request conditional.
+     *
+     * @return the request, ready to write.
+     */
+    protected static ByteBuffer makeRequest(URL url, Retriever retriever)
+    {
+        String path = url.getFile();
+        String host = url.getPort() >= 0 && url.getPort() != url.getDefaultPort()
+            ? url.getHost() + ":" + url.getPort() : url.getHost();
+        String agent = System.getProperty("http.agent");
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("GET ").append(path.length() > 0 ? path : "/").append(" HTTP/1.0\r\n");
+        sb.append("Host: ").append(host).append("\r\n");
+        sb.append("User-Agent: ").append(agent != null ? agent : "Java/" + System.getProperty("java.version"))
+            .append("\r\n");
+        sb.append("Accept: */*\r\n");
+        sb.append("Accept-Encoding: ").append(HTTPRetriever.ACCEPT_ENCODING).append("\r\n");
+
+        if (retriever instanceof HTTPRetriever)
+        {
+            HTTPRetriever htr = (HTTPRetriever) retriever;
+            if (htr.getIfNoneMatch() != null)
+                sb.append("If-None-Match: ").append(htr.getIfNoneMatch()).append("\r\n");
+            if (htr.getIfModifiedSince() > 0)
+            {
+                java.text.SimpleDateFormat format = new java.text.SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'",
+                    Locale.US);
+                format.setTimeZone(TimeZone.getTimeZone("GMT"));
+                sb.append("If-Modified-Since: ").append(format.format(new Date(htr.getIfModifiedSince())))
+                    .append("\r\n");
+            }
+        }
+
+        sb.append("Connection: close\r\n\r\n");
+
+        return ByteBuffer.wrap(sb.toString().getBytes(java.nio.charset.Charset.forName("ISO-8859-1")));
+    }
+
+    /**
+     * Parses a complete HTTP response.
+     *
+     * @param url      the URL requested.
+     * @param received the bytes received, from the buffer's position to its limit.
+     *
+     * @return a connection presenting the response.
+     *
+     * @throws IOException if the response is malformed or incomplete.
+     */
+    protected static ReceivedConnection parseResponse(URL url, ByteBuffer received) throws IOException
+    {
+        byte[] bytes = received.array();
+        int start = received.arrayOffset() + received.position();
+        int end = received.arrayOffset() + received.limit();
+
+        int headerEnd = -1;
+        for (int i = start; i + 3 < end; i++)
+        {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r' && bytes[i + 3] == '\n')
+            {
+                headerEnd = i;
+                break;
+            }
+        }
+
+        String[] lines = headerEnd >= 0 ? new String(bytes, start, headerEnd - start, "ISO-8859-1").split("\r\n")
+            : null;
+        String[] status = lines != null ? lines[0].split(" ", 3) : null;
+        if (status == null || status.length < 2 || !status[0].startsWith("HTTP/"))
+            throw new ProtocolException(Logging.getMessage("AsyncRetrievalService.MalformedResponse", url));
+
+        int code;
+        try
+        {
+            code = Integer.parseInt(status[1]);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ProtocolException(Logging.getMessage("AsyncRetrievalService.MalformedResponse", url));
+        }
+
+        ArrayList<String> names = new ArrayList<String>();
+        ArrayList<String> values = new ArrayList<String>();
+        for (int i = 1; i < lines.length; i++)
+        {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0)
+            {
+                names.add(lines[i].substring(0, colon).trim());
+                values.add(lines[i].substring(colon + 1).trim());
+            }
+        }
+
+        ReceivedConnection connection = new ReceivedConnection(url, lines[0], code,
+            status.length > 2 ? status[2] : "", names, values, bytes, headerEnd + 4, end - headerEnd - 4);
+
+        // Informational, 204 and 304 responses end with their headers, even those whose Content-Length gives the size
+        // of the content an unconditional request would have received (RFC 7230 section 3.3.2).
+        if (code / 100 == 1 || code == HttpURLConnection.HTTP_NO_CONTENT
+            || code == HttpURLConnection.HTTP_NOT_MODIFIED)
+        {
+            connection.contentLength = 0;
+            return connection;
+        }
+
+        String transferEncoding = connection.getHeaderField("transfer-encoding");
+        if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked"))
+            connection.dechunkContent();
+
+        int contentLength = connection.getContentLength();
+        if (contentLength >= 0 && connection.contentLength < contentLength)
+            throw new IOException("Premature end of stream from server.");
+
+        return connection;
+    }
+
+    /**
+     * Presents a response received by the service, or the failure to receive one, as an HTTP connection, so that a
+     * retriever can read it as it reads its own connections.
+     */
+    protected static class ReceivedConnection extends HttpURLConnection
+    {
+        protected final IOException failure;
+        protected final String statusLine;
+        protected final List<String> headerNames;
+        protected final List<String> headerValues;
+        protected byte[] content;
+        protected int contentOffset;
+        protected int contentLength;
+
+        public ReceivedConnection(URL url, IOException failure)
+        {
+            super(url);
+            this.failure = failure;
+            this.statusLine = null;
+            this.headerNames = Collections.emptyList();
+            this.headerValues = Collections.emptyList();
+            this.content = new byte[0];
+        }
+
+        public ReceivedConnection(URL url, String statusLine, int responseCode, String responseMessage,
+            List<String> headerNames, List<String> headerValues, byte[] content, int contentOffset, int contentLength)
+        {
+            super(url);
+            this.failure = null;
+            this.statusLine = statusLine;
+            this.responseCode = responseCode;
+            this.responseMessage = responseMessage;
+            this.headerNames = headerNames;
+            this.headerValues = headerValues;
+            this.content = content;
+            this.contentOffset = contentOffset;
+            this.contentLength = contentLength;
+            this.connected = true;
+        }
+
+        /**
+         * Decodes content sent with chunked transfer encoding.
+         *
+         * @throws IOException if the content is not validly chunked.
+         */
+        protected void dechunkContent() throws IOException
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(this.contentLength);
+            int pos = this.contentOffset;
+            int end = this.contentOffset + this.contentLength;
+
+            while (true)
+            {
+                int lineEnd = pos;
+                while (lineEnd + 1 < end && !(this.content[lineEnd] == '\r' && this.content[lineEnd + 1] == '\n'))
+                {
+                    lineEnd++;
+                }
+                if (lineEnd + 1 >= end)
+                    throw new IOException("Premature end of stream from server.");
+
+                String sizeText = new String(this.content, pos, lineEnd - pos, "ISO-8859-1");
+                int semicolon = sizeText.indexOf(';');
+                int size;
+                try
+                {
+                    size = Integer.parseInt((semicolon >= 0 ? sizeText.substring(0, semicolon) : sizeText).trim(),
+                        16);
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new ProtocolException(Logging.getMessage("AsyncRetrievalService.MalformedResponse", url));
+                }
+
+                pos = lineEnd + 2;
+                if (size == 0)
+                    break;
+                if (size < 0 || pos + size > end)
+                    throw new IOException("Premature end of stream from server.");
+
+                out.write(this.content, pos, size);
+                pos += size + 2; // the chunk's trailing CRLF
+            }
+
+            this.content = out.toByteArray();
+            this.contentOffset = 0;
+            this.contentLength = this.content.length;
+        }
+
+        @Override
+        public void connect()
+        {
+        }
+
+        @Override
+        public void disconnect()
+        {
+        }
+
+        @Override
+        public boolean usingProxy()
+        {
+            return false;
+        }
+
+        @Override
+        public int getResponseCode() throws IOException
+        {
+            if (this.failure != null)
+                throw this.failure;
+
+            return this.responseCode;
+        }
+
+        @Override
+        public String getResponseMessage() throws IOException
+        {
+            if (this.failure != null)
+                throw this.failure;
+
+            return this.responseMessage;
+        }
+
+        @Override
+        public String getHeaderField(String name)
+        {
+            // As URLConnection does, return the last value of a repeated header.
+            for (int i = this.headerNames.size() - 1; i >= 0; i--)
+            {
+                if (this.headerNames.get(i).equalsIgnoreCase(name))
+                    return this.headerValues.get(i);
+            }
+
+            return null;
+        }
+
+        @Override
+        public String getHeaderFieldKey(int n)
+        {
+            return n > 0 && n <= this.headerNames.size() ? this.headerNames.get(n - 1) : null;
+        }
+
+        @Override
+        public String getHeaderField(int n)
+        {
+            if (n == 0)
+                return this.statusLine;
+
+            return n <= this.headerValues.size() ? this.headerValues.get(n - 1) : null;
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields()
+        {
+            Map<String, List<String>> fields = new LinkedHashMap<String, List<String>>();
+            for (int i = 0; i < this.headerNames.size(); i++)
+            {
+                List<String> list = fields.get(this.headerNames.get(i));
+                if (list == null)
+                {
+                    list = new ArrayList<String>();
+                    fields.put(this.headerNames.get(i), list);
+                }
+                list.add(this.headerValues.get(i));
+            }
+
+            return Collections.unmodifiableMap(fields);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException
+        {
+            if (this.failure != null)
+                throw this.failure;
+
+            if (this.responseCode >= HttpURLConnection.HTTP_BAD_REQUEST)
+                throw new FileNotFoundException(this.url.toString());
+
+            return new ByteArrayInputStream(this.content, this.contentOffset, this.contentLength);
+        }
+
+        @Override
+        public InputStream getErrorStream()
+        {
+            if (this.failure != null || this.responseCode < HttpURLConnection.HTTP_BAD_REQUEST)
+                return null;
+
+            return new ByteArrayInputStream(this.content, this.contentOffset, this.contentLength);
+        }
+    }
+}
@@ -10,12 +10,16 @@ import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.util.Logging;
 
 import javax.net.ssl.SSLHandshakeException;
-import java.net.SocketTimeoutException;
+import java.net.*;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.logging.Level;
 
 /**
- * Performs threaded retrieval of data.
+ * Performs threaded retrieval of data. The data of {@link URLRetriever}s is read on the service's threads and
+ * post-processed by the {@link RetrievalPipeline}, so that a retrieval's connection slot and thread are free for the
+ * next retrieval while its data is decoded and saved.
  *
  * @author Tom Gaskins
  * @version $Id: BasicRetrievalService.java 1171 2013-02-11 21:45:02Z dcollins $
@@ -28,6 +32,10 @@ public final class BasicRetrievalService extends WWObjectImpl
     private static final int DEFAULT_POOL_SIZE = 5;
     private static final long DEFAULT_STALE_REQUEST_LIMIT = 30000; // milliseconds
     private static final int DEFAULT_TIME_PRIORITY_GRANULARITY = 500; // milliseconds
+    private static final int DEFAULT_HOST_CONNECTION_LIMIT = 4;
+    private static final long HOST_BACKOFF_INTERVAL = 1000; // milliseconds between reductions of a host's slots
+    private static final int HTTP_TOO_MANY_REQUESTS = 429; // not defined by HttpURLConnection
+    private static final int LATENCY_SPIKE_FACTOR = 4; // a retrieval this many times slower than usual is a spike
 
     private static final String RUNNING_THREAD_NAME_PREFIX = Logging.getMessage(
         "BasicRetrievalService.RunningThreadNamePrefix");
@@ -36,20 +44,32 @@ public final class BasicRetrievalService extends WWObjectImpl
 
     private RetrievalExecutor executor; // thread pool for running retrievers
     private ConcurrentLinkedQueue<RetrievalTask> activeTasks; // tasks currently allocated a thread
+    // Pending and active tasks, keyed by themselves so that a task for the same URL finds the one already submitted.
+    private ConcurrentHashMap<RetrievalTask, RetrievalTask> submittedTasks;
+    private AtomicInteger numPending = new AtomicInteger(); // tasks neither started nor cancelled
     private int queueSize; // maximum queue size
+    private int hostConnectionLimit; // maximum number of retrievals from one host at a time
+    private ConcurrentHashMap<String, HostState> hosts; // connection slots of each host, keyed by host and port
 
     /** Encapsulates a single threaded retrieval as a {@link java.util.concurrent.FutureTask}. */
-    private static class RetrievalTask extends FutureTask<Retriever>
-        implements RetrievalFuture, Comparable<RetrievalTask>
+    private static class RetrievalTask extends FutureTask<Retriever> implements RetrievalFuture
     {
         private Retriever retriever;
-        private double priority; // retrieval secondary priority (primary priority is submit time)
+        private volatile double priority; // retrieval secondary priority (primary priority is request time)
+        private volatile long requestTime; // the last time the retrieval was requested
+        private volatile boolean started; // the task has been allocated a thread
+        private volatile QueueEntry entry; // the task's latest place in the queue or among its host's waiting tasks
+        private final AtomicBoolean pending = new AtomicBoolean(true); // counted among the service's pending tasks
+        private HostState hostState; // the host whose connection slot the task holds, or null
+        private RetrievalPipeline pipeline; // the pipeline post-processing the task's data, or null
+        private Exception fetchException; // the exception reading the task's data, if any
 
         private RetrievalTask(Retriever retriever, double priority)
         {
             super(retriever);
             this.retriever = retriever;
             this.priority = priority;
+            this.requestTime = System.currentTimeMillis();
         }
 
         public double getPriority()
@@ -68,17 +88,105 @@ public final class BasicRetrievalService extends WWObjectImpl
             if (this.isDone() || this.isCancelled())
                 return;
 
-            super.run();
+            RetrievalPipeline pipeline = WorldWind.getRetrievalPipeline();
+            if (pipeline == null || !(this.retriever instanceof URLRetriever) || Thread.currentThread().isInterrupted())
+            {
+                super.run();
+                return;
+            }
+
+            // Only read the data here. The executor hands the task to the pipeline once this thread is done with it.
+            this.pipeline = pipeline;
+            try
+            {
+                ((URLRetriever) this.retriever).fetch(null);
+            }
+            catch (Exception e)
+            {
+                this.fetchException = e;
+            }
+        }
+
+        /** Runs the post-processors of a task whose data has been read, and completes the task. */
+        private void postProcess()
+        {
+            try
+            {
+                ((URLRetriever) this.retriever).postProcess();
+
+                if (this.fetchException != null)
+                    this.setException(this.fetchException);
+                else
+                    this.set(this.retriever);
+            }
+            catch (Throwable t)
+            {
+                this.setException(this.fetchException != null ? this.fetchException : t);
+            }
+        }
+
+        public boolean equals(Object o)
+        {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+
+            final RetrievalTask that = (RetrievalTask) o;
+
+            // Tasks are equal if their retrievers are equivalent
+            return this.retriever.equals(that.retriever);
+            // Priority and submit time are not factors in equality
+        }
+
+        public int hashCode()
+        {
+            return this.retriever.getName().hashCode();
+        }
+    }
+
+    /**
+     * A place of a pending task in the queue, or among the tasks waiting for its host. Neither can move a task without
+     * searching for it, so a task requested again in a different order is given a new entry at its new place instead,
+     * and the entries it supersedes are skipped when they're taken.
+     */
+    private static class QueueEntry implements Runnable, Comparable<QueueEntry>
+    {
+        private final RetrievalTask task;
+        private final double priority; // the task's priority when the entry was made
+        private final long requestTime; // the task's request time when the entry was made
+        private volatile HostState waitingHost; // the host whose slot the entry waits for, or null
+        // Set by the thread that has taken the entry. A deferred entry is taken again once its host has a free slot.
+        private boolean skipped; // the task is not to run from the entry
+        private boolean deferred; // the task's host has no free slot
+
+        private QueueEntry(RetrievalTask task)
+        {
+            this.task = task;
+            this.priority = task.priority;
+            this.requestTime = task.requestTime;
+        }
+
+        /** @return true if a later entry has replaced this one, or the task has been taken from another entry. */
+        private boolean isStale()
+        {
+            return this.task.entry != this || this.task.started;
+        }
+
+        public void run()
+        {
+            if (!this.skipped)
+                this.task.run();
         }
 
         /**
-         * @param that the task to compare with this one
+         * @param that the entry to compare with this one
          *
-         * @return 0 if task priorities are equal, -1 if priority of this is less than that, 1 otherwise
+         * @return 0 if entry priorities are equal, -1 if priority of this is less than that, 1 otherwise
          *
          * @throws IllegalArgumentException if <code>that</code> is null
          */
-        public int compareTo(RetrievalTask that)
+        public int compareTo(QueueEntry that)
         {
             if (that == null)
             {
@@ -89,36 +197,140 @@ public final class BasicRetrievalService extends WWObjectImpl
 
             if (this.priority > 0 && that.priority > 0) // only secondary priority used if either is negative
             {
-                // Requests submitted within different time-granularity periods are ordered exclusive of their
+                // Requests last made within different time-granularity periods are ordered exclusive of their
                 // client-specified priority.
                 long now = System.currentTimeMillis();
-                long thisElapsedTime = now - this.retriever.getSubmitTime();
-                long thatElapsedTime = now - that.retriever.getSubmitTime();
+                long thisElapsedTime = now - this.requestTime;
+                long thatElapsedTime = now - that.requestTime;
                 if (((thisElapsedTime - thatElapsedTime) / DEFAULT_TIME_PRIORITY_GRANULARITY) != 0)
                     return thisElapsedTime < thatElapsedTime ? -1 : 1;
             }
 
-            // The client-specified priority is compared for requests submitted within the same granularity period.
+            // The client-specified priority is compared for requests made within the same granularity period.
             return this.priority == that.priority ? 0 : this.priority < that.priority ? -1 : 1;
         }
+    }
 
-        public boolean equals(Object o)
+    /**
+     * The connection slots of one host, and the tasks waiting for them. The number of slots adapts to how the host
+     * responds: it is halved when the host reports that it is overloaded, times out, or responds much more slowly than
+     * usual, and it grows by one after each full round of successful retrievals, up to the configured limit.
+     */
+    private static class HostState
+    {
+        private static final int MIN_COMPACTED_SIZE = 16;
+
+        private final PriorityQueue<QueueEntry> waitingTasks = new PriorityQueue<QueueEntry>();
+        private int compactedSize = MIN_COMPACTED_SIZE; // the number of waiting entries after stale ones were dropped
+        private int maxSlots;
+        private int slots;
+        private int inFlight;
+        private int successCount;
+        private double averageLatency;
+        private long lastBackoffTime;
+
+        private HostState(int maxSlots)
         {
-            if (this == o)
-                return true;
-            if (o == null || getClass() != o.getClass())
+            this.maxSlots = maxSlots;
+            this.slots = maxSlots;
+        }
+
+        private synchronized boolean acquire()
+        {
+            if (this.inFlight >= this.slots)
                 return false;
 
-            final RetrievalTask that = (RetrievalTask) o;
+            this.inFlight++;
+            return true;
+        }
 
-            // Tasks are equal if their retrievers are equivalent
-            return this.retriever.equals(that.retriever);
-            // Priority and submit time are not factors in equality
+        /**
+         * Queues a task to wait for a slot.
+         *
+         * @param entry the task's entry.
+         *
+         * @return true if the task waits, false if a slot has become free in the meantime.
+         */
+        private synchronized boolean await(QueueEntry entry)
+        {
+            if (this.inFlight < this.slots)
+                return false;
+
+            entry.waitingHost = this;
+            this.waitingTasks.add(entry);
+
+            // Superseded entries otherwise stay until a slot lets them out. Drop them whenever the number of waiting
+            // entries has doubled.
+            if (this.waitingTasks.size() >= 2 * this.compactedSize)
+            {
+                for (Iterator<QueueEntry> iter = this.waitingTasks.iterator(); iter.hasNext(); )
+                {
+                    if (iter.next().isStale())
+                        iter.remove();
+                }
+
+                this.compactedSize = Math.max(MIN_COMPACTED_SIZE, this.waitingTasks.size());
+            }
+
+            return true;
         }
 
-        public int hashCode()
+        /**
+         * Frees a slot and adapts the number of slots to the outcome of the retrieval that held it.
+         *
+         * @param latency   the retrieval's duration in milliseconds, or -1 if it did not run.
+         * @param congested true if the host reported that it is overloaded or did not respond in time.
+         *
+         * @return the waiting tasks that may now be run.
+         */
+        private synchronized List<QueueEntry> release(long latency, boolean congested)
         {
-            return this.retriever.getName().hashCode();
+            this.inFlight--;
+
+            if (latency >= 0)
+            {
+                if (this.averageLatency > 0 && latency > LATENCY_SPIKE_FACTOR * this.averageLatency)
+                    congested = true;
+                else
+                    this.averageLatency = this.averageLatency > 0 ? this.averageLatency
+                        + (latency - this.averageLatency) / 8 : latency;
+
+                long now = System.currentTimeMillis();
+                if (congested && now - this.lastBackoffTime >= HOST_BACKOFF_INTERVAL)
+                {
+                    this.slots = Math.max(1, this.slots / 2);
+                    this.successCount = 0;
+                    this.lastBackoffTime = now;
+                }
+                else if (!congested && this.slots < this.maxSlots && ++this.successCount >= this.slots)
+                {
+                    this.slots++;
+                    this.successCount = 0;
+                }
+            }
+
+            return this.takeReadyTasks();
+        }
+
+        /** @return as many waiting tasks as there are free slots. */
+        private synchronized List<QueueEntry> takeReadyTasks()
+        {
+            ArrayList<QueueEntry> ready = new ArrayList<QueueEntry>();
+            while (this.inFlight + ready.size() < this.slots && !this.waitingTasks.isEmpty())
+            {
+                QueueEntry entry = this.waitingTasks.poll();
+                entry.waitingHost = null;
+                if (!entry.isStale() && !entry.task.isCancelled())
+                    ready.add(entry);
+            }
+
+            return ready;
+        }
+
+        private synchronized void setMaxSlots(int maxSlots)
+        {
+            this.maxSlots = maxSlots;
+            this.slots = Math.min(this.slots, maxSlots);
         }
     }
 
@@ -166,7 +378,7 @@ public final class BasicRetrievalService extends WWObjectImpl
                 {
                     // Interposes logging for rejected execution
                     Logging.logger().finer(Logging.getMessage("BasicRetrievalService.ResourceRejected",
-                        ((RetrievalTask) runnable).getRetriever().getName()));
+                        ((QueueEntry) runnable).task.getRetriever().getName()));
 
                     super.rejectedExecution(runnable, threadPoolExecutor);
                 }
@@ -197,27 +409,54 @@ public final class BasicRetrievalService extends WWObjectImpl
                 throw new IllegalArgumentException(msg);
             }
 
-            RetrievalTask task = (RetrievalTask) runnable;
+            QueueEntry entry = (QueueEntry) runnable;
+            RetrievalTask task = entry.task;
+            entry.skipped = false;
+            entry.deferred = false;
+
+            if (entry.isStale())
+            {
+                // A later request has queued the task again, or it has been taken from another entry. The entry may
+                // have been let out of its host's waiting tasks to take a free slot, so let out others instead.
+                entry.skipped = true;
+                BasicRetrievalService.this.dispatchWaitingTasks(task);
+                super.beforeExecute(thread, runnable);
+                return;
+            }
 
             task.retriever.setBeginTime(System.currentTimeMillis());
             long limit = task.retriever.getStaleRequestLimit() >= 0
                 ? task.retriever.getStaleRequestLimit() : this.staleRequestLimit;
-            if (task.retriever.getBeginTime() - task.retriever.getSubmitTime() > limit)
+            if (!task.isCancelled() && task.retriever.getBeginTime() - task.requestTime > limit)
             {
-                // Task has been sitting on the queue too long
+                // Task has been sitting on the queue too long without being requested again
                 Logging.logger().finer(Logging.getMessage("BasicRetrievalService.CancellingTooOldRetrieval",
                     task.getRetriever().getName()));
                 task.cancel(true);
             }
 
-            if (BasicRetrievalService.this.activeTasks.contains(task))
+            if (task.isCancelled())
             {
-                // Task is a duplicate
-                Logging.logger().finer(Logging.getMessage("BasicRetrievalService.CancellingDuplicateRetrieval",
-                    task.getRetriever().getName()));
-                task.cancel(true);
+                // A cancelled task may have been let out of its host's waiting tasks to take a free slot. Let out
+                // others to take the slot instead.
+                BasicRetrievalService.this.dispatchWaitingTasks(task);
+            }
+            else if (!BasicRetrievalService.this.acquireHostSlot(task))
+            {
+                // The task's host has no free connection slot. This thread skips the task, which then waits for a
+                // slot, and goes on to the next task on the queue.
+                entry.skipped = true;
+                entry.deferred = true;
+                super.beforeExecute(thread, runnable);
+                return;
             }
 
+            task.started = true;
+            BasicRetrievalService.this.leavePending(task);
+
+            // Duplicates are caught when submitted. A task for a URL already active is only submitted once the
+            // active one has finished post-processing, so it must run.
+
             BasicRetrievalService.this.activeTasks.add(task);
 
             thread.setName(RUNNING_THREAD_NAME_PREFIX + task.getRetriever().getName());
@@ -244,10 +483,33 @@ public final class BasicRetrievalService extends WWObjectImpl
 
             super.afterExecute(runnable, throwable);
 
-            RetrievalTask task = (RetrievalTask) runnable;
+            QueueEntry entry = (QueueEntry) runnable;
+            if (entry.skipped)
+            {
+                if (entry.deferred)
+                    BasicRetrievalService.this.deferTask(entry);
+                return;
+            }
+
+            RetrievalTask task = entry.task;
+
             BasicRetrievalService.this.activeTasks.remove(task);
             task.retriever.setEndTime(System.currentTimeMillis());
 
+            if (task.pipeline != null)
+            {
+                // Only the task's data has been read. Its connection slot is freed for the next retrieval while the
+                // pipeline post-processes the data, and it stays submitted until then so that later requests for its
+                // URL share it.
+                BasicRetrievalService.this.releaseHostSlot(task, task.fetchException instanceof SocketTimeoutException);
+                Thread.currentThread().setName(IDLE_THREAD_NAME_PREFIX);
+                BasicRetrievalService.this.postProcess(task);
+                return;
+            }
+
+            BasicRetrievalService.this.removeSubmittedTask(task);
+
+            boolean congested = false;
             try
             {
                 if (throwable != null)
@@ -257,40 +519,11 @@ public final class BasicRetrievalService extends WWObjectImpl
                             task.getRetriever().getName()), throwable);
                 }
 
-                task.get(); // Wait for task to finish, cancel or break
-            }
-            catch (java.util.concurrent.ExecutionException e)
-            {
-                String message = Logging.getMessage("BasicRetrievalService.ExecutionExceptionDuringRetrieval",
-                    task.getRetriever().getName());
-                if (e.getCause() instanceof SocketTimeoutException)
-                {
-                    Logging.logger().fine(message + " " + e.getCause().getLocalizedMessage());
-                }
-                else if (e.getCause() instanceof SSLHandshakeException)
-                {
-                    if (sslExceptionListener != null)
-                        sslExceptionListener.onException(e.getCause(), task.getRetriever().getName());
-                    else
-                        Logging.logger().fine(message + " " + e.getCause().getLocalizedMessage());
-                }
-                else
-                {
-                    Logging.logger().log(Level.FINE, message, e);
-                }
-            }
-            catch (InterruptedException e)
-            {
-                Logging.logger().log(Level.FINE, Logging.getMessage("BasicRetrievalService.RetrievalInterrupted",
-                    task.getRetriever().getName()), e);
-            }
-            catch (java.util.concurrent.CancellationException e)
-            {
-                Logging.logger().fine(Logging.getMessage("BasicRetrievalService.RetrievalCancelled",
-                    task.getRetriever().getName()));
+                congested = BasicRetrievalService.this.checkOutcome(task);
             }
             finally
             {
+                BasicRetrievalService.this.releaseHostSlot(task, congested);
                 Thread.currentThread().setName(IDLE_THREAD_NAME_PREFIX);
             }
         }
@@ -306,6 +539,13 @@ public final class BasicRetrievalService extends WWObjectImpl
 
         // this.activeTasks holds the list of currently executing tasks (*not* those pending on the queue)
         this.activeTasks = new ConcurrentLinkedQueue<RetrievalTask>();
+
+        // this.submittedTasks indexes both the executing tasks and those pending on the queue
+        this.submittedTasks = new ConcurrentHashMap<RetrievalTask, RetrievalTask>();
+
+        this.hostConnectionLimit = Configuration.getIntegerValue(AVKey.RETRIEVAL_HOST_CONNECTION_LIMIT,
+            DEFAULT_HOST_CONNECTION_LIMIT);
+        this.hosts = new ConcurrentHashMap<String, HostState>();
     }
 
     public void shutdown(boolean immediately)
@@ -316,6 +556,8 @@ public final class BasicRetrievalService extends WWObjectImpl
             this.executor.shutdown();
 
         this.activeTasks.clear();
+        this.submittedTasks.clear();
+        this.hosts.clear();
     }
 
     /**
@@ -376,15 +618,434 @@ public final class BasicRetrievalService extends WWObjectImpl
         RetrievalTask task = new RetrievalTask(retriever, priority);
         retriever.setSubmitTime(System.currentTimeMillis());
 
-        // Do not queue duplicates.
-        if (this.activeTasks.contains(task) || this.executor.getQueue().contains(task))
+        // Do not queue duplicates. A request for the same URL by another layer or model shares the retrieval already
+        // submitted, which runs the request's post-processor too.
+        RetrievalTask submitted = this.submittedTasks.get(task);
+        if (submitted != null && this.coalesce(submitted, retriever))
+        {
+            this.renew(submitted, priority);
             return null;
+        }
 
-        this.executor.execute(task);
+        this.submittedTasks.put(task, task);
+        this.numPending.incrementAndGet();
+        task.entry = new QueueEntry(task);
+        this.executor.execute(task.entry);
 
         return task;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * A pending retrieval whose order changes is queued again at its new place in the queue, or among the retrievals
+     * waiting for a connection to its host, and skipped at its former place.
+     *
+     * @throws IllegalArgumentException if <code>retriever</code> is null or has no name
+     */
+    public synchronized boolean updatePriority(Retriever retriever, double priority)
+    {
+        if (retriever == null)
+        {
+            String message = Logging.getMessage("nullValue.RetrieverIsNull");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (retriever.getName() == null)
+        {
+            String message = Logging.getMessage("nullValue.RetrieverNameIsNull");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        RetrievalTask submitted = this.submittedTasks.get(new RetrievalTask(retriever, priority));
+        if (submitted == null || submitted.isDone())
+            return false;
+
+        this.renew(submitted, priority);
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * A retrieval that also serves other clients' requests for the same URL is not cancelled. Only the post-processor
+     * of the specified retriever is detached from it, and the retrieval continues for the other clients.
+     *
+     * @throws IllegalArgumentException if <code>retriever</code> is null or has no name
+     */
+    public synchronized boolean cancel(Retriever retriever)
+    {
+        if (retriever == null)
+        {
+            String message = Logging.getMessage("nullValue.RetrieverIsNull");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (retriever.getName() == null)
+        {
+            String message = Logging.getMessage("nullValue.RetrieverNameIsNull");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        RetrievalTask submitted = this.submittedTasks.get(new RetrievalTask(retriever, 0d));
+        if (submitted == null || submitted.started || submitted.isDone())
+            return false;
+
+        if (retriever instanceof URLRetriever && submitted.getRetriever() instanceof URLRetriever
+            && ((URLRetriever) retriever).getPostProcessor() != null)
+        {
+            URLRetriever submittedRetriever = (URLRetriever) submitted.getRetriever();
+            if (!submittedRetriever.removePostProcessor(((URLRetriever) retriever).getPostProcessor()))
+                return false;
+
+            if (submittedRetriever.hasPostProcessors())
+                return true; // Still needed by other clients.
+        }
+
+        if (!submitted.cancel(false))
+            return false;
+
+        // The task's entry stays queued, and the thread that takes it finds the task cancelled.
+        this.removeSubmittedTask(submitted);
+        this.leavePending(submitted);
+
+        return true;
+    }
+
+    /**
+     * Records that a submitted retrieval has been requested again, and with what priority. A pending task whose
+     * priority or request-time period changes is given a new entry at its new place, since neither the queue nor its
+     * host's waiting tasks can move an entry without searching for it. The superseded entry is skipped when taken.
+     *
+     * @param task     the submitted task.
+     * @param priority the priority of the latest request.
+     */
+    private void renew(RetrievalTask task, double priority)
+    {
+        long now = System.currentTimeMillis();
+        task.requestTime = now;
+        task.priority = priority;
+
+        QueueEntry entry = task.entry;
+        if (entry == null || task.started || task.isDone())
+            return;
+
+        // Order only changes with the priority or the time-granularity period of the request.
+        if (priority == entry.priority && now - entry.requestTime < DEFAULT_TIME_PRIORITY_GRANULARITY)
+            return;
+
+        QueueEntry renewed = new QueueEntry(task);
+        task.entry = renewed;
+
+        BlockingQueue<Runnable> queue = this.executor.getQueue();
+        HostState waitingHost = entry.waitingHost;
+        if (waitingHost == null || !waitingHost.await(renewed))
+            queue.offer(renewed);
+
+        if (queue.size() > 2 * Math.max(this.queueSize, this.numPending.get()))
+            this.compactQueue();
+    }
+
+    /** Drops the superseded entries from the queue, once they outnumber the entries of pending tasks. */
+    private void compactQueue()
+    {
+        BlockingQueue<Runnable> queue = this.executor.getQueue();
+        ArrayList<Runnable> entries = new ArrayList<Runnable>(queue.size());
+        queue.drainTo(entries);
+
+        for (Runnable entry : entries)
+        {
+            if (!((QueueEntry) entry).isStale())
+                queue.offer(entry);
+        }
+    }
+
+    /**
+     * Stops counting a task among the pending tasks once it has started or been cancelled.
+     *
+     * @param task the task.
+     */
+    private void leavePending(RetrievalTask task)
+    {
+        if (task.pending.compareAndSet(true, false))
+            this.numPending.decrementAndGet();
+    }
+
+    /**
+     * Post-processes a task whose data has been read on the task's pipeline, then removes it from the submitted tasks.
+     * The task is post-processed by the calling thread if the pipeline has been shut down.
+     *
+     * @param task the task.
+     */
+    private void postProcess(final RetrievalTask task)
+    {
+        Runnable postProcessing = new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    task.postProcess();
+                }
+                finally
+                {
+                    BasicRetrievalService.this.removeSubmittedTask(task);
+                    BasicRetrievalService.this.checkOutcome(task);
+                }
+            }
+        };
+
+        try
+        {
+            task.pipeline.process(postProcessing);
+        }
+        catch (RejectedExecutionException e)
+        {
+            postProcessing.run();
+        }
+    }
+
+    /**
+     * Logs how a finished task ended.
+     *
+     * @param task the finished task.
+     *
+     * @return true if the task's host did not respond in time.
+     */
+    private boolean checkOutcome(RetrievalTask task)
+    {
+        try
+        {
+            task.get(); // Wait for task to finish, cancel or break
+        }
+        catch (java.util.concurrent.ExecutionException e)
+        {
+            String message = Logging.getMessage("BasicRetrievalService.ExecutionExceptionDuringRetrieval",
+                task.getRetriever().getName());
+            if (e.getCause() instanceof SocketTimeoutException)
+            {
+                Logging.logger().fine(message + " " + e.getCause().getLocalizedMessage());
+                return true;
+            }
+            else if (e.getCause() instanceof SSLHandshakeException)
+            {
+                if (sslExceptionListener != null)
+                    sslExceptionListener.onException(e.getCause(), task.getRetriever().getName());
+                else
+                    Logging.logger().fine(message + " " + e.getCause().getLocalizedMessage());
+            }
+            else
+            {
+                Logging.logger().log(Level.FINE, message, e);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Logging.logger().log(Level.FINE, Logging.getMessage("BasicRetrievalService.RetrievalInterrupted",
+                task.getRetriever().getName()), e);
+        }
+        catch (java.util.concurrent.CancellationException e)
+        {
+            Logging.logger().fine(Logging.getMessage("BasicRetrievalService.RetrievalCancelled",
+                task.getRetriever().getName()));
+        }
+
+        return false;
+    }
+
+    /**
+     * Attaches a retriever's post-processor to a submitted retrieval of the same URL.
+     *
+     * @param submitted the submitted task.
+     * @param retriever the retriever of the new request.
+     *
+     * @return true if the submitted retrieval serves the request, false if the request must be run on its own because
+     *         the submitted retrieval has finished.
+     */
+    private boolean coalesce(RetrievalTask submitted, Retriever retriever)
+    {
+        if (!(retriever instanceof URLRetriever) || !(submitted.getRetriever() instanceof URLRetriever))
+            return !submitted.isDone();
+
+        RetrievalPostProcessor postProcessor = ((URLRetriever) retriever).getPostProcessor();
+        if (postProcessor == null)
+            return !submitted.isDone();
+
+        return ((URLRetriever) submitted.getRetriever()).addPostProcessor(postProcessor);
+    }
+
+    /** Removes a finished task from the index, unless it has already been replaced by another task for its URL. */
+    private synchronized void removeSubmittedTask(RetrievalTask task)
+    {
+        if (this.submittedTasks.get(task) == task)
+            this.submittedTasks.remove(task);
+    }
+
+    /**
+     * Returns the host whose connection slots limit a retrieval, creating its state on first use. Only HTTP and HTTPS
+     * retrievals are limited per host.
+     *
+     * @param retriever the retrieval's retriever.
+     *
+     * @return the host's state, or null if the retrieval is not limited.
+     */
+    private HostState getHostState(Retriever retriever)
+    {
+        if (!(retriever instanceof HTTPRetriever))
+            return null;
+
+        URL url = ((HTTPRetriever) retriever).getUrl();
+        String key = url.getHost().toLowerCase() + ":" + (url.getPort() >= 0 ? url.getPort() : url.getDefaultPort());
+
+        HostState state = this.hosts.get(key);
+        if (state == null)
+        {
+            HostState newState = new HostState(this.hostConnectionLimit);
+            state = this.hosts.putIfAbsent(key, newState);
+            if (state == null)
+                state = newState;
+        }
+
+        return state;
+    }
+
+    /**
+     * Allocates a connection slot of its host to a task.
+     *
+     * @param task the task about to run.
+     *
+     * @return true if the task may run, false if its host has no free slot.
+     */
+    private boolean acquireHostSlot(RetrievalTask task)
+    {
+        HostState state = this.getHostState(task.retriever);
+        if (state == null)
+            return true;
+
+        if (!state.acquire())
+            return false;
+
+        task.hostState = state;
+        return true;
+    }
+
+    /**
+     * Makes a task that found no free connection slot wait for one. If a slot has become free in the meantime the task
+     * is queued again instead.
+     *
+     * @param entry the task's entry.
+     */
+    private void deferTask(QueueEntry entry)
+    {
+        HostState state = this.getHostState(entry.task.retriever);
+        if (state == null || !state.await(entry))
+            this.executor.getQueue().offer(entry);
+    }
+
+    /**
+     * Queues the tasks waiting for free connection slots of a task's host.
+     *
+     * @param task the task.
+     */
+    private void dispatchWaitingTasks(RetrievalTask task)
+    {
+        HostState state = this.getHostState(task.retriever);
+        if (state == null)
+            return;
+
+        for (QueueEntry ready : state.takeReadyTasks())
+        {
+            this.executor.getQueue().offer(ready);
+        }
+    }
+
+    /**
+     * Frees the connection slot held by a finished task, and queues the tasks that were waiting for it.
+     *
+     * @param task      the finished task.
+     * @param congested true if the task's host reported that it is overloaded or did not respond in time.
+     */
+    private void releaseHostSlot(RetrievalTask task, boolean congested)
+    {
+        HostState state = task.hostState;
+        if (state == null)
+            return;
+
+        task.hostState = null;
+
+        if (task.retriever instanceof HTTPRetriever)
+        {
+            int code = ((HTTPRetriever) task.retriever).getResponseCode();
+            if (code == HttpURLConnection.HTTP_UNAVAILABLE || code == HTTP_TOO_MANY_REQUESTS)
+                congested = true;
+        }
+
+        long latency = task.isCancelled() ? -1 : task.retriever.getEndTime() - task.retriever.getBeginTime();
+        for (QueueEntry ready : state.release(latency, congested))
+        {
+            this.executor.getQueue().offer(ready);
+        }
+    }
+
+    /**
+     * Specifies the maximum number of retrievals from one host that may run at a time. Fewer may run while the host is
+     * overloaded.
+     *
+     * @param limit the maximum number of retrievals per host.
+     *
+     * @throws IllegalArgumentException if <code>limit</code> is less than 1
+     */
+    public void setHostConnectionLimit(int limit)
+    {
+        if (limit < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "limit < 1");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.hostConnectionLimit = limit;
+        for (HostState state : this.hosts.values())
+        {
+            state.setMaxSlots(limit);
+        }
+    }
+
+    public int getHostConnectionLimit()
+    {
+        return this.hostConnectionLimit;
+    }
+
+    /**
+     * Indicates the number of retrievals from the host of a URL that may currently run at a time.
+     *
+     * @param url the URL.
+     *
+     * @return the number of connection slots the host currently has.
+     *
+     * @throws IllegalArgumentException if <code>url</code> is null
+     */
+    public int getHostConnectionSlots(URL url)
+    {
+        if (url == null)
+        {
+            String message = Logging.getMessage("nullValue.URLIsNull");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        HostState state = this.getHostState(new HTTPRetriever(url, null));
+        synchronized (state)
+        {
+            return state.slots;
+        }
+    }
+
     /**
      * @param poolSize the number of threads in the thread pool
      *
@@ -427,14 +1088,14 @@ public final class BasicRetrievalService extends WWObjectImpl
 
     public boolean isAvailable()
     {
-        return this.executor.getQueue().size() < this.queueSize;
+        return this.numPending.get() < this.queueSize;
 //            && !WorldWind.getNetworkStatus().isNetworkUnavailable();
     }
 
     public int getNumRetrieversPending()
     {
         // Could use same method to determine active tasks as hasRetrievers() above, but this method only advisory.
-        return this.activeTasks.size() + this.executor.getQueue().size();
+        return this.submittedTasks.size();
     }
 
     /**
@@ -452,8 +1113,7 @@ public final class BasicRetrievalService extends WWObjectImpl
             Logging.logger().fine(msg);
             throw new IllegalArgumentException(msg);
         }
-        RetrievalTask task = new RetrievalTask(retriever, 0d);
-        return (this.activeTasks.contains(task) || this.executor.getQueue().contains(task));
+        return this.submittedTasks.containsKey(new RetrievalTask(retriever, 0d));
     }
 
     public double getProgress()
@@ -484,28 +1144,8 @@ public final class BasicRetrievalService extends WWObjectImpl
             }
         }
 
-        for (Runnable runnable : this.executor.getQueue())
-        {
-            RetrievalTask task =
-                (RetrievalTask) runnable;
-
-            Retriever retriever = task.getRetriever();
-            try
-            {
-                double tcl = retriever.getContentLength();
-                if (tcl > 0)
-                {
-                    totalContentLength += tcl;
-                    totalBytesRead += retriever.getContentLengthRead();
-                }
-            }
-            catch (Exception e)
-            {
-                String message = Logging.getMessage("BasicRetrievalService.ExceptionRetrievingContentSizes") + (
-                    retriever.getName() != null ? retriever.getName() : "");
-                Logging.logger().log(Level.FINE, message, e);
-            }
-        }
+        // Tasks pending on the queue have not yet connected, so have no content length and don't count toward
+        // progress. Only the active tasks, at most one per thread, need be examined.
 
         // Compute an aggregated progress notification.
 
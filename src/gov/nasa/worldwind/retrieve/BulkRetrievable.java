@@ -79,6 +79,37 @@ public interface BulkRetrievable
      */
     BulkRetrievalThread makeLocal(Sector sector, double resolution, FileStore fileStore,
         BulkRetrievalListener listener);
+
+    /**
+     * Initiates data retrieval for an area, such as a list of sectors or a corridor along a route, to a specified
+     * filestore. Each part of the area is retrieved up to and including its own resolution. The method starts a new
+     * thread to perform the retrieval. The thread terminates when either all the requested data has been retrieved or
+     * when any data not retrieved is determined to be unretrievable.
+     *
+     * @param area      the area for which to retrieve the data.
+     * @param fileStore the location to place the data. If null, the current World Wind cache is used.
+     * @param listener  an optional bulk-download listener that can be used to monitor the success or failure of
+     *                  individual retrievals. Note: The listener is called on the thread performing the download,
+     *                  which is not the event dispatch thread. Therefore any interaction with AWT or Swing within the
+     *                  call must be done within a call to SwingUtilities.invokeLater().
+     *
+     * @return returns the running thread created to perform the retrieval, or null if the area does not intersect
+     *         the data's coverage.
+     *
+     * @see BulkRetrievalArea#fromCorridor(Iterable, double[], double[])
+     */
+    BulkRetrievalThread makeLocal(BulkRetrievalArea area, FileStore fileStore, BulkRetrievalListener listener);
+
+    /**
+     * Estimates the amount of data, in bytes, that must be retrieved to a specified filestore for an area, such as a
+     * list of sectors or a corridor along a route.
+     *
+     * @param area      the area for which to retrieve the data.
+     * @param fileStore the location to place the data. If null, the current World Wind cache is used.
+     *
+     * @return the estimated data size, in bytes.
+     */
+    long getEstimatedMissingDataSize(BulkRetrievalArea area, FileStore fileStore);
     
     String getName();
 }
@@ -0,0 +1,372 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.*;
+
+/**
+ * The area a {@link BulkRetrievable} retrieves data for, made of sectors that each have their own target resolution.
+ * An area may be a single sector, a list of sectors, or a corridor along a route whose resolution is finest near the
+ * route and coarser farther from it. A retrieval gets the data of each level wherever any of the area's sectors needs
+ * that level, so sectors that overlap don't retrieve their shared data twice.
+ * <p/>
+ * Resolutions and corridor widths are provided in radians of latitude, which is the distance in meters divided by the
+ * globe radius.
+ */
+public class BulkRetrievalArea
+{
+    /** One sector of an area and the resolution to retrieve it at. */
+    public static class Part
+    {
+        protected final Sector sector;
+        protected final double resolution;
+
+        /**
+         * Creates a part.
+         *
+         * @param sector     the part's sector.
+         * @param resolution the part's target resolution, in radians of latitude per texel.
+         *
+         * @throws IllegalArgumentException if the sector is null.
+         */
+        public Part(Sector sector, double resolution)
+        {
+            if (sector == null)
+            {
+                String message = Logging.getMessage("nullValue.SectorIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            this.sector = sector;
+            this.resolution = resolution;
+        }
+
+        /** @return the part's sector. */
+        public Sector getSector()
+        {
+            return this.sector;
+        }
+
+        /** @return the part's target resolution, in radians of latitude per texel. */
+        public double getResolution()
+        {
+            return this.resolution;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+                return true;
+            if (o == null || this.getClass() != o.getClass())
+                return false;
+
+            Part that = (Part) o;
+            return this.resolution == that.resolution && this.sector.equals(that.sector);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            long bits = Double.doubleToLongBits(this.resolution);
+            return 31 * this.sector.hashCode() + (int) (bits ^ (bits >>> 32));
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.sector + " " + this.resolution;
+        }
+    }
+
+    protected final List<Part> parts;
+
+    /**
+     * Creates an area of a single sector.
+     *
+     * @param sector     the sector.
+     * @param resolution the target resolution, in radians of latitude per texel.
+     *
+     * @throws IllegalArgumentException if the sector is null.
+     */
+    public BulkRetrievalArea(Sector sector, double resolution)
+    {
+        this(Arrays.asList(new Part(sector, resolution)));
+    }
+
+    /**
+     * Creates an area of several sectors, all retrieved at the same resolution.
+     *
+     * @param sectors    the sectors.
+     * @param resolution the target resolution, in radians of latitude per texel.
+     *
+     * @throws IllegalArgumentException if the sectors are null, empty, or contain a null sector.
+     */
+    public BulkRetrievalArea(Iterable<? extends Sector> sectors, double resolution)
+    {
+        this(makeParts(sectors, resolution));
+    }
+
+    /**
+     * Creates an area of parts that each have their own resolution.
+     *
+     * @param parts the parts.
+     *
+     * @throws IllegalArgumentException if the parts are null, empty, or contain a null part.
+     */
+    public BulkRetrievalArea(List<Part> parts)
+    {
+        if (parts == null || parts.isEmpty())
+        {
+            String message = Logging.getMessage("generic.ListIsEmpty");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        for (Part part : parts)
+        {
+            if (part == null)
+            {
+                String message = Logging.getMessage("nullValue.ObjectIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+        }
+
+        this.parts = Collections.unmodifiableList(new ArrayList<Part>(parts));
+    }
+
+    /**
+     * Creates an area covering a corridor along a route. The corridor is made of bands around the route's center
+     * line, each with a distance from the center line and a resolution. A band covers everything within its distance
+     * of the route at its resolution, so a narrow band with a fine resolution and a wide band with a coarse one retrieve
+     * detailed data near the route and less detailed data farther away.
+     * <p/>
+     * Each band is covered by sectors bounding short stretches of the route, so the area retrieved is a small multiple
+     * of the band's area rather than the route's bounding sector.
+     *
+     * @param route       the route's locations, joined by great circle segments.
+     * @param distances   each band's greatest distance from the route, in radians.
+     * @param resolutions each band's target resolution, in radians of latitude per texel.
+     *
+     * @return the corridor's area.
+     *
+     * @throws IllegalArgumentException if the route is null or empty, if the distances or resolutions are null, empty
+     *                                  or of different lengths, or if a distance is not greater than zero.
+     */
+    public static BulkRetrievalArea fromCorridor(Iterable<? extends LatLon> route, double[] distances,
+        double[] resolutions)
+    {
+        if (route == null || !route.iterator().hasNext())
+        {
+            String message = Logging.getMessage("nullValue.LocationsListIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (distances == null || resolutions == null || distances.length == 0
+            || distances.length != resolutions.length)
+        {
+            String message = Logging.getMessage("generic.ArrayInvalidLength",
+                distances != null ? distances.length : 0);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        List<Part> parts = new ArrayList<Part>();
+        for (int i = 0; i < distances.length; i++)
+        {
+            if (distances[i] <= 0)
+            {
+                String message = Logging.getMessage("generic.ArgumentOutOfRange", distances[i]);
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            addCorridorParts(parts, route, distances[i], resolutions[i]);
+        }
+
+        return new BulkRetrievalArea(parts);
+    }
+
+    /** @return the area's parts. */
+    public List<Part> getParts()
+    {
+        return this.parts;
+    }
+
+    /** @return the sector bounding all of the area's parts. */
+    public Sector getSector()
+    {
+        Sector sector = null;
+        for (Part part : this.parts)
+        {
+            sector = sector != null ? sector.union(part.getSector()) : part.getSector();
+        }
+
+        return sector;
+    }
+
+    /** @return the finest resolution of the area's parts, in radians of latitude per texel. */
+    public double getResolution()
+    {
+        double resolution = Double.MAX_VALUE;
+        for (Part part : this.parts)
+        {
+            resolution = Math.min(resolution, part.getResolution());
+        }
+
+        return resolution;
+    }
+
+    /**
+     * Returns the part of this area within a sector, typically a dataset's coverage.
+     *
+     * @param sector the sector.
+     *
+     * @return the parts of this area overlapping the sector, clipped to it, or null if no part overlaps it.
+     *
+     * @throws IllegalArgumentException if the sector is null.
+     */
+    public BulkRetrievalArea intersection(Sector sector)
+    {
+        if (sector == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        List<Part> clipped = new ArrayList<Part>();
+        for (Part part : this.parts)
+        {
+            Sector s = sector.intersection(part.getSector());
+            if (s != null && s.getDeltaLat().degrees > 0 && s.getDeltaLon().degrees > 0)
+                clipped.add(s.equals(part.getSector()) ? part : new Part(s, part.getResolution()));
+        }
+
+        return clipped.isEmpty() ? null : new BulkRetrievalArea(clipped);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+            return true;
+        if (o == null || this.getClass() != o.getClass())
+            return false;
+
+        return this.parts.equals(((BulkRetrievalArea) o).parts);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.parts.hashCode();
+    }
+
+    /** @return a single line description of the area, which distinguishes it from other areas. */
+    @Override
+    public String toString()
+    {
+        if (this.parts.size() == 1)
+            return this.parts.get(0).toString();
+
+        return this.parts.size() + " parts in " + this.getSector() + " #" + Integer.toHexString(this.hashCode());
+    }
+
+    protected static List<Part> makeParts(Iterable<? extends Sector> sectors, double resolution)
+    {
+        if (sectors == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorListIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        List<Part> parts = new ArrayList<Part>();
+        for (Sector sector : sectors)
+        {
+            parts.add(new Part(sector, resolution));
+        }
+
+        return parts;
+    }
+
+    protected static void addCorridorParts(List<Part> parts, Iterable<? extends LatLon> route, double distance,
+        double resolution)
+    {
+        // Each stretch of the route is a few band widths long, which keeps the sectors bounding diagonal stretches
+        // within about three times the band's area without making very many parts.
+        double stretchLength = 4 * distance;
+
+        LatLon previous = null;
+        for (LatLon location : route)
+        {
+            if (previous == null)
+            {
+                addStretchPart(parts, location, location, distance, resolution);
+            }
+            else
+            {
+                double length = LatLon.greatCircleDistance(previous, location).radians;
+                int numStretches = Math.max(1, (int) Math.ceil(length / stretchLength));
+                LatLon begin = previous;
+                for (int i = 1; i <= numStretches; i++)
+                {
+                    LatLon end = i < numStretches
+                        ? LatLon.interpolateGreatCircle((double) i / numStretches, previous, location) : location;
+                    addStretchPart(parts, begin, end, distance, resolution);
+                    begin = end;
+                }
+            }
+            previous = location;
+        }
+    }
+
+    protected static void addStretchPart(List<Part> parts, LatLon begin, LatLon end, double distance,
+        double resolution)
+    {
+        double distanceDegrees = Math.toDegrees(distance);
+
+        // Keep the stretch's longitudes continuous across the antimeridian.
+        double beginLon = begin.getLongitude().degrees;
+        double endLon = beginLon + Angle.normalizedDegreesLongitude(end.getLongitude().degrees - beginLon);
+
+        double minLat = Math.max(Math.min(begin.getLatitude().degrees, end.getLatitude().degrees) - distanceDegrees,
+            -90);
+        double maxLat = Math.min(Math.max(begin.getLatitude().degrees, end.getLatitude().degrees) + distanceDegrees,
+            90);
+
+        // A distance spans more longitude the farther it is from the equator.
+        double cosLat = Math.cos(Math.toRadians(Math.max(Math.abs(minLat), Math.abs(maxLat))));
+        double lonDistance = cosLat > 0 ? distanceDegrees / cosLat : 360;
+        double minLon = Math.min(beginLon, endLon) - lonDistance;
+        double maxLon = Math.max(beginLon, endLon) + lonDistance;
+
+        if (maxLon - minLon >= 360)
+        {
+            minLon = -180;
+            maxLon = 180;
+        }
+        else if (minLon < -180)
+        {
+            parts.add(new Part(Sector.fromDegrees(minLat, maxLat, minLon + 360, 180), resolution));
+            minLon = -180;
+        }
+        else if (maxLon > 180)
+        {
+            parts.add(new Part(Sector.fromDegrees(minLat, maxLat, -180, maxLon - 360), resolution));
+            maxLon = 180;
+        }
+
+        parts.add(new Part(Sector.fromDegrees(minLat, maxLat, minLon, maxLon), resolution));
+    }
+}
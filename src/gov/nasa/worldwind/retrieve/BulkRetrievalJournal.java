@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.cache.FileStore;
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+import java.util.logging.Level;
+
+/**
+ * A checkpoint journal of a bulk retrieval, kept in a {@link FileStore} so that a retrieval that's interrupted and
+ * started again resumes where it stopped. The journal records the units of work the retrieval has completed, typically
+ * the regions of each level whose tiles are all in the file store or known to be absent, and the retrieval skips those
+ * units when it's restarted.
+ * <p/>
+ * The journal's first line describes the retrieval it belongs to. A journal written for a different retrieval is
+ * discarded when it's opened. Each completed unit is appended to the journal as a line of its own as soon as it's
+ * completed, so an interruption loses at most the unit in progress.
+ */
+public class BulkRetrievalJournal
+{
+    protected final FileStore fileStore;
+    protected final String path;
+    protected final String description;
+    protected final Set<String> completed = new HashSet<String>();
+    protected File file;
+
+    /**
+     * Opens the journal at a specified path in a file store, reading the units it records as completed if it was
+     * written for the same retrieval.
+     *
+     * @param fileStore   the file store holding the journal.
+     * @param path        the journal's path in the file store.
+     * @param description a single line describing the retrieval, such as its sector and level.
+     *
+     * @throws IllegalArgumentException if the file store, the path or the description is null.
+     */
+    public BulkRetrievalJournal(FileStore fileStore, String path, String description)
+    {
+        if (fileStore == null)
+        {
+            String message = Logging.getMessage("nullValue.FileStoreIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (path == null)
+        {
+            String message = Logging.getMessage("nullValue.PathIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (description == null)
+        {
+            String message = Logging.getMessage("nullValue.StringIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.fileStore = fileStore;
+        this.path = path;
+        this.description = description.replaceAll("[\r\n]", " ");
+
+        this.read();
+    }
+
+    /** @return the journal's path in its file store. */
+    public String getPath()
+    {
+        return this.path;
+    }
+
+    /** @return the description of the retrieval the journal belongs to. */
+    public String getDescription()
+    {
+        return this.description;
+    }
+
+    /**
+     * Indicates whether a unit of work is recorded as completed.
+     *
+     * @param unit the unit's name.
+     *
+     * @return true if the unit is completed, otherwise false.
+     */
+    public synchronized boolean isCompleted(String unit)
+    {
+        return unit != null && this.completed.contains(unit);
+    }
+
+    /** @return the number of units recorded as completed. */
+    public synchronized int getCompletedCount()
+    {
+        return this.completed.size();
+    }
+
+    /**
+     * Records a unit of work as completed, writing it to the journal immediately.
+     *
+     * @param unit the unit's name.
+     *
+     * @throws IllegalArgumentException if the unit is null.
+     */
+    public synchronized void markCompleted(String unit)
+    {
+        if (unit == null)
+        {
+            String message = Logging.getMessage("nullValue.StringIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (!this.completed.add(unit))
+            return;
+
+        boolean append = this.file != null && this.file.exists();
+        if (!append)
+            this.file = this.fileStore.newFile(this.path);
+        if (this.file == null)
+            return;
+
+        Writer writer = null;
+        try
+        {
+            writer = new OutputStreamWriter(new FileOutputStream(this.file, append), "UTF-8");
+            if (append)
+            {
+                writer.write(unit + "\n");
+            }
+            else
+            {
+                writer.write(this.description + "\n");
+                for (String s : this.completed)
+                {
+                    writer.write(s + "\n");
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            // The journal only saves work on a restart, so the retrieval continues without it.
+            Logging.logger().log(Level.FINE, Logging.getMessage("generic.ExceptionAttemptingToWriteTo", this.file), e);
+        }
+        finally
+        {
+            WWIO.closeStream(writer, this.file.getPath());
+        }
+    }
+
+    /** Removes the journal from its file store, typically once the retrieval has finished. */
+    public synchronized void delete()
+    {
+        this.completed.clear();
+        this.file = null;
+
+        URL url = this.fileStore.findFile(this.path, false);
+        if (url != null)
+            this.fileStore.removeFile(url);
+    }
+
+    protected void read()
+    {
+        URL url = this.fileStore.findFile(this.path, false);
+        File journalFile = url != null ? WWIO.convertURLToFile(url) : null;
+        if (journalFile == null)
+            return;
+
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), "UTF-8"));
+            if (!this.description.equals(reader.readLine()))
+                return; // written for another retrieval, and replaced when the first unit is completed
+
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.length() > 0)
+                    this.completed.add(line);
+            }
+            this.file = journalFile;
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.FINE, Logging.getMessage("generic.ExceptionAttemptingToReadFile", journalFile),
+                e);
+        }
+        finally
+        {
+            WWIO.closeStream(reader, journalFile.getPath());
+        }
+    }
+}
@@ -6,15 +6,26 @@
 
 package gov.nasa.worldwind.retrieve;
 
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.cache.FileStore;
 import gov.nasa.worldwind.event.*;
-import gov.nasa.worldwind.geom.Sector;
-import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.util.*;
 
 import javax.swing.event.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Retrieves data for a {@link BulkRetrievable}.
+ * <p/>
+ * Subclasses find the missing data of upcoming regions on the threads of an enumeration service while the current
+ * region's data is retrieved, keep a {@link BulkRetrievalJournal} of the regions they've completed so that a restarted
+ * retrieval resumes where it stopped, and make requests only as the thread's {@link RetrievalThrottle} allows. The
+ * number of enumeration threads and the throttle's budgets are taken from {@link
+ * AVKey#BULK_RETRIEVAL_ENUMERATION_POOL_SIZE}, {@link AVKey#BULK_RETRIEVAL_MAX_REQUESTS_PER_SECOND} and {@link
+ * AVKey#BULK_RETRIEVAL_MAX_BYTES_PER_SECOND} in the configuration.
  *
  * @author Patrick Murris
  * @version $Id: BulkRetrievalThread.java 1171 2013-02-11 21:45:02Z dcollins $
@@ -22,13 +33,25 @@ import javax.swing.event.*;
 public abstract class BulkRetrievalThread extends Thread
 {
     protected int RETRIEVAL_SERVICE_POLL_DELAY = 1000;
+    protected int PENDING_REQUEST_TIMEOUT = 60000;
+
+    protected static final int DEFAULT_ENUMERATION_POOL_SIZE = 4;
+    protected static final String JOURNAL_DIRECTORY = "BulkRetrieval";
+    protected static final String JOURNAL_SUFFIX = ".journal";
 
     protected final BulkRetrievable retrievable;
+    protected final BulkRetrievalArea area;
     protected final Sector sector;
     protected final double resolution;
     protected final Progress progress;
     protected final FileStore fileStore;
     protected EventListenerList retrievalListeners = new EventListenerList();
+    protected RetrievalThrottle throttle;
+    protected int enumerationPoolSize;
+    protected ExecutorService enumerationService;
+    protected BulkRetrievalJournal journal;
+    /** The times of requests made and not yet completed, keyed by the file store path of the item requested. */
+    protected ConcurrentHashMap<String, Long> pendingRequests = new ConcurrentHashMap<String, Long>();
 
     /**
      * Construct a thread that attempts to download to a specified {@link FileStore} a retrievable's data for a given
@@ -51,6 +74,26 @@ public abstract class BulkRetrievalThread extends Thread
      */
     public BulkRetrievalThread(BulkRetrievable retrievable, Sector sector, double resolution, FileStore fileStore,
         BulkRetrievalListener listener)
+    {
+        this(retrievable, new BulkRetrievalArea(sector, resolution), fileStore, listener);
+    }
+
+    /**
+     * Construct a thread that attempts to download to a specified {@link FileStore} a retrievable's data for a given
+     * {@link BulkRetrievalArea}, such as a corridor along a route.
+     * <p/>
+     * Note that the area's resolutions must be provided in radians of latitude per texel, which is the resolution in
+     * meters divided by the globe radius.
+     *
+     * @param retrievable the retrievable to retrieve data for.
+     * @param area        the area of interest.
+     * @param fileStore   the file store to examine.
+     * @param listener    an optional retrieval listener. May be null.
+     *
+     * @throws IllegalArgumentException if either the retrievable, area or file store are null.
+     */
+    public BulkRetrievalThread(BulkRetrievable retrievable, BulkRetrievalArea area, FileStore fileStore,
+        BulkRetrievalListener listener)
     {
         if (retrievable == null)
         {
@@ -59,9 +102,9 @@ public abstract class BulkRetrievalThread extends Thread
             throw new IllegalArgumentException(msg);
         }
 
-        if (sector == null)
+        if (area == null)
         {
-            String msg = Logging.getMessage("nullValue.SectorIsNull");
+            String msg = Logging.getMessage("nullValue.AreaIsNull");
             Logging.logger().severe(msg);
             throw new IllegalArgumentException(msg);
         }
@@ -72,19 +115,18 @@ public abstract class BulkRetrievalThread extends Thread
             Logging.logger().severe(msg);
             throw new IllegalArgumentException(msg);
         }
-//
-//        if (resolution <= 0)
-//        {
-//            String msg = Logging.getMessage("generic.ResolutionInvalid", resolution);
-//            Logging.logger().severe(msg);
-//            throw new IllegalArgumentException(msg);
-//        }
 
         this.retrievable = retrievable;
-        this.sector = sector;
-        this.resolution = resolution;
+        this.area = area;
+        this.sector = area.getSector();
+        this.resolution = area.getResolution();
         this.fileStore = fileStore;
         this.progress = new Progress();
+        this.throttle = new RetrievalThrottle(
+            Configuration.getDoubleValue(AVKey.BULK_RETRIEVAL_MAX_REQUESTS_PER_SECOND, 0d),
+            Configuration.getDoubleValue(AVKey.BULK_RETRIEVAL_MAX_BYTES_PER_SECOND, 0d));
+        this.enumerationPoolSize = Configuration.getIntegerValue(AVKey.BULK_RETRIEVAL_ENUMERATION_POOL_SIZE,
+            DEFAULT_ENUMERATION_POOL_SIZE);
 
         if (listener != null)
             this.addRetrievalListener(listener);
@@ -103,7 +145,17 @@ public abstract class BulkRetrievalThread extends Thread
     }
 
     /**
-     * Get the requested {@link Sector}.
+     * Get the requested {@link BulkRetrievalArea}.
+     *
+     * @return the requested area.
+     */
+    public BulkRetrievalArea getArea()
+    {
+        return this.area;
+    }
+
+    /**
+     * Get the requested {@link Sector}. When the requested area has several parts, this is the sector bounding them.
      *
      * @return the requested {@link Sector}.
      */
@@ -113,7 +165,8 @@ public abstract class BulkRetrievalThread extends Thread
     }
 
     /**
-     * Get the requested resolution.
+     * Get the requested resolution. When the requested area has several parts, this is the finest of their
+     * resolutions.
      *
      * @return the requested resolution.
      */
@@ -142,6 +195,328 @@ public abstract class BulkRetrievalThread extends Thread
         return this.progress;
     }
 
+    /**
+     * Get the {@link RetrievalThrottle} limiting the rate of this thread's requests.
+     *
+     * @return the throttle.
+     */
+    public RetrievalThrottle getThrottle()
+    {
+        return this.throttle;
+    }
+
+    /**
+     * Specifies the {@link RetrievalThrottle} limiting the rate of this thread's requests. The throttle may be shared
+     * by several threads to limit their combined rate.
+     *
+     * @param throttle the throttle.
+     *
+     * @throws IllegalArgumentException if the throttle is null.
+     */
+    public void setThrottle(RetrievalThrottle throttle)
+    {
+        if (throttle == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.throttle = throttle;
+    }
+
+    /**
+     * Get the number of threads finding missing data in parallel.
+     *
+     * @return the number of enumeration threads.
+     */
+    public int getEnumerationPoolSize()
+    {
+        return this.enumerationPoolSize;
+    }
+
+    /**
+     * Specifies the number of threads finding missing data in parallel. Must be specified before the thread is
+     * started.
+     *
+     * @param size the number of enumeration threads.
+     *
+     * @throws IllegalArgumentException if the size is less than one.
+     */
+    public void setEnumerationPoolSize(int size)
+    {
+        if (size < 1)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", size);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.enumerationPoolSize = size;
+    }
+
+    /**
+     * Get the {@link BulkRetrievalJournal} of the running retrieval.
+     *
+     * @return the journal, or null if the thread hasn't started.
+     */
+    public BulkRetrievalJournal getJournal()
+    {
+        return this.journal;
+    }
+
+    protected ExecutorService createEnumerationService()
+    {
+        return Executors.newFixedThreadPool(this.enumerationPoolSize, new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable,
+                    Logging.getMessage("BulkRetrievalThread.EnumerationThreadName"));
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns the number of regions whose missing data is found ahead of the region being retrieved.
+     *
+     * @return the maximum number of regions being enumerated at once.
+     */
+    protected int getMaxPendingEnumerations()
+    {
+        return 2 * this.enumerationPoolSize;
+    }
+
+    /**
+     * Waits for and returns the result of a task submitted to the enumeration service.
+     *
+     * @param future the task's future.
+     * @param <T>    the type of the task's result.
+     *
+     * @return the task's result.
+     *
+     * @throws InterruptedException if this thread or the task is interrupted.
+     */
+    protected <T> T getEnumeration(Future<T> future) throws InterruptedException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof InterruptedException)
+                throw (InterruptedException) e.getCause();
+
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Opens the journal of this thread's retrieval of a dataset's levels up to a specified level. The journal is kept
+     * with the dataset's cached files.
+     *
+     * @param dataCacheName the dataset's cache name.
+     * @param levelNumber   the number of the last level retrieved.
+     *
+     * @return the journal.
+     */
+    protected BulkRetrievalJournal openJournal(String dataCacheName, int levelNumber)
+    {
+        String description = this.area.toString() + " " + levelNumber;
+        String path = dataCacheName + "/" + JOURNAL_DIRECTORY + "/"
+            + Integer.toHexString(description.hashCode()) + JOURNAL_SUFFIX;
+
+        return new BulkRetrievalJournal(this.fileStore, path, description);
+    }
+
+    /**
+     * Counts the tiles of a level that intersect any of several sectors, counting tiles shared by sectors once.
+     *
+     * @param levels      the dataset's levels.
+     * @param sectors     the sectors.
+     * @param levelNumber the level number. The first non-empty level at or after this one is counted.
+     *
+     * @return the number of tiles.
+     */
+    protected static long countTilesInSectors(LevelSet levels, List<Sector> sectors, int levelNumber)
+    {
+        Level targetLevel = levels.getLastLevel();
+        if (levelNumber >= 0)
+        {
+            for (int i = levelNumber; i < levels.getLastLevel().getLevelNumber(); i++)
+            {
+                if (levels.isLevelEmpty(i))
+                    continue;
+
+                targetLevel = levels.getLevel(i);
+                break;
+            }
+        }
+
+        // Collect the column span of each row for each sector, then merge each row's overlapping spans.
+        LatLon delta = targetLevel.getTileDelta();
+        LatLon origin = levels.getTileOrigin();
+        Map<Integer, List<int[]>> rowSpans = new HashMap<Integer, List<int[]>>();
+        long count = 0;
+        for (Sector sector : sectors)
+        {
+            int nwRow = Tile.computeRow(delta.getLatitude(), sector.getMaxLatitude(), origin.getLatitude());
+            int nwCol = Tile.computeColumn(delta.getLongitude(), sector.getMinLongitude(), origin.getLongitude());
+            int seRow = Tile.computeRow(delta.getLatitude(), sector.getMinLatitude(), origin.getLatitude());
+            int seCol = Tile.computeColumn(delta.getLongitude(), sector.getMaxLongitude(), origin.getLongitude());
+
+            if (sectors.size() == 1)
+                return (long) (nwRow - seRow + 1) * (seCol - nwCol + 1);
+
+            for (int row = seRow; row <= nwRow; row++)
+            {
+                List<int[]> spans = rowSpans.get(row);
+                if (spans == null)
+                {
+                    spans = new ArrayList<int[]>();
+                    rowSpans.put(row, spans);
+                }
+                spans.add(new int[] {nwCol, seCol});
+            }
+        }
+
+        for (List<int[]> spans : rowSpans.values())
+        {
+            Collections.sort(spans, new Comparator<int[]>()
+            {
+                public int compare(int[] a, int[] b)
+                {
+                    return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+                }
+            });
+
+            int start = spans.get(0)[0];
+            int end = spans.get(0)[1];
+            for (int[] span : spans)
+            {
+                if (span[0] > end + 1)
+                {
+                    count += end - start + 1;
+                    start = span[0];
+                }
+                end = Math.max(end, span[1]);
+            }
+            count += end - start + 1;
+        }
+
+        return count;
+    }
+
+    /**
+     * Distributes samples of missing data among the parts of this thread's area. When there are more parts than
+     * samples, randomly chosen parts get one sample each.
+     *
+     * @param numSamples the total number of samples.
+     *
+     * @return the number of samples of each part, in the order of the area's parts.
+     */
+    protected int[] computePartSamples(int numSamples)
+    {
+        int numParts = this.area.getParts().size();
+        int[] samples = new int[numParts];
+
+        if (numParts <= numSamples)
+        {
+            for (int i = 0; i < numParts; i++)
+            {
+                samples[i] = numSamples / numParts + (i < numSamples % numParts ? 1 : 0);
+            }
+        }
+        else
+        {
+            List<Integer> indices = new ArrayList<Integer>(numParts);
+            for (int i = 0; i < numParts; i++)
+            {
+                indices.add(i);
+            }
+            Collections.shuffle(indices);
+            for (int i = 0; i < numSamples; i++)
+            {
+                samples[indices.get(i)] = 1;
+            }
+        }
+
+        return samples;
+    }
+
+    /**
+     * Indicates whether an item has been requested and the request has neither completed nor timed out.
+     *
+     * @param item the file store path of the item.
+     *
+     * @return true if a request for the item is pending, otherwise false.
+     */
+    protected boolean isRequestPending(String item)
+    {
+        Long time = this.pendingRequests.get(item);
+
+        return time != null && System.currentTimeMillis() - time < PENDING_REQUEST_TIMEOUT;
+    }
+
+    /**
+     * Starts a request for an item if this thread's throttle allows a request now.
+     *
+     * @param item the file store path of the item.
+     *
+     * @return true if the item may be requested, otherwise false.
+     */
+    protected boolean startRequest(String item)
+    {
+        if (!this.throttle.tryAcquire())
+            return false;
+
+        this.pendingRequests.put(item, System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Abandons a request started by {@link #startRequest(String)} that was never made, so that the item may be
+     * requested again at once and the throttle doesn't count the request.
+     *
+     * @param item the file store path of the item.
+     */
+    protected void cancelRequest(String item)
+    {
+        this.pendingRequests.remove(item);
+        this.throttle.release();
+    }
+
+    /**
+     * Ends the request for an item, whether it succeeded or failed, and counts its bytes against the throttle.
+     *
+     * @param item      the file store path of the item.
+     * @param retriever the retriever that made the request.
+     */
+    protected void endRequest(String item, Retriever retriever)
+    {
+        this.pendingRequests.remove(item);
+
+        if (retriever != null)
+            this.throttle.consumeBytes(retriever.getContentLengthRead());
+    }
+
+    /**
+     * Returns how long to wait before submitting more requests. The wait is shorter than the retrieval service poll
+     * delay when the throttle allows another request sooner.
+     *
+     * @return the delay, in milliseconds.
+     */
+    protected long computeRequestDelay()
+    {
+        long delay = this.throttle.getDelay();
+
+        return delay > 0 ? Math.min(delay, RETRIEVAL_SERVICE_POLL_DELAY) : RETRIEVAL_SERVICE_POLL_DELAY;
+    }
+
     public void addRetrievalListener(BulkRetrievalListener listener)
     {
         if (listener != null)
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.cache.*;
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.Properties;
+import java.util.logging.Level;
+
+/**
+ * The HTTP validators of a file cached in a {@link FileStore}, which let an expired file be revalidated with a
+ * conditional request rather than retrieved again. Validators are kept in a small file beside the cached file, named by
+ * appending {@link #SUFFIX} to the cached file's path. A {@link PackFileStore} packs the validators file with its tile,
+ * and a {@link FileStoreEvictor} evicts them together. The validators file's modification time records when the cached
+ * file was last retrieved or revalidated, so a file whose server answers {@link
+ * java.net.HttpURLConnection#HTTP_NOT_MODIFIED} is current again without being rewritten, even when it's held in a pack
+ * file.
+ */
+public class CacheValidators
+{
+    /** The suffix appended to a cached file's path to name its validators file. */
+    public static final String SUFFIX = ".validators";
+
+    protected static final String ENTITY_TAG = "ETag";
+    protected static final String LAST_MODIFIED = "Last-Modified";
+
+    protected final String entityTag;
+    protected final long lastModified;
+    protected final long validationTime;
+
+    /**
+     * Creates an instance.
+     *
+     * @param entityTag      the entity tag, or null if there is none.
+     * @param lastModified   the modification time, in milliseconds since the Epoch, or zero if there is none.
+     * @param validationTime the time the cached file was last retrieved or revalidated, in milliseconds since the
+     *                       Epoch.
+     */
+    public CacheValidators(String entityTag, long lastModified, long validationTime)
+    {
+        this.entityTag = entityTag;
+        this.lastModified = lastModified;
+        this.validationTime = validationTime;
+    }
+
+    /** @return the entity tag, or null if there is none. */
+    public String getEntityTag()
+    {
+        return this.entityTag;
+    }
+
+    /** @return the modification time, in milliseconds since the Epoch, or zero if there is none. */
+    public long getLastModified()
+    {
+        return this.lastModified;
+    }
+
+    /** @return the time the cached file was last retrieved or revalidated, in milliseconds since the Epoch. */
+    public long getValidationTime()
+    {
+        return this.validationTime;
+    }
+
+    /**
+     * Indicates whether the cached file was last retrieved or revalidated before a specified expiry time.
+     *
+     * @param expiryTime the expiry time, in milliseconds since the Epoch.
+     *
+     * @return true if the cached file was validated before the expiry time, otherwise false.
+     */
+    public boolean isExpired(long expiryTime)
+    {
+        return this.validationTime < expiryTime;
+    }
+
+    /**
+     * Makes a retriever's request conditional on the resource having changed since the cached file was retrieved.
+     *
+     * @param retriever the retriever.
+     *
+     * @throws IllegalArgumentException if the retriever is null.
+     */
+    public void applyTo(HTTPRetriever retriever)
+    {
+        if (retriever == null)
+        {
+            String message = Logging.getMessage("nullValue.RetrieverIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        retriever.setValidators(this.entityTag, this.lastModified);
+    }
+
+    /**
+     * Reads the validators of a cached file.
+     *
+     * @param fileStore the file store holding the file.
+     * @param path      the file's path in the file store.
+     *
+     * @return the file's validators, or null if the file or its validators are not in the file store.
+     *
+     * @throws IllegalArgumentException if the file store or the path is null.
+     */
+    public static CacheValidators read(FileStore fileStore, String path)
+    {
+        URL url = findValidators(fileStore, path);
+        if (url == null || !fileStore.containsFile(path))
+            return null;
+
+        // Read through the URL, since the validators may be packed.
+        Properties properties = new Properties();
+        long validationTime;
+        InputStream stream = null;
+        try
+        {
+            URLConnection connection = url.openConnection();
+            stream = connection.getInputStream();
+            properties.load(stream);
+            validationTime = connection.getLastModified();
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.FINE, Logging.getMessage("generic.ExceptionAttemptingToReadFile", url), e);
+            return null;
+        }
+        finally
+        {
+            WWIO.closeStream(stream, url.toString());
+        }
+
+        String entityTag = properties.getProperty(ENTITY_TAG);
+        Long lastModified = WWUtil.makeLong(properties.getProperty(LAST_MODIFIED));
+        if (entityTag == null && lastModified == null)
+            return null;
+
+        return new CacheValidators(entityTag, lastModified != null ? lastModified : 0, validationTime);
+    }
+
+    /**
+     * Saves the validators of a response to a retrieval that has been written to a file store. A response without
+     * validators removes any the file had, so that the next retrieval of the file is unconditional.
+     *
+     * @param fileStore the file store holding the retrieved file.
+     * @param path      the file's path in the file store.
+     * @param retriever the retriever that retrieved the file.
+     *
+     * @throws IllegalArgumentException if the file store, the path or the retriever is null.
+     */
+    public static void save(FileStore fileStore, String path, HTTPRetriever retriever)
+    {
+        if (retriever == null)
+        {
+            String message = Logging.getMessage("nullValue.RetrieverIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (retriever.getEntityTag() == null && retriever.getLastModified() <= 0)
+        {
+            URL url = findValidators(fileStore, path);
+            if (url != null)
+                fileStore.removeFile(url);
+            return;
+        }
+
+        File file = fileStore.newFile(path + SUFFIX);
+        if (file == null)
+            return;
+
+        Properties properties = new Properties();
+        if (retriever.getEntityTag() != null)
+            properties.setProperty(ENTITY_TAG, retriever.getEntityTag());
+        if (retriever.getLastModified() > 0)
+            properties.setProperty(LAST_MODIFIED, Long.toString(retriever.getLastModified()));
+
+        OutputStream stream = null;
+        try
+        {
+            stream = new FileOutputStream(file);
+            properties.store(stream, null);
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.FINE, Logging.getMessage("generic.ExceptionAttemptingToWriteTo", file), e);
+            file.delete();
+        }
+        finally
+        {
+            WWIO.closeStream(stream, file.getPath());
+        }
+    }
+
+    /**
+     * Records that a cached file has been revalidated, which makes it current until the next expiry time after now.
+     *
+     * @param fileStore the file store holding the file.
+     * @param path      the file's path in the file store.
+     *
+     * @return true if the file's validators were found and updated, otherwise false.
+     *
+     * @throws IllegalArgumentException if the file store or the path is null.
+     */
+    public static boolean markValidated(FileStore fileStore, String path)
+    {
+        URL url = findValidators(fileStore, path);
+        if (url == null)
+            return false;
+
+        long now = System.currentTimeMillis();
+        if (fileStore instanceof PackFileStore && PackFileStore.PROTOCOL.equals(url.getProtocol()))
+            return ((PackFileStore) fileStore).setPackedLastModified(url, now);
+
+        File file = WWIO.convertURLToFile(url);
+        return file != null && file.setLastModified(now);
+    }
+
+    protected static URL findValidators(FileStore fileStore, String path)
+    {
+        if (fileStore == null)
+        {
+            String message = Logging.getMessage("nullValue.FileStoreIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (path == null)
+        {
+            String message = Logging.getMessage("nullValue.PathIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return fileStore.findFile(path + SUFFIX, false);
+    }
+}
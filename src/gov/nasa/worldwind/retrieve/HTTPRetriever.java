@@ -5,8 +5,9 @@
  */
 package gov.nasa.worldwind.retrieve;
 
-import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.*;
 
+import java.io.*;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.util.logging.Level;
@@ -17,14 +18,83 @@ import java.util.logging.Level;
  */
 public class HTTPRetriever extends URLRetriever
 {
+    /** The content encodings the retriever accepts. {@link URLRetriever} inflates content in these encodings. */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
     private int responseCode;
     private String responseMessage;
+    private String ifNoneMatch;
+    private long ifModifiedSince;
+    private String entityTag;
+    private long lastModified;
 
     public HTTPRetriever(URL url, RetrievalPostProcessor postProcessor)
     {
         super(url, postProcessor);
     }
 
+    /**
+     * Makes the retrieval conditional on the resource having changed since a cached copy was retrieved. The request
+     * carries the cached copy's validators in <code>If-None-Match</code> and <code>If-Modified-Since</code> headers,
+     * and a server holding the same resource answers {@link HttpURLConnection#HTTP_NOT_MODIFIED} without content.
+     *
+     * @param entityTag    the cached copy's entity tag, or null if it has none.
+     * @param lastModified the cached copy's modification time, in milliseconds since the Epoch, or zero if it has
+     *                     none.
+     */
+    public void setValidators(String entityTag, long lastModified)
+    {
+        this.ifNoneMatch = entityTag;
+        this.ifModifiedSince = lastModified;
+    }
+
+    /** @return the entity tag the request is conditional on, or null if there is none. */
+    public String getIfNoneMatch()
+    {
+        return this.ifNoneMatch;
+    }
+
+    /** @return the modification time the request is conditional on, or zero if there is none. */
+    public long getIfModifiedSince()
+    {
+        return this.ifModifiedSince;
+    }
+
+    /** @return true if the request is conditional on the resource having changed, otherwise false. */
+    public boolean isConditional()
+    {
+        return this.ifNoneMatch != null || this.ifModifiedSince > 0;
+    }
+
+    /** @return the entity tag of the response, or null if the response had none. */
+    public String getEntityTag()
+    {
+        return this.entityTag;
+    }
+
+    /**
+     * @return the modification time of the response, in milliseconds since the Epoch, or zero if the response had
+     *         none.
+     */
+    public long getLastModified()
+    {
+        return this.lastModified;
+    }
+
+    @Override
+    protected URLConnection openConnection() throws IOException
+    {
+        URLConnection connection = super.openConnection();
+        connection.setRequestProperty("Accept-Encoding", ACCEPT_ENCODING);
+
+        if (this.ifNoneMatch != null)
+            connection.setRequestProperty("If-None-Match", this.ifNoneMatch);
+        if (this.ifModifiedSince > 0)
+            connection.setIfModifiedSince(this.ifModifiedSince);
+
+        return connection;
+    }
+
     public int getResponseCode()
     {
         return this.responseCode;
@@ -47,6 +117,8 @@ public class HTTPRetriever extends URLRetriever
         HttpURLConnection htpc = (HttpURLConnection) connection;
         this.responseCode = htpc.getResponseCode();
         this.responseMessage = htpc.getResponseMessage();
+        this.entityTag = connection.getHeaderField("etag");
+        this.lastModified = connection.getLastModified();
         String contentType = connection.getContentType();
 
         Logging.logger().log(Level.FINE, "HTTPRetriever.ResponseInfo", new Object[] {this.responseCode,
@@ -56,6 +128,38 @@ public class HTTPRetriever extends URLRetriever
         if (this.responseCode == HttpURLConnection.HTTP_OK)
             return super.doRead(connection);
 
+        this.discardErrorResponse(htpc);
+
         return null;
     }
+
+    /**
+     * Reads and discards the body of an error response. The connection to the host is kept alive for reuse by the
+     * host's next retrieval only once the response has been read in full.
+     *
+     * @param connection the connection the error response was received on.
+     */
+    protected void discardErrorResponse(HttpURLConnection connection)
+    {
+        InputStream errorStream = connection.getErrorStream();
+        if (errorStream == null)
+            return;
+
+        try
+        {
+            byte[] buffer = new byte[4096];
+            //noinspection StatementWithEmptyBody
+            while (errorStream.read(buffer) >= 0)
+            {
+            }
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.FINE, e.getMessage(), e); // the connection is simply not reused
+        }
+        finally
+        {
+            WWIO.closeStream(errorStream, connection.getURL().toString());
+        }
+    }
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+/**
+ * Interface for tiled data sources whose tiles a {@link TilePrefetcher} can request ahead of the view that needs them.
+ */
+public interface Prefetchable
+{
+    /**
+     * Requests the tiles a predicted view would draw, so that they're in memory when the view gets there. Tiles already
+     * in memory are not requested. Each tile is submitted to the prefetcher with {@link TilePrefetcher#submit(Object,
+     * Runnable)}, and its task loads the tile from the file store, or retrieves it at {@link
+     * TilePrefetcher#RETRIEVAL_PRIORITY} if the prefetcher's budget allows.
+     * <p/>
+     * The tiles' level is the one that would be drawn at the prediction's distance, and the tiles cover the
+     * prediction's sector.
+     *
+     * @param prediction the predicted view.
+     * @param prefetcher the prefetcher requesting the tiles.
+     *
+     * @return the number of tiles submitted.
+     *
+     * @throws IllegalArgumentException if the prediction or the prefetcher is null.
+     */
+    int prefetch(TilePrefetcher.Prediction prediction, TilePrefetcher prefetcher);
+}
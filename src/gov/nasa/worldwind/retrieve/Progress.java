@@ -84,5 +84,33 @@ public class Progress
     {
         this.currentCount = count;
     }
+
+    /**
+     * Computes the average rate at which the current size grew between the start time and the last update time.
+     *
+     * @return the throughput, in bytes per second, or zero if nothing has been done yet.
+     */
+    public double getThroughput()
+    {
+        long elapsed = this.lastUpdateTime - this.startTime;
+
+        return elapsed > 0 ? this.currentSize * 1000d / elapsed : 0;
+    }
+
+    /**
+     * Estimates the time remaining until the current size reaches the total size, at the average throughput.
+     *
+     * @return the estimated time remaining, in milliseconds, or -1 if it can't yet be estimated.
+     *
+     * @see #getThroughput()
+     */
+    public long getEstimatedTimeRemaining()
+    {
+        double throughput = this.getThroughput();
+        if (throughput <= 0)
+            return -1;
+
+        return (long) (Math.max(this.totalSize - this.currentSize, 0) * 1000d / throughput);
+    }
 }
 
@@ -0,0 +1,415 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * The stages retrieved data passes through after it has been read from the network. Retrieval services read on their
+ * own threads, which are limited by network concurrency, and hand each retriever to the processing stage to run its
+ * post-processor. Post-processing decodes, transcodes and converts the data, work that is limited by the number of
+ * processors, so the processing stage has a thread per processor. Post-processors write their output files through the
+ * disk stage, whose few threads keep concurrent writes from contending for the disk.
+ * <p/>
+ * Each stage has a bounded queue. When a stage's queue is full the thread handing it work does the work itself, which
+ * slows the earlier stage to the pace of the later one. Each stage measures its queue depth, the time work waits in its
+ * queue and the time work takes to run, and reports them by {@link #getPerformanceStatistics()} under the key {@link
+ * PerformanceStatistic#RETRIEVAL_PIPELINE}.
+ * <p/>
+ * The sizes of the processing stage's pool, the disk stage's pool and the stages' queues are configured by {@link
+ * AVKey#RETRIEVAL_PROCESSING_POOL_SIZE}, {@link AVKey#RETRIEVAL_DISK_POOL_SIZE} and {@link
+ * AVKey#RETRIEVAL_PIPELINE_QUEUE_SIZE}. World Wind's pipeline is returned by {@link
+ * gov.nasa.worldwind.WorldWind#getRetrievalPipeline()}.
+ */
+public class RetrievalPipeline
+{
+    protected static final int DEFAULT_DISK_POOL_SIZE = 2;
+    protected static final int DEFAULT_QUEUE_SIZE = 200;
+    protected static final long THREAD_TIMEOUT = 2; // keep idle threads alive this many seconds
+
+    /** An operation that writes to the file store. */
+    public interface FileWrite
+    {
+        /**
+         * Performs the write.
+         *
+         * @throws IOException if the write fails.
+         */
+        void write() throws IOException;
+    }
+
+    /** Work handed to a stage, stamped with the time it was handed over. */
+    protected static class StageTask implements Runnable
+    {
+        protected final Stage stage;
+        protected final Runnable runnable;
+        protected final long submitTime = System.nanoTime();
+
+        protected StageTask(Stage stage, Runnable runnable)
+        {
+            this.stage = stage;
+            this.runnable = runnable;
+        }
+
+        public void run()
+        {
+            long startTime = System.nanoTime();
+            try
+            {
+                this.runnable.run();
+            }
+            finally
+            {
+                this.stage.taskFinished(startTime - this.submitTime, System.nanoTime() - startTime);
+            }
+        }
+    }
+
+    /** A thread of one of a pipeline's stages. */
+    protected static class StageThread extends Thread
+    {
+        protected final Stage stage;
+
+        protected StageThread(Stage stage, Runnable runnable)
+        {
+            super(runnable, Logging.getMessage("RetrievalPipeline.ThreadName", stage.getName()));
+            this.stage = stage;
+            this.setDaemon(true);
+            this.setPriority(Thread.MIN_PRIORITY); // Subordinate thread priority to rendering
+        }
+    }
+
+    /**
+     * A stage of the pipeline: a pool of threads with a bounded queue, and measurements of the work passing through
+     * them. Work handed to a stage whose queue is full runs on the thread handing it over.
+     */
+    public static class Stage extends ThreadPoolExecutor
+    {
+        protected final RetrievalPipeline pipeline;
+        protected final String name;
+        protected final AtomicInteger maxQueueDepth = new AtomicInteger();
+        protected final AtomicLong taskCount = new AtomicLong();
+        protected final AtomicLong overflowCount = new AtomicLong();
+        protected final AtomicLong totalWaitTime = new AtomicLong(); // nanoseconds
+        protected final AtomicLong totalRunTime = new AtomicLong(); // nanoseconds
+
+        /**
+         * Creates a stage.
+         *
+         * @param pipeline  the pipeline the stage is part of.
+         * @param name      the stage's name, which names its threads and statistics.
+         * @param poolSize  the number of threads.
+         * @param queueSize the number of tasks that may wait for a thread.
+         *
+         * @throws IllegalArgumentException if the pool size or queue size is less than 1.
+         */
+        public Stage(RetrievalPipeline pipeline, String name, int poolSize, int queueSize)
+        {
+            super(checkSize(poolSize), poolSize, THREAD_TIMEOUT, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(checkSize(queueSize)), new RejectedExecutionHandler()
+            {
+                public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor)
+                {
+                    if (executor.isShutdown())
+                        throw new RejectedExecutionException();
+
+                    // The queue is full. Running the task here holds up the thread handing it over until this stage
+                    // catches up.
+                    ((Stage) executor).overflowCount.incrementAndGet();
+                    runnable.run();
+                }
+            });
+
+            this.pipeline = pipeline;
+            this.name = name;
+            this.allowCoreThreadTimeOut(true);
+            this.setThreadFactory(new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    return new StageThread(Stage.this, runnable);
+                }
+            });
+        }
+
+        protected static int checkSize(int size)
+        {
+            if (size < 1)
+            {
+                String message = Logging.getMessage("generic.ArgumentOutOfRange", size);
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            return size;
+        }
+
+        /** @return the pipeline the stage is part of. */
+        public RetrievalPipeline getPipeline()
+        {
+            return this.pipeline;
+        }
+
+        /** @return the stage's name. */
+        public String getName()
+        {
+            return this.name;
+        }
+
+        /**
+         * Runs a task on one of this stage's threads, or on the calling thread if this stage's queue is full.
+         *
+         * @param runnable the task.
+         *
+         * @throws RejectedExecutionException if this stage has been shut down.
+         * @throws IllegalArgumentException   if the task is null.
+         */
+        @Override
+        public void execute(Runnable runnable)
+        {
+            if (runnable == null)
+            {
+                String message = Logging.getMessage("nullValue.RunnableIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            super.execute(new StageTask(this, runnable));
+
+            int depth = this.getQueue().size();
+            int max = this.maxQueueDepth.get();
+            while (depth > max && !this.maxQueueDepth.compareAndSet(max, depth))
+            {
+                max = this.maxQueueDepth.get();
+            }
+        }
+
+        protected void taskFinished(long waitTime, long runTime)
+        {
+            this.taskCount.incrementAndGet();
+            this.totalWaitTime.addAndGet(waitTime);
+            this.totalRunTime.addAndGet(runTime);
+        }
+
+        /** @return the number of tasks waiting for a thread. */
+        public int getQueueDepth()
+        {
+            return this.getQueue().size();
+        }
+
+        /** @return the greatest number of tasks that have waited for a thread at once. */
+        public int getMaxQueueDepth()
+        {
+            return this.maxQueueDepth.get();
+        }
+
+        /** @return the number of tasks this stage has run, including those run by the threads handing them over. */
+        public long getTaskCount()
+        {
+            return this.taskCount.get();
+        }
+
+        /** @return the number of tasks that found this stage's queue full and ran on the thread handing them over. */
+        public long getOverflowCount()
+        {
+            return this.overflowCount.get();
+        }
+
+        /** @return the average time tasks waited in this stage's queue, in milliseconds. */
+        public double getAverageWaitTime()
+        {
+            long count = this.taskCount.get();
+            return count > 0 ? this.totalWaitTime.get() / 1e6 / count : 0;
+        }
+
+        /** @return the average time tasks took to run, in milliseconds. */
+        public double getAverageRunTime()
+        {
+            long count = this.taskCount.get();
+            return count > 0 ? this.totalRunTime.get() / 1e6 / count : 0;
+        }
+
+        /**
+         * Returns this stage's measurements.
+         *
+         * @return the measurements, keyed by {@link PerformanceStatistic#RETRIEVAL_PIPELINE}.
+         */
+        public Collection<PerformanceStatistic> getPerformanceStatistics()
+        {
+            ArrayList<PerformanceStatistic> stats = new ArrayList<PerformanceStatistic>();
+
+            stats.add(new PerformanceStatistic(PerformanceStatistic.RETRIEVAL_PIPELINE,
+                this.name + " Queue Depth", this.getQueueDepth()));
+            stats.add(new PerformanceStatistic(PerformanceStatistic.RETRIEVAL_PIPELINE,
+                this.name + " Max Queue Depth", this.getMaxQueueDepth()));
+            stats.add(new PerformanceStatistic(PerformanceStatistic.RETRIEVAL_PIPELINE,
+                this.name + " Tasks", this.getTaskCount()));
+            stats.add(new PerformanceStatistic(PerformanceStatistic.RETRIEVAL_PIPELINE,
+                this.name + " Overflows", this.getOverflowCount()));
+            stats.add(new PerformanceStatistic(PerformanceStatistic.RETRIEVAL_PIPELINE,
+                this.name + " Wait (ms)", (int) this.getAverageWaitTime()));
+            stats.add(new PerformanceStatistic(PerformanceStatistic.RETRIEVAL_PIPELINE,
+                this.name + " Run (ms)", (int) this.getAverageRunTime()));
+
+            return stats;
+        }
+    }
+
+    protected final Stage processingStage;
+    protected final Stage diskStage;
+
+    /** Creates a pipeline whose stages are sized by the configuration. */
+    public RetrievalPipeline()
+    {
+        this(Configuration.getIntegerValue(AVKey.RETRIEVAL_PROCESSING_POOL_SIZE,
+                Runtime.getRuntime().availableProcessors()),
+            Configuration.getIntegerValue(AVKey.RETRIEVAL_DISK_POOL_SIZE, DEFAULT_DISK_POOL_SIZE),
+            Configuration.getIntegerValue(AVKey.RETRIEVAL_PIPELINE_QUEUE_SIZE, DEFAULT_QUEUE_SIZE));
+    }
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param processingPoolSize the number of threads post-processing retrieved data.
+     * @param diskPoolSize       the number of threads writing to the file store.
+     * @param queueSize          the number of tasks that may wait for a thread in each stage.
+     *
+     * @throws IllegalArgumentException if a pool size or the queue size is less than 1.
+     */
+    public RetrievalPipeline(int processingPoolSize, int diskPoolSize, int queueSize)
+    {
+        this.processingStage = new Stage(this, "Processing", processingPoolSize, queueSize);
+        this.diskStage = new Stage(this, "Disk", diskPoolSize, queueSize);
+    }
+
+    /** @return the stage that post-processes retrieved data. */
+    public Stage getProcessingStage()
+    {
+        return this.processingStage;
+    }
+
+    /** @return the stage that writes retrieved data to the file store. */
+    public Stage getDiskStage()
+    {
+        return this.diskStage;
+    }
+
+    /**
+     * Post-processes retrieved data on the processing stage.
+     *
+     * @param runnable the post-processing task.
+     *
+     * @throws RejectedExecutionException if the pipeline has been shut down.
+     * @throws IllegalArgumentException   if the task is null.
+     */
+    public void process(Runnable runnable)
+    {
+        this.processingStage.execute(runnable);
+    }
+
+    /**
+     * Performs a write to the file store. When called by one of a pipeline's processing threads the write is performed
+     * by that pipeline's disk stage, otherwise it's performed by the calling thread. Either way the write is complete
+     * when this method returns, so that the listeners a post-processor notifies after saving its data find the file.
+     *
+     * @param write the write to perform.
+     *
+     * @throws IOException              if the write fails.
+     * @throws IllegalArgumentException if the write is null.
+     */
+    public static void write(final FileWrite write) throws IOException
+    {
+        if (write == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        // Only processing threads hand writes over. Any other thread, including a disk thread, writes itself.
+        Thread thread = Thread.currentThread();
+        Stage stage = thread instanceof StageThread ? ((StageThread) thread).stage : null;
+        if (stage == null || stage != stage.getPipeline().getProcessingStage())
+        {
+            write.write();
+            return;
+        }
+
+        FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>()
+        {
+            public Void call() throws Exception
+            {
+                write.write();
+                return null;
+            }
+        });
+
+        try
+        {
+            stage.getPipeline().getDiskStage().execute(task);
+            task.get();
+        }
+        catch (RejectedExecutionException e)
+        {
+            write.write(); // the pipeline is shutting down
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the measurements of the pipeline's stages.
+     *
+     * @return the measurements, keyed by {@link PerformanceStatistic#RETRIEVAL_PIPELINE}.
+     */
+    public Collection<PerformanceStatistic> getPerformanceStatistics()
+    {
+        ArrayList<PerformanceStatistic> stats = new ArrayList<PerformanceStatistic>();
+        stats.addAll(this.processingStage.getPerformanceStatistics());
+        stats.addAll(this.diskStage.getPerformanceStatistics());
+
+        return stats;
+    }
+
+    /**
+     * Stops the pipeline's threads.
+     *
+     * @param immediately true to interrupt running tasks and discard queued ones, false to let them finish.
+     */
+    public void shutdown(boolean immediately)
+    {
+        if (immediately)
+        {
+            this.processingStage.shutdownNow();
+            this.diskStage.shutdownNow();
+        }
+        else
+        {
+            this.processingStage.shutdown();
+            this.diskStage.shutdown();
+        }
+    }
+}
@@ -29,6 +29,34 @@ public interface RetrievalService extends WWObject
 
     int getNumRetrieversPending();
 
+    /**
+     * Indicates that a submitted retrieval is still needed, and changes its priority. Clients that repeat their
+     * requests every frame, such as tiled image layers, use this method to re-score their outstanding requests as the
+     * view changes. A retrieval that is still needed is not treated as stale, however long it has been waiting.
+     *
+     * @param retriever a retriever for the same resource as the submitted retrieval.
+     * @param priority  the new priority of the retrieval, with the same meaning as the priority passed to {@link
+     *                  #runRetriever(Retriever, double)}.
+     *
+     * @return true if the retrieval is pending or running, false if no retrieval of the resource has been submitted or
+     *         it has finished.
+     */
+    boolean updatePriority(Retriever retriever, double priority);
+
+    /**
+     * Cancels a submitted retrieval that has not yet started. Clients use this method to drop requests for resources
+     * they no longer need before any network I/O is performed for them. A retrieval that has already started is
+     * allowed to finish. Services that share one retrieval among several clients' requests for a resource cancel only
+     * the caller's share, and keep the retrieval for the other clients.
+     *
+     * @param retriever a retriever for the same resource as the submitted retrieval, and with the caller's
+     *                  post-processor.
+     *
+     * @return true if the retrieval was cancelled for the caller, false if it had already started or finished, or was
+     *         never submitted.
+     */
+    boolean cancel(Retriever retriever);
+
     void shutdown(boolean immediately);
 
     public interface SSLExceptionListener
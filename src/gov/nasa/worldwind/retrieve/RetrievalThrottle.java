@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+/**
+ * Limits the rate of retrievals to a budget of requests per second and bytes per second. Each budget is a token bucket
+ * holding up to one second's allowance, so retrievals may burst briefly but average no more than the budget. A request
+ * takes one token from the request budget when it's made. Its bytes are known only once it completes, so they're taken
+ * from the byte budget then, and further requests wait until the byte budget is no longer overdrawn.
+ * <p/>
+ * A budget less than or equal to zero is unlimited.
+ */
+public class RetrievalThrottle
+{
+    protected final double requestsPerSecond;
+    protected final double bytesPerSecond;
+    protected double requestTokens;
+    protected double byteTokens;
+    protected long lastRefillTime;
+
+    /**
+     * Creates a throttle with specified budgets. Each budget starts full.
+     *
+     * @param requestsPerSecond the maximum average number of requests per second. Zero or less is unlimited.
+     * @param bytesPerSecond    the maximum average number of bytes retrieved per second. Zero or less is unlimited.
+     */
+    public RetrievalThrottle(double requestsPerSecond, double bytesPerSecond)
+    {
+        this.requestsPerSecond = requestsPerSecond;
+        this.bytesPerSecond = bytesPerSecond;
+        this.requestTokens = this.getRequestCapacity();
+        this.byteTokens = Math.max(bytesPerSecond, 0);
+        this.lastRefillTime = System.nanoTime();
+    }
+
+    /** @return the maximum average number of requests per second, or zero or less if requests are unlimited. */
+    public double getRequestsPerSecond()
+    {
+        return this.requestsPerSecond;
+    }
+
+    /** @return the maximum average number of bytes retrieved per second, or zero or less if bytes are unlimited. */
+    public double getBytesPerSecond()
+    {
+        return this.bytesPerSecond;
+    }
+
+    /** @return true if either budget is limited, otherwise false. */
+    public boolean isLimited()
+    {
+        return this.requestsPerSecond > 0 || this.bytesPerSecond > 0;
+    }
+
+    /**
+     * Takes a request from the request budget if the budgets allow a request to be made now.
+     *
+     * @return true if a request may be made, otherwise false.
+     */
+    public synchronized boolean tryAcquire()
+    {
+        if (!this.isLimited())
+            return true;
+
+        this.refill();
+
+        if (this.requestsPerSecond > 0 && this.requestTokens < 1)
+            return false;
+
+        if (this.bytesPerSecond > 0 && this.byteTokens < 0)
+            return false;
+
+        if (this.requestsPerSecond > 0)
+            this.requestTokens -= 1;
+
+        return true;
+    }
+
+    /** Gives back to the request budget a request taken by {@link #tryAcquire()} that was never made. */
+    public synchronized void release()
+    {
+        if (this.requestsPerSecond <= 0)
+            return;
+
+        this.refill();
+        this.requestTokens = Math.min(this.requestTokens + 1, this.getRequestCapacity());
+    }
+
+    /**
+     * Takes the bytes of a completed retrieval from the byte budget. The budget may be overdrawn, in which case no
+     * further requests are allowed until it has recovered.
+     *
+     * @param numBytes the number of bytes retrieved.
+     */
+    public synchronized void consumeBytes(long numBytes)
+    {
+        if (this.bytesPerSecond <= 0 || numBytes <= 0)
+            return;
+
+        this.refill();
+        this.byteTokens -= numBytes;
+    }
+
+    /**
+     * Computes how long until the budgets allow another request.
+     *
+     * @return the delay, in milliseconds, or zero if a request may be made now.
+     */
+    public synchronized long getDelay()
+    {
+        if (!this.isLimited())
+            return 0;
+
+        this.refill();
+
+        double seconds = 0;
+        if (this.requestsPerSecond > 0 && this.requestTokens < 1)
+            seconds = (1 - this.requestTokens) / this.requestsPerSecond;
+        if (this.bytesPerSecond > 0 && this.byteTokens < 0)
+            seconds = Math.max(seconds, -this.byteTokens / this.bytesPerSecond);
+
+        return (long) Math.ceil(seconds * 1000);
+    }
+
+    protected double getRequestCapacity()
+    {
+        // A budget of less than one request per second must still be able to hold a whole request.
+        return this.requestsPerSecond > 0 ? Math.max(this.requestsPerSecond, 1) : 0;
+    }
+
+    protected void refill()
+    {
+        long now = System.nanoTime();
+        double seconds = (now - this.lastRefillTime) / 1e9;
+        this.lastRefillTime = now;
+
+        if (this.requestsPerSecond > 0)
+        {
+            this.requestTokens = Math.min(this.requestTokens + seconds * this.requestsPerSecond,
+                this.getRequestCapacity());
+        }
+
+        if (this.bytesPerSecond > 0)
+            this.byteTokens = Math.min(this.byteTokens + seconds * this.bytesPerSecond, this.bytesPerSecond);
+    }
+}
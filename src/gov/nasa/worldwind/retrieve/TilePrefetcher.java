@@ -0,0 +1,717 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import gov.nasa.worldwind.layers.Layer;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.terrain.CompoundElevationModel;
+import gov.nasa.worldwind.util.*;
+import gov.nasa.worldwind.view.orbit.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Requests the tiles a moving view is about to need, so that they're in memory when the view gets there rather than
+ * requested once they're in view. The prefetcher predicts where the view will be from the target of the view's running
+ * animation, and by extrapolating the view's recent motion a short time ahead. For each prediction it asks the enabled
+ * {@link Prefetchable} layers and elevation models to request the tiles that view would draw.
+ * <p/>
+ * Tiles in the file store are loaded into memory on the prefetcher's own low priority threads, so prefetching doesn't
+ * take the task service's threads from the tiles in view. Tiles that must be retrieved are retrieved at {@link
+ * #RETRIEVAL_PRIORITY}, behind the tiles in view, and within the prefetcher's {@link RetrievalThrottle} budget.
+ * <p/>
+ * The prefetcher counts the tiles it requests that are drawn within the use period, and those that are not, and reports
+ * them by {@link #getPerformanceStatistics()} under the key {@link PerformanceStatistic#TILE_PREFETCH}.
+ * <p/>
+ * The scene controller updates its prefetcher after drawing each frame when {@link AVKey#TILE_PREFETCH_ENABLED} is
+ * true.
+ */
+public class TilePrefetcher
+{
+    /** The default time ahead of the view that its motion is extrapolated to, in milliseconds. */
+    public static final long DEFAULT_LOOK_AHEAD = 2000;
+    /** The default period between predictions, in milliseconds. */
+    public static final long DEFAULT_UPDATE_PERIOD = 250;
+    /** The default time within which a prefetched tile must be drawn to count as used, in milliseconds. */
+    public static final long DEFAULT_USE_PERIOD = 30000;
+    /** The retrieval priority of prefetched tiles, which retrieves them after the tiles in view. */
+    public static final double RETRIEVAL_PRIORITY = Double.MAX_VALUE;
+
+    /** The period of the view samples the view's velocity is computed from, in milliseconds. */
+    protected static final long VELOCITY_PERIOD = 500;
+    /** The shortest period the view's velocity is computed over, in milliseconds. */
+    protected static final long MIN_VELOCITY_PERIOD = 50;
+    /** The least predicted motion worth prefetching for, as a fraction of the view's footprint and distance. */
+    protected static final double MIN_MOTION = 0.25;
+    protected static final int DEFAULT_POOL_SIZE = 2;
+    protected static final int DEFAULT_QUEUE_SIZE = 32;
+
+    /**
+     * A predicted view: the location it looks at, its distance from that location, and its field of view. The surface
+     * it sees is approximated by the sector bounding the view's footprint around the location.
+     */
+    public static class Prediction
+    {
+        protected final Globe globe;
+        protected final LatLon center;
+        protected final double distance;
+        protected final Angle fieldOfView;
+        protected final Sector sector;
+
+        /**
+         * Creates a prediction.
+         *
+         * @param globe       the globe the view looks at.
+         * @param center      the location at the center of the view.
+         * @param distance    the distance from the eye to the center location, in meters.
+         * @param fieldOfView the view's horizontal field of view.
+         *
+         * @throws IllegalArgumentException if the globe, the center or the field of view is null.
+         */
+        public Prediction(Globe globe, LatLon center, double distance, Angle fieldOfView)
+        {
+            if (globe == null)
+            {
+                String message = Logging.getMessage("nullValue.GlobeIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            if (center == null)
+            {
+                String message = Logging.getMessage("nullValue.LatLonIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            if (fieldOfView == null)
+            {
+                String message = Logging.getMessage("nullValue.AngleIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            this.globe = globe;
+            this.center = center;
+            this.distance = distance;
+            this.fieldOfView = fieldOfView;
+            this.sector = Sector.boundingSector(globe, center, distance * fieldOfView.tanHalfAngle());
+        }
+
+        /** @return the globe the view looks at. */
+        public Globe getGlobe()
+        {
+            return this.globe;
+        }
+
+        /** @return the location at the center of the view. */
+        public LatLon getCenter()
+        {
+            return this.center;
+        }
+
+        /** @return the distance from the eye to the center location, in meters. */
+        public double getDistance()
+        {
+            return this.distance;
+        }
+
+        /** @return the view's horizontal field of view. */
+        public Angle getFieldOfView()
+        {
+            return this.fieldOfView;
+        }
+
+        /** @return the sector bounding the view's footprint around its center location. */
+        public Sector getSector()
+        {
+            return this.sector;
+        }
+
+        /**
+         * Computes the size of the texels drawn at the center of the view, for layers and tessellators that draw a
+         * level once its texel size is less than a fraction of the eye distance. The fraction is specified as a power
+         * of 10 and scaled by the field of view, as in {@link gov.nasa.worldwind.layers.TiledImageLayer}.
+         *
+         * @param detailFactor the level of detail scale, as a power of 10.
+         *
+         * @return the texel size, in radians.
+         */
+        public double computeTexelSize(double detailFactor)
+        {
+            double fieldOfViewScale = this.fieldOfView.tanHalfAngle() / Angle.fromDegrees(45).tanHalfAngle();
+            fieldOfViewScale = WWMath.clamp(fieldOfViewScale, 0, 1);
+
+            return this.distance * Math.pow(10, -detailFactor) * fieldOfViewScale / this.globe.getRadius();
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.center + " " + this.distance;
+        }
+    }
+
+    /** Where the view looked at a point in time. */
+    protected static class ViewSample
+    {
+        protected final long time;
+        protected final LatLon center;
+        protected final double distance;
+
+        public ViewSample(long time, LatLon center, double distance)
+        {
+            this.time = time;
+            this.center = center;
+            this.distance = Math.max(distance, 1);
+        }
+    }
+
+    protected final RetrievalThrottle throttle;
+    protected long lookAhead;
+    protected long updatePeriod = DEFAULT_UPDATE_PERIOD;
+    protected long usePeriod = DEFAULT_USE_PERIOD;
+    protected final ThreadPoolExecutor executor;
+    protected final ArrayDeque<ViewSample> samples = new ArrayDeque<ViewSample>();
+    protected long lastUpdateTime;
+    protected List<Prediction> lastPredictions = Collections.emptyList();
+    // Tiles requested and not yet drawn, and when they were requested.
+    protected final ConcurrentHashMap<Object, Long> prefetchedTiles = new ConcurrentHashMap<Object, Long>();
+    protected final AtomicLong requestCount = new AtomicLong();
+    protected final AtomicLong usedCount = new AtomicLong();
+    protected final AtomicLong unusedCount = new AtomicLong();
+    protected final AtomicLong retrievalCount = new AtomicLong();
+    protected final AtomicLong bytesRetrieved = new AtomicLong();
+
+    /**
+     * Creates a prefetcher with the look-ahead time and retrieval budget specified by {@link
+     * AVKey#TILE_PREFETCH_LOOK_AHEAD}, {@link AVKey#TILE_PREFETCH_MAX_REQUESTS_PER_SECOND} and {@link
+     * AVKey#TILE_PREFETCH_MAX_BYTES_PER_SECOND}.
+     */
+    public TilePrefetcher()
+    {
+        this(new RetrievalThrottle(
+                Configuration.getDoubleValue(AVKey.TILE_PREFETCH_MAX_REQUESTS_PER_SECOND, 0d),
+                Configuration.getDoubleValue(AVKey.TILE_PREFETCH_MAX_BYTES_PER_SECOND, 0d)),
+            Configuration.getLongValue(AVKey.TILE_PREFETCH_LOOK_AHEAD, DEFAULT_LOOK_AHEAD));
+    }
+
+    /**
+     * Creates a prefetcher with a specified look-ahead time and retrieval budget.
+     *
+     * @param throttle  the budget of the prefetcher's retrievals.
+     * @param lookAhead the time ahead of the view that its motion is extrapolated to, in milliseconds.
+     *
+     * @throws IllegalArgumentException if the throttle is null or the look-ahead time is less than zero.
+     */
+    public TilePrefetcher(RetrievalThrottle throttle, long lookAhead)
+    {
+        if (throttle == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (lookAhead < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", lookAhead);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.throttle = throttle;
+        this.lookAhead = lookAhead;
+        this.executor = new ThreadPoolExecutor(DEFAULT_POOL_SIZE, DEFAULT_POOL_SIZE, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(DEFAULT_QUEUE_SIZE), new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, Logging.getMessage("TilePrefetcher.ThreadName"));
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /** @return the budget of the prefetcher's retrievals. */
+    public RetrievalThrottle getThrottle()
+    {
+        return this.throttle;
+    }
+
+    /** @return the time ahead of the view that its motion is extrapolated to, in milliseconds. */
+    public long getLookAhead()
+    {
+        return this.lookAhead;
+    }
+
+    /**
+     * Specifies the time ahead of the view that its motion is extrapolated to.
+     *
+     * @param lookAhead the look-ahead time, in milliseconds.
+     *
+     * @throws IllegalArgumentException if the look-ahead time is less than zero.
+     */
+    public void setLookAhead(long lookAhead)
+    {
+        if (lookAhead < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", lookAhead);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.lookAhead = lookAhead;
+    }
+
+    /** @return the period between predictions, in milliseconds. */
+    public long getUpdatePeriod()
+    {
+        return this.updatePeriod;
+    }
+
+    /**
+     * Specifies the period between predictions. Frames drawn within the period only sample the view.
+     *
+     * @param updatePeriod the update period, in milliseconds.
+     */
+    public void setUpdatePeriod(long updatePeriod)
+    {
+        this.updatePeriod = updatePeriod;
+    }
+
+    /** @return the time within which a prefetched tile must be drawn to count as used, in milliseconds. */
+    public long getUsePeriod()
+    {
+        return this.usePeriod;
+    }
+
+    /**
+     * Specifies the time within which a prefetched tile must be drawn to count as used. A tile not drawn within this
+     * time is counted as unused, and may be requested again.
+     *
+     * @param usePeriod the use period, in milliseconds.
+     */
+    public void setUsePeriod(long usePeriod)
+    {
+        this.usePeriod = usePeriod;
+    }
+
+    /** @return the views predicted by the last update. */
+    public List<Prediction> getLastPredictions()
+    {
+        return this.lastPredictions;
+    }
+
+    /**
+     * Samples the view of a frame just drawn and, at most once per update period, predicts where the view is going
+     * and requests the tiles it will need there.
+     *
+     * @param dc the current draw context.
+     *
+     * @throws IllegalArgumentException if the draw context is null.
+     */
+    public void update(DrawContext dc)
+    {
+        if (dc == null)
+        {
+            String message = Logging.getMessage("nullValue.DrawContextIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (dc.getView() == null || dc.getGlobe() == null)
+            return;
+
+        long now = System.currentTimeMillis();
+        ViewSample sample = this.createSample(dc, now);
+        if (sample != null)
+            this.addSample(sample);
+
+        if (now - this.lastUpdateTime < this.updatePeriod)
+            return;
+
+        this.lastUpdateTime = now;
+        this.expireUnusedTiles(now);
+
+        this.lastPredictions = this.predict(dc);
+        if (this.lastPredictions.isEmpty())
+            return;
+
+        List<Prefetchable> prefetchables = this.getPrefetchables(dc);
+        for (Prediction prediction : this.lastPredictions)
+        {
+            for (Prefetchable prefetchable : prefetchables)
+            {
+                try
+                {
+                    prefetchable.prefetch(prediction, this);
+                }
+                catch (Exception e)
+                {
+                    Logging.logger().log(Level.FINE,
+                        Logging.getMessage("TilePrefetcher.ExceptionPrefetching", prefetchable), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Submits a task loading or retrieving a tile, unless the tile has been submitted and has been neither drawn nor
+     * cancelled since, or the prefetcher's queue is full. Called by {@link Prefetchable}s.
+     *
+     * @param tileKey the tile's key, which identifies the tile among all tiles of all data sets.
+     * @param task    the task loading or retrieving the tile.
+     *
+     * @return true if the task was submitted, otherwise false.
+     *
+     * @throws IllegalArgumentException if the key or the task is null.
+     */
+    public boolean submit(Object tileKey, Runnable task)
+    {
+        if (tileKey == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (task == null)
+        {
+            String message = Logging.getMessage("nullValue.RunnableIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (this.executor.getQueue().remainingCapacity() == 0)
+            return false;
+
+        if (this.prefetchedTiles.putIfAbsent(tileKey, System.currentTimeMillis()) != null)
+            return false;
+
+        try
+        {
+            this.executor.execute(task);
+        }
+        catch (RejectedExecutionException e)
+        {
+            this.prefetchedTiles.remove(tileKey);
+            return false;
+        }
+
+        this.requestCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Withdraws a submitted tile that was neither loaded nor retrieved, typically because the retrieval budget was
+     * spent. The tile is not counted, and may be submitted again.
+     *
+     * @param tileKey the tile's key.
+     */
+    public void cancel(Object tileKey)
+    {
+        if (tileKey != null && this.prefetchedTiles.remove(tileKey) != null)
+            this.requestCount.decrementAndGet();
+    }
+
+    /**
+     * Takes a retrieval from the prefetcher's budget. Called by a submitted task before it retrieves its tile.
+     *
+     * @return true if the tile may be retrieved, otherwise false.
+     */
+    public boolean tryAcquireRetrieval()
+    {
+        if (!this.throttle.tryAcquire())
+            return false;
+
+        this.retrievalCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Takes the bytes of a completed retrieval from the prefetcher's budget. Called by the post-processor of a
+     * retrieval started by a submitted task.
+     *
+     * @param retriever the retriever.
+     */
+    public void retrievalCompleted(Retriever retriever)
+    {
+        if (retriever == null)
+            return;
+
+        long numBytes = retriever.getContentLengthRead();
+        this.throttle.consumeBytes(numBytes);
+        this.bytesRetrieved.addAndGet(Math.max(numBytes, 0));
+    }
+
+    /**
+     * Counts a tile as used if it was prefetched. Called by {@link Prefetchable}s when they draw a tile.
+     *
+     * @param tileKey the tile's key.
+     */
+    public void markUsed(Object tileKey)
+    {
+        if (tileKey != null && !this.prefetchedTiles.isEmpty() && this.prefetchedTiles.remove(tileKey) != null)
+            this.usedCount.incrementAndGet();
+    }
+
+    /** @return the number of tiles requested. */
+    public long getRequestCount()
+    {
+        return this.requestCount.get();
+    }
+
+    /** @return the number of requested tiles that were drawn within the use period. */
+    public long getUsedCount()
+    {
+        return this.usedCount.get();
+    }
+
+    /** @return the number of requested tiles that were not drawn within the use period. */
+    public long getUnusedCount()
+    {
+        return this.unusedCount.get();
+    }
+
+    /** @return the number of requested tiles that have been neither drawn nor counted as unused yet. */
+    public int getPendingCount()
+    {
+        return this.prefetchedTiles.size();
+    }
+
+    /** @return the number of tiles retrieved rather than loaded from the file store. */
+    public long getRetrievalCount()
+    {
+        return this.retrievalCount.get();
+    }
+
+    /** @return the number of bytes retrieved. */
+    public long getBytesRetrieved()
+    {
+        return this.bytesRetrieved.get();
+    }
+
+    /** @return the fraction of the requested tiles counted so far that were drawn, or zero if none were counted. */
+    public double getUseRate()
+    {
+        long used = this.usedCount.get();
+        long total = used + this.unusedCount.get();
+
+        return total > 0 ? (double) used / total : 0;
+    }
+
+    /** @return the prefetcher's statistics, for the per-frame statistics. */
+    public Collection<PerformanceStatistic> getPerformanceStatistics()
+    {
+        ArrayList<PerformanceStatistic> stats = new ArrayList<PerformanceStatistic>();
+
+        stats.add(new PerformanceStatistic(PerformanceStatistic.TILE_PREFETCH, "Prefetch Tiles Requested",
+            this.getRequestCount()));
+        stats.add(new PerformanceStatistic(PerformanceStatistic.TILE_PREFETCH, "Prefetch Tiles Used",
+            this.getUsedCount()));
+        stats.add(new PerformanceStatistic(PerformanceStatistic.TILE_PREFETCH, "Prefetch Tiles Unused",
+            this.getUnusedCount()));
+        stats.add(new PerformanceStatistic(PerformanceStatistic.TILE_PREFETCH, "Prefetch Use Rate (%)",
+            (int) (100 * this.getUseRate())));
+        stats.add(new PerformanceStatistic(PerformanceStatistic.TILE_PREFETCH, "Prefetch Retrieved (Kb)",
+            this.getBytesRetrieved() / 1000));
+
+        return stats;
+    }
+
+    /** Stops the prefetcher's threads. Tasks not yet started are discarded. */
+    public void dispose()
+    {
+        this.executor.shutdownNow();
+        this.prefetchedTiles.clear();
+    }
+
+    protected ViewSample createSample(DrawContext dc, long time)
+    {
+        View view = dc.getView();
+        if (view instanceof OrbitView)
+        {
+            OrbitView orbitView = (OrbitView) view;
+            Position center = orbitView.getCenterPosition();
+            return center != null ? new ViewSample(time, center, orbitView.getZoom()) : null;
+        }
+
+        Position center = dc.getViewportCenterPosition();
+        Vec4 eyePoint = view.getEyePoint();
+        if (center != null && eyePoint != null)
+        {
+            Vec4 centerPoint = dc.getGlobe().computePointFromPosition(center);
+            return new ViewSample(time, center, eyePoint.distanceTo3(centerPoint));
+        }
+
+        // The view doesn't look at the globe. Use the location below the eye.
+        Position eyePosition = view.getEyePosition();
+        return eyePosition != null ? new ViewSample(time, eyePosition, eyePosition.getElevation()) : null;
+    }
+
+    protected void addSample(ViewSample sample)
+    {
+        this.samples.addLast(sample);
+
+        while (this.samples.size() > 1 && this.samples.peekFirst().time < sample.time - VELOCITY_PERIOD)
+        {
+            this.samples.pollFirst();
+        }
+    }
+
+    /**
+     * Predicts the views to prefetch tiles for: the view extrapolated from its recent motion, and the view at the end
+     * of its running animation.
+     *
+     * @param dc the current draw context.
+     *
+     * @return the predicted views, soonest first. The list is empty if the view isn't moving.
+     */
+    protected List<Prediction> predict(DrawContext dc)
+    {
+        ArrayList<Prediction> predictions = new ArrayList<Prediction>(2);
+
+        Prediction motion = this.predictMotion(dc.getGlobe(), dc.getView().getFieldOfView());
+        if (motion != null)
+            predictions.add(motion);
+
+        Prediction target = this.predictAnimationTarget(dc);
+        if (target != null)
+            predictions.add(target);
+
+        return predictions;
+    }
+
+    /**
+     * Extrapolates the view's recent motion by the look-ahead time. The view's center location moves at its recent
+     * rate of change in latitude and longitude, and its distance changes at its recent rate of change in proportion,
+     * as it does when zooming.
+     *
+     * @param globe       the globe the view looks at.
+     * @param fieldOfView the view's field of view.
+     *
+     * @return the predicted view, or null if the view isn't moving far enough to need other tiles.
+     */
+    protected Prediction predictMotion(Globe globe, Angle fieldOfView)
+    {
+        if (this.samples.size() < 2)
+            return null;
+
+        ViewSample first = this.samples.peekFirst();
+        ViewSample last = this.samples.peekLast();
+        long elapsed = last.time - first.time;
+        if (elapsed < MIN_VELOCITY_PERIOD)
+            return null;
+
+        double t = (double) this.lookAhead / elapsed;
+        double dLat = last.center.getLatitude().degrees - first.center.getLatitude().degrees;
+        double dLon = Angle.normalizedDegreesLongitude(
+            last.center.getLongitude().degrees - first.center.getLongitude().degrees);
+        LatLon center = LatLon.fromDegrees(
+            WWMath.clamp(last.center.getLatitude().degrees + t * dLat, -90, 90),
+            Angle.normalizedDegreesLongitude(last.center.getLongitude().degrees + t * dLon));
+        double distance = last.distance * Math.pow(last.distance / first.distance, t);
+
+        // A view that's barely moving still draws the tiles it's drawing now.
+        double footprint = last.distance * fieldOfView.tanHalfAngle();
+        double motion = LatLon.greatCircleDistance(last.center, center).radians * globe.getRadius();
+        if (motion < MIN_MOTION * footprint && Math.abs(Math.log(distance / last.distance)) < Math.log(1 + MIN_MOTION))
+            return null;
+
+        return new Prediction(globe, center, distance, fieldOfView);
+    }
+
+    /**
+     * Returns the view at the end of the orbit view's running animations, such as a fly-to.
+     *
+     * @param dc the current draw context.
+     *
+     * @return the view at the end of the animation, or null if no animation moves the view's center or changes its
+     *         zoom.
+     */
+    protected Prediction predictAnimationTarget(DrawContext dc)
+    {
+        View view = dc.getView();
+        if (!(view instanceof OrbitView) || !(view.getViewInputHandler() instanceof OrbitViewInputHandler))
+            return null;
+
+        OrbitViewInputHandler inputHandler = (OrbitViewInputHandler) view.getViewInputHandler();
+        Position center = inputHandler.getAnimationTargetCenterPosition();
+        Double zoom = inputHandler.getAnimationTargetZoom();
+        if (center == null && zoom == null)
+            return null;
+
+        OrbitView orbitView = (OrbitView) view;
+        if (center == null)
+            center = orbitView.getCenterPosition();
+        if (zoom == null)
+            zoom = orbitView.getZoom();
+
+        return center != null ? new Prediction(dc.getGlobe(), center, zoom, view.getFieldOfView()) : null;
+    }
+
+    protected List<Prefetchable> getPrefetchables(DrawContext dc)
+    {
+        ArrayList<Prefetchable> prefetchables = new ArrayList<Prefetchable>();
+
+        if (dc.getLayers() != null)
+        {
+            for (Layer layer : dc.getLayers())
+            {
+                if (layer instanceof Prefetchable && layer.isEnabled())
+                    prefetchables.add((Prefetchable) layer);
+            }
+        }
+
+        this.addPrefetchables(dc.getGlobe().getElevationModel(), prefetchables);
+
+        return prefetchables;
+    }
+
+    protected void addPrefetchables(ElevationModel elevationModel, List<Prefetchable> prefetchables)
+    {
+        if (elevationModel == null || !elevationModel.isEnabled())
+            return;
+
+        if (elevationModel instanceof CompoundElevationModel)
+        {
+            for (ElevationModel em : ((CompoundElevationModel) elevationModel).getElevationModels())
+            {
+                this.addPrefetchables(em, prefetchables);
+            }
+        }
+        else if (elevationModel instanceof Prefetchable)
+        {
+            prefetchables.add((Prefetchable) elevationModel);
+        }
+    }
+
+    /**
+     * Counts the prefetched tiles not drawn within the use period as unused, and forgets them so that they may be
+     * requested again.
+     *
+     * @param now the current time, in milliseconds.
+     */
+    protected void expireUnusedTiles(long now)
+    {
+        for (Map.Entry<Object, Long> entry : this.prefetchedTiles.entrySet())
+        {
+            if (now - entry.getValue() > this.usePeriod && this.prefetchedTiles.remove(entry.getKey(),
+                entry.getValue()))
+                this.unusedCount.incrementAndGet();
+        }
+    }
+}
@@ -15,6 +15,7 @@ import java.io.*;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
+import java.util.*;
 import java.util.concurrent.atomic.*;
 import java.util.logging.Level;
 import java.util.regex.*;
@@ -43,6 +44,10 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
     protected volatile URLConnection connection;
     protected final URL url;
     protected final RetrievalPostProcessor postProcessor;
+    // Post-processors of equal retrievals coalesced with this one. Guarded by the list's monitor.
+    protected final List<RetrievalPostProcessor> coalescedPostProcessors = new ArrayList<RetrievalPostProcessor>();
+    protected boolean postProcessingStarted;
+    protected boolean postProcessorRemoved;
     protected int connectTimeout = Configuration.getIntegerValue(AVKey.URL_CONNECT_TIMEOUT, 8000);
     protected int readTimeout = Configuration.getIntegerValue(AVKey.URL_READ_TIMEOUT, 5000);
     protected int staleRequestLimit = -1;
@@ -163,6 +168,113 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
         return postProcessor;
     }
 
+    /**
+     * Adds the post-processor of another retrieval of the same URL, so that one retrieval serves both. The
+     * post-processor is run after this retriever's own, with this retriever and the bytes as they were retrieved.
+     *
+     * @param postProcessor the post-processor to add.
+     *
+     * @return true if the post-processor was added, false if this retriever has already finished post-processing, in
+     *         which case the other retrieval must run on its own.
+     *
+     * @throws IllegalArgumentException if the post-processor is null.
+     */
+    public boolean addPostProcessor(RetrievalPostProcessor postProcessor)
+    {
+        if (postProcessor == null)
+        {
+            String message = Logging.getMessage("nullValue.PostProcessorIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        synchronized (this.coalescedPostProcessors)
+        {
+            if (this.postProcessingStarted)
+                return false;
+
+            // Repeated requests for the same data, such as a layer asking again for a tile it's waiting for, are
+            // dropped rather than post-processed again.
+            if (isEquivalent(postProcessor, this.postProcessor))
+                return true;
+            for (RetrievalPostProcessor pp : this.coalescedPostProcessors)
+            {
+                if (isEquivalent(postProcessor, pp))
+                    return true;
+            }
+
+            this.coalescedPostProcessors.add(postProcessor);
+            return true;
+        }
+    }
+
+    /**
+     * Detaches the post-processor of a retrieval that this retriever serves, because that retrieval is no longer
+     * needed. This retriever's own post-processor is detached by passing it or an equivalent post-processor.
+     *
+     * @param postProcessor the post-processor to detach.
+     *
+     * @return true if the post-processor was detached, false if this retriever doesn't serve it or has already
+     *         started post-processing.
+     *
+     * @throws IllegalArgumentException if the post-processor is null.
+     * @see #hasPostProcessors()
+     */
+    public boolean removePostProcessor(RetrievalPostProcessor postProcessor)
+    {
+        if (postProcessor == null)
+        {
+            String message = Logging.getMessage("nullValue.PostProcessorIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        synchronized (this.coalescedPostProcessors)
+        {
+            if (this.postProcessingStarted)
+                return false;
+
+            for (Iterator<RetrievalPostProcessor> iter = this.coalescedPostProcessors.iterator(); iter.hasNext(); )
+            {
+                if (isEquivalent(postProcessor, iter.next()))
+                {
+                    iter.remove();
+                    return true;
+                }
+            }
+
+            if (this.postProcessor == null || this.postProcessorRemoved
+                || !isEquivalent(postProcessor, this.postProcessor))
+                return false;
+
+            this.postProcessorRemoved = true;
+            return true;
+        }
+    }
+
+    /**
+     * Indicates whether any post-processor remains attached to this retriever, so that its retrieval is still needed.
+     *
+     * @return false if every post-processor has been detached by {@link #removePostProcessor(RetrievalPostProcessor)},
+     *         otherwise true.
+     */
+    public boolean hasPostProcessors()
+    {
+        synchronized (this.coalescedPostProcessors)
+        {
+            return (this.postProcessor != null && !this.postProcessorRemoved)
+                || !this.coalescedPostProcessors.isEmpty();
+        }
+    }
+
+    protected static boolean isEquivalent(RetrievalPostProcessor a, RetrievalPostProcessor b)
+    {
+        if (a == b || a.equals(b))
+            return true;
+
+        return a instanceof AbstractRetrievalPostProcessor && ((AbstractRetrievalPostProcessor) a).isEquivalent(b);
+    }
+
     public final int getConnectTimeout()
     {
         return connectTimeout;
@@ -224,10 +336,52 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
     }
 
     public final Retriever call() throws Exception
+    {
+        return this.call(null);
+    }
+
+    /**
+     * Performs the retrieval as {@link #call()} does, but reads a connection established by the caller rather than
+     * opening one. Retrieval services that perform network I/O themselves, such as {@link AsyncRetrievalService}, use
+     * this method to hand the response to the retriever, which then reads it and runs its post-processor as usual.
+     *
+     * @param connection the connection to read, or null to open a connection to the retriever's URL.
+     *
+     * @return this retriever.
+     *
+     * @throws Exception if the connection cannot be opened or read, or if post-processing fails.
+     */
+    public final Retriever call(URLConnection connection) throws Exception
     {
         if (this.interrupted())
             return this;
 
+        try
+        {
+            this.fetch(connection);
+        }
+        finally
+        {
+            this.end();
+        }
+
+        return this;
+    }
+
+    /**
+     * Performs the first half of {@link #call(URLConnection)}: opens the connection, unless the caller provides one,
+     * and reads it, but does not run the post-processor. Retrieval services that post-process on other threads than
+     * they read on, such as those of the {@link RetrievalPipeline}, call this method on their network thread and {@link
+     * #postProcess()} afterwards, whether or not this method succeeds.
+     *
+     * @param connection the connection to read, or null to open a connection to the retriever's URL.
+     *
+     * @return this retriever.
+     *
+     * @throws Exception if the connection cannot be opened or read.
+     */
+    public final Retriever fetch(URLConnection connection) throws Exception
+    {
         try
         {
             this.setState(RETRIEVER_STATE_STARTED);
@@ -235,7 +389,7 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
             if (!this.interrupted())
             {
                 this.setState(RETRIEVER_STATE_CONNECTING);
-                this.connection = this.openConnection();
+                this.connection = connection != null ? connection : this.openConnection();
             }
 
             if (!this.interrupted())
@@ -275,10 +429,21 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
             }
             throw e;
         }
-        finally
-        {
-            this.end();
-        }
+
+        return this;
+    }
+
+    /**
+     * Performs the second half of {@link #call(URLConnection)}: runs the post-processor, and those of the retrievals
+     * coalesced with this one, on the data read by {@link #fetch(URLConnection)}.
+     *
+     * @return this retriever.
+     *
+     * @throws Exception if post-processing fails.
+     */
+    public final Retriever postProcess() throws Exception
+    {
+        this.end();
 
         return this;
     }
@@ -345,9 +510,21 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
 
     protected void end() throws Exception
     {
+        // Post-processors may consume or replace the buffer, so keep the retrieved bytes for coalesced retrievals.
+        ByteBuffer retrieved = this.byteBuffer != null ? this.byteBuffer.duplicate() : null;
+        String retrievedState = this.state;
+
+        // Post-processors can't be added or detached once post-processing starts.
+        boolean runPostProcessor;
+        synchronized (this.coalescedPostProcessors)
+        {
+            this.postProcessingStarted = true;
+            runPostProcessor = this.postProcessor != null && !this.postProcessorRemoved;
+        }
+
         try
         {
-            if (this.postProcessor != null)
+            if (runPostProcessor)
             {
                 this.byteBuffer = this.postProcessor.run(this);
             }
@@ -359,6 +536,41 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
                 Logging.getMessage("Retriever.ErrorPostProcessing", this.url.toString()), e);
             throw e;
         }
+        finally
+        {
+            this.runCoalescedPostProcessors(retrieved, retrievedState);
+        }
+    }
+
+    protected void runCoalescedPostProcessors(ByteBuffer retrieved, String retrievedState)
+    {
+        List<RetrievalPostProcessor> postProcessors;
+        synchronized (this.coalescedPostProcessors)
+        {
+            this.postProcessingStarted = true;
+            if (this.coalescedPostProcessors.isEmpty())
+                return;
+            postProcessors = new ArrayList<RetrievalPostProcessor>(this.coalescedPostProcessors);
+        }
+
+        ByteBuffer result = this.byteBuffer;
+        String resultState = this.state;
+        for (RetrievalPostProcessor pp : postProcessors)
+        {
+            try
+            {
+                this.byteBuffer = retrieved != null ? retrieved.duplicate() : null;
+                this.state = retrievedState;
+                pp.run(this);
+            }
+            catch (Exception e)
+            {
+                Logging.logger().log(Level.SEVERE,
+                    Logging.getMessage("Retriever.ErrorPostProcessing", this.url.toString()), e);
+            }
+        }
+        this.byteBuffer = result;
+        this.state = resultState;
     }
 
     protected ByteBuffer read() throws Exception
@@ -412,6 +624,20 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
                 return null;
             }
 
+            // Content compressed for transfer is inflated as it's read. Its inflated length is known only once it's
+            // been read.
+            String contentEncoding = connection.getContentEncoding();
+            boolean encoded = true;
+            if ("gzip".equalsIgnoreCase(contentEncoding) || "x-gzip".equalsIgnoreCase(contentEncoding))
+                inputStream = new GZIPInputStream(inputStream);
+            else if ("deflate".equalsIgnoreCase(contentEncoding))
+                inputStream = new InflaterInputStream(inputStream);
+            else
+                encoded = false;
+
+            if (encoded)
+                this.contentLength = -1;
+
             this.expiration.set(this.getExpiration(connection));
 
             // The legacy WW servers send data with application/zip as the content type, and the retrieval initiator is
@@ -424,6 +650,9 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
                 buffer = this.readZipStream(inputStream, connection.getURL());
             else
                 buffer = this.readNonSpecificStream(inputStream, connection);
+
+            if (encoded && buffer != null)
+                this.contentLength = buffer.remaining();
         }
         finally
         {
@@ -15,7 +15,7 @@ import gov.nasa.worldwind.util.*;
 import org.w3c.dom.Element;
 
 import javax.xml.xpath.XPath;
-import java.util.List;
+import java.util.*;
 
 /**
  * @author tag
@@ -139,6 +139,95 @@ abstract public class AbstractElevationModel extends WWObjectImpl implements Ele
         return e == this.missingDataFlag ? this.missingDataValue : e;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * This implementation creates a list of locations and delegates to {@link #getElevations(gov.nasa.worldwind.geom.Sector,
+     * java.util.List, double, double[])}. Subclasses should override it to avoid allocating the locations.
+     */
+    public double getElevations(Sector sector, double[] latitudes, double[] longitudes, double targetResolution,
+        double[] buffer)
+    {
+        validateElevationsArguments(sector, latitudes, longitudes, buffer);
+
+        return this.getElevations(sector, createLocations(latitudes, longitudes), targetResolution, buffer);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * This implementation creates a list of locations and delegates to {@link #getUnmappedElevations(gov.nasa.worldwind.geom.Sector,
+     * java.util.List, double, double[])}. Subclasses should override it to avoid allocating the locations.
+     */
+    public double getUnmappedElevations(Sector sector, double[] latitudes, double[] longitudes,
+        double targetResolution, double[] buffer)
+    {
+        validateElevationsArguments(sector, latitudes, longitudes, buffer);
+
+        return this.getUnmappedElevations(sector, createLocations(latitudes, longitudes), targetResolution, buffer);
+    }
+
+    protected static List<LatLon> createLocations(double[] latitudes, double[] longitudes)
+    {
+        ArrayList<LatLon> locations = new ArrayList<LatLon>(latitudes.length);
+        for (int i = 0; i < latitudes.length; i++)
+        {
+            locations.add(LatLon.fromDegrees(latitudes[i], longitudes[i]));
+        }
+
+        return locations;
+    }
+
+    /**
+     * Validates the arguments of the array forms of <code>getElevations</code> and <code>getUnmappedElevations</code>.
+     *
+     * @param sector     the sector in question.
+     * @param latitudes  the locations' latitudes.
+     * @param longitudes the locations' longitudes.
+     * @param buffer     the array to receive the elevations.
+     *
+     * @throws IllegalArgumentException if the sector or any array is null, if the latitude and longitude arrays differ
+     *                                  in length, or if the buffer is shorter than they are.
+     */
+    protected static void validateElevationsArguments(Sector sector, double[] latitudes, double[] longitudes,
+        double[] buffer)
+    {
+        if (sector == null)
+        {
+            String msg = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (latitudes == null || longitudes == null)
+        {
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (latitudes.length != longitudes.length)
+        {
+            String msg = Logging.getMessage("generic.ArrayInvalidLength", longitudes.length);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (buffer == null)
+        {
+            String msg = Logging.getMessage("nullValue.ElevationsBufferIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (buffer.length < latitudes.length)
+        {
+            String msg = Logging.getMessage("ElevationModel.ElevationsBufferTooSmall", latitudes.length);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+    }
+
     public double[] getElevations(Sector sector, List<? extends LatLon> latLons, double[] targetResolutions,
         double[] elevations)
     {
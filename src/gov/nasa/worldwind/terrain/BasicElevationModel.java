@@ -50,7 +50,7 @@ import java.util.*;
  * @author Tom Gaskins
  * @version $Id: BasicElevationModel.java 3425 2015-09-30 23:17:35Z dcollins $
  */
-public class BasicElevationModel extends AbstractElevationModel implements BulkRetrievable
+public class BasicElevationModel extends AbstractElevationModel implements BulkRetrievable, Prefetchable
 {
     protected final LevelSet levels;
     protected final double minElevation;
@@ -68,6 +68,10 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
     protected MemoryCache extremesLookupCache;
     // Model resource properties.
     protected static final int RESOURCE_ID_OGC_CAPABILITIES = 1;
+    // The level of detail the default tessellator asks for, before this model's detail hint is applied.
+    protected static final double DEFAULT_PREFETCH_DETAIL_TARGET = 1.3;
+    // The prefetcher last requesting this model's tiles, told when the model's tiles are used.
+    protected volatile TilePrefetcher prefetcher;
 
     public BasicElevationModel(AVList params)
     {
@@ -223,13 +227,124 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         else
         {
             long size = Configuration.getLongValue(AVKey.ELEVATION_TILE_CACHE_SIZE, 20000000L);
-            MemoryCache mc = new BasicMemoryCache((long) (0.85 * size), size);
+            MemoryCache mc = WorldWind.getMemoryCacheSet().createCache((long) (0.85 * size), size);
             mc.setName("Elevation Tiles");
+
+            // Keep evicted elevations in the off-heap tier, if one is configured, so they needn't be read again.
+            final OffHeapBufferCache offHeapCache = OffHeapBufferCache.getTileBufferCache();
+            if (offHeapCache != null)
+            {
+                mc.addCacheListener(new MemoryCache.CacheListener()
+                {
+                    public void entryRemoved(Object key, Object clientObject)
+                    {
+                        if (clientObject instanceof ElevationTile)
+                            storeOffHeapElevations(offHeapCache, (ElevationTile) clientObject);
+                    }
+
+                    public void removalException(Throwable exception, Object key, Object clientObject)
+                    {
+                        String message = Logging.getMessage("BasicMemoryCache.ExceptionFromRemovalListener",
+                            exception.getMessage());
+                        Logging.logger().info(message);
+                    }
+                });
+            }
+
             WorldWind.getMemoryCacheSet().addCache(cacheName, mc);
             return mc;
         }
     }
 
+    /**
+     * Copies an evicted tile's elevations to the off-heap tile cache. Expired tiles and tiles without elevations are
+     * ignored.
+     *
+     * @param offHeapCache the off-heap cache.
+     * @param tile         the evicted tile.
+     */
+    protected static void storeOffHeapElevations(OffHeapBufferCache offHeapCache, ElevationTile tile)
+    {
+        BufferWrapper elevations = tile.getElevations();
+        if (elevations == null || elevations.length() == 0 || tile.isElevationsExpired())
+            return;
+
+        Buffer buffer = elevations.getBackingBuffer();
+        String dataType;
+        ByteBuffer bytes;
+        if (buffer instanceof ShortBuffer)
+        {
+            dataType = AVKey.INT16;
+            bytes = ByteBuffer.allocate(2 * buffer.capacity());
+            bytes.asShortBuffer().put((ShortBuffer) ((ShortBuffer) buffer).duplicate().clear());
+        }
+        else if (buffer instanceof FloatBuffer)
+        {
+            dataType = AVKey.FLOAT32;
+            bytes = ByteBuffer.allocate(4 * buffer.capacity());
+            bytes.asFloatBuffer().put((FloatBuffer) ((FloatBuffer) buffer).duplicate().clear());
+        }
+        else if (buffer instanceof IntBuffer)
+        {
+            dataType = AVKey.INT32;
+            bytes = ByteBuffer.allocate(4 * buffer.capacity());
+            bytes.asIntBuffer().put((IntBuffer) ((IntBuffer) buffer).duplicate().clear());
+        }
+        else if (buffer instanceof DoubleBuffer)
+        {
+            dataType = AVKey.FLOAT64;
+            bytes = ByteBuffer.allocate(8 * buffer.capacity());
+            bytes.asDoubleBuffer().put((DoubleBuffer) ((DoubleBuffer) buffer).duplicate().clear());
+        }
+        else if (buffer instanceof ByteBuffer)
+        {
+            dataType = AVKey.INT8;
+            bytes = (ByteBuffer) ((ByteBuffer) buffer).duplicate().clear();
+        }
+        else
+        {
+            return;
+        }
+
+        offHeapCache.put(tile.getTileKey(), dataType, tile.updateTime, bytes);
+    }
+
+    /**
+     * Loads a tile's elevations from the off-heap tile cache and adds the tile to the memory cache. Elevations older
+     * than the tile's level expiry time are removed from the off-heap cache and not loaded.
+     *
+     * @param tile the tile to load.
+     *
+     * @return true if the elevations were loaded, false if the off-heap cache is disabled or doesn't hold current
+     *         elevations for the tile.
+     */
+    protected boolean loadOffHeapElevations(ElevationTile tile)
+    {
+        OffHeapBufferCache offHeapCache = OffHeapBufferCache.getTileBufferCache();
+        if (offHeapCache == null)
+            return false;
+
+        OffHeapBufferCache.Payload payload = offHeapCache.get(tile.getTileKey());
+        if (payload == null)
+            return false;
+
+        if (payload.getTimestamp() < tile.getLevel().getExpiryTime())
+        {
+            offHeapCache.remove(tile.getTileKey());
+            return false;
+        }
+
+        BufferWrapper elevations = BufferWrapper.wrap(payload.getBuffer(), payload.getAttachment(), AVKey.BIG_ENDIAN);
+        if (elevations == null || elevations.length() == 0)
+            return false;
+
+        tile.setElevations(elevations, this);
+        tile.updateTime = payload.getTimestamp();
+        this.addTileToCache(tile, elevations);
+
+        return true;
+    }
+
     public LevelSet getLevels()
     {
         return this.levels;
@@ -427,6 +542,12 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
                     return;
 
                 ElevationTile tile = this.elevationModel.createTile(this.tileKey);
+                if (this.elevationModel.loadOffHeapElevations(tile))
+                {
+                    this.elevationModel.firePropertyChange(AVKey.ELEVATION_MODEL, null, this);
+                    return;
+                }
+
                 final URL url = this.elevationModel.getDataFileStore().findFile(tile.getPath(), false);
                 if (url != null && !this.elevationModel.isFileExpired(tile, url,
                     this.elevationModel.getDataFileStore()))
@@ -447,7 +568,7 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
                     }
                 }
 
-                this.elevationModel.downloadElevations(tile);
+                this.retrieve(tile);
             }
             catch (Exception e)
             {
@@ -457,6 +578,16 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
             }
         }
 
+        /**
+         * Retrieves the tile, which is neither in the off-heap cache nor current in the file store.
+         *
+         * @param tile the tile to retrieve.
+         */
+        protected void retrieve(ElevationTile tile)
+        {
+            this.elevationModel.downloadElevations(tile);
+        }
+
         public final boolean equals(Object o)
         {
             if (this == o)
@@ -489,6 +620,12 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         if (!WWIO.isFileOutOfDate(fileURL, tile.getLevel().getExpiryTime()))
             return false;
 
+        // A file with HTTP validators is kept, so that its retrieval can ask the server whether it has changed. A file
+        // revalidated since the expiry time is current.
+        CacheValidators validators = CacheValidators.read(fileStore, tile.getPath());
+        if (validators != null)
+            return validators.isExpired(tile.getLevel().getExpiryTime());
+
         // The file has expired. Delete it.
         fileStore.removeFile(fileURL);
         String message = Logging.getMessage("generic.DataFileExpired", fileURL);
@@ -559,17 +696,40 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 
     protected BufferWrapper makeBilElevations(URL url) throws IOException
     {
-        ByteBuffer byteBuffer;
-        synchronized (this.fileLock)
+        // Tiles in a pack file store are used in place, without reading them onto the heap, unless they're kept
+        // compressed.
+        ByteBuffer byteBuffer = PackFileStore.getPackedBuffer(url);
+        if (byteBuffer != null)
+        {
+            byteBuffer = WWIO.inflateIfCompressed(byteBuffer);
+        }
+        else
+        {
+            synchronized (this.fileLock)
+            {
+                byteBuffer = WWIO.inflateIfCompressed(WWIO.readURLContentToBuffer(url));
+            }
+        }
+
+        // Tiles with identical files, such as tiles of open ocean, share one set of elevations.
+        SharedContentCache contentCache = SharedContentCache.getTileContentCache();
+        SharedContentCache.ContentKey contentKey = null;
+        if (contentCache != null)
         {
-            byteBuffer = WWIO.readURLContentToBuffer(url);
+            contentKey = SharedContentCache.keyFor(byteBuffer,
+                "elevations:" + this.elevationDataType + ":" + this.elevationDataByteOrder);
+            Object shared = contentCache.get(contentKey);
+            if (shared instanceof BufferWrapper)
+                return (BufferWrapper) shared;
         }
 
         // Setup parameters to instruct BufferWrapper on how to interpret the ByteBuffer.
         AVList bufferParams = new AVListImpl();
         bufferParams.setValue(AVKey.DATA_TYPE, this.elevationDataType);
         bufferParams.setValue(AVKey.BYTE_ORDER, this.elevationDataByteOrder);
-        return BufferWrapper.wrap(byteBuffer, bufferParams);
+        BufferWrapper elevations = BufferWrapper.wrap(byteBuffer, bufferParams);
+
+        return contentKey != null ? (BufferWrapper) contentCache.put(contentKey, elevations) : elevations;
     }
 
     protected BufferWrapper makeTiffElevations(URL url) throws IOException, URISyntaxException
@@ -681,6 +841,151 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         }
     }
 
+    // *** Prefetch ***
+    // *** Prefetch ***
+    // *** Prefetch ***
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The tiles' level is the one whose elevations the tessellator would ask for at the prediction's distance.
+     */
+    public int prefetch(TilePrefetcher.Prediction prediction, TilePrefetcher prefetcher)
+    {
+        if (prediction == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (prefetcher == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.prefetcher = prefetcher;
+
+        Sector sector = this.levels.getSector().intersection(prediction.getSector());
+        if (sector == null || sector.getDeltaLatRadians() <= 0 || sector.getDeltaLonRadians() <= 0)
+            return 0;
+
+        double targetSize = prediction.computeTexelSize(DEFAULT_PREFETCH_DETAIL_TARGET + this.getDetailHint(sector));
+        Level targetLevel = this.getTargetLevel(sector, targetSize);
+        if (targetLevel == null)
+            return 0;
+
+        LatLon delta = targetLevel.getTileDelta();
+        LatLon origin = this.levels.getTileOrigin();
+        final int nwRow = Tile.computeRow(delta.getLatitude(), sector.getMaxLatitude(), origin.getLatitude());
+        final int nwCol = Tile.computeColumn(delta.getLongitude(), sector.getMinLongitude(), origin.getLongitude());
+        final int seRow = Tile.computeRow(delta.getLatitude(), sector.getMinLatitude(), origin.getLatitude());
+        final int seCol = Tile.computeColumn(delta.getLongitude(), sector.getMaxLongitude(), origin.getLongitude());
+
+        int numSubmitted = 0;
+        for (int row = seRow; row <= nwRow; row++)
+        {
+            for (int col = nwCol; col <= seCol; col++)
+            {
+                TileKey key = new TileKey(targetLevel.getLevelNumber(), row, col, targetLevel.getCacheName());
+                if (this.levels.isResourceAbsent(key) || this.getTileFromMemory(key) != null)
+                    continue;
+
+                if (prefetcher.submit(key, this.createPrefetchTask(key, prefetcher)))
+                    numSubmitted++;
+            }
+        }
+
+        return numSubmitted;
+    }
+
+    protected RequestTask createPrefetchTask(TileKey key, TilePrefetcher prefetcher)
+    {
+        return new PrefetchTask(key, this, prefetcher);
+    }
+
+    /**
+     * Loads a tile for a {@link TilePrefetcher}, or retrieves it at the prefetcher's priority if the prefetcher's budget
+     * allows.
+     */
+    protected static class PrefetchTask extends RequestTask
+    {
+        protected final TilePrefetcher prefetcher;
+
+        protected PrefetchTask(TileKey tileKey, BasicElevationModel elevationModel, TilePrefetcher prefetcher)
+        {
+            super(tileKey, elevationModel);
+
+            this.prefetcher = prefetcher;
+        }
+
+        @Override
+        protected void retrieve(ElevationTile tile)
+        {
+            if (!this.prefetcher.tryAcquireRetrieval())
+            {
+                this.prefetcher.cancel(this.tileKey);
+                return;
+            }
+
+            PrefetchPostProcessor postProcessor = new PrefetchPostProcessor(tile, this.elevationModel,
+                this.prefetcher);
+            tile.setPriority(TilePrefetcher.RETRIEVAL_PRIORITY);
+            if (this.elevationModel.getValue(AVKey.RETRIEVER_FACTORY_LOCAL) != null)
+                this.elevationModel.retrieveLocalElevations(tile, postProcessor);
+            else
+                this.elevationModel.retrieveRemoteElevations(tile, postProcessor, TilePrefetcher.RETRIEVAL_PRIORITY);
+        }
+    }
+
+    /** Accounts a prefetched tile's retrieval to its prefetcher, and loads the tile once it's in the file store. */
+    protected static class PrefetchPostProcessor extends DownloadPostProcessor
+    {
+        protected final TilePrefetcher prefetcher;
+
+        public PrefetchPostProcessor(ElevationTile tile, BasicElevationModel em, TilePrefetcher prefetcher)
+        {
+            super(tile, em);
+
+            this.prefetcher = prefetcher;
+        }
+
+        @Override
+        public ByteBuffer run(Retriever retriever)
+        {
+            ByteBuffer buffer = super.run(retriever);
+            this.prefetcher.retrievalCompleted(retriever);
+
+            return buffer;
+        }
+
+        @Override
+        protected ByteBuffer handleSuccessfulRetrieval()
+        {
+            ByteBuffer buffer = super.handleSuccessfulRetrieval();
+
+            if (buffer != null)
+            {
+                URL url = this.getFileStore().findFile(this.tile.getPath(), false);
+                try
+                {
+                    if (url != null)
+                        this.elevationModel.loadElevations((ElevationTile) this.tile, url);
+                }
+                catch (Exception e)
+                {
+                    // The tile is loaded from the file store when the model next needs it.
+                    Logging.logger().log(java.util.logging.Level.FINE,
+                        Logging.getMessage("generic.ExceptionAttemptingToReadFile", url), e);
+                }
+            }
+
+            return buffer;
+        }
+    }
+
     // *** Bulk download ***
     // *** Bulk download ***
     // *** Bulk download ***
@@ -796,6 +1101,73 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         return downloader.getEstimatedMissingDataSize();
     }
 
+    /**
+     * Start a new {@link BulkRetrievalThread} that downloads all elevations for a given area, such as a list of sectors or
+     * a corridor along a route, to a specified {@link FileStore}, without downloading elevations that are already in
+     * the file store. Each part of the area is downloaded up to and including its own resolution.
+     * <p/>
+     * This method creates and starts a thread to perform the download. A reference to the thread is returned. To create
+     * a downloader that has not been started, construct a {@link BasicElevationModelBulkDownloader}.
+     *
+     * @param area      the area to download data for.
+     * @param fileStore the file store in which to place the downloaded elevations. If null the current World Wind file
+     *                  cache is used.
+     * @param listener  an optional retrieval listener. May be null.
+     *
+     * @return the {@link BulkRetrievalThread} executing the retrieval or <code>null</code> if the specified area does
+     * not intersect the elevation model bounding sector.
+     *
+     * @throws IllegalArgumentException if the area is null.
+     * @see BulkRetrievalArea#fromCorridor(Iterable, double[], double[])
+     */
+    public BulkRetrievalThread makeLocal(BulkRetrievalArea area, FileStore fileStore, BulkRetrievalListener listener)
+    {
+        BulkRetrievalArea targetArea = this.intersectArea(area);
+        if (targetArea == null)
+            return null;
+
+        BasicElevationModelBulkDownloader thread = new BasicElevationModelBulkDownloader(this, targetArea,
+            fileStore != null ? fileStore : this.getDataFileStore(), listener);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Get the estimated size in bytes of the elevations not in a specified file store for a given area, such as a list of
+     * sectors or a corridor along a route.
+     *
+     * @param area      the area to estimate.
+     * @param fileStore the file store to examine. If null the current World Wind file cache is used.
+     *
+     * @return the estimated size in bytes of the missing elevations.
+     *
+     * @throws IllegalArgumentException if the area is null.
+     */
+    public long getEstimatedMissingDataSize(BulkRetrievalArea area, FileStore fileStore)
+    {
+        BulkRetrievalArea targetArea = this.intersectArea(area);
+        if (targetArea == null)
+            return 0;
+
+        BasicElevationModelBulkDownloader downloader = new BasicElevationModelBulkDownloader(this, targetArea,
+            fileStore != null ? fileStore : this.getDataFileStore(), null);
+
+        return downloader.getEstimatedMissingDataSize();
+    }
+
+    protected BulkRetrievalArea intersectArea(BulkRetrievalArea area)
+    {
+        if (area == null)
+        {
+            String message = Logging.getMessage("nullValue.AreaIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return area.intersection(this.getLevels().getSector());
+    }
+
     // *** Tile download ***
     // *** Tile download ***
     // *** Tile download ***
@@ -837,9 +1209,16 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         Retriever retriever = retrieverFactory.createRetriever(avList, postProcessor);
 
         WorldWind.getLocalRetrievalService().runRetriever(retriever, tile.getPriority());
+        if (postProcessor != null)
+            postProcessor.submitted = true;
     }
 
     protected void retrieveRemoteElevations(final Tile tile, DownloadPostProcessor postProcessor)
+    {
+        this.retrieveRemoteElevations(tile, postProcessor, 0d);
+    }
+
+    protected void retrieveRemoteElevations(final Tile tile, DownloadPostProcessor postProcessor, double priority)
     {
         if (!this.isNetworkRetrievalEnabled())
         {
@@ -869,12 +1248,16 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 
         if (postProcessor == null)
             postProcessor = new DownloadPostProcessor(tile, this);
-        URLRetriever retriever = new HTTPRetriever(url, postProcessor);
+        HTTPRetriever retriever = new HTTPRetriever(url, postProcessor);
         retriever.setValue(URLRetriever.EXTRACT_ZIP_ENTRY, "true"); // supports legacy elevation models
-        if (WorldWind.getRetrievalService().contains(retriever))
-            return;
 
-        WorldWind.getRetrievalService().runRetriever(retriever, 0d);
+        // An expired tile still in the file store is revalidated rather than retrieved again.
+        CacheValidators validators = CacheValidators.read(postProcessor.getFileStore(), tile.getPath());
+        if (validators != null)
+            validators.applyTo(retriever);
+
+        WorldWind.getRetrievalService().runRetriever(retriever, priority);
+        postProcessor.submitted = true;
     }
 
     protected static class DownloadPostProcessor extends AbstractRetrievalPostProcessor
@@ -882,6 +1265,8 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         protected final Tile tile;
         protected final BasicElevationModel elevationModel;
         protected final FileStore fileStore;
+        /** Whether a retriever using this post processor has been submitted to a retrieval service. */
+        protected volatile boolean submitted;
 
         public DownloadPostProcessor(Tile tile, BasicElevationModel em)
         {
@@ -903,12 +1288,26 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
             return this.fileStore != null ? this.fileStore : this.elevationModel.getDataFileStore();
         }
 
+        /** @return true if a retriever using this post processor has been submitted to a retrieval service. */
+        public boolean isSubmitted()
+        {
+            return this.submitted;
+        }
+
         @Override
         protected boolean overwriteExistingFile()
         {
             return true;
         }
 
+        @Override
+        protected boolean compressOutputFile()
+        {
+            FileStore fileStore = this.getFileStore();
+            return fileStore instanceof BasicDataFileStore
+                && ((BasicDataFileStore) fileStore).isCompressed(this.tile.getPath());
+        }
+
         @Override
         protected void markResourceAbsent()
         {
@@ -934,6 +1333,9 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 
             if (buffer != null)
             {
+                if (this.getRetriever() instanceof HTTPRetriever)
+                    CacheValidators.save(this.getFileStore(), this.tile.getPath(), (HTTPRetriever) this.getRetriever());
+
                 // We've successfully cached data. Check whether there's a configuration file for this elevation model
                 // in the cache and create one if there isn't.
                 this.elevationModel.writeConfigurationFile(this.getFileStore());
@@ -945,6 +1347,14 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
             return buffer;
         }
 
+        @Override
+        protected void handleNotModified()
+        {
+            // The cached tile is current. Fire a property change so that it's loaded.
+            if (CacheValidators.markValidated(this.getFileStore(), this.tile.getPath()))
+                this.elevationModel.firePropertyChange(AVKey.ELEVATION_MODEL, null, this);
+        }
+
         @Override
         protected ByteBuffer handleTextContent() throws IOException
         {
@@ -997,10 +1407,31 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
     /** Internal class to hold collections of elevation tiles that provide elevations for a specific sector. */
     protected static class Elevations
     {
+        /** The same conversion {@link Angle} uses, so that lookups match those made with angles exactly. */
+        protected static final double DEGREES_TO_RADIANS = Math.PI / 180d;
+        /** The fraction of a grid cell within which a location is considered to be on the cell's edge. */
+        protected static final double GRID_EDGE_TOLERANCE = 1e-6;
+
         protected final BasicElevationModel elevationModel;
         protected java.util.Set<ElevationTile> tiles;
         protected double extremes[] = null;
         protected final double achievedResolution;
+        /**
+         * The tile providing elevations for each cell of the target level's tile grid that the requested sector
+         * covers, in row major order starting at the south-west cell. Null if the tiles are not indexed.
+         */
+        protected ElevationTile[] grid;
+        /** The order in which each grid cell's tile was first added to the tile set. */
+        protected int[] gridOrder;
+        protected int gridRows;
+        protected int gridColumns;
+        /** The latitude of the grid's southern edge, in degrees. */
+        protected double gridMinLatitude;
+        /** The longitude of the grid's western edge, in degrees, relative to the level set's tile origin. */
+        protected double gridMinLongitude;
+        protected double gridOriginLongitude;
+        protected double gridDeltaLatitude;
+        protected double gridDeltaLongitude;
 
         protected Elevations(BasicElevationModel elevationModel, double achievedResolution)
         {
@@ -1008,6 +1439,125 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
             this.achievedResolution = achievedResolution;
         }
 
+        /**
+         * Indexes this object's tiles by their row and column in the target level, so that the tile containing a
+         * location is found without testing every tile.
+         *
+         * @param origin    the level set's tile origin.
+         * @param delta     the target level's tile delta.
+         * @param minRow    the row of the grid's southern cells.
+         * @param minColumn the column of the grid's western cells.
+         * @param rows      the number of rows in the grid.
+         * @param columns   the number of columns in the grid.
+         * @param grid      the tile providing elevations for each cell, in row major order starting at the south-west
+         *                  cell. Cells not covered by any tile are null.
+         * @param order     the order in which each cell's tile was first added to the tile set, which breaks ties
+         *                  between tiles of the same level sharing a location.
+         */
+        protected void setTileGrid(LatLon origin, LatLon delta, int minRow, int minColumn, int rows, int columns,
+            ElevationTile[] grid, int[] order)
+        {
+            this.gridDeltaLatitude = delta.getLatitude().degrees;
+            this.gridDeltaLongitude = delta.getLongitude().degrees;
+            this.gridMinLatitude = origin.getLatitude().degrees + minRow * this.gridDeltaLatitude;
+            this.gridMinLongitude = minColumn * this.gridDeltaLongitude;
+            this.gridOriginLongitude = origin.getLongitude().degrees;
+            this.gridRows = rows;
+            this.gridColumns = columns;
+            this.grid = grid;
+            this.gridOrder = order;
+        }
+
+        /**
+         * Returns the tile providing the elevation at a location. Where several tiles contain the location the one of
+         * highest resolution is returned, and among those the one first added to the tile set.
+         *
+         * @param latitude  the location's latitude, in degrees.
+         * @param longitude the location's longitude, in degrees.
+         *
+         * @return the tile providing the elevation at the location, or null if no tile contains the location.
+         */
+        protected ElevationTile getTile(double latitude, double longitude)
+        {
+            if (this.grid == null)
+                return this.findTile(latitude, longitude);
+
+            // Wrap the longitude around the tile origin the same way Tile.computeColumn does.
+            double gridLongitude = longitude - this.gridOriginLongitude;
+            if (gridLongitude < 0)
+                gridLongitude += 360;
+
+            double y = (latitude - this.gridMinLatitude) / this.gridDeltaLatitude;
+            double x = (gridLongitude - this.gridMinLongitude) / this.gridDeltaLongitude;
+            if (!(y >= 0 && y < this.gridRows && x >= 0 && x < this.gridColumns))
+                return this.findTile(latitude, longitude); // outside the grid, but possibly inside a fallback tile
+
+            // A location well inside a cell is contained only by tiles containing the whole cell, and the cell's
+            // tile is the one of highest resolution among them.
+            int row = (int) y;
+            int col = (int) x;
+            double dy = y - row;
+            double dx = x - col;
+            if (dy > GRID_EDGE_TOLERANCE && dy < 1 - GRID_EDGE_TOLERANCE
+                && dx > GRID_EDGE_TOLERANCE && dx < 1 - GRID_EDGE_TOLERANCE)
+            {
+                ElevationTile tile = this.grid[row * this.gridColumns + col];
+                if (tile != null && tile.getSector().containsDegrees(latitude, longitude))
+                    return tile;
+            }
+
+            // Locations on cell edges, or rounded into the wrong cell, may be in a neighbouring cell's tile. A tile
+            // containing the location but assigned to none of these cells would also contain a neighbouring cell, so
+            // the neighbourhood holds the same candidates the tile set does.
+            int minRow = Math.max(row - 1, 0);
+            int maxRow = Math.min(row + 1, this.gridRows - 1);
+            int minCol = Math.max(col - 1, 0);
+            int maxCol = Math.min(col + 1, this.gridColumns - 1);
+
+            ElevationTile bestTile = null;
+            int bestOrder = Integer.MAX_VALUE;
+            for (int r = minRow; r <= maxRow; r++)
+            {
+                for (int c = minCol, k = r * this.gridColumns + minCol; c <= maxCol; c++, k++)
+                {
+                    ElevationTile tile = this.grid[k];
+                    if (tile == null || !tile.getSector().containsDegrees(latitude, longitude))
+                        continue;
+
+                    int levelDifference = bestTile == null ? 1 : tile.getLevelNumber() - bestTile.getLevelNumber();
+                    if (levelDifference > 0 || (levelDifference == 0 && this.gridOrder[k] < bestOrder))
+                    {
+                        bestTile = tile;
+                        bestOrder = this.gridOrder[k];
+                    }
+                }
+            }
+
+            return bestTile;
+        }
+
+        /**
+         * Returns the first tile in the tile set containing a location, testing each tile in turn.
+         *
+         * @param latitude  the location's latitude, in degrees.
+         * @param longitude the location's longitude, in degrees.
+         *
+         * @return the first tile containing the location, or null if no tile contains the location.
+         */
+        protected ElevationTile findTile(double latitude, double longitude)
+        {
+            if (this.tiles == null)
+                return null;
+
+            for (ElevationTile tile : this.tiles)
+            {
+                if (tile.getSector().containsDegrees(latitude, longitude))
+                    return tile;
+            }
+
+            return null;
+        }
+
         protected Double getElevation(Angle latitude, Angle longitude)
         {
             if (latitude == null || longitude == null)
@@ -1022,11 +1572,9 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 
             try
             {
-                for (ElevationTile tile : this.tiles)
-                {
-                    if (tile.getSector().contains(latitude, longitude))
-                        return this.elevationModel.lookupElevation(latitude, longitude, tile);
-                }
+                ElevationTile tile = this.getTile(latitude.degrees, longitude.degrees);
+                if (tile != null)
+                    return this.elevationModel.lookupElevation(latitude, longitude, tile);
 
                 // Location is not within this group of tiles, so is outside the coverage of this elevation model.
                 return null;
@@ -1042,6 +1590,58 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
             }
         }
 
+        /**
+         * Returns the elevation at a location without allocating. This is the same as {@link #getElevation(Angle,
+         * Angle)} except that locations outside this group of tiles are indicated by {@link Double#NaN} rather than
+         * null.
+         *
+         * @param latitude  the location's latitude, in degrees.
+         * @param longitude the location's longitude, in degrees.
+         *
+         * @return the elevation at the location, or {@link Double#NaN} if the location is not within this group of
+         *         tiles.
+         */
+        protected double getElevation(double latitude, double longitude)
+        {
+            if (this.tiles == null)
+                return Double.NaN;
+
+            try
+            {
+                ElevationTile tile = this.getTile(latitude, longitude);
+                if (tile != null)
+                    return this.elevationModel.lookupElevation(DEGREES_TO_RADIANS * latitude,
+                        DEGREES_TO_RADIANS * longitude, tile);
+
+                // Location is not within this group of tiles, so is outside the coverage of this elevation model.
+                return Double.NaN;
+            }
+            catch (Exception e)
+            {
+                Logging.logger().log(java.util.logging.Level.SEVERE,
+                    Logging.getMessage("BasicElevationModel.ExceptionComputingElevation", latitude, longitude), e);
+
+                return Double.NaN;
+            }
+        }
+
+        /**
+         * Returns the elevations at a batch of locations without allocating. Each elevation is the one {@link
+         * #getElevation(double, double)} returns for the location.
+         *
+         * @param latitudes  the locations' latitudes, in degrees.
+         * @param longitudes the locations' longitudes, in degrees.
+         * @param buffer     the array in which to return the elevations. Locations not within this group of tiles are
+         *                   given {@link Double#NaN}.
+         */
+        protected void getElevations(double[] latitudes, double[] longitudes, double[] buffer)
+        {
+            for (int i = 0; i < latitudes.length; i++)
+            {
+                buffer[i] = this.getElevation(latitudes[i], longitudes[i]);
+            }
+        }
+
         protected double[] getExtremes(Angle latitude, Angle longitude)
         {
             if (latitude == null || longitude == null)
@@ -1347,6 +1947,74 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         return elevations.achievedResolution;
     }
 
+    @Override
+    public double getElevations(Sector sector, double[] latitudes, double[] longitudes, double targetResolution,
+        double[] buffer)
+    {
+        return this.getElevations(sector, latitudes, longitudes, targetResolution, buffer, true);
+    }
+
+    @Override
+    public double getUnmappedElevations(Sector sector, double[] latitudes, double[] longitudes,
+        double targetResolution, double[] buffer)
+    {
+        return this.getElevations(sector, latitudes, longitudes, targetResolution, buffer, false);
+    }
+
+    protected double getElevations(Sector sector, double[] latitudes, double[] longitudes, double targetResolution,
+        double[] buffer, boolean mapMissingData)
+    {
+        validateElevationsArguments(sector, latitudes, longitudes, buffer);
+
+        Level targetLevel = this.getTargetLevel(sector, targetResolution);
+        if (targetLevel == null)
+            return Double.MAX_VALUE;
+
+        Elevations elevations = this.getElevations(sector, this.levels, targetLevel.getLevelNumber());
+        if (elevations == null)
+            return Double.MAX_VALUE;
+
+        if (this.intersects(sector) == -1)
+            return Double.MAX_VALUE;
+
+        // Mark the model as used this frame.
+        this.setValue(AVKey.FRAME_TIMESTAMP, System.currentTimeMillis());
+
+        Sector coverage = this.levels.getSector();
+        double missingDataSignal = this.getMissingDataSignal();
+        boolean missingDataTransparent = this.getMissingDataReplacement() == missingDataSignal;
+        double minElevation = Double.NaN; // computed only when a location needs it
+
+        double[] values = new double[latitudes.length];
+        elevations.getElevations(latitudes, longitudes, values);
+
+        for (int i = 0; i < latitudes.length; i++)
+        {
+            double value = values[i];
+            boolean covered = !Double.isNaN(value);
+
+            // Same treatment of unavailable and missing values as the list form of this method.
+            if (missingDataTransparent && (!covered || value == missingDataSignal))
+                continue;
+
+            if (covered && value != missingDataSignal)
+                buffer[i] = value;
+            else if (coverage.containsDegrees(latitudes[i], longitudes[i]))
+            {
+                if (!covered)
+                {
+                    if (Double.isNaN(minElevation))
+                        minElevation = this.getExtremeElevations(sector)[0];
+                    buffer[i] = minElevation;
+                }
+                else if (mapMissingData)
+                    buffer[i] = this.getMissingDataReplacement();
+            }
+        }
+
+        return elevations.achievedResolution;
+    }
+
     protected Level getTargetLevel(Sector sector, double targetSize)
     {
         Level lastLevel = this.levels.getLastLevel(sector); // finest resolution available
@@ -1369,6 +2037,11 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
     }
 
     protected double lookupElevation(Angle latitude, Angle longitude, final ElevationTile tile)
+    {
+        return this.lookupElevation(latitude.radians, longitude.radians, tile);
+    }
+
+    protected double lookupElevation(final double latRadians, final double lonRadians, final ElevationTile tile)
     {
         BufferWrapper elevations = tile.getElevations();
         Sector sector = tile.getSector();
@@ -1376,8 +2049,8 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         final int tileWidth = tile.getWidth();
         final double sectorDeltaLat = sector.getDeltaLat().radians;
         final double sectorDeltaLon = sector.getDeltaLon().radians;
-        final double dLat = sector.getMaxLatitude().radians - latitude.radians;
-        final double dLon = longitude.radians - sector.getMinLongitude().radians;
+        final double dLat = sector.getMaxLatitude().radians - latRadians;
+        final double dLon = lonRadians - sector.getMinLongitude().radians;
         final double sLat = dLat / sectorDeltaLat;
         final double sLon = dLon / sectorDeltaLon;
 
@@ -1762,17 +2435,37 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         });
         ArrayList<TileKey> requested = new ArrayList<TileKey>();
 
+        // Index the tiles by row and column as well, so that lookups need not test every tile in the set. Each cell
+        // holds the target tile or the fallback used in its place.
+        final int gridRows = nwRow - seRow + 1;
+        final int gridColumns = seCol - nwCol + 1;
+        ElevationTile[] grid = null;
+        int[] gridOrder = null;
+        Map<ElevationTile, Integer> fallbackOrder = null;
+        if (gridRows > 0 && gridColumns > 0)
+        {
+            grid = new ElevationTile[gridRows * gridColumns];
+            gridOrder = new int[grid.length];
+        }
+
         boolean missingTargetTiles = false;
         boolean missingLevelZeroTiles = false;
         for (int row = seRow; row <= nwRow; row++)
         {
             for (int col = nwCol; col <= seCol; col++)
             {
+                int cell = (row - seRow) * gridColumns + (col - nwCol);
+
                 TileKey key = new TileKey(targetLevel.getLevelNumber(), row, col, targetLevel.getCacheName());
                 ElevationTile tile = this.getTileFromMemory(key);
                 if (tile != null)
                 {
+                    TilePrefetcher prefetcher = this.prefetcher;
+                    if (prefetcher != null)
+                        prefetcher.markUsed(key);
                     tiles.add(tile);
+                    grid[cell] = tile;
+                    gridOrder[cell] = cell;
                     continue;
                 }
 
@@ -1800,6 +2493,14 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
                         {
                             tiles.add(tile);
                         }
+
+                        if (fallbackOrder == null)
+                            fallbackOrder = new HashMap<ElevationTile, Integer>();
+                        Integer order = fallbackOrder.get(tile);
+                        if (order == null)
+                            fallbackOrder.put(tile, order = cell);
+                        grid[cell] = tile;
+                        gridOrder[cell] = order;
                         break;
                     }
                     else
@@ -1856,6 +2557,9 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
             }
         }
 
+        if (grid != null)
+            elevations.setTileGrid(origin, delta, seRow, nwCol, gridRows, gridColumns, grid, gridOrder);
+
         // Check tile expiration. Memory-cached tiles are checked for expiration only when an explicit, non-zero expiry
         // time has been set for the elevation model. If none has been set, the expiry times of the model's individual
         // levels are used, but only for tiles in the local file cache, not tiles in memory. This is to avoid incurring
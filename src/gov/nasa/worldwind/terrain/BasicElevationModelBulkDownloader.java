@@ -18,6 +18,7 @@ import java.io.*;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Downloads elevation data not currently available in the World Wind file cache or a specified {@link FileStore}. The
@@ -35,6 +36,8 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
 
     protected final BasicElevationModel elevationModel;
     protected final int level;
+    /** The level number of each part of the area, in the order of the area's parts. */
+    protected final int[] partLevels;
 
     protected ArrayList<Tile> missingTiles;
 
@@ -55,10 +58,7 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
         BulkRetrievalListener listener)
     {
         // Arguments checked in parent constructor
-        super(elevationModel, sector, resolution, elevationModel.getDataFileStore(), listener);
-
-        this.elevationModel = elevationModel;
-        this.level = computeLevelForResolution(sector, resolution);
+        this(elevationModel, sector, resolution, elevationModel.getDataFileStore(), listener);
     }
 
     /**
@@ -79,16 +79,49 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
         FileStore fileStore, BulkRetrievalListener listener)
     {
         // Arguments checked in parent constructor
-        super(elevationModel, sector, resolution, fileStore, listener);
+        this(elevationModel, new BulkRetrievalArea(sector, resolution), fileStore, listener);
+    }
+
+    /**
+     * Constructs a downloader to retrieve elevations for an area, such as a corridor along a route, not currently
+     * available in a specified file store.
+     * <p/>
+     * The thread returned is not started during construction, the caller must start the thread.
+     *
+     * @param elevationModel the elevation model for which to download elevations.
+     * @param area           the area to download data for. This value is final.
+     * @param fileStore      the file store in which to place the downloaded elevations.
+     * @param listener       an optional retrieval listener. May be null.
+     *
+     * @throws IllegalArgumentException if either the elevation model, the area or file store are null.
+     */
+    public BasicElevationModelBulkDownloader(BasicElevationModel elevationModel, BulkRetrievalArea area,
+        FileStore fileStore, BulkRetrievalListener listener)
+    {
+        // Arguments checked in parent constructor
+        super(elevationModel, area, fileStore, listener);
 
         this.elevationModel = elevationModel;
-        this.level = computeLevelForResolution(sector, resolution);
+        this.partLevels = new int[area.getParts().size()];
+        int maxLevel = 0;
+        for (int i = 0; i < this.partLevels.length; i++)
+        {
+            BulkRetrievalArea.Part part = area.getParts().get(i);
+            this.partLevels[i] = computeLevelForResolution(part.getSector(), part.getResolution());
+            maxLevel = Math.max(maxLevel, this.partLevels[i]);
+        }
+        this.level = maxLevel;
     }
 
     public void run()
     {
+        this.enumerationService = this.createEnumerationService();
         try
         {
+            // Regions completed by an earlier, interrupted run of this retrieval are skipped
+            this.journal = this.openJournal(this.elevationModel.getLevels().getFirstLevel().getCacheName(),
+                this.level);
+
             // Init progress with missing tiles count estimate
             this.progress.setTotalCount(this.estimateMissingTilesCount(20));
             this.progress.setTotalSize(this.progress.getTotalCount() * estimateAverageTileSize());
@@ -99,28 +132,56 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
                 if (elevationModel.getLevels().isLevelEmpty(levelNumber))
                     continue;
 
-                int div = this.computeRegionDivisions(this.sector, levelNumber, MAX_TILE_COUNT_PER_REGION);
-                Iterator<Sector> regionsIterator = this.getRegionIterator(this.sector, div);
+                Iterator<Map.Entry<String, Sector>> regionsIterator
+                    = this.getLevelRegions(levelNumber).entrySet().iterator();
 
-                Sector region;
-                while (regionsIterator.hasNext())
+                // Missing tiles of the next few regions are determined in parallel while the current region downloads
+                LinkedList<String> regionNames = new LinkedList<String>();
+                LinkedList<Future<ArrayList<Tile>>> enumerations = new LinkedList<Future<ArrayList<Tile>>>();
+                HashSet<String> levelTiles = new HashSet<String>();
+                while (regionsIterator.hasNext() || !enumerations.isEmpty())
                 {
-                    region = regionsIterator.next();
-                    // Determine missing tiles
-                    this.missingTiles = getMissingTilesInSector(region, levelNumber);
+                    while (regionsIterator.hasNext() && enumerations.size() < this.getMaxPendingEnumerations())
+                    {
+                        Map.Entry<String, Sector> region = regionsIterator.next();
+                        if (this.journal.isCompleted(region.getKey()))
+                            continue;
+
+                        regionNames.add(region.getKey());
+                        enumerations.add(this.enumerationService.submit(
+                            this.createMissingTilesTask(region.getValue(), levelNumber)));
+                    }
+
+                    if (enumerations.isEmpty())
+                        continue;
+
+                    // Determine missing tiles, leaving out those of earlier regions the region overlaps
+                    ArrayList<Tile> tiles = this.getEnumeration(enumerations.removeFirst());
+                    if (this.area.getParts().size() > 1)
+                    {
+                        for (Iterator<Tile> iter = tiles.iterator(); iter.hasNext(); )
+                        {
+                            if (!levelTiles.add(iter.next().getPath()))
+                                iter.remove();
+                        }
+                    }
+                    this.setMissingTiles(tiles);
 
                     // Submit missing tiles requests at intervals
                     while (this.missingTiles.size() > 0)
                     {
                         submitMissingTilesRequests();
                         if (this.missingTiles.size() > 0)
-                            Thread.sleep(RETRIEVAL_SERVICE_POLL_DELAY);
+                            Thread.sleep(this.computeRequestDelay());
                     }
+
+                    this.journal.markCompleted(regionNames.removeFirst());
                 }
             }
             // Set progress to 100%
             this.progress.setTotalCount(this.progress.getCurrentCount());
             this.progress.setTotalSize(this.progress.getCurrentSize());
+            this.journal.delete();
         }
         catch (InterruptedException e)
         {
@@ -133,6 +194,54 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
             Logging.logger().severe(message);
             throw new RuntimeException(message);
         }
+        finally
+        {
+            this.enumerationService.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the regions of the parts of this downloader's area that need a specified level, named by the level, the
+     * part and the region within the part.
+     *
+     * @param levelNumber the level number.
+     *
+     * @return the regions, in the order they're retrieved.
+     */
+    protected LinkedHashMap<String, Sector> getLevelRegions(int levelNumber)
+    {
+        LinkedHashMap<String, Sector> regions = new LinkedHashMap<String, Sector>();
+        for (int i = 0; i < this.partLevels.length; i++)
+        {
+            if (this.partLevels[i] < levelNumber)
+                continue;
+
+            Sector partSector = this.area.getParts().get(i).getSector();
+            int div = this.computeRegionDivisions(partSector, levelNumber, MAX_TILE_COUNT_PER_REGION);
+            Iterator<Sector> regionsIterator = this.getRegionIterator(partSector, div);
+            for (int regionNumber = 0; regionsIterator.hasNext(); regionNumber++)
+            {
+                regions.put(levelNumber + "/" + i + "/" + regionNumber, regionsIterator.next());
+            }
+        }
+
+        return regions;
+    }
+
+    protected Callable<ArrayList<Tile>> createMissingTilesTask(final Sector region, final int levelNumber)
+    {
+        return new Callable<ArrayList<Tile>>()
+        {
+            public ArrayList<Tile> call() throws Exception
+            {
+                return getMissingTilesInSector(region, levelNumber);
+            }
+        };
+    }
+
+    protected synchronized void setMissingTiles(ArrayList<Tile> tiles)
+    {
+        this.missingTiles = tiles;
     }
 
 //    protected int countMissingTiles() throws InterruptedException
@@ -173,8 +282,20 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
                 continue;
             }
 
-            this.elevationModel.downloadElevations(tile,
-                new BulkDownloadPostProcessor(tile, this.elevationModel, this.fileStore));
+            if (this.isRequestPending(tile.getPath()))
+            {
+                i++; // tile has been requested and the request hasn't completed yet.
+                continue;
+            }
+
+            if (!this.startRequest(tile.getPath()))
+                break; // the throttle allows no more requests for now.
+
+            BulkDownloadPostProcessor postProcessor = new BulkDownloadPostProcessor(tile, this.elevationModel,
+                this.fileStore);
+            this.elevationModel.downloadElevations(tile, postProcessor);
+            if (!postProcessor.isSubmitted())
+                this.cancelRequest(tile.getPath()); // the model made no request, so the tile is tried again later.
             i++;
         }
     }
@@ -190,6 +311,7 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
         {
             ByteBuffer buffer = super.run(retriever);
 
+            endRequest(this.tile.getPath(), retriever);
             if (retriever.getState().equals(Retriever.RETRIEVER_STATE_SUCCESSFUL))
                 removeRetrievedTile(this.tile);
 
@@ -204,7 +326,8 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
     {
         String eventType = (retriever.getState().equals(Retriever.RETRIEVER_STATE_SUCCESSFUL))
             ? BulkRetrievalEvent.RETRIEVAL_SUCCEEDED : BulkRetrievalEvent.RETRIEVAL_FAILED;
-        super.callRetrievalListeners(new BulkRetrievalEvent(this.elevationModel, eventType, tile.getPath()));
+        super.callRetrievalListeners(new BulkRetrievalEvent(this.elevationModel, eventType, tile.getPath(),
+            this.progress));
     }
 
     protected synchronized void removeRetrievedTile(Tile tile)
@@ -248,33 +371,42 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
 
     protected long estimateMissingTilesCount(int numSamples)
     {
-        int maxLevel = computeLevelForResolution(sector, resolution);
         // Total expected tiles
         long totCount = 0;
-        for (int levelNumber = 0; levelNumber <= maxLevel; levelNumber++)
+        for (int levelNumber = 0; levelNumber <= this.level; levelNumber++)
         {
             if (!this.elevationModel.getLevels().isLevelEmpty(levelNumber))
-                totCount += this.countTilesInSector(sector, levelNumber);
+                totCount += countTilesInSectors(this.elevationModel.getLevels(), this.getLevelSectors(levelNumber),
+                    levelNumber);
         }
-        // Sample random small sized sectors at finest level
-        int div = this.computeRegionDivisions(this.sector, maxLevel, 36); // max 6x6 tiles per region
-        Sector[] regions = computeRandomRegions(this.sector, div, numSamples);
+        // Sample random small sized sectors at the finest level of each part
+        int[] partSamples = this.computePartSamples(numSamples);
         long regionMissing = 0;
         long regionCount = 0;
         try
         {
-            if (regions.length < numSamples)
+            for (int i = 0; i < partSamples.length; i++)
             {
-                regionCount = this.countTilesInSector(this.sector, maxLevel);
-                regionMissing = getMissingTilesInSector(this.sector, maxLevel).size();
-            }
-            else
-            {
-                for (Sector region : regions)
+                if (partSamples[i] == 0)
+                    continue;
+
+                Sector partSector = this.area.getParts().get(i).getSector();
+                int maxLevel = this.partLevels[i];
+                int div = this.computeRegionDivisions(partSector, maxLevel, 36); // max 6x6 tiles per region
+                Sector[] regions = computeRandomRegions(partSector, div, partSamples[i]);
+                if (regions.length < partSamples[i])
+                {
+                    regionCount += this.countTilesInSector(partSector, maxLevel);
+                    regionMissing += getMissingTilesInSector(partSector, maxLevel).size();
+                }
+                else
                 {
-                    // Count how many tiles are missing in each sample region
-                    regionCount += this.countTilesInSector(region, maxLevel);
-                    regionMissing += getMissingTilesInSector(region, maxLevel).size();
+                    for (Sector region : regions)
+                    {
+                        // Count how many tiles are missing in each sample region
+                        regionCount += this.countTilesInSector(region, maxLevel);
+                        regionMissing += getMissingTilesInSector(region, maxLevel).size();
+                    }
                 }
             }
         }
@@ -293,6 +425,18 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
         return (long)(totCount * ((double)regionMissing / regionCount));
     }
 
+    protected List<Sector> getLevelSectors(int levelNumber)
+    {
+        List<Sector> sectors = new ArrayList<Sector>();
+        for (int i = 0; i < this.partLevels.length; i++)
+        {
+            if (this.partLevels[i] >= levelNumber)
+                sectors.add(this.area.getParts().get(i).getSector());
+        }
+
+        return sectors;
+    }
+
     protected long estimateAverageTileSize()
     {
         Long previouslyComputedSize = (Long) this.elevationModel.getValue(AVKey.AVERAGE_TILE_SIZE);
@@ -538,6 +538,59 @@ public class CompoundElevationModel extends AbstractElevationModel
         return this.doGetElevations(sector, latLons, targetResolutions, elevations, false);
     }
 
+    @Override
+    public double getElevations(Sector sector, double[] latitudes, double[] longitudes, double targetResolution,
+        double[] buffer)
+    {
+        return this.doGetElevations(sector, latitudes, longitudes, targetResolution, buffer, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * NOTE: This method returns only unmapped elevations if the compound model contains more than one elevation model.
+     * This enables the compound model's lower resolution elevation models to specify missing data values for the higher
+     * resolution elevation models.
+     */
+    @Override
+    public double getUnmappedElevations(Sector sector, double[] latitudes, double[] longitudes,
+        double targetResolution, double[] buffer)
+    {
+        return this.doGetElevations(sector, latitudes, longitudes, targetResolution, buffer, false);
+    }
+
+    protected double doGetElevations(Sector sector, double[] latitudes, double[] longitudes, double targetResolution,
+        double[] buffer, boolean mapMissingData)
+    {
+        validateElevationsArguments(sector, latitudes, longitudes, buffer);
+
+        // Fill the buffer with ElevationModel contents from lowest resolution to highest, potentially overwriting
+        // values at each step, just as the list form of this method does.
+        double resolutionAchieved = 0;
+        for (int i = 0; i < this.elevationModels.size(); i++)
+        {
+            ElevationModel em = this.elevationModels.get(i);
+
+            if (!em.isEnabled())
+                continue;
+
+            int c = em.intersects(sector);
+            if (c < 0) // no intersection
+                continue;
+
+            double r;
+            if (mapMissingData || this.elevationModels.size() == 1)
+                r = em.getElevations(sector, latitudes, longitudes, targetResolution, buffer);
+            else
+                r = em.getUnmappedElevations(sector, latitudes, longitudes, targetResolution, buffer);
+
+            if (i == 0)
+                resolutionAchieved = r;
+        }
+
+        return resolutionAchieved;
+    }
+
     protected double[] doGetElevations(Sector sector, List<? extends LatLon> latlons, double[] targetResolution,
         double[] buffer, boolean mapMissingData)
     {
@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.*;
+
+/**
+ * Determines whether tile extents are hidden from the eye by the globe or by nearby terrain. Extents are hidden by the
+ * globe when they lie entirely behind the horizon of the largest sphere contained in the globe's terrain, and hidden
+ * by terrain when they lie entirely within the shadow, as seen from the eye, of an occluder. An occluder is a wall
+ * through two opposite corners of a sector, extending from the sector's minimum elevation down beneath the globe's
+ * minimum elevation, and is therefore contained in the solid terrain beneath the sector. Both tests use the elevation extremes
+ * of the globe's elevation model, so an extent is reported hidden only when every point within it is hidden. The
+ * occluders are coarse: their walls are planar while the sides of a sector curve, and their accuracy depends on that of
+ * the elevation model's extremes.
+ * <p/>
+ * A culler is updated once per frame with {@link #update(DrawContext)}, and optionally given candidate occluders with
+ * {@link #setOccluders(Iterable)}. Culling is disabled for 2D globes and negative vertical exaggeration.
+ */
+public class HorizonCuller
+{
+    /** The default maximum number of occluders retained from the candidates. */
+    public static final int DEFAULT_MAX_OCCLUDERS = 8;
+    /**
+     * Occluders are candidates only when the eye is no more than this sine of the angle above their top edge. Terrain
+     * seen from high above hides only the terrain beneath it.
+     */
+    protected static final double MAX_OCCLUDER_GRAZING_SINE = 0.2;
+    /** Sectors larger than this many degrees are not candidate occluders. */
+    protected static final double MAX_OCCLUDER_SECTOR_SIZE = 2;
+
+    /** A plane quadrilateral within a sector's terrain, and the planes bounding the region it hides from the eye. */
+    protected static class Occluder
+    {
+        protected final Sector sector;
+        protected final Vec4[] sidePlanes = new Vec4[4];
+        protected Vec4 plane;
+        protected double score;
+
+        public Occluder(Sector sector)
+        {
+            this.sector = sector;
+        }
+    }
+
+    protected int maxOccluders = DEFAULT_MAX_OCCLUDERS;
+    protected boolean enabled;
+    protected Globe globe;
+    protected double verticalExaggeration;
+    protected Vec4 eyePoint;
+    /** Unit vector from the eye to the globe's center. */
+    protected Vec4 axis;
+    /** Distance along the axis from the eye to the plane of the horizon circle. */
+    protected double horizonPlaneDistance;
+    /** Angle between the axis and the lines from the eye to the horizon circle, in radians. */
+    protected double horizonAngle;
+    protected List<Occluder> occluders = new ArrayList<Occluder>();
+
+    public int getMaxOccluders()
+    {
+        return this.maxOccluders;
+    }
+
+    public void setMaxOccluders(int maxOccluders)
+    {
+        if (maxOccluders < 0)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", maxOccluders);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.maxOccluders = maxOccluders;
+    }
+
+    /**
+     * Computes the horizon seen from the current view, and discards the occluders of the previous update.
+     *
+     * @param dc the current draw context.
+     *
+     * @throws IllegalArgumentException if the draw context is null.
+     */
+    public void update(DrawContext dc)
+    {
+        if (dc == null)
+        {
+            String msg = Logging.getMessage("nullValue.DrawContextIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (dc.getGlobe() == null || dc.getView() == null || dc.is2DGlobe())
+        {
+            this.occluders.clear();
+            this.enabled = false;
+            return;
+        }
+
+        this.update(dc.getGlobe(), dc.getVerticalExaggeration(), dc.getView().getEyePoint());
+    }
+
+    /**
+     * Computes the horizon seen from an eye point, and discards the occluders of the previous update.
+     *
+     * @param globe                the globe whose terrain hides tiles.
+     * @param verticalExaggeration the vertical exaggeration applied to the globe's terrain.
+     * @param eyePoint             the eye point, in model coordinates.
+     *
+     * @throws IllegalArgumentException if the globe or the eye point is null.
+     */
+    public void update(Globe globe, double verticalExaggeration, Vec4 eyePoint)
+    {
+        if (globe == null)
+        {
+            String msg = Logging.getMessage("nullValue.GlobeIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (eyePoint == null)
+        {
+            String msg = Logging.getMessage("nullValue.EyeIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.occluders.clear();
+        this.enabled = false;
+
+        if (globe instanceof Globe2D || verticalExaggeration < 0)
+            return;
+
+        // The sphere beneath the lowest terrain anywhere on the globe hides everything behind its horizon.
+        double radius = globe.getPolarRadius() + Math.min(0, verticalExaggeration * globe.getMinElevation());
+        Vec4 toCenter = globe.getCenter().subtract3(eyePoint);
+        double distance = toCenter.getLength3();
+        if (radius <= 0 || distance <= radius)
+            return;
+
+        this.globe = globe;
+        this.verticalExaggeration = verticalExaggeration;
+        this.eyePoint = eyePoint;
+        this.axis = toCenter.divide3(distance);
+        this.horizonPlaneDistance = (distance * distance - radius * radius) / distance;
+        this.horizonAngle = Math.asin(radius / distance);
+        this.enabled = true;
+    }
+
+    /**
+     * Retains as occluders the sectors of the specified tiles that hide the most from the current view, up to this
+     * culler's maximum number of occluders. Call after {@link #update(DrawContext)}.
+     *
+     * @param tiles the candidate occluders, typically the terrain tiles of the current or previous frame. May be null.
+     */
+    public void setOccluders(Iterable<? extends SectorGeometry> tiles)
+    {
+        this.occluders.clear();
+        if (!this.enabled || tiles == null || this.maxOccluders == 0)
+            return;
+
+        for (SectorGeometry tile : tiles)
+        {
+            this.addOccluders(tile.getSector(), this.occluders);
+        }
+
+        Collections.sort(this.occluders, new Comparator<Occluder>()
+        {
+            public int compare(Occluder a, Occluder b)
+            {
+                return Double.compare(b.score, a.score);
+            }
+        });
+
+        if (this.occluders.size() > this.maxOccluders)
+            this.occluders.subList(this.maxOccluders, this.occluders.size()).clear();
+    }
+
+    /**
+     * Indicates the number of occluders this culler currently tests extents against.
+     *
+     * @return the number of occluders.
+     */
+    public int getOccluderCount()
+    {
+        return this.occluders.size();
+    }
+
+    /**
+     * Indicates whether an extent lies entirely behind the globe's horizon.
+     *
+     * @param extent the extent to test. May be null, in which case it's not beyond the horizon.
+     *
+     * @return true if every point of the extent is beyond the horizon, otherwise false.
+     */
+    public boolean isBeyondHorizon(Extent extent)
+    {
+        if (!this.enabled || extent == null)
+            return false;
+
+        Vec4 v = extent.getCenter().subtract3(this.eyePoint);
+        double radius = extent.getRadius();
+        double along = v.dot3(this.axis);
+        if (along - radius < this.horizonPlaneDistance)
+            return false; // some of the extent is nearer than the horizon
+
+        // The extent must also lie within the cone of lines from the eye to the horizon circle.
+        double distance = v.getLength3();
+        if (distance <= radius)
+            return false;
+
+        double angle = Math.acos(Math.min(1, along / distance));
+        return angle + Math.asin(radius / distance) <= this.horizonAngle;
+    }
+
+    /**
+     * Indicates whether an extent lies entirely within the region hidden from the eye by one of this culler's
+     * occluders.
+     *
+     * @param extent the extent to test. May be null, in which case it's not occluded.
+     *
+     * @return true if every point of the extent is hidden by an occluder, otherwise false.
+     */
+    public boolean isOccluded(Extent extent)
+    {
+        if (!this.enabled || extent == null || this.occluders.isEmpty())
+            return false;
+
+        Vec4 center = extent.getCenter();
+        double radius = extent.getRadius();
+        for (Occluder occluder : this.occluders)
+        {
+            if (this.isOccludedBy(occluder, center, radius))
+                return true;
+        }
+
+        return false;
+    }
+
+    protected boolean isOccludedBy(Occluder occluder, Vec4 center, double radius)
+    {
+        // The occluder's plane faces the eye, so the hidden region is on its negative side.
+        if (occluder.plane.dot3(center) + occluder.plane.w > -radius)
+            return false;
+
+        for (Vec4 side : occluder.sidePlanes)
+        {
+            if (side.dot3(center) + side.w < radius)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds the occluders within a sector's terrain that can hide something from the current view. Adds nothing if the
+     * sector is too large or the eye sees its terrain from too high above.
+     *
+     * @param sector    the occluders' sector.
+     * @param occluders the list to add the occluders to.
+     */
+    protected void addOccluders(Sector sector, List<Occluder> occluders)
+    {
+        // Opposite corners of a sector lie in a plane through the globe's center. Sectors touching the poles have
+        // coincident corners.
+        if (sector.getMinLatitude().degrees <= -90 || sector.getMaxLatitude().degrees >= 90
+            || sector.getDeltaLatDegrees() > MAX_OCCLUDER_SECTOR_SIZE
+            || sector.getDeltaLonDegrees() > MAX_OCCLUDER_SECTOR_SIZE)
+            return;
+
+        Globe globe = this.globe;
+        double top = this.verticalExaggeration * globe.getMinAndMaxElevations(sector)[0];
+        double bottom = Math.min(0, this.verticalExaggeration * globe.getMinElevation());
+        if (top <= bottom)
+            return;
+
+        Vec4[] corners = new Vec4[] {
+            globe.computePointFromPosition(sector.getMinLatitude(), sector.getMinLongitude(), top),
+            globe.computePointFromPosition(sector.getMinLatitude(), sector.getMaxLongitude(), top),
+            globe.computePointFromPosition(sector.getMaxLatitude(), sector.getMaxLongitude(), top),
+            globe.computePointFromPosition(sector.getMaxLatitude(), sector.getMinLongitude(), top)};
+
+        // Everything beneath the globe's minimum elevation is solid, so the walls extend beneath it by their width.
+        // That's deep enough to hide the lower halves of the extents of tiles behind them.
+        for (int i = 0; i < 2; i++)
+        {
+            double depth = top - bottom + corners[i].distanceTo3(corners[i + 2]);
+            Occluder occluder = this.createWallOccluder(sector, corners[i], corners[i + 2], depth);
+            if (occluder != null)
+                occluders.add(occluder);
+        }
+    }
+
+    /**
+     * Creates the occluder for the wall beneath the line between two corners of a sector at the sector's minimum
+     * elevation, or returns null if the wall cannot hide anything useful from the current view.
+     *
+     * @param sector the occluder's sector.
+     * @param a      the first corner.
+     * @param b      the opposite corner.
+     * @param depth  the distance from the corners to the bottom of the wall.
+     *
+     * @return the occluder, or null if the wall is not a candidate.
+     */
+    protected Occluder createWallOccluder(Sector sector, Vec4 a, Vec4 b, double depth)
+    {
+        // The line between the corners passes beneath the terrain by the sagitta of the arc between them. Lower the
+        // wall's top by that amount again, so that the wall stays beneath the terrain near the sector's sides.
+        double width = a.distanceTo3(b);
+        double sagitta = width * width / (8 * this.globe.getPolarRadius());
+        Vec4 center = this.globe.getCenter();
+        Vec4 upA = a.subtract3(center).normalize3();
+        Vec4 upB = b.subtract3(center).normalize3();
+        Vec4[] vertices = new Vec4[] {
+            a.subtract3(upA.multiply3(sagitta)),
+            b.subtract3(upB.multiply3(sagitta)),
+            b.subtract3(upB.multiply3(depth)),
+            a.subtract3(upA.multiply3(depth))};
+
+        // Terrain seen from high above hides only the terrain beneath it.
+        Vec4 topCenter = Vec4.mix3(0.5, vertices[0], vertices[1]);
+        Vec4 toEye = this.eyePoint.subtract3(topCenter);
+        double eyeDistance = toEye.getLength3();
+        Vec4 up = upA.add3(upB).normalize3();
+        if (eyeDistance == 0 || up.dot3(toEye) > MAX_OCCLUDER_GRAZING_SINE * eyeDistance)
+            return null;
+
+        Vec4 normal = vertices[1].subtract3(vertices[0]).cross3(vertices[3].subtract3(vertices[0])).normalize3();
+        double eyeSide = normal.dot3(this.eyePoint.subtract3(vertices[0]));
+        if (normal.getLength3() == 0 || eyeSide == 0)
+            return null;
+
+        // The wall's plane faces the eye, and its side planes face the wall's interior.
+        Occluder occluder = new Occluder(sector);
+        Vec4 planeNormal = eyeSide > 0 ? normal : normal.getNegative3();
+        occluder.plane = new Vec4(planeNormal.x, planeNormal.y, planeNormal.z, -planeNormal.dot3(vertices[0]));
+
+        Vec4 interior = Vec4.computeAveragePoint(Arrays.asList(vertices)).subtract3(this.eyePoint);
+        for (int i = 0; i < 4; i++)
+        {
+            Vec4 n = vertices[i].subtract3(this.eyePoint).cross3(vertices[(i + 1) % 4].subtract3(this.eyePoint));
+            n = n.normalize3();
+            if (n.getLength3() == 0)
+                return null;
+            if (n.dot3(interior) < 0)
+                n = n.getNegative3();
+            occluder.sidePlanes[i] = new Vec4(n.x, n.y, n.z, -n.dot3(this.eyePoint));
+        }
+
+        // Prefer occluders subtending the largest angle from the eye.
+        occluder.score = width / eyeDistance;
+
+        return occluder;
+    }
+}
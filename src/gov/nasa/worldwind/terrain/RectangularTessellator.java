@@ -21,6 +21,7 @@ import java.awt.*;
 import java.nio.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.*;
 
 /**
  * @author tag
@@ -28,18 +29,159 @@ import java.util.List;
  */
 public class RectangularTessellator extends WWObjectImpl implements Tessellator
 {
+    /**
+     * Tile vertices stored as 16-bit integers, each coordinate quantized to one of 65536 steps spanning the vertices'
+     * range along its axis. Quantized vertices take half the memory of floating point vertices. A coordinate decodes
+     * as <code>center + value * scale</code>, so the error of a decoded coordinate is at most half the axis' scale.
+     */
+    protected static class QuantizedVertices
+    {
+        protected final short[] coords;
+        /** The coordinates represented by quantized zeros. */
+        protected final Vec4 center;
+        /** The distance between consecutive quantized values along each axis. */
+        protected final Vec4 scale;
+
+        protected QuantizedVertices(short[] coords, Vec4 center, Vec4 scale)
+        {
+            this.coords = coords;
+            this.center = center;
+            this.scale = scale;
+        }
+
+        /**
+         * Quantizes vertices, unless the quantization error would exceed a tolerance.
+         *
+         * @param vertices  the vertices' coordinates. The buffer's position is not changed.
+         * @param tolerance the largest error allowed in any coordinate, in the vertices' units.
+         *
+         * @return the quantized vertices, or null if quantizing would exceed the tolerance.
+         */
+        public static QuantizedVertices quantize(FloatBuffer vertices, double tolerance)
+        {
+            double[] min = new double[] {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+            double[] max = new double[] {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+            int numCoords = vertices.limit();
+            for (int i = 0; i < numCoords; i++)
+            {
+                double c = vertices.get(i);
+                if (c < min[i % 3])
+                    min[i % 3] = c;
+                if (c > max[i % 3])
+                    max[i % 3] = c;
+            }
+
+            double[] scale = new double[3];
+            double[] center = new double[3];
+            for (int axis = 0; axis < 3; axis++)
+            {
+                scale[axis] = max[axis] > min[axis] ? (max[axis] - min[axis]) / 65535 : 1;
+                if (scale[axis] / 2 > tolerance)
+                    return null;
+
+                center[axis] = min[axis] + 32768 * scale[axis];
+            }
+
+            short[] coords = new short[numCoords];
+            for (int i = 0; i < numCoords; i++)
+            {
+                long q = Math.round((vertices.get(i) - center[i % 3]) / scale[i % 3]);
+                coords[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, q));
+            }
+
+            return new QuantizedVertices(coords, new Vec4(center[0], center[1], center[2]),
+                new Vec4(scale[0], scale[1], scale[2]));
+        }
+
+        public int getVertexCount()
+        {
+            return this.coords.length / 3;
+        }
+
+        /**
+         * Decodes one vertex.
+         *
+         * @param index  the vertex's index.
+         * @param buffer the array in which to return the vertex's three coordinates.
+         */
+        public void decode(int index, float[] buffer)
+        {
+            int i = 3 * index;
+            buffer[0] = (float) (this.center.x + this.coords[i] * this.scale.x);
+            buffer[1] = (float) (this.center.y + this.coords[i + 1] * this.scale.y);
+            buffer[2] = (float) (this.center.z + this.coords[i + 2] * this.scale.z);
+        }
+
+        /**
+         * Decodes all vertices into an array.
+         *
+         * @param buffer the array in which to return the vertices' coordinates. Must hold at least three coordinates
+         *               per vertex.
+         */
+        public void decode(float[] buffer)
+        {
+            for (int i = 0; i < this.coords.length; i += 3)
+            {
+                buffer[i] = (float) (this.center.x + this.coords[i] * this.scale.x);
+                buffer[i + 1] = (float) (this.center.y + this.coords[i + 1] * this.scale.y);
+                buffer[i + 2] = (float) (this.center.z + this.coords[i + 2] * this.scale.z);
+            }
+        }
+
+        /**
+         * Decodes all vertices into a buffer, starting at the buffer's current position.
+         *
+         * @param buffer the buffer in which to return the vertices' coordinates.
+         */
+        public void decode(FloatBuffer buffer)
+        {
+            for (int i = 0; i < this.coords.length; i += 3)
+            {
+                buffer.put((float) (this.center.x + this.coords[i] * this.scale.x));
+                buffer.put((float) (this.center.y + this.coords[i + 1] * this.scale.y));
+                buffer.put((float) (this.center.z + this.coords[i + 2] * this.scale.z));
+            }
+        }
+
+        protected long getSizeInBytes()
+        {
+            // The coordinates, and the center and scale vectors.
+            return 2 * this.coords.length + 2 * 5 * 8;
+        }
+    }
+
     protected static class RenderInfo
     {
         protected final int density;
         protected final Vec4 referenceCenter;
+        /** The vertices' coordinates, or null if the vertices are quantized. */
         protected final FloatBuffer vertices;
+        /** The quantized vertices, or null if the vertices are floating point. */
+        protected final QuantizedVertices quantizedVertices;
         protected final FloatBuffer texCoords;
         protected final IntBuffer indices;
         protected long time;
         protected Object vboCacheKey = new Object();
         protected boolean isVboBound = false;
 
+        /**
+         * Quantized vertices are decoded to this buffer to be drawn as a vertex array or copied to a vertex buffer
+         * object. Used only on the rendering thread.
+         */
+        protected static FloatBuffer decodedVertices;
+
         protected RenderInfo(DrawContext dc, int density, FloatBuffer vertices, Vec4 refCenter)
+        {
+            this(dc, density, vertices, null, refCenter);
+        }
+
+        protected RenderInfo(DrawContext dc, int density, QuantizedVertices vertices, Vec4 refCenter)
+        {
+            this(dc, density, null, vertices, refCenter);
+        }
+
+        protected RenderInfo(DrawContext dc, int density, FloatBuffer vertices, QuantizedVertices quantizedVertices,
+            Vec4 refCenter)
         {
             //Fill in the buffers and buffer IDs and store them in hash maps by density
             createIndices(density);
@@ -49,6 +191,7 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
             this.density = density;
             this.referenceCenter = refCenter;
             this.vertices = vertices;
+            this.quantizedVertices = quantizedVertices;
 
             //Fill in the remaining variables from the stored buffers and buffer IDs for easier access
             this.indices = indexLists.get(this.density);
@@ -69,9 +212,96 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
             return this.referenceCenter;
         }
 
+        /**
+         * Returns the vertices' coordinates relative to the reference center. Quantized vertices are decoded to a new
+         * buffer.
+         *
+         * @return the vertices' coordinates.
+         */
         public FloatBuffer getVertices()
         {
-            return this.vertices;
+            if (this.quantizedVertices == null)
+                return this.vertices;
+
+            FloatBuffer buffer = Buffers.newDirectFloatBuffer(3 * this.quantizedVertices.getVertexCount());
+            this.quantizedVertices.decode(buffer);
+            return (FloatBuffer) buffer.rewind();
+        }
+
+        public boolean isQuantized()
+        {
+            return this.quantizedVertices != null;
+        }
+
+        public boolean hasVertices()
+        {
+            return this.vertices != null || this.quantizedVertices != null;
+        }
+
+        public int getVertexCount()
+        {
+            return this.quantizedVertices != null ? this.quantizedVertices.getVertexCount()
+                : this.vertices.limit() / 3;
+        }
+
+        /**
+         * Returns one vertex's coordinates relative to the reference center.
+         *
+         * @param index  the vertex's index.
+         * @param buffer the array in which to return the vertex's three coordinates.
+         */
+        public void getVertex(int index, float[] buffer)
+        {
+            if (this.quantizedVertices != null)
+            {
+                this.quantizedVertices.decode(index, buffer);
+            }
+            else
+            {
+                buffer[0] = this.vertices.get(3 * index);
+                buffer[1] = this.vertices.get(3 * index + 1);
+                buffer[2] = this.vertices.get(3 * index + 2);
+            }
+        }
+
+        /**
+         * Returns all vertices' coordinates relative to the reference center.
+         *
+         * @param buffer the array in which to return the coordinates. Must hold three coordinates per vertex.
+         */
+        public void getVertices(float[] buffer)
+        {
+            if (this.quantizedVertices != null)
+            {
+                this.quantizedVertices.decode(buffer);
+            }
+            else
+            {
+                FloatBuffer vertices = this.vertices.duplicate();
+                vertices.rewind();
+                vertices.get(buffer, 0, vertices.limit());
+            }
+        }
+
+        /**
+         * Returns the vertices as floating point coordinates to draw from. Quantized vertices are decoded to a buffer
+         * shared by all tiles, which is valid only until the next call. Call only on the rendering thread.
+         *
+         * @return the buffer of coordinates, rewound.
+         */
+        protected FloatBuffer getVertexArray()
+        {
+            if (this.quantizedVertices == null)
+                return (FloatBuffer) this.vertices.rewind();
+
+            int numCoords = 3 * this.quantizedVertices.getVertexCount();
+            if (decodedVertices == null || decodedVertices.capacity() < numCoords)
+                decodedVertices = Buffers.newDirectFloatBuffer(numCoords);
+
+            decodedVertices.clear();
+            this.quantizedVertices.decode(decodedVertices);
+            decodedVertices.flip();
+            return decodedVertices;
         }
 
         public FloatBuffer getTexCoords()
@@ -115,26 +345,31 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         protected long getSizeInBytes()
         {
             // Texture coordinates are shared among all tiles of the same density, so do not count towards size.
-            // 8 references, floats in buffer.
-            return 8 * 4 + (this.vertices.limit()) * Float.SIZE / 8;
+            // 9 references, and the floats in the buffer or the quantized vertices.
+            if (this.quantizedVertices != null)
+                return 9 * 4 + this.quantizedVertices.getSizeInBytes();
+
+            return 9 * 4 + (this.vertices.limit()) * Float.SIZE / 8;
         }
 
         protected void fillVerticesVBO(DrawContext dc)
         {
             GL gl = dc.getGL();
 
+            // Quantized vertices are decoded here, so the vertex buffer object always holds floating point vertices.
+            FloatBuffer vb = this.getVertexArray();
+
             int[] vboIds = (int[]) dc.getGpuResourceCache().get(this.vboCacheKey);
             if (vboIds == null)
             {
                 vboIds = new int[1];
                 gl.glGenBuffers(vboIds.length, vboIds, 0);
-                int size = this.vertices.limit() * 4;
+                int size = vb.limit() * 4;
                 dc.getGpuResourceCache().put(this.vboCacheKey, vboIds, GpuResourceCache.VBO_BUFFERS, size);
             }
 
             try
             {
-                FloatBuffer vb = this.vertices;
                 gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vboIds[0]);
                 gl.glBufferData(GL.GL_ARRAY_BUFFER, vb.limit() * 4, vb.rewind(), GL.GL_STATIC_DRAW);
             }
@@ -154,6 +389,7 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         protected final double cellSize;
         protected Extent extent; // extent of sector in object coordinates
         protected RenderInfo ri;
+        protected RectTile parent; // the tile this one was split from, or null if this is a top-level tile
 
         protected int minColorCode = 0;
         protected int maxColorCode = 0;
@@ -198,6 +434,11 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
             return cellSize;
         }
 
+        public RectTile getParent()
+        {
+            return this.parent;
+        }
+
         public RenderInfo getRi()
         {
             return ri;
@@ -366,6 +607,48 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         }
     }
 
+    /**
+     * Computes a tile's vertices on a thread of the tessellator's vertex pool. The vertices are written to a new
+     * buffer, so that a tile's existing vertices may still be drawn while new ones are computed. Creating the tile's
+     * render info and filling its vertex buffer object is left to the rendering thread.
+     */
+    protected static class VertexTask extends RecursiveTask<FloatBuffer>
+    {
+        private static final long serialVersionUID = 1L;
+
+        protected final RectTile tile;
+        protected final CacheKey cacheKey;
+        protected final Globe globe;
+        protected final double verticalExaggeration;
+        protected final boolean makeSkirts;
+        protected final Vec4 referenceCenter;
+
+        public VertexTask(RectTile tile, CacheKey cacheKey, Globe globe, double verticalExaggeration,
+            boolean makeSkirts)
+        {
+            this.tile = tile;
+            this.cacheKey = cacheKey;
+            this.globe = globe;
+            this.verticalExaggeration = verticalExaggeration;
+            this.makeSkirts = makeSkirts;
+
+            LatLon centroid = tile.sector.getCentroid();
+            this.referenceCenter = globe.computePointFromPosition(centroid.getLatitude(), centroid.getLongitude(), 0d);
+        }
+
+        @Override
+        protected FloatBuffer compute()
+        {
+            int numVertices = (this.tile.density + 3) * (this.tile.density + 3);
+            FloatBuffer verts = takeVertexBuffer(numVertices * 3);
+            this.tile.tessellator.computeVertices(this.globe, this.tile, this.verticalExaggeration, this.makeSkirts,
+                this.referenceCenter, verts);
+            verts.rewind();
+
+            return verts;
+        }
+    }
+
     protected static class TopLevelTiles
     {
         protected ArrayList<RectTile> topLevels;
@@ -384,6 +667,32 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
     protected static final int DEFAULT_DENSITY = 20;
     protected static final String CACHE_NAME = "Terrain";
     protected static final String CACHE_ID = RectangularTessellator.class.getName();
+    /** The longest time, in milliseconds, a frame waits for new tile vertices before drawing the tiles' parents. */
+    protected static final long DEFAULT_MAX_FRAME_WAIT = 20;
+    /** The delay, in milliseconds, before redrawing to show vertices still being computed. */
+    protected static final int PENDING_VERTICES_REDRAW_DELAY = 10;
+    /** The time, in milliseconds, after the computation of a tile's vertices fails before it is tried again. */
+    protected static final long FAILED_VERTICES_RETRY_DELAY = 5000;
+    /**
+     * The largest error allowed in the coordinates of quantized vertices, as a fraction of the tile's cell size. Tiles
+     * whose vertices span too large a range to meet it keep floating point vertices.
+     */
+    protected static final double QUANTIZATION_TOLERANCE = 0.01;
+    /** The most buffers of each capacity kept for reuse by vertex computations. */
+    protected static final int MAX_POOLED_VERTEX_BUFFERS = 16;
+
+    /**
+     * The pools on which tile vertices are computed, keyed by their parallelism. Tessellators with the same parallelism
+     * share a pool, so that several globes or windows don't each start a thread per processor. A pool is created when
+     * a tessellator that computes vertices in parallel first needs it, and lasts for the life of the application.
+     */
+    protected static final Map<Integer, ForkJoinPool> vertexPools = new HashMap<Integer, ForkJoinPool>();
+    /**
+     * Direct buffers for vertex computations, keyed by their capacity. A buffer is returned here once its vertices have
+     * been copied into a tile's existing render info, or quantized, so that recomputing vertices doesn't allocate.
+     */
+    protected static final ConcurrentHashMap<Integer, BlockingQueue<FloatBuffer>> vertexBuffers =
+        new ConcurrentHashMap<Integer, BlockingQueue<FloatBuffer>>();
 
     // Tri-strip indices and texture coordinates. These depend only on density and can therefore be statically cached.
     protected static final HashMap<Integer, FloatBuffer> textureCoords = new HashMap<Integer, FloatBuffer>();
@@ -407,6 +716,24 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
     protected Globe globe;
     protected int density = DEFAULT_DENSITY;
     protected long updateFrequency = 2000; // milliseconds
+    protected int parallelism = Runtime.getRuntime().availableProcessors();
+    protected long maxFrameWait = DEFAULT_MAX_FRAME_WAIT;
+    protected boolean quantizeVertices;
+    /** Vertex computations that have not yet been installed in the cache, keyed by the cache key of their tile. */
+    protected Map<CacheKey, VertexTask> pendingVertices = new HashMap<CacheKey, VertexTask>();
+    /** The times at which vertex computations failed, keyed by the cache key of their tile. */
+    protected Map<CacheKey, Long> failedVertices = new HashMap<CacheKey, Long>();
+    protected HorizonCuller horizonCuller = new HorizonCuller();
+    protected boolean horizonCullingEnabled = true;
+    protected boolean occlusionCullingEnabled;
+    protected int horizonCulledTileCount;
+    protected int occludedTileCount;
+
+    public RectangularTessellator()
+    {
+        this.horizonCullingEnabled = Configuration.getBooleanValue(AVKey.HORIZON_CULLING_ENABLED, true);
+        this.occlusionCullingEnabled = Configuration.getBooleanValue(AVKey.OCCLUSION_CULLING_ENABLED, false);
+    }
 
     public SectorGeometryList tessellate(DrawContext dc)
     {
@@ -427,12 +754,18 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         if (!WorldWind.getMemoryCacheSet().containsCache(CACHE_ID))
         {
             long size = Configuration.getLongValue(AVKey.SECTOR_GEOMETRY_CACHE_SIZE, 10000000L);
-            MemoryCache cache = new BasicMemoryCache((long) (0.85 * size), size);
+            MemoryCache cache = WorldWind.getMemoryCacheSet().createCache((long) (0.85 * size), size);
             cache.setName(CACHE_NAME);
             WorldWind.getMemoryCacheSet().addCache(CACHE_ID, cache);
         }
 
         this.maxLevel = Configuration.getIntegerValue(AVKey.RECTANGULAR_TESSELLATOR_MAX_LEVEL, DEFAULT_MAX_LEVEL);
+        this.parallelism = Configuration.getIntegerValue(AVKey.RECTANGULAR_TESSELLATOR_PARALLELISM,
+            Runtime.getRuntime().availableProcessors());
+        this.maxFrameWait = Configuration.getLongValue(AVKey.RECTANGULAR_TESSELLATOR_MAX_FRAME_WAIT,
+            DEFAULT_MAX_FRAME_WAIT);
+        this.quantizeVertices = Configuration.getBooleanValue(AVKey.RECTANGULAR_TESSELLATOR_QUANTIZE_VERTICES,
+            false);
 
         TopLevelTiles topLevels = (TopLevelTiles) this.topLevelTilesCache.get(dc.getGlobe().getStateKey(dc));
         if (topLevels == null)
@@ -441,6 +774,13 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
             this.topLevelTilesCache.put(dc.getGlobe().getStateKey(dc), topLevels);
         }
 
+        // The previous frame's tiles are the candidate occluders for this frame's.
+        this.horizonCuller.update(dc);
+        if (this.occlusionCullingEnabled)
+            this.horizonCuller.setOccluders(this.currentTiles);
+        this.horizonCulledTileCount = 0;
+        this.occludedTileCount = 0;
+
         this.currentTiles.clear();
         this.currentLevel = 0;
         this.currentCoverage = null;
@@ -452,10 +792,21 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         }
 
         this.currentTiles.setSector(this.currentCoverage);
+        dc.setPerFrameStatistic(PerformanceStatistic.HORIZON_CULLED_TILE_COUNT, "Terrain Tiles Beyond Horizon",
+            this.horizonCulledTileCount);
+        dc.setPerFrameStatistic(PerformanceStatistic.OCCLUDED_TILE_COUNT, "Terrain Tiles Occluded",
+            this.occludedTileCount);
 
-        for (SectorGeometry tile : this.currentTiles)
+        if (this.parallelism > 1)
+        {
+            this.makeVertsInParallel(dc);
+        }
+        else
         {
-            this.makeVerts(dc, (RectTile) tile);
+            for (SectorGeometry tile : this.currentTiles)
+            {
+                this.makeVerts(dc, (RectTile) tile);
+            }
         }
 
         // Make a copy of the SGL because the tessellator may be called multiple times per frame with a different globe.
@@ -541,6 +892,48 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         this.makeTileSkirts = makeTileSkirts;
     }
 
+    /**
+     * Indicates whether tiles beyond the horizon are culled. The initial value is taken from the configuration's
+     * <code>gov.nasa.worldwind.avkey.HorizonCullingEnabled</code> property.
+     *
+     * @return true if tiles beyond the horizon are culled, otherwise false.
+     */
+    public boolean isHorizonCullingEnabled()
+    {
+        return this.horizonCullingEnabled;
+    }
+
+    /**
+     * Specifies whether tiles beyond the horizon are culled.
+     *
+     * @param horizonCullingEnabled true to cull tiles beyond the horizon, otherwise false.
+     */
+    public void setHorizonCullingEnabled(boolean horizonCullingEnabled)
+    {
+        this.horizonCullingEnabled = horizonCullingEnabled;
+    }
+
+    /**
+     * Indicates whether tiles hidden behind nearer terrain are culled. The initial value is taken from the
+     * configuration's <code>gov.nasa.worldwind.avkey.OcclusionCullingEnabled</code> property.
+     *
+     * @return true if occluded tiles are culled, otherwise false.
+     */
+    public boolean isOcclusionCullingEnabled()
+    {
+        return this.occlusionCullingEnabled;
+    }
+
+    /**
+     * Specifies whether tiles hidden behind nearer terrain are culled.
+     *
+     * @param occlusionCullingEnabled true to cull occluded tiles, otherwise false.
+     */
+    public void setOcclusionCullingEnabled(boolean occlusionCullingEnabled)
+    {
+        this.occlusionCullingEnabled = occlusionCullingEnabled;
+    }
+
     public long getUpdateFrequency()
     {
         return this.updateFrequency;
@@ -560,6 +953,9 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         if (extent != null && !extent.intersects(this.currentFrustum))
             return;
 
+        if (this.isTileCulled(tile))
+            return;
+
         if (this.currentLevel < this.maxLevel - 1 && !this.atBestResolution(dc, tile) && this.needToSplit(dc, tile))
         {
             ++this.currentLevel;
@@ -575,6 +971,31 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         this.currentTiles.add(tile);
     }
 
+    /**
+     * Determines whether a tile within the view frustum is hidden behind the horizon or, when occlusion culling is
+     * enabled, behind nearby terrain. Culled tiles are neither subdivided nor given vertices.
+     *
+     * @param tile the tile to test.
+     *
+     * @return <code>true</code> if the tile is hidden, otherwise <code>false</code>.
+     */
+    protected boolean isTileCulled(RectTile tile)
+    {
+        if (this.horizonCullingEnabled && this.horizonCuller.isBeyondHorizon(tile.getExtent()))
+        {
+            ++this.horizonCulledTileCount;
+            return true;
+        }
+
+        if (this.occlusionCullingEnabled && this.horizonCuller.isOccluded(tile.getExtent()))
+        {
+            ++this.occludedTileCount;
+            return true;
+        }
+
+        return false;
+    }
+
     protected boolean atBestResolution(DrawContext dc, RectTile tile)
     {
         double bestResolution = dc.getGlobe().getElevationModel().getBestResolution(tile.getSector());
@@ -636,6 +1057,11 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         subTiles[2] = this.createTile(dc, sectors[2], tile.level + 1);
         subTiles[3] = this.createTile(dc, sectors[3], tile.level + 1);
 
+        for (RectTile subTile : subTiles)
+        {
+            subTile.parent = tile;
+        }
+
         return subTiles;
     }
 
@@ -658,6 +1084,325 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
             cache.add(cacheKey, tile.ri, tile.ri.getSizeInBytes());
     }
 
+    /**
+     * Makes the vertices of the current tiles, computing those that are not in the cache or that are out of date on the
+     * vertex pool. Tiles whose vertices are out of date draw their previous vertices until the new ones are ready. A
+     * frame waits for missing vertices only until the maximum frame wait has passed; a tile whose vertices are still
+     * missing then is replaced by its nearest ancestor that has vertices in the cache. A tile whose vertices could not
+     * be computed is not computed again until a few seconds have passed, and is drawn as if its vertices were still
+     * missing until then. Only creating render info and filling vertex buffer objects happens on the rendering
+     * thread.
+     *
+     * @param dc the current draw context.
+     */
+    protected void makeVertsInParallel(DrawContext dc)
+    {
+        MemoryCache cache = WorldWind.getMemoryCache(CACHE_ID);
+        long now = System.currentTimeMillis();
+        long staleTime = now - this.getUpdateFrequency();
+
+        Map<CacheKey, RectTile> requested = new HashMap<CacheKey, RectTile>();
+        List<VertexTask> missing = new ArrayList<VertexTask>();
+        List<RectTile> failed = new ArrayList<RectTile>();
+        for (SectorGeometry sg : this.currentTiles)
+        {
+            RectTile tile = (RectTile) sg;
+            CacheKey cacheKey = this.createCacheKey(dc, tile);
+            requested.put(cacheKey, tile);
+
+            tile.ri = (RenderInfo) cache.getObject(cacheKey);
+            if (tile.ri != null && tile.ri.time >= staleTime)
+                continue;
+
+            // Back off from a tile whose vertices recently failed, drawing its previous vertices if it has any.
+            Long failureTime = this.failedVertices.get(cacheKey);
+            if (failureTime != null && now - failureTime < FAILED_VERTICES_RETRY_DELAY)
+            {
+                if (tile.ri == null)
+                    failed.add(tile);
+                continue;
+            }
+
+            VertexTask task = this.pendingVertices.get(cacheKey);
+            if (task == null)
+            {
+                task = new VertexTask(tile, cacheKey, dc.getGlobe(), dc.getVerticalExaggeration(),
+                    this.makeTileSkirts);
+                this.pendingVertices.put(cacheKey, task);
+                getVertexPool(this.parallelism).execute(task);
+            }
+
+            if (tile.ri == null)
+                missing.add(task);
+        }
+
+        // Give the missing vertices until the frame's deadline to complete.
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.maxFrameWait);
+        for (VertexTask task : missing)
+        {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                break;
+
+            try
+            {
+                task.get(remaining, TimeUnit.NANOSECONDS);
+            }
+            catch (TimeoutException e)
+            {
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            catch (ExecutionException e)
+            {
+                // Reported when the task is installed.
+            }
+        }
+
+        // Install the completed vertices of tiles drawn this frame, and abandon those of tiles no longer drawn.
+        Iterator<Map.Entry<CacheKey, VertexTask>> iter = this.pendingVertices.entrySet().iterator();
+        while (iter.hasNext())
+        {
+            Map.Entry<CacheKey, VertexTask> entry = iter.next();
+            RectTile tile = requested.get(entry.getKey());
+            if (tile == null)
+            {
+                entry.getValue().cancel(false);
+                iter.remove();
+            }
+            else if (entry.getValue().isDone())
+            {
+                tile.ri = this.installVerts(dc, entry.getValue(), cache);
+                iter.remove();
+            }
+        }
+
+        // Forget the failures of tiles no longer drawn.
+        this.failedVertices.keySet().retainAll(requested.keySet());
+
+        // Draw the nearest ancestor with vertices in place of each tile whose vertices are still missing. Wait for the
+        // vertices of tiles that have no such ancestor, since there is nothing else to draw in their place.
+        List<RectTile> substitutes = new ArrayList<RectTile>();
+        for (RectTile tile : failed)
+        {
+            RectTile ancestor = this.findAncestorWithVerts(dc, tile, cache);
+            if (ancestor == null)
+                this.currentTiles.remove(tile);
+            else if (!substitutes.contains(ancestor))
+                substitutes.add(ancestor);
+        }
+
+        for (VertexTask task : missing)
+        {
+            if (task.tile.ri != null)
+                continue;
+
+            RectTile ancestor = this.findAncestorWithVerts(dc, task.tile, cache);
+            if (ancestor != null)
+            {
+                if (!substitutes.contains(ancestor))
+                    substitutes.add(ancestor);
+                continue;
+            }
+
+            task.quietlyJoin();
+            task.tile.ri = this.installVerts(dc, task, cache);
+            this.pendingVertices.remove(task.cacheKey);
+
+            // A tile whose vertices could not be computed is not drawn.
+            if (task.tile.ri == null)
+                this.currentTiles.remove(task.tile);
+        }
+
+        if (!substitutes.isEmpty())
+            this.substituteTiles(substitutes);
+
+        if (!this.pendingVertices.isEmpty())
+            dc.setRedrawRequested(PENDING_VERTICES_REDRAW_DELAY);
+    }
+
+    /**
+     * Finds the nearest ancestor of a tile that has vertices in the cache, and sets the ancestor's render info.
+     *
+     * @param dc    the current draw context.
+     * @param tile  the tile.
+     * @param cache the cache of render info.
+     *
+     * @return the nearest ancestor with vertices, or null if there is none.
+     */
+    protected RectTile findAncestorWithVerts(DrawContext dc, RectTile tile, MemoryCache cache)
+    {
+        RectTile ancestor = tile.parent;
+        while (ancestor != null)
+        {
+            ancestor.ri = (RenderInfo) cache.getObject(this.createCacheKey(dc, ancestor));
+            if (ancestor.ri != null)
+                break;
+            ancestor = ancestor.parent;
+        }
+
+        return ancestor;
+    }
+
+    /**
+     * Creates or updates the render info of a tile from vertices computed on the vertex pool, and adds it to the
+     * cache. A failed computation is recorded so that it is not retried until {@link #FAILED_VERTICES_RETRY_DELAY} has
+     * passed, and is logged as severe only the first time it fails. Must be called on the rendering thread, since it fills the tile's vertex buffer object.
+     *
+     * @param dc    the current draw context.
+     * @param task  the completed vertex computation.
+     * @param cache the cache of render info.
+     *
+     * @return the tile's render info, or its previous render info if the vertices could not be computed.
+     */
+    protected RenderInfo installVerts(DrawContext dc, VertexTask task, MemoryCache cache)
+    {
+        RenderInfo ri = (RenderInfo) cache.getObject(task.cacheKey);
+
+        FloatBuffer verts;
+        try
+        {
+            verts = task.join();
+        }
+        catch (Exception e)
+        {
+            Long previousFailure = this.failedVertices.put(task.cacheKey, System.currentTimeMillis());
+            String msg = Logging.getMessage("generic.ExceptionWhileTessellating", task.tile.sector);
+            Logging.logger().log(previousFailure == null ? java.util.logging.Level.SEVERE
+                : java.util.logging.Level.FINE, msg, e);
+            return ri;
+        }
+
+        this.failedVertices.remove(task.cacheKey);
+
+        // Reuse the existing vertices buffer, as buildVerts does, if the tile already has one of the right size.
+        if (ri != null && ri.vertices != null && ri.density == task.tile.density)
+        {
+            ri.vertices.rewind();
+            ri.vertices.put(verts);
+            ri.vertices.rewind();
+            ri.update(dc);
+            releaseVertexBuffer(verts);
+            return ri;
+        }
+
+        ri = this.createRenderInfo(dc, task.tile, verts, task.referenceCenter);
+        cache.add(task.cacheKey, ri, ri.getSizeInBytes());
+        if (ri.vertices != verts)
+            releaseVertexBuffer(verts); // The vertices were quantized.
+        return ri;
+    }
+
+    /**
+     * Returns a direct buffer for a vertex computation, reusing a released buffer of the same capacity if there is one.
+     *
+     * @param capacity the number of floats the buffer holds.
+     *
+     * @return a buffer positioned at zero.
+     */
+    protected static FloatBuffer takeVertexBuffer(int capacity)
+    {
+        BlockingQueue<FloatBuffer> buffers = vertexBuffers.get(capacity);
+        FloatBuffer buffer = buffers != null ? buffers.poll() : null;
+        if (buffer == null)
+            return Buffers.newDirectFloatBuffer(capacity);
+
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Makes a buffer returned by {@link #takeVertexBuffer(int)} available for reuse, once nothing refers to it. At most
+     * {@link #MAX_POOLED_VERTEX_BUFFERS} buffers of each capacity are kept.
+     *
+     * @param buffer the buffer.
+     */
+    protected static void releaseVertexBuffer(FloatBuffer buffer)
+    {
+        BlockingQueue<FloatBuffer> buffers = vertexBuffers.get(buffer.capacity());
+        if (buffers == null)
+        {
+            vertexBuffers.putIfAbsent(buffer.capacity(),
+                new ArrayBlockingQueue<FloatBuffer>(MAX_POOLED_VERTEX_BUFFERS));
+            buffers = vertexBuffers.get(buffer.capacity());
+        }
+
+        buffers.offer(buffer);
+    }
+
+    /**
+     * Replaces the current tiles that lie within any of a list of ancestor tiles with those ancestors. An ancestor that
+     * lies within another one is itself replaced.
+     *
+     * @param ancestors the ancestor tiles to draw.
+     */
+    protected void substituteTiles(List<RectTile> ancestors)
+    {
+        List<SectorGeometry> tiles = new ArrayList<SectorGeometry>(this.currentTiles);
+        tiles.addAll(ancestors);
+
+        Sector coverage = this.currentTiles.getSector();
+        this.currentTiles.clear();
+        for (SectorGeometry tile : tiles)
+        {
+            boolean replaced = false;
+            for (RectTile ancestor : ancestors)
+            {
+                if (ancestor != tile && ancestor.sector.contains(tile.getSector()))
+                {
+                    replaced = true;
+                    break;
+                }
+            }
+
+            if (!replaced)
+            {
+                this.currentTiles.add(tile);
+                coverage = tile.getSector().union(coverage);
+            }
+        }
+
+        this.currentTiles.setSector(coverage);
+    }
+
+    /**
+     * Returns the pool on which tile vertices are computed with a specified parallelism, creating it if necessary. The
+     * pool is shared by all tessellators with the same parallelism.
+     *
+     * @param parallelism the number of threads the pool uses.
+     *
+     * @return the vertex pool.
+     */
+    protected static ForkJoinPool getVertexPool(int parallelism)
+    {
+        synchronized (vertexPools)
+        {
+            ForkJoinPool vertexPool = vertexPools.get(parallelism);
+            if (vertexPool != null)
+                return vertexPool;
+
+            vertexPool = new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory()
+            {
+                public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+                {
+                    ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool)
+                    {
+                    };
+                    thread.setName(Logging.getMessage("RectangularTessellator.ThreadName", thread.getPoolIndex()));
+                    thread.setPriority(Thread.MIN_PRIORITY); // Subordinate thread priority to rendering
+                    return thread;
+                }
+            }, null, false);
+            vertexPools.put(parallelism, vertexPool);
+
+            return vertexPool;
+        }
+    }
+
     public boolean buildVerts(DrawContext dc, RectTile tile, boolean makeSkirts)
     {
         int density = tile.density;
@@ -676,11 +1421,85 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
             verts.rewind();
         }
 
-        ArrayList<LatLon> latlons = this.computeLocations(tile);
-        double[] elevations = new double[latlons.size()];
-        dc.getGlobe().getElevations(tile.sector, latlons, tile.getResolution(), elevations);
+        LatLon centroid = tile.sector.getCentroid();
+        Vec4 refCenter = dc.getGlobe().computePointFromPosition(centroid.getLatitude(), centroid.getLongitude(), 0d);
+
+        this.computeVertices(dc.getGlobe(), tile, dc.getVerticalExaggeration(), makeSkirts, refCenter, verts);
+        verts.rewind();
+
+        if (tile.ri != null && tile.ri.vertices == verts)
+        {
+            tile.ri.update(dc);
+            return false;
+        }
+
+        tile.ri = this.createRenderInfo(dc, tile, verts, refCenter);
+        return true;
+    }
+
+    /**
+     * Creates the render info for a tile's vertices. When vertex quantization is enabled, the vertices are quantized
+     * if the quantization error is no more than a small fraction of the tile's cell size, and otherwise kept as
+     * floating point.
+     *
+     * @param dc        the current draw context.
+     * @param tile      the tile.
+     * @param vertices  the tile's vertices, relative to the reference center.
+     * @param refCenter the reference center.
+     *
+     * @return the new render info.
+     */
+    protected RenderInfo createRenderInfo(DrawContext dc, RectTile tile, FloatBuffer vertices, Vec4 refCenter)
+    {
+        if (this.quantizeVertices)
+        {
+            double tolerance = QUANTIZATION_TOLERANCE * tile.getCellSize() * dc.getGlobe().getRadius();
+            QuantizedVertices quantized = QuantizedVertices.quantize(vertices, tolerance);
+            if (quantized != null)
+                return new RenderInfo(dc, tile.density, quantized, refCenter);
+        }
+
+        return new RenderInfo(dc, tile.density, vertices, refCenter);
+    }
+
+    /**
+     * Computes a tile's vertices, including its skirts if requested, and writes their coordinates relative to a
+     * reference point to a buffer. The tile's locations, elevations and points are computed in arrays of primitives, so
+     * no object is created per vertex.
+     *
+     * @param globe                the globe the tile is on.
+     * @param tile                 the tile whose vertices are computed.
+     * @param verticalExaggeration the vertical exaggeration to apply to the elevations.
+     * @param makeSkirts           true to drop the tile's edge vertices to the globe's minimum elevation.
+     * @param refCenter            the point the vertices are made relative to.
+     * @param verts                the buffer to receive the vertices, beginning at its current position. It must have
+     *                             space for <code>3 x (density + 3) x (density + 3)</code> floats.
+     */
+    protected void computeVertices(Globe globe, RectTile tile, double verticalExaggeration, boolean makeSkirts,
+        Vec4 refCenter, FloatBuffer verts)
+    {
+        int density = tile.density;
+        int numSides = density + 3;
+        int numVertices = numSides * numSides;
+
+        double[] latitudes = new double[numSides];
+        double[] longitudes = new double[numSides];
+        this.computeLocations(tile, latitudes, longitudes);
+
+        // The elevation models take one latitude and longitude per location rather than a grid's rows and columns.
+        double[] locationLats = new double[numVertices];
+        double[] locationLons = new double[numVertices];
+        for (int j = 0, k = 0; j < numSides; j++)
+        {
+            for (int i = 0; i < numSides; i++, k++)
+            {
+                locationLats[k] = latitudes[j];
+                locationLons[k] = longitudes[i];
+            }
+        }
 
-        double verticalExaggeration = dc.getVerticalExaggeration();
+        double[] elevations = new double[numVertices];
+        globe.getElevations(tile.sector, locationLats, locationLons, tile.getResolution(), elevations);
 
         // When making skirts, apply vertical exaggeration to the skirt depth only if the exaggeration is 0 or less. If
         // applied to positive exaggerations, the skirt base might rise above the terrain at positive elevations if the
@@ -690,45 +1509,70 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         // minimum, then exaggeration will push the skirt bases above 0. That the globe reports a minimum elevation that
         // is not its true minimum is a bug, and this constraint on applying exaggeration to the minimum here is a
         // workaround for that bug. See WWJINT-435.
-        Double exaggeratedMinElevation = makeSkirts ? globe.getMinElevation() : null;
-        if (exaggeratedMinElevation != null && (exaggeratedMinElevation < 0 || verticalExaggeration <= 0))
+        double exaggeratedMinElevation = makeSkirts ? globe.getMinElevation() : 0;
+        if (makeSkirts && (exaggeratedMinElevation < 0 || verticalExaggeration <= 0))
             exaggeratedMinElevation *= verticalExaggeration;
 
-        LatLon centroid = tile.sector.getCentroid();
-        Vec4 refCenter = globe.computePointFromPosition(centroid.getLatitude(), centroid.getLongitude(), 0d);
-
-        int ie = 0;
-        int iv = 0;
-        Iterator<LatLon> latLonIter = latlons.iterator();
-        for (int j = 0; j <= density + 2; j++)
+        for (int j = 0, k = 0; j < numSides; j++)
         {
-            for (int i = 0; i <= density + 2; i++)
+            for (int i = 0; i < numSides; i++, k++)
             {
-                LatLon latlon = latLonIter.next();
-                double elevation = verticalExaggeration * elevations[ie++];
-
                 // Tile edges use min elevation to draw the skirts
-                if (exaggeratedMinElevation != null &&
-                    (j == 0 || j >= tile.density + 2 || i == 0 || i >= tile.density + 2))
-                    elevation = exaggeratedMinElevation;
-
-                Vec4 p = globe.computePointFromPosition(latlon.getLatitude(), latlon.getLongitude(), elevation);
-                verts.put(iv++, (float) (p.x - refCenter.x));
-                verts.put(iv++, (float) (p.y - refCenter.y));
-                verts.put(iv++, (float) (p.z - refCenter.z));
+                if (makeSkirts && (j == 0 || j >= density + 2 || i == 0 || i >= density + 2))
+                    elevations[k] = exaggeratedMinElevation;
+                else
+                    elevations[k] = verticalExaggeration * elevations[k];
             }
         }
 
-        verts.rewind();
+        globe.computePointsFromPositions(latitudes, longitudes, elevations, refCenter, verts);
+    }
+
+    /**
+     * Computes the latitudes of a tile's rows of vertices and the longitudes of its columns, in degrees. The first and
+     * last rows and columns are the tile's skirts and repeat the locations of the tile's edges. The locations are those
+     * of {@link #computeLocations(RectTile)}.
+     *
+     * @param tile       the tile whose locations are computed.
+     * @param latitudes  an array of length <code>density + 3</code> to receive the row latitudes.
+     * @param longitudes an array of length <code>density + 3</code> to receive the column longitudes.
+     */
+    protected void computeLocations(RectTile tile, double[] latitudes, double[] longitudes)
+    {
+        int density = tile.density;
+
+        double latMax = tile.sector.getMaxLatitude().degrees;
+        double dLat = tile.sector.getDeltaLatDegrees() / density;
+        double lat = tile.sector.getMinLatitude().degrees;
 
-        if (tile.ri != null)
+        for (int j = 0; j <= density + 2; j++)
         {
-            tile.ri.update(dc);
-            return false;
+            latitudes[j] = lat;
+
+            if (j > density)
+                lat = latMax;
+            else if (j != 0)
+                lat += dLat;
         }
 
-        tile.ri = new RenderInfo(dc, density, verts, refCenter);
-        return true;
+        double lonMax = tile.sector.getMaxLongitude().degrees;
+        double dLon = tile.sector.getDeltaLonDegrees() / density;
+        double lon = tile.sector.getMinLongitude().degrees;
+
+        for (int i = 0; i <= density + 2; i++)
+        {
+            longitudes[i] = lon;
+
+            if (i > density)
+                lon = lonMax;
+            else if (i != 0)
+                lon += dLon;
+
+            if (lon < -180)
+                lon = -180;
+            else if (lon > 180)
+                lon = 180;
+        }
     }
 
     protected ArrayList<LatLon> computeLocations(RectTile tile)
@@ -855,7 +1699,7 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
     {
         GL2 gl = dc.getGL().getGL2(); // GL initialization checks for GL2 compatibility.
 
-        gl.glVertexPointer(3, GL.GL_FLOAT, 0, tile.ri.vertices.rewind());
+        gl.glVertexPointer(3, GL.GL_FLOAT, 0, tile.ri.getVertexArray());
 
         for (int i = 0; i < numTextureUnits; i++)
         {
@@ -1041,7 +1885,7 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
 
                 gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
 
-                gl.glVertexPointer(3, GL.GL_FLOAT, 0, tile.ri.vertices.rewind());
+                gl.glVertexPointer(3, GL.GL_FLOAT, 0, tile.ri.getVertexArray());
                 gl.glDrawElements(GL.GL_TRIANGLE_STRIP, tile.ri.indices.limit(),
                     GL.GL_UNSIGNED_INT, tile.ri.indices.rewind());
             }
@@ -1157,7 +2001,7 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         if (pickPoints.size() == 0)
             return null;
 
-        if (tile.ri == null || tile.ri.vertices == null)
+        if (tile.ri == null || !tile.ri.hasVertices())
             return null;
 
         PickedObject[] pos = new PickedObject[pickPoints.size()];
@@ -1179,7 +2023,7 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
             throw new IllegalArgumentException(msg);
         }
 
-        if (tile.ri == null || tile.ri.vertices == null)
+        if (tile.ri == null || !tile.ri.hasVertices())
             return;
 
         renderTrianglesWithUniqueColors(dc, tile);
@@ -1291,7 +2135,7 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
             }
             else
             {
-                gl.glVertexPointer(3, GL.GL_FLOAT, 0, tile.ri.vertices.rewind());
+                gl.glVertexPointer(3, GL.GL_FLOAT, 0, tile.ri.getVertexArray());
 
                 //Draw the odd rows
                 gl.glColorPointer(3, GL.GL_UNSIGNED_BYTE, 0, colorsOdd.rewind());
@@ -1339,16 +2183,13 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         tile.ri.indices.get(indices);
 
         float[] coords = new float[3];
-        tile.ri.vertices.position(3 * indices[0]);
-        tile.ri.vertices.get(coords);
+        tile.ri.getVertex(indices[0], coords);
         Vec4 v0 = new Vec4(coords[0] + centerX, coords[1] + centerY, coords[2] + centerZ);
 
-        tile.ri.vertices.position(3 * indices[1]);
-        tile.ri.vertices.get(coords);
+        tile.ri.getVertex(indices[1], coords);
         Vec4 v1 = new Vec4(coords[0] + centerX, coords[1] + centerY, coords[2] + centerZ);
 
-        tile.ri.vertices.position(3 * indices[2]);
-        tile.ri.vertices.get(coords);
+        tile.ri.getVertex(indices[2], coords);
         Vec4 v2 = new Vec4(coords[0] + centerX, coords[1] + centerY, coords[2] + centerZ);
 
         // get triangle edge vectors and plane normal
@@ -1394,7 +2235,7 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
             throw new IllegalArgumentException(msg);
         }
 
-        if (tile.ri.vertices == null)
+        if (!tile.ri.hasVertices())
             return null;
 
         // Compute 'vertical' plane perpendicular to the ground, that contains the ray
@@ -1425,13 +2266,11 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         ArrayList<Intersection> list = new ArrayList<Intersection>();
 
         int[] indices = new int[tile.ri.indices.limit()];
-        float[] coords = new float[tile.ri.vertices.limit()];
+        float[] coords = new float[3 * tile.ri.getVertexCount()];
         tile.ri.indices.rewind();
-        tile.ri.vertices.rewind();
         tile.ri.indices.get(indices, 0, indices.length);
-        tile.ri.vertices.get(coords, 0, coords.length);
         tile.ri.indices.rewind();
-        tile.ri.vertices.rewind();
+        tile.ri.getVertices(coords);
 
         int trianglesNum = tile.ri.indices.capacity() - 2;
         double centerX = tile.ri.referenceCenter.x;
@@ -1536,7 +2375,7 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
 
     protected Intersection[] intersect(RectTile tile, double elevation)
     {
-        if (tile.ri.vertices == null)
+        if (!tile.ri.hasVertices())
             return null;
 
         // Check whether the tile includes the intersection elevation - assume cylinder as Extent
@@ -1553,13 +2392,11 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         ArrayList<Intersection> list = new ArrayList<Intersection>();
 
         int[] indices = new int[tile.ri.indices.limit()];
-        float[] coords = new float[tile.ri.vertices.limit()];
+        float[] coords = new float[3 * tile.ri.getVertexCount()];
         tile.ri.indices.rewind();
-        tile.ri.vertices.rewind();
         tile.ri.indices.get(indices, 0, indices.length);
-        tile.ri.vertices.get(coords, 0, coords.length);
         tile.ri.indices.rewind();
-        tile.ri.vertices.rewind();
+        tile.ri.getVertices(coords);
 
         int trianglesNum = tile.ri.indices.capacity() - 2;
         double centerX = tile.ri.referenceCenter.x;
@@ -1737,26 +2574,18 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
 
         int bottomLeft = row * numVerticesPerEdge + column;
 
-        bottomLeft *= 3;
-
-        int numVertsTimesThree = numVerticesPerEdge * 3;
-
-//        double[] a = new double[6];
-        ri.vertices.position(bottomLeft);
-//        ri.vertices.get(a);
-//        Vec4 bL = new Vec4(a[0], a[1], a[2]);
-//        Vec4 bR = new Vec4(a[3], a[4], a[5]);
-        Vec4 bL = new Vec4(ri.vertices.get(), ri.vertices.get(), ri.vertices.get());
-        Vec4 bR = new Vec4(ri.vertices.get(), ri.vertices.get(), ri.vertices.get());
+        float[] a = new float[3];
+        ri.getVertex(bottomLeft, a);
+        Vec4 bL = new Vec4(a[0], a[1], a[2]);
+        ri.getVertex(bottomLeft + 1, a);
+        Vec4 bR = new Vec4(a[0], a[1], a[2]);
 
-        bottomLeft += numVertsTimesThree;
+        bottomLeft += numVerticesPerEdge;
 
-        ri.vertices.position(bottomLeft);
-//        ri.vertices.get(a);
-//        Vec4 tL = new Vec4(a[0], a[1], a[2]);
-//        Vec4 tR = new Vec4(a[3], a[4], a[5]);
-        Vec4 tL = new Vec4(ri.vertices.get(), ri.vertices.get(), ri.vertices.get());
-        Vec4 tR = new Vec4(ri.vertices.get(), ri.vertices.get(), ri.vertices.get());
+        ri.getVertex(bottomLeft, a);
+        Vec4 tL = new Vec4(a[0], a[1], a[2]);
+        ri.getVertex(bottomLeft + 1, a);
+        Vec4 tR = new Vec4(a[0], a[1], a[2]);
 
         return interpolate(bL, bR, tR, tL, xDec, yDec);
     }
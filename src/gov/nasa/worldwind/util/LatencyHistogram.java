@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A histogram of durations in nanoseconds, with one bucket per power of two. Bucket <code>i</code> counts durations
+ * from <code>2<sup>i</sup></code> up to <code>2<sup>i+1</sup> - 1</code> nanoseconds; bucket 0 also counts zero.
+ * Percentiles are therefore accurate to within a factor of two, which is enough to tell a lock-free lookup from one
+ * that waited on a lock or a collection pause. Recording is lock-free and may be done from any thread.
+ */
+public class LatencyHistogram
+{
+    /** The number of buckets, enough for any <code>long</code> duration. */
+    public static final int NUM_BUCKETS = 64;
+
+    protected final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    protected final AtomicLong count = new AtomicLong();
+    protected final AtomicLong totalNanos = new AtomicLong();
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos the duration in nanoseconds. Negative durations, which a non-monotonic clock may produce, are
+     *              recorded as zero.
+     */
+    public void record(long nanos)
+    {
+        if (nanos < 0)
+            nanos = 0;
+
+        this.buckets.incrementAndGet(bucketFor(nanos));
+        this.count.incrementAndGet();
+        this.totalNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Adds the durations recorded by another histogram to this one.
+     *
+     * @param that the histogram to add.
+     *
+     * @throws IllegalArgumentException if the histogram is null.
+     */
+    public void add(LatencyHistogram that)
+    {
+        if (that == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        for (int i = 0; i < NUM_BUCKETS; i++)
+        {
+            long n = that.buckets.get(i);
+            if (n != 0)
+                this.buckets.addAndGet(i, n);
+        }
+        this.count.addAndGet(that.count.get());
+        this.totalNanos.addAndGet(that.totalNanos.get());
+    }
+
+    /** @return the number of durations recorded. */
+    public long getCount()
+    {
+        return this.count.get();
+    }
+
+    /** @return the mean duration in nanoseconds, or zero if none have been recorded. */
+    public double getMean()
+    {
+        long n = this.count.get();
+        return n > 0 ? (double) this.totalNanos.get() / n : 0;
+    }
+
+    /**
+     * Returns an upper bound on the specified percentile of the recorded durations: the largest duration counted by
+     * the bucket holding that percentile.
+     *
+     * @param percentile the percentile, in the range [0, 100].
+     *
+     * @return the upper bound in nanoseconds, or zero if no durations have been recorded.
+     *
+     * @throws IllegalArgumentException if the percentile is out of range.
+     */
+    public long getPercentile(double percentile)
+    {
+        if (percentile < 0 || percentile > 100)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "percentile=" + percentile);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        long[] counts = this.getBucketCounts();
+        long total = 0;
+        for (long n : counts)
+        {
+            total += n;
+        }
+
+        if (total == 0)
+            return 0;
+
+        long rank = Math.max((long) Math.ceil(percentile / 100 * total), 1);
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++)
+        {
+            seen += counts[i];
+            if (seen >= rank)
+                return i < NUM_BUCKETS - 1 ? (1L << (i + 1)) - 1 : Long.MAX_VALUE;
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+    /** @return a copy of the bucket counts. Element <code>i</code> counts durations below 2<sup>i+1</sup> ns. */
+    public long[] getBucketCounts()
+    {
+        long[] counts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++)
+        {
+            counts[i] = this.buckets.get(i);
+        }
+
+        return counts;
+    }
+
+    protected static int bucketFor(long nanos)
+    {
+        return nanos > 0 ? 63 - Long.numberOfLeadingZeros(nanos) : 0;
+    }
+}
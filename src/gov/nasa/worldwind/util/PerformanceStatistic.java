@@ -16,13 +16,17 @@ public class PerformanceStatistic implements Comparable<PerformanceStatistic>
     public static final String AIRSPACE_VERTEX_COUNT = "gov.nasa.worldwind.perfstat.AirspaceVertexCount";
     public static final String FRAME_RATE = "gov.nasa.worldwind.perfstat.FrameRate";
     public static final String FRAME_TIME = "gov.nasa.worldwind.perfstat.FrameTime";
+    public static final String HORIZON_CULLED_TILE_COUNT = "gov.nasa.worldwind.perfstat.HorizonCulledTileCount";
     public static final String IMAGE_TILE_COUNT = "gov.nasa.worldwind.perfstat.ImageTileCount";
+    public static final String OCCLUDED_TILE_COUNT = "gov.nasa.worldwind.perfstat.OccludedTileCount";
     public static final String TERRAIN_TILE_COUNT = "gov.nasa.worldwind.perfstat.TerrainTileCount";
     public static final String MEMORY_CACHE = "gov.nasa.worldwind.perfstat.MemoryCache";
     public static final String PICK_TIME = "gov.nasa.worldwind.perfstat.PickTime";
+    public static final String RETRIEVAL_PIPELINE = "gov.nasa.worldwind.perfstat.RetrievalPipeline";
     public static final String JVM_HEAP = "gov.nasa.worldwind.perfstat.JvmHeap";
     public static final String JVM_HEAP_USED = "gov.nasa.worldwind.perfstat.JvmHeapUsed";
     public static final String TEXTURE_CACHE = "gov.nasa.worldwind.perfstat.TextureCache";
+    public static final String TILE_PREFETCH = "gov.nasa.worldwind.perfstat.TilePrefetch";
 
     public static final Set<String> ALL_STATISTICS_SET = new HashSet<String>(1);
     static
@@ -6,11 +6,13 @@
 package gov.nasa.worldwind.util;
 
 import gov.nasa.worldwind.WorldWind;
-import gov.nasa.worldwind.cache.SessionCache;
+import gov.nasa.worldwind.cache.*;
 import gov.nasa.worldwind.ogc.wms.WMSCapabilities;
 import gov.nasa.worldwind.retrieve.*;
 
 import java.beans.PropertyChangeListener;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A collection of utility methods for retrieving and managing data in the {@link SessionCache}.
@@ -74,16 +76,56 @@ public class SessionCacheUtils
             absentResourceList, resourceID, propertyListener, propertyName);
         postProcessor.setName(url.toString());
 
-        Retriever retriever = URLRetriever.createRetriever(url, postProcessor);
+        final Retriever retriever = URLRetriever.createRetriever(url, postProcessor);
+        final AtomicBoolean retrieved = new AtomicBoolean();
         try
         {
-            retriever.call();
+            // Threads retrieving the same data at once wait for one retrieval rather than each making their own. The
+            // post processor places the retrieved data in the cache.
+            if (cache instanceof ConcurrentSessionCache)
+            {
+                ((ConcurrentSessionCache) cache).load(cacheKey, new Callable<Object>()
+                {
+                    public Object call() throws Exception
+                    {
+                        retrieved.set(true);
+                        retriever.call();
+                        return null;
+                    }
+                });
+            }
+            else
+            {
+                retrieved.set(true);
+                retriever.call();
+            }
         }
         catch (Exception e)
         {
             String message = Logging.getMessage("layers.TiledImageLayer.ExceptionRetrievingResources", url.toString());
             Logging.logger().log(java.util.logging.Level.SEVERE, message, e);
         }
+        finally
+        {
+            // A thread that waited for another thread's retrieval updates its own absent resource list and notifies
+            // its own listener, as its post processor would have.
+            if (!retrieved.get())
+                signalSharedRetrievalComplete(cache, cacheKey, absentResourceList, resourceID, postProcessor);
+        }
+    }
+
+    protected static void signalSharedRetrievalComplete(SessionCache cache, Object cacheKey,
+        AbsentResourceList absentResourceList, long resourceID, SessionCacheRetrievalPostProcessor postProcessor)
+    {
+        if (absentResourceList != null)
+        {
+            if (cache.contains(cacheKey))
+                absentResourceList.unmarkResourceAbsent(resourceID);
+            else
+                absentResourceList.markResourceAbsent(resourceID);
+        }
+
+        postProcessor.signalRetrievalComplete();
     }
 
     /**
@@ -32,6 +32,13 @@ public class WWIO
     protected static final String DEFAULT_CHARACTER_ENCODING = "UTF-8";
     /** The maximum number of characters allowed in a file path. Covers Windows, Linux and OS X. */
     public static final int MAX_FILE_PATH_LENGTH = 255;
+    /**
+     * The gzip header of content a file store keeps compressed. It carries an extra field that marks the content as
+     * compressed by the file store, so that other gzip files are never inflated in its place.
+     */
+    protected static final byte[] COMPRESSED_CONTENT_HEADER = {
+        0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 255, // magic, deflate, extra field flag, no time, unknown OS
+        4, 0, 'W', 'W', 0, 0}; // the extra field's length and its single empty "WW" subfield
 
     public static String formPath(String... pathParts)
     {
@@ -635,6 +642,69 @@ public class WWIO
         return saveBufferToStream(buffer, new GZIPOutputStream(new FileOutputStream(file)));
     }
 
+    /**
+     * Saves a buffer's content gzip-compressed, with the header that marks content a file store keeps compressed. The
+     * file can be read by any gzip reader, and is inflated by {@link #openInflatingStream(InputStream)} and {@link
+     * #inflateIfCompressed(ByteBuffer)}. The whole buffer is saved, and its position is not changed.
+     *
+     * @param buffer the buffer to save.
+     * @param file   the file to write.
+     *
+     * @return true if the buffer was saved.
+     *
+     * @throws IllegalArgumentException if the buffer or the file is null.
+     * @throws IOException              if the file cannot be written.
+     */
+    public static boolean saveBufferToCompressedFile(ByteBuffer buffer, File file) throws IOException
+    {
+        if (buffer == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (file == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        ByteBuffer source = buffer.duplicate();
+        source.rewind();
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try
+        {
+            out.write(COMPRESSED_CONTENT_HEADER);
+
+            CRC32 crc = new CRC32();
+            DeflaterOutputStream deflating = new DeflaterOutputStream(out, deflater);
+            byte[] chunk = new byte[8192];
+            while (source.hasRemaining())
+            {
+                int length = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, length);
+                crc.update(chunk, 0, length);
+                deflating.write(chunk, 0, length);
+            }
+            deflating.finish();
+
+            ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.putInt((int) crc.getValue()).putInt(source.limit());
+            out.write(trailer.array());
+            out.flush();
+            return true;
+        }
+        finally
+        {
+            deflater.end();
+            WWIO.closeStream(out, file.getPath());
+        }
+    }
+
     public static boolean deflateBufferToFile(ByteBuffer buffer, File file) throws IOException
     {
         return saveBufferToStream(buffer, new DeflaterOutputStream(new FileOutputStream(file)));
@@ -708,6 +778,96 @@ public class WWIO
         return length;
     }
 
+    /**
+     * Indicates whether a buffer holds content a file store keeps compressed, as written by {@link
+     * #saveBufferToCompressedFile(ByteBuffer, File)}. Other gzip content is not. The test examines the header at the
+     * buffer's position and does not change the position.
+     *
+     * @param buffer the buffer to examine.
+     *
+     * @return true if the buffer starts with the header of content a file store keeps compressed, otherwise false.
+     *
+     * @throws IllegalArgumentException if the buffer is null.
+     */
+    public static boolean isCompressedContent(ByteBuffer buffer)
+    {
+        if (buffer == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (buffer.remaining() < COMPRESSED_CONTENT_HEADER.length)
+            return false;
+
+        for (int i = 0; i < COMPRESSED_CONTENT_HEADER.length; i++)
+        {
+            if (buffer.get(buffer.position() + i) != COMPRESSED_CONTENT_HEADER[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Inflates a buffer's content if it is content a file store keeps compressed.
+     *
+     * @param buffer the buffer to inflate.
+     *
+     * @return a new buffer holding the inflated content if the buffer holds content a file store keeps compressed,
+     *         otherwise the buffer itself.
+     *
+     * @throws IllegalArgumentException if the buffer is null.
+     * @throws IOException              if the buffer's compressed content is malformed.
+     */
+    public static ByteBuffer inflateIfCompressed(ByteBuffer buffer) throws IOException
+    {
+        if (!isCompressedContent(buffer))
+            return buffer;
+
+        ByteBuffer source = buffer.duplicate();
+        byte[] bytes = new byte[source.remaining()];
+        source.get(bytes);
+
+        return readStreamToBuffer(new GZIPInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    /**
+     * Returns a stream that inflates a stream's content if it is content a file store keeps compressed, and otherwise
+     * reads the content as is. Readers of files that may have been retrieved to a file store with content compression
+     * enabled open them through this method.
+     *
+     * @param inputStream the stream to read.
+     *
+     * @return a stream of the inflated content.
+     *
+     * @throws IllegalArgumentException if the stream is null.
+     * @throws IOException              if the stream cannot be read or its compressed content is malformed.
+     */
+    public static InputStream openInflatingStream(InputStream inputStream) throws IOException
+    {
+        if (inputStream == null)
+        {
+            String message = Logging.getMessage("nullValue.InputStreamIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        InputStream is = inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream);
+
+        byte[] header = new byte[COMPRESSED_CONTENT_HEADER.length];
+        is.mark(header.length);
+        int length = 0;
+        for (int count = 0; count >= 0 && length < header.length; length += Math.max(count, 0))
+        {
+            count = is.read(header, length, header.length - length);
+        }
+        is.reset();
+
+        return isCompressedContent(ByteBuffer.wrap(header, 0, length)) ? new GZIPInputStream(is) : is;
+    }
+
     public static ByteBuffer readZipEntryToBuffer(File zipFile, String entryName) throws IOException
     {
         if (zipFile == null)
@@ -1215,7 +1375,15 @@ public class WWIO
             // Determine whether the file can be treated like a File, e.g., a jar entry.
             URI uri = url.toURI();
             if (uri.isOpaque())
-                return false; // TODO: Determine how to check the date of non-Files
+            {
+                // Jar entries are not checked. Other opaque URLs, such as those of packed tiles, report the date of
+                // their content through their connection.
+                if ("jar".equalsIgnoreCase(url.getProtocol()))
+                    return false;
+
+                long lastModified = url.openConnection().getLastModified();
+                return lastModified != 0 && lastModified < expiryTime;
+            }
 
             File file = new File(uri);
 
@@ -1226,6 +1394,11 @@ public class WWIO
             Logging.logger().log(Level.SEVERE, "WWIO.ExceptionValidatingFileExpiration", url);
             return false;
         }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.SEVERE, "WWIO.ExceptionValidatingFileExpiration", url);
+            return false;
+        }
     }
 
     public static Proxy configureProxy()
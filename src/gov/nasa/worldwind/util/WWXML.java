@@ -197,7 +197,7 @@ public class WWXML
 
         try
         {
-            InputStream inputStream = url.openStream();
+            InputStream inputStream = WWIO.openInflatingStream(url.openStream());
             return openDocumentStream(inputStream);
         }
         catch (IOException e)
@@ -439,7 +439,7 @@ public class WWXML
 
         try
         {
-            InputStream inputStream = url.openStream();
+            InputStream inputStream = WWIO.openInflatingStream(url.openStream());
             return openEventReaderStream(inputStream, isNamespaceAware);
         }
         catch (IOException e)
@@ -1249,4 +1249,49 @@ public class OrbitViewInputHandler extends BasicViewInputHandler
         long date = new Date().getTime();
         this.gotoAnimControl.put(VIEW_ANIM_APP+date, animator);
     }
+
+    /**
+     * Returns the center position the running animations are moving the view to, such as the end of a fly-to, a
+     * move-to or a smoothed pan.
+     *
+     * @return the center position at the end of the animations, or null if no running animation moves the center.
+     */
+    public Position getAnimationTargetCenterPosition()
+    {
+        Animator animator = this.gotoAnimControl.get(VIEW_ANIM_PAN);
+        if (animator instanceof FlyToOrbitViewAnimator && animator.hasNext())
+            return ((FlyToOrbitViewAnimator) animator).centerAnimator.getEnd();
+
+        Position position = this.getAnimatorEndPosition(this.gotoAnimControl.get(VIEW_ANIM_CENTER));
+        return position != null ? position : this.getAnimatorEndPosition(this.uiAnimControl.get(VIEW_ANIM_CENTER));
+    }
+
+    /**
+     * Returns the zoom the running animations are moving the view to, such as the end of a fly-to or a smoothed zoom.
+     *
+     * @return the zoom at the end of the animations, or null if no running animation changes the zoom.
+     */
+    public Double getAnimationTargetZoom()
+    {
+        Animator animator = this.gotoAnimControl.get(VIEW_ANIM_PAN);
+        if (animator instanceof FlyToOrbitViewAnimator && animator.hasNext())
+        {
+            ViewElevationAnimator zoomAnimator = ((FlyToOrbitViewAnimator) animator).zoomAnimator;
+            return zoomAnimator.getUseMidZoom() ? zoomAnimator.getTrueEndZoom() : zoomAnimator.getEnd();
+        }
+
+        Double zoom = this.getAnimatorEndZoom(this.gotoAnimControl.get(VIEW_ANIM_ZOOM));
+        return zoom != null ? zoom : this.getAnimatorEndZoom(this.uiAnimControl.get(VIEW_ANIM_ZOOM));
+    }
+
+    protected Position getAnimatorEndPosition(Animator animator)
+    {
+        return animator instanceof PositionAnimator && animator.hasNext() ? ((PositionAnimator) animator).getEnd()
+            : null;
+    }
+
+    protected Double getAnimatorEndZoom(Animator animator)
+    {
+        return animator instanceof DoubleAnimator && animator.hasNext() ? ((DoubleAnimator) animator).getEnd() : null;
+    }
 }
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ConcurrentMemoryCacheTest
+{
+    /** Tests that adds, lookups and removes behave as they do for BasicMemoryCache. */
+    @Test
+    public void testAddGetRemove()
+    {
+        ConcurrentMemoryCache cache = new ConcurrentMemoryCache(80, 100);
+
+        assertTrue(cache.add("a", "A", 10));
+        assertTrue(cache.add("b", "B", 20));
+        assertEquals("A", cache.getObject("a"));
+        assertTrue(cache.contains("b"));
+        assertEquals(2, cache.getNumObjects());
+        assertEquals(30, cache.getUsedCapacity());
+
+        // Replacing an entry must account for the old size only once.
+        assertTrue(cache.add("a", "A2", 15));
+        assertEquals("A2", cache.getObject("a"));
+        assertEquals(35, cache.getUsedCapacity());
+
+        cache.remove("b");
+        assertFalse(cache.contains("b"));
+        assertNull(cache.getObject("b"));
+        assertEquals(15, cache.getUsedCapacity());
+
+        cache.clear();
+        assertEquals(0, cache.getNumObjects());
+        assertEquals(0, cache.getUsedCapacity());
+        assertEquals(100, cache.getFreeCapacity());
+    }
+
+    /** Tests that items which are null, empty or larger than the cache are rejected. */
+    @Test
+    public void testRejectedItems()
+    {
+        ConcurrentMemoryCache cache = new ConcurrentMemoryCache(80, 100);
+
+        assertFalse(cache.add(null, "A", 10));
+        assertFalse(cache.add("a", null, 10));
+        assertFalse(cache.add("a", "A", 0));
+        assertFalse(cache.add("a", "A", 101));
+        assertEquals(0, cache.getNumObjects());
+    }
+
+    /** Tests that overflowing the cache evicts down to the low water level and keeps recently used entries. */
+    @Test
+    public void testEvictionToLowWater()
+    {
+        ConcurrentMemoryCache cache = new ConcurrentMemoryCache(50, 100, 1);
+
+        for (int i = 0; i < 10; i++)
+        {
+            cache.add(i, i, 10);
+        }
+        assertEquals(100, cache.getUsedCapacity());
+
+        // Reference the first entry so the clock hand passes over it.
+        cache.getObject(0);
+        cache.add(10, 10, 10);
+
+        assertTrue(cache.getUsedCapacity() <= 50);
+        assertTrue(cache.contains(0));
+        assertTrue(cache.contains(10));
+        assertFalse(cache.contains(1));
+    }
+
+    /** Tests that listeners are notified of every removal, whether explicit, by replacement or by eviction. */
+    @Test
+    public void testListenerNotification()
+    {
+        ConcurrentMemoryCache cache = new ConcurrentMemoryCache(50, 100);
+        final List<Object> removed = new ArrayList<Object>();
+        cache.addCacheListener(new MemoryCache.CacheListener()
+        {
+            public void entryRemoved(Object key, Object clientObject)
+            {
+                removed.add(key);
+            }
+
+            public void removalException(Throwable exception, Object key, Object clientObject)
+            {
+            }
+        });
+
+        for (int i = 0; i < 11; i++)
+        {
+            cache.add(i, i, 10);
+        }
+
+        int numEvicted = removed.size();
+        assertEquals(11 - numEvicted, cache.getNumObjects());
+        assertEquals(10 * cache.getNumObjects(), cache.getUsedCapacity());
+
+        cache.add(10, "replacement", 10);
+        assertEquals(numEvicted + 1, removed.size());
+
+        cache.clear();
+        assertEquals(11 + 1, removed.size());
+    }
+
+    /** Tests that an admission policy keeps a frequently used working set in the cache during a scan. */
+    @Test
+    public void testAdmissionPolicyResistsScan()
+    {
+        ConcurrentMemoryCache cache = new ScanResistantMemoryCache(80, 100);
+
+        // Use a working set of half the capacity for several frames.
+        for (int frame = 0; frame < 5; frame++)
+        {
+            for (int i = 0; i < 50; i++)
+            {
+                if (cache.getObject("hot" + i) == null)
+                    cache.add("hot" + i, i, 1);
+            }
+        }
+
+        // Keep using the working set while touching many more entries than the cache holds, once each.
+        for (int frame = 0; frame < 50; frame++)
+        {
+            for (int i = 0; i < 20; i++)
+            {
+                String key = "scan" + (20 * frame + i);
+                if (cache.getObject(key) == null)
+                    cache.add(key, i, 1);
+            }
+
+            for (int i = 0; i < 50; i++)
+            {
+                if (cache.getObject("hot" + i) == null)
+                    cache.add("hot" + i, i, 1);
+            }
+        }
+
+        assertTrue(cache.getUsedCapacity() <= cache.getCapacity());
+        for (int i = 0; i < 50; i++)
+        {
+            assertTrue("hot" + i, cache.contains("hot" + i));
+        }
+    }
+
+    /** Tests that the used capacity stays consistent with the entries when many threads modify the cache. */
+    @Test
+    public void testConcurrentAccounting() throws Exception
+    {
+        final ConcurrentMemoryCache cache = new ConcurrentMemoryCache(8000, 10000);
+        final AtomicLong removedSize = new AtomicLong();
+        cache.addCacheListener(new MemoryCache.CacheListener()
+        {
+            public void entryRemoved(Object key, Object clientObject)
+            {
+                removedSize.addAndGet((Integer) clientObject);
+            }
+
+            public void removalException(Throwable exception, Object key, Object clientObject)
+            {
+            }
+        });
+
+        final AtomicLong addedSize = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < 8; t++)
+        {
+            final int seed = t;
+            futures.add(executor.submit(new Runnable()
+            {
+                public void run()
+                {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 50000; i++)
+                    {
+                        int key = random.nextInt(2000);
+                        int size = 1 + random.nextInt(20);
+                        int op = random.nextInt(10);
+                        if (op < 6)
+                            cache.getObject(key);
+                        else if (op < 9 && cache.add(key, size, size))
+                            addedSize.addAndGet(size);
+                        else
+                            cache.remove(key);
+                    }
+                }
+            }));
+        }
+
+        for (Future<?> future : futures)
+        {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(addedSize.get() - removedSize.get(), cache.getUsedCapacity());
+        assertTrue(cache.getUsedCapacity() <= cache.getCapacity());
+    }
+}
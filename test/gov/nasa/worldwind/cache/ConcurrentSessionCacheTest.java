@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ConcurrentSessionCacheTest
+{
+    /** Tests that entries expire after their time to live. */
+    @Test
+    public void testExpiration() throws InterruptedException
+    {
+        ConcurrentSessionCache cache = new ConcurrentSessionCache(8, Long.MAX_VALUE, 0);
+        cache.put("short", "a", 0, 50);
+        cache.put("forever", "b");
+
+        assertEquals("a", cache.get("short"));
+        Thread.sleep(100);
+        assertNull(cache.get("short"));
+        assertFalse(cache.contains("short"));
+        assertEquals("b", cache.get("forever"));
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    /** Tests that the least recently used entries are evicted when the capacity or the maximum weight is exceeded. */
+    @Test
+    public void testBounds()
+    {
+        ConcurrentSessionCache cache = new ConcurrentSessionCache(3, 1000, 0);
+        cache.put("a", ByteBuffer.allocate(400));
+        cache.put("b", ByteBuffer.allocate(400));
+        cache.get("a");
+        cache.put("c", ByteBuffer.allocate(400));
+
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertEquals(800, cache.getWeight());
+
+        cache.put("d", "x");
+        cache.put("e", "y");
+        assertEquals(3, cache.getEntryCount());
+        assertFalse(cache.contains("a"));
+
+        cache.remove("c");
+        cache.clear();
+        assertEquals(0, cache.getWeight());
+    }
+
+    /** Tests that threads loading the same key at once share one load. */
+    @Test
+    public void testLoadCoalescing() throws Exception
+    {
+        final ConcurrentSessionCache cache = new ConcurrentSessionCache(8, Long.MAX_VALUE, 0);
+        final AtomicInteger loadCount = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final Callable<Object> loader = new Callable<Object>()
+        {
+            public Object call() throws Exception
+            {
+                loadCount.incrementAndGet();
+                started.countDown();
+                release.await();
+                return "capabilities";
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            Future<?>[] results = new Future<?>[4];
+            results[0] = executor.submit(new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    return cache.getOrLoad("url", loader);
+                }
+            });
+            started.await();
+
+            for (int i = 1; i < results.length; i++)
+            {
+                results[i] = executor.submit(new Callable<Object>()
+                {
+                    public Object call() throws Exception
+                    {
+                        return cache.getOrLoad("url", loader);
+                    }
+                });
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<?> result : results)
+            {
+                assertEquals("capabilities", result.get());
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        assertEquals(1, loadCount.get());
+        assertEquals("capabilities", cache.get("url"));
+        assertEquals("capabilities", cache.getOrLoad("url", loader));
+        assertEquals(1, loadCount.get());
+    }
+}
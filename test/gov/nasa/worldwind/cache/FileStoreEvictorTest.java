@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.WWIO;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class FileStoreEvictorTest
+{
+    protected File root;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.root = File.createTempFile("FileStoreEvictorTest", "");
+        assertTrue(this.root.delete());
+        assertTrue(this.root.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        WWIO.deleteDirectory(this.root);
+        this.root.delete();
+    }
+
+    /** Tests that the least recently used files are evicted, that recorded accesses count as use, and compaction. */
+    @Test
+    public void testEviction() throws IOException
+    {
+        long hourAgo = System.currentTimeMillis() - 3600000;
+        File oldest = writeFile("a/1/1/1_1.png", 400, hourAgo);
+        File older = writeFile("a/1/1/1_2.png", 400, hourAgo + 1000);
+        File accessed = writeFile("a/1/1/1_3.png", 400, hourAgo - 1000);
+        File recent = writeFile("b/2/2/2_2.png", 400, System.currentTimeMillis());
+        File emptyDir = new File(this.root, "c/3/3");
+        assertTrue(emptyDir.mkdirs());
+        assertTrue(emptyDir.setLastModified(hourAgo));
+        assertTrue(emptyDir.getParentFile().setLastModified(hourAgo));
+
+        FileStoreIndex index = new FileStoreIndex(this.root, new File(new File(this.root, ".index"), "test.idx"),
+            false);
+        index.rebuild();
+
+        FileStoreEvictor evictor = new FileStoreEvictor(this.root, 1000, 0.8, index);
+        evictor.recordAccess("a/1/1/1_3.png");
+        evictor.run();
+
+        assertFalse(oldest.exists());
+        assertFalse(older.exists());
+        assertTrue(accessed.exists());
+        assertTrue(recent.exists());
+        assertEquals(800, evictor.getLocationSize());
+        assertEquals(2, evictor.getEvictedCount());
+        assertFalse(index.contains("a/1/1/1_1.png"));
+        assertTrue(index.getEntry("a/1/1/1_3.png").getLastAccess() > hourAgo);
+        assertFalse(emptyDir.exists());
+        index.close();
+    }
+
+    /**
+     * Tests that only tiles and their sidecars are evicted, that sidecars are evicted with their tile, and that
+     * sidecars without a tile are evicted on their own.
+     */
+    @Test
+    public void testEvictsOnlyTiles() throws IOException
+    {
+        long hourAgo = System.currentTimeMillis() - 3600000;
+        File config = writeFile("a/a.xml", 1000, hourAgo - 10000);
+        File other = writeFile("a/data/readme.txt", 1000, hourAgo - 10000);
+        File tile = writeFile("a/1/1/1_1.png", 400, hourAgo);
+        File sidecar = writeFile("a/1/1/1_1.png.validators", 100, hourAgo + 5000);
+        File orphan = writeFile("a/1/1/1_2.png.validators", 100, hourAgo + 1000);
+        File kept = writeFile("a/1/1/1_3.png", 400, hourAgo + 2000);
+
+        FileStoreEvictor evictor = new FileStoreEvictor(this.root, 2500, 0.96, null);
+        evictor.run();
+
+        assertTrue(config.exists());
+        assertTrue(other.exists());
+        assertFalse(tile.exists());
+        assertFalse(sidecar.exists());
+        assertFalse(orphan.exists());
+        assertTrue(kept.exists());
+        assertEquals(2400, evictor.getLocationSize());
+    }
+
+    /** Tests that packed tiles are evicted, and that the pack files are then compacted. */
+    @Test
+    public void testPackEviction() throws IOException
+    {
+        TilePackStore packStore = new TilePackStore(new File(this.root, "packs"), TilePackStore.DEFAULT_MAX_PACK_SIZE);
+        long hourAgo = System.currentTimeMillis() - 3600000;
+        for (int i = 0; i < 10; i++)
+        {
+            ByteBuffer data = ByteBuffer.allocate(100);
+            data.put(0, (byte) i); // Tiles with identical contents would be stored once.
+            packStore.put("a/0/0/0_" + i + ".bil", data, hourAgo + i);
+        }
+
+        FileStoreEvictor evictor = new FileStoreEvictor(this.root, 500, 1, null);
+        evictor.setPackStore(packStore);
+        evictor.run();
+
+        assertEquals(5, packStore.getEntryCount());
+        assertFalse(packStore.contains("a/0/0/0_4.bil"));
+        assertTrue(packStore.contains("a/0/0/0_5.bil"));
+        assertEquals(0, packStore.getDeadBytes());
+        assertEquals(100, packStore.getBuffer("a/0/0/0_9.bil").remaining());
+        packStore.close();
+    }
+
+    /** Tests parsing of the maxSize attribute. */
+    @Test
+    public void testParseSize()
+    {
+        assertEquals(Long.valueOf(1500), AbstractFileStore.parseSize("1500"));
+        assertEquals(Long.valueOf(20L << 30), AbstractFileStore.parseSize("20G"));
+        assertEquals(Long.valueOf(512L << 20), AbstractFileStore.parseSize(" 0.5 g"));
+        assertNull(AbstractFileStore.parseSize("big"));
+    }
+
+    protected File writeFile(String path, int length, long lastModified) throws IOException
+    {
+        File file = new File(this.root, path);
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        WWIO.saveBuffer(ByteBuffer.allocate(length), file);
+        assertTrue(file.setLastModified(lastModified));
+
+        return file;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.WWIO;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class FileStoreIndexTest
+{
+    protected File location;
+    protected File indexFile;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.location = File.createTempFile("FileStoreIndexTest", "");
+        assertTrue(this.location.delete());
+        assertTrue(this.location.mkdirs());
+        this.indexFile = new File(new File(this.location, ".index"), "test.idx");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        WWIO.deleteDirectory(this.location);
+        this.location.delete();
+    }
+
+    /** Tests that entries are added, replaced, removed, and kept when the index grows and is reopened. */
+    @Test
+    public void testPutGetRemove()
+    {
+        FileStoreIndex index = new FileStoreIndex(this.location, this.indexFile, false);
+        assertTrue(index.needsRebuild());
+        assertFalse(index.isComplete());
+
+        index.put("a/b.png", 10, 20, "image/png", true);
+        index.put("a/b.png", 11, 21, "image/jpeg", false);
+        FileStoreIndex.Entry entry = index.getEntry("a/b.png");
+        assertEquals(10, entry.getSize());
+        assertEquals(20, entry.getExpiration());
+        assertEquals("image/png", entry.getContentType());
+
+        index.put("a/b.png", 11, 21, "image/jpeg", true);
+        assertEquals("image/jpeg", index.getEntry("a/b.png").getContentType());
+
+        // Add enough entries to grow the table several times.
+        for (int i = 0; i < 50000; i++)
+        {
+            index.put("tiles/" + i + ".dds", i, 0, "image/dds", true);
+        }
+        for (int i = 0; i < 50000; i += 2)
+        {
+            index.remove("tiles/" + i + ".dds");
+        }
+        assertEquals(25001, index.getCount());
+
+        index.rebuild(); // The location is empty, so this clears the index and marks it complete.
+        index.put("tiles/1.dds", 1, 5, "image/dds", true);
+        index.close();
+
+        index = new FileStoreIndex(this.location, this.indexFile, false);
+        assertFalse(index.needsRebuild());
+        assertTrue(index.isComplete());
+        assertTrue(index.contains("tiles/1.dds"));
+        assertFalse(index.contains("a/b.png"));
+        assertEquals(5, index.getEntry("tiles/1.dds").getExpiration());
+        assertEquals("image/dds", index.getEntry("tiles/1.dds").getContentType());
+        index.close();
+    }
+
+    /** Tests that a rebuild finds the location's files, and skips the directory holding the index. */
+    @Test
+    public void testRebuild() throws IOException, InterruptedException
+    {
+        writeFile(new File(this.location, "host/1234/a.png"), 100);
+        writeFile(new File(this.location, "b.xml"), 7);
+
+        FileStoreIndex index = new FileStoreIndex(this.location, this.indexFile, true);
+        index.startRebuild();
+        while (index.isRebuilding())
+        {
+            Thread.sleep(10);
+        }
+
+        assertTrue(index.isComplete());
+        assertEquals(2, index.getCount());
+        assertEquals(100, index.getEntry("host/1234/a.png").getSize());
+        assertEquals("image/png", index.getEntry("host/1234/a.png").getContentType());
+        assertTrue(index.contains("b.xml"));
+        assertFalse(index.contains(".index/test.idx"));
+        index.close();
+    }
+
+    /**
+     * Tests that an index opened with validation is not relied on until its directories are checked, and that a file
+     * added to a nested directory is found by that check.
+     */
+    @Test
+    public void testValidateNestedDirectory() throws IOException
+    {
+        File dir = new File(this.location, "host/1234");
+        writeFile(new File(dir, "a.png"), 100);
+
+        FileStoreIndex index = new FileStoreIndex(this.location, this.indexFile, true);
+        index.rebuild();
+        index.close();
+
+        // Reopening without changes needs only validation.
+        index = new FileStoreIndex(this.location, this.indexFile, true);
+        assertFalse(index.needsRebuild());
+        assertTrue(index.needsValidation());
+        assertFalse(index.isComplete());
+        index.validate();
+        assertTrue(index.isComplete());
+        index.close();
+
+        // Adding a file to the nested directory leaves the location's own modification time unchanged.
+        long locationModified = this.location.lastModified();
+        writeFile(new File(dir, "b.png"), 50);
+        assertTrue(dir.setLastModified(dir.lastModified() + 2000));
+        assertTrue(this.location.setLastModified(locationModified));
+
+        index = new FileStoreIndex(this.location, this.indexFile, true);
+        assertFalse(index.needsRebuild());
+        assertFalse(index.isComplete());
+        index.validate();
+        assertTrue(index.isComplete());
+        assertEquals(50, index.getEntry("host/1234/b.png").getSize());
+        index.close();
+    }
+
+    /** Tests that a rebuild keeps the expiration and last use times of files still present, and drops the rest. */
+    @Test
+    public void testRebuildKeepsExpirations() throws IOException
+    {
+        writeFile(new File(this.location, "host/a.png"), 100);
+
+        FileStoreIndex index = new FileStoreIndex(this.location, this.indexFile, false);
+        index.put("host/a.png", 100, 1234, "image/png", true);
+        index.setLastAccess("host/a.png", 5678);
+        index.put("host/gone.png", 10, 99, "image/png", true);
+
+        index.rebuild();
+        assertEquals(1, index.getCount());
+        assertEquals(1234, index.getEntry("host/a.png").getExpiration());
+        assertEquals(5678, index.getEntry("host/a.png").getLastAccess());
+        assertFalse(index.contains("host/gone.png"));
+        index.close();
+    }
+
+    protected static void writeFile(File file, int length) throws IOException
+    {
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(new byte[length]);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
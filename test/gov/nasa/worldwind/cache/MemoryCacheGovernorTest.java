@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class MemoryCacheGovernorTest
+{
+    protected BasicMemoryCacheSet cacheSet;
+    protected MemoryCache busyCache;
+    protected MemoryCache idleCache;
+    protected MemoryCacheGovernor governor;
+
+    @Before
+    public void setUp()
+    {
+        this.cacheSet = new BasicMemoryCacheSet();
+        this.busyCache = this.cacheSet.addCache("busy", new BasicMemoryCache(850, 1000));
+        this.busyCache.setName("Busy");
+        this.idleCache = this.cacheSet.addCache("idle", new BasicMemoryCache(850, 1000));
+        this.idleCache.setName("Idle");
+        this.governor = new MemoryCacheGovernor(this.cacheSet, 2000, 0);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.governor.dispose();
+    }
+
+    /** Tests that capacity moves from an idle cache to a full cache that misses, within the budget. */
+    @Test
+    public void testCapacityMovesToBusyCache()
+    {
+        this.idleCache.add("idle", "idle", 100);
+
+        for (int run = 0; run < 10; run++)
+        {
+            this.missAndFill(this.busyCache, run);
+            this.governor.rebalance();
+
+            if (run == 1)
+                assertTrue(this.governor.getLastDecision().contains("Busy +"));
+        }
+
+        assertTrue(this.busyCache.getCapacity() > 1000);
+        assertTrue(this.idleCache.getCapacity() < 1000);
+        assertTrue(this.idleCache.getCapacity() >= 250);
+        assertTrue(this.busyCache.getCapacity() + this.idleCache.getCapacity() <= 2000);
+        assertTrue(this.busyCache.getLowWater() < this.busyCache.getCapacity());
+    }
+
+    /** Tests that heap pressure reduces the caches to the reduced budget, evicting entries as needed. */
+    @Test
+    public void testHeapPressureShrinksCaches()
+    {
+        this.missAndFill(this.busyCache, 0);
+        this.missAndFill(this.idleCache, 0);
+
+        this.governor.setHeapPressure(true);
+        this.governor.rebalance();
+
+        assertEquals(1000, this.governor.getEffectiveBudget());
+        assertTrue(this.busyCache.getCapacity() + this.idleCache.getCapacity() <= 1000);
+        assertTrue(this.busyCache.getUsedCapacity() <= this.busyCache.getCapacity());
+        assertTrue(this.idleCache.getUsedCapacity() <= this.idleCache.getCapacity());
+        assertFalse(this.governor.getPerformanceStatistics().isEmpty());
+    }
+
+    /** Adds entries to fill a cache, each after a lookup that misses. */
+    protected void missAndFill(MemoryCache cache, int run)
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            String key = run + "/" + i;
+            if (cache.getObject(key) == null)
+                cache.add(key, key, 20);
+        }
+    }
+}
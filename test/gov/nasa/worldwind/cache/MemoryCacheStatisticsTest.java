@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class MemoryCacheStatisticsTest
+{
+    /** Tests that lookups are counted and that one lookup in each sample interval is timed. */
+    @Test
+    public void testLookupSampling()
+    {
+        MemoryCacheStatistics statistics = new MemoryCacheStatistics();
+        statistics.setLatencySampleInterval(4);
+
+        int timed = 0;
+        for (int i = 0; i < 20; i++)
+        {
+            long start = statistics.startLookup();
+            if (start != MemoryCacheStatistics.UNTIMED)
+                timed++;
+            statistics.endLookup(i % 5 != 0, start);
+        }
+
+        assertEquals(5, timed);
+        assertEquals(5, statistics.getLookupLatency().getCount());
+        assertEquals(16, statistics.getHitCount());
+        assertEquals(4, statistics.getMissCount());
+        assertEquals(0.8, statistics.getHitRatio(), 1e-9);
+
+        statistics.setLatencySampleInterval(0);
+        statistics.endLookup(true, statistics.startLookup());
+        assertEquals(5, statistics.getLookupLatency().getCount());
+        assertEquals(17, statistics.getHitCount());
+    }
+
+    /** Tests that combined statistics sum the counts of their parts. */
+    @Test
+    public void testAdd()
+    {
+        MemoryCacheStatistics a = new MemoryCacheStatistics();
+        a.recordLookup(true, 100);
+        a.recordAdd();
+        a.recordEviction(30);
+
+        MemoryCacheStatistics b = new MemoryCacheStatistics();
+        b.recordLookup(false, 200);
+        b.recordEviction(12);
+
+        MemoryCacheStatistics sum = new MemoryCacheStatistics().add(a).add(b);
+        assertEquals(1, sum.getHitCount());
+        assertEquals(1, sum.getMissCount());
+        assertEquals(1, sum.getAddCount());
+        assertEquals(2, sum.getEvictionCount());
+        assertEquals(42, sum.getEvictedBytes());
+        assertEquals(2, sum.getLookupLatency().getCount());
+        assertEquals(150, sum.getLookupLatency().getMean(), 1e-9);
+    }
+
+    /** Tests that the caches count their hits, misses, adds and evictions, and time a sample of their lookups. */
+    @Test
+    public void testCacheAccounting()
+    {
+        this.assertAccounting(new BasicMemoryCache(60, 100));
+        this.assertAccounting(new ConcurrentMemoryCache(60, 100, 1));
+    }
+
+    /** Tests that a cache's monitor reports its statistics through the platform MBean server. */
+    @Test
+    public void testMonitor() throws Exception
+    {
+        MemoryCache cache = new BasicMemoryCache(60, 100);
+        cache.setName("Monitored");
+        cache.add("a", "A", 10);
+        cache.getObject("a");
+        cache.getObject("b");
+
+        MemoryCacheMonitor.register("MemoryCacheStatisticsTest", cache);
+        ObjectName name = MemoryCacheMonitor.createObjectName("MemoryCacheStatisticsTest");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try
+        {
+            assertEquals("Monitored", server.getAttribute(name, "Name"));
+            assertEquals(1L, server.getAttribute(name, "HitCount"));
+            assertEquals(1L, server.getAttribute(name, "MissCount"));
+            assertEquals(0.5, (Double) server.getAttribute(name, "HitRatio"), 1e-9);
+            assertEquals(10L, server.getAttribute(name, "UsedCapacity"));
+        }
+        finally
+        {
+            server.unregisterMBean(name);
+        }
+    }
+
+    protected void assertAccounting(MemoryCache cache)
+    {
+        for (int i = 0; i < 6; i++)
+        {
+            cache.add(i, "object " + i, 20);
+        }
+        // The sixth add exceeds the capacity and evicts down to the low water mark.
+        assertTrue(cache.getStatistics().getEvictionCount() > 0);
+        assertEquals(20 * cache.getStatistics().getEvictionCount(), cache.getStatistics().getEvictedBytes());
+
+        for (int i = 0; i < 32; i++)
+        {
+            cache.getObject(5);
+        }
+        cache.getObject("missing");
+
+        MemoryCacheStatistics statistics = cache.getStatistics();
+        assertEquals(cache.getClass().getName(), 32, statistics.getHitCount());
+        assertEquals(1, statistics.getMissCount());
+        assertEquals(6, statistics.getAddCount());
+        assertEquals(3, statistics.getLookupLatency().getCount()); // the 1st, 17th and 33rd lookups
+        assertEquals(statistics.getHitCount(), cache.getHitCount());
+        assertEquals(statistics.getMissCount(), cache.getMissCount());
+    }
+}
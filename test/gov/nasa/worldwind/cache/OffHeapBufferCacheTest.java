@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class OffHeapBufferCacheTest
+{
+    /** Tests that data spanning several blocks and buffers is returned intact with its attachment and timestamp. */
+    @Test
+    public void testPutGet()
+    {
+        OffHeapBufferCache cache = new OffHeapBufferCache(64 * 1024, 1024, null);
+
+        ByteBuffer first = createBuffer(1500, 0);
+        ByteBuffer second = createBuffer(700, 1500);
+        assertTrue(cache.put("a", "attachment", 42L, first, second));
+        assertEquals(0, first.position());
+        assertEquals(3 * 1024, cache.getUsedCapacity());
+
+        OffHeapBufferCache.Payload payload = cache.get("a");
+        assertNotNull(payload);
+        assertEquals("attachment", payload.getAttachment());
+        assertEquals(42L, payload.getTimestamp());
+        assertBufferEquals(createBuffer(2200, 0), payload.getBuffer());
+
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        cache.remove("a");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getUsedCapacity());
+    }
+
+    /** Tests that an entry is replaced only by data with a newer timestamp. */
+    @Test
+    public void testReplace()
+    {
+        OffHeapBufferCache cache = new OffHeapBufferCache(64 * 1024, 1024, null);
+
+        cache.put("a", null, 10L, createBuffer(100, 0));
+        cache.put("a", null, 10L, createBuffer(100, 7));
+        assertBufferEquals(createBuffer(100, 0), cache.get("a").getBuffer());
+
+        cache.put("a", null, 11L, createBuffer(2000, 7));
+        assertBufferEquals(createBuffer(2000, 7), cache.get("a").getBuffer());
+        assertEquals(1, cache.getNumEntries());
+        assertEquals(2 * 1024, cache.getUsedCapacity());
+    }
+
+    /** Tests that the least recently used entries are evicted when the cache is full. */
+    @Test
+    public void testEviction()
+    {
+        OffHeapBufferCache cache = new OffHeapBufferCache(4 * 1024, 1024, null);
+
+        for (int i = 0; i < 4; i++)
+        {
+            assertTrue(cache.put(i, null, 0L, createBuffer(1024, i)));
+        }
+
+        cache.get(0);
+        assertTrue(cache.put(4, null, 0L, createBuffer(2048, 4)));
+
+        assertTrue(cache.contains(0));
+        assertFalse(cache.contains(1));
+        assertFalse(cache.contains(2));
+        assertTrue(cache.contains(3));
+        assertBufferEquals(createBuffer(2048, 4), cache.get(4).getBuffer());
+        assertEquals(2, cache.getEvictionCount());
+
+        assertFalse(cache.put(5, null, 0L, createBuffer(5000, 0)));
+
+        cache.clear();
+        assertEquals(0, cache.getNumEntries());
+        assertEquals(0, cache.getUsedCapacity());
+    }
+
+    /** Tests that data is copied into a supplied destination, or into a direct buffer if the destination is too small. */
+    @Test
+    public void testGetIntoDestination()
+    {
+        OffHeapBufferCache cache = new OffHeapBufferCache(64 * 1024, 1024, null);
+        cache.put("a", "attachment", 42L, createBuffer(2200, 5));
+        assertEquals(2200, cache.getLength("a"));
+        assertEquals(-1, cache.getLength("b"));
+
+        ByteBuffer destination = ByteBuffer.allocateDirect(3000);
+        destination.position(100);
+        OffHeapBufferCache.Payload payload = cache.get("a", destination);
+        assertEquals(100, destination.position());
+        assertEquals("attachment", payload.getAttachment());
+        assertBufferEquals(createBuffer(2200, 5), payload.getBuffer());
+        destination.limit(2300);
+        assertBufferEquals(createBuffer(2200, 5), destination);
+
+        payload = cache.get("a", ByteBuffer.allocate(10));
+        assertTrue(payload.getBuffer().isDirect());
+        assertBufferEquals(createBuffer(2200, 5), payload.getBuffer());
+
+        assertTrue(cache.get("a", null).getBuffer().isDirect());
+        assertFalse(cache.get("a").getBuffer().isDirect());
+        assertNull(cache.get("b", destination));
+    }
+
+    /** Tests that a cache mapped to a file behaves as one held in direct memory. */
+    @Test
+    public void testMappedFile() throws Exception
+    {
+        File file = File.createTempFile("OffHeapBufferCacheTest", ".arena");
+        file.deleteOnExit();
+
+        OffHeapBufferCache cache = new OffHeapBufferCache(16 * 1024, 1024, file);
+        assertEquals(16 * 1024, file.length());
+
+        cache.put("a", null, 0L, createBuffer(5000, 3));
+        assertBufferEquals(createBuffer(5000, 3), cache.get("a").getBuffer());
+    }
+
+    protected static ByteBuffer createBuffer(int length, int seed)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (int i = 0; i < length; i++)
+        {
+            buffer.put((byte) (31 * (i + seed)));
+        }
+        buffer.flip();
+
+        return buffer;
+    }
+
+    protected static void assertBufferEquals(ByteBuffer expected, ByteBuffer actual)
+    {
+        assertEquals(expected.remaining(), actual.remaining());
+        assertTrue(expected.equals(actual));
+    }
+}
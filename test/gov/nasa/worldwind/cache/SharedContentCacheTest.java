@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class SharedContentCacheTest
+{
+    /** Tests that keys are equal only for equal bytes decoded the same way. */
+    @Test
+    public void testContentKeys()
+    {
+        ByteBuffer ocean = ByteBuffer.allocate(1024);
+        ByteBuffer land = ByteBuffer.allocate(1024);
+        land.put(512, (byte) 1);
+
+        assertEquals(SharedContentCache.keyFor(ocean, "int16"), SharedContentCache.keyFor(ByteBuffer.allocate(1024),
+            "int16"));
+        assertFalse(SharedContentCache.keyFor(ocean, "int16").equals(SharedContentCache.keyFor(land, "int16")));
+        assertFalse(SharedContentCache.keyFor(ocean, "int16").equals(SharedContentCache.keyFor(ocean, "float32")));
+        assertEquals(0, ocean.position());
+    }
+
+    /** Tests that the first value put for a key is shared, and that values are released once no longer held. */
+    @Test
+    public void testSharing() throws InterruptedException
+    {
+        SharedContentCache cache = new SharedContentCache();
+        SharedContentCache.ContentKey key = SharedContentCache.keyFor(ByteBuffer.allocate(16), null);
+
+        assertNull(cache.get(key));
+        Object first = new Object();
+        assertSame(first, cache.put(key, first));
+        assertSame(first, cache.put(key, new Object()));
+        assertSame(first, cache.get(key));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        //noinspection UnusedAssignment
+        first = null;
+        for (int i = 0; i < 50 && cache.getSize() > 0; i++)
+        {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(0, cache.getSize());
+        assertNull(cache.get(key));
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.WWIO;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class TilePackStoreTest
+{
+    protected File root;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.root = File.createTempFile("TilePackStoreTest", "");
+        assertTrue(this.root.delete());
+        assertTrue(this.root.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        WWIO.deleteDirectory(this.root);
+        this.root.delete();
+    }
+
+    /** Tests that files are stored, replaced and removed, that packs roll over, and that the store can be reopened. */
+    @Test
+    public void testPutGetRemove() throws IOException
+    {
+        File dir = new File(this.root, "packs");
+        TilePackStore store = new TilePackStore(dir, 1000);
+
+        store.put("a/0/0/0_0.dds", createBuffer(600, 1), 11);
+        store.put("a/0/0/0_1.dds", createBuffer(600, 2), 12);
+        store.put("a/0/0/0_0.dds", createBuffer(300, 3), 13);
+        store.put("a/0/0/0_2.dds", createBuffer(10, 4), 14);
+        store.remove("a/0/0/0_2.dds");
+
+        assertEquals(3, dir.listFiles().length);
+        assertEquals(createBuffer(300, 3), store.getBuffer("a/0/0/0_0.dds"));
+        assertTrue(store.getBuffer("a/0/0/0_0.dds").isReadOnly());
+        assertEquals(12, store.getLastModified("a/0/0/0_1.dds"));
+        assertFalse(store.contains("a/0/0/0_2.dds"));
+        assertEquals(900, store.getLiveBytes());
+        assertEquals(610, store.getDeadBytes());
+        store.close();
+
+        // Append a partial record, as if the application stopped while writing it.
+        File lastPack = new File(dir, "pack-00002.wwp");
+        long packLength = lastPack.length();
+        FileOutputStream out = new FileOutputStream(lastPack, true);
+        out.write(new byte[] {0x57, 0x57, 0x54});
+        out.close();
+
+        store = new TilePackStore(dir, 1000);
+        assertEquals(packLength, lastPack.length());
+        assertEquals(2, store.getEntryCount());
+        assertEquals(createBuffer(600, 2), store.getBuffer("a/0/0/0_1.dds"));
+        assertEquals(createBuffer(300, 3), store.getBuffer("a/0/0/0_0.dds"));
+        assertNull(store.getBuffer("a/0/0/0_2.dds"));
+        store.close();
+    }
+
+    /** Tests that files with identical contents share them, in the store and after reopening and compacting it. */
+    @Test
+    public void testSharedContents() throws IOException
+    {
+        File dir = new File(this.root, "packs");
+        TilePackStore store = new TilePackStore(dir, TilePackStore.DEFAULT_MAX_PACK_SIZE);
+
+        store.put("a/0/0/0_0.bil", createBuffer(500, 1), 11);
+        store.put("a/0/0/0_1.bil", createBuffer(500, 1), 12);
+        store.put("a/0/0/0_2.bil", createBuffer(500, 1), 13);
+        store.put("a/0/0/0_3.bil", createBuffer(500, 2), 14);
+        assertEquals(2, store.getDuplicateCount());
+        assertEquals(1000, store.getLiveBytes());
+        assertEquals(500 / 3, store.getStoredSize("a/0/0/0_1.bil"));
+
+        // Removing the file that first stored the shared contents leaves them in place for the others.
+        store.remove("a/0/0/0_0.bil");
+        store.remove("a/0/0/0_3.bil");
+        assertEquals(createBuffer(500, 1), store.getBuffer("a/0/0/0_2.bil"));
+        assertEquals(500, store.getLiveBytes());
+        assertEquals(500, store.getDeadBytes());
+        store.close();
+
+        store = new TilePackStore(dir, TilePackStore.DEFAULT_MAX_PACK_SIZE);
+        assertEquals(2, store.getEntryCount());
+        assertEquals(1, store.getDuplicateCount());
+        assertEquals(500, store.getDeadBytes());
+        assertEquals(13, store.getLastModified("a/0/0/0_2.bil"));
+
+        store.compact();
+        assertEquals(0, store.getDeadBytes());
+        assertEquals(500, store.getLiveBytes());
+        assertEquals(1, store.getDuplicateCount());
+        assertEquals(createBuffer(500, 1), store.getBuffer("a/0/0/0_1.bil"));
+        store.close();
+    }
+
+    /**
+     * Tests that a compaction interrupted after its new packs are committed is finished when the store is opened, and
+     * one interrupted before is discarded. A store whose new packs cannot replace its old ones refuses writes, and one
+     * whose replacement fails only once finishes it at once.
+     */
+    @Test
+    public void testInterruptedCompaction() throws IOException
+    {
+        File dir = new File(this.root, "packs");
+        TilePackStore store = new TilePackStore(dir, 1000);
+        for (int i = 0; i < 5; i++)
+        {
+            store.put("a/0/0/0_" + i + ".dds", createBuffer(400, i), i);
+        }
+        store.remove("a/0/0/0_1.dds");
+        store.remove("a/0/0/0_3.dds");
+        store.close();
+        assertEquals(3, dir.listFiles().length);
+
+        // A compaction directory without a commit is discarded.
+        File compactDir = new File(dir, TilePackStore.COMPACT_DIRECTORY);
+        assertTrue(compactDir.mkdirs());
+        writeFile(new File(compactDir, "pack-00000.wwp"), createBuffer(100, 9));
+        store = new TilePackStore(dir, 1000);
+        assertFalse(compactDir.exists());
+        assertEquals(3, store.getEntryCount());
+        store.close();
+
+        // Stop the compaction after it has moved one new pack into place.
+        store = new InterruptedTilePackStore(dir, 1000, 2);
+        try
+        {
+            store.compact();
+            fail("Compaction was not interrupted");
+        }
+        catch (IOException e)
+        {
+            assertTrue(new File(compactDir, TilePackStore.COMPACT_COMMIT_FILE).exists());
+        }
+        assertEquals(0, store.getEntryCount());
+        try
+        {
+            store.put("a/0/0/0_5.dds", createBuffer(400, 5), 5);
+            fail("Store was written after a failed compaction");
+        }
+        catch (IOException e)
+        {
+            assertEquals(0, store.getEntryCount());
+        }
+
+        store = new TilePackStore(dir, 1000);
+        assertFalse(compactDir.exists());
+        assertEquals(2, dir.listFiles().length);
+        assertEquals(3, store.getEntryCount());
+        assertEquals(0, store.getDeadBytes());
+        for (int i = 0; i < 5; i += 2)
+        {
+            assertEquals(createBuffer(400, i), store.getBuffer("a/0/0/0_" + i + ".dds"));
+        }
+        store.remove("a/0/0/0_2.dds");
+        store.close();
+
+        store = new InterruptedTilePackStore(dir, 1000, 1);
+        store.compact();
+        assertFalse(compactDir.exists());
+        assertEquals(2, store.getEntryCount());
+        assertEquals(0, store.getDeadBytes());
+        assertEquals(createBuffer(400, 0), store.getBuffer("a/0/0/0_0.dds"));
+        assertEquals(createBuffer(400, 4), store.getBuffer("a/0/0/0_4.dds"));
+        store.close();
+    }
+
+    /**
+     * Tests that the room to grow given to a pack's mapping is removed when the store is closed, and is discarded
+     * without losing records when the store wasn't closed.
+     */
+    @Test
+    public void testMappingHeadroom() throws IOException
+    {
+        File dir = new File(this.root, "packs");
+        TilePackStore store = new TilePackStore(dir, TilePackStore.DEFAULT_MAX_PACK_SIZE);
+        for (int i = 0; i < 10; i++)
+        {
+            store.put("a/0/0/0_" + i + ".dds", createBuffer(100, i), i);
+            assertEquals(createBuffer(100, i), store.getBuffer("a/0/0/0_" + i + ".dds"));
+        }
+
+        File pack = new File(dir, "pack-00000.wwp");
+        long recordsLength = store.packs.get(0).size;
+        assertTrue(pack.length() > recordsLength);
+        store.close();
+        assertEquals(recordsLength, pack.length());
+
+        // Leave zeros at the end of the pack, as a store that wasn't closed does.
+        RandomAccessFile raf = new RandomAccessFile(pack, "rw");
+        raf.setLength(recordsLength + 4096);
+        raf.close();
+
+        store = new TilePackStore(dir, TilePackStore.DEFAULT_MAX_PACK_SIZE);
+        assertEquals(recordsLength, pack.length());
+        assertEquals(10, store.getEntryCount());
+        assertEquals(createBuffer(100, 9), store.getBuffer("a/0/0/0_9.dds"));
+        store.close();
+    }
+
+    /** Tests that tile files are moved from a directory layout into the store, and other files are left alone. */
+    @Test
+    public void testPackDirectory() throws IOException
+    {
+        File tile = writeFile(new File(this.root, "Earth/Layer/3/10/10_20.png"), createBuffer(50, 5));
+        File config = writeFile(new File(this.root, "Earth/Layer/Layer.xml"), createBuffer(5, 0));
+
+        TilePackStore store = new TilePackStore(new File(this.root, "packs"), TilePackStore.DEFAULT_MAX_PACK_SIZE);
+        assertEquals(1, store.packDirectory(this.root, TilePackStore.TILE_PATH_PATTERN, 0));
+        assertFalse(tile.exists());
+        assertTrue(config.exists());
+        assertEquals(createBuffer(50, 5), store.getBuffer("Earth/Layer/3/10/10_20.png"));
+        store.close();
+    }
+
+    /** Tests that a pack file store finds packed tiles, serves them through URLs, and removes them. */
+    @Test
+    public void testPackFileStore() throws IOException
+    {
+        writeFile(new File(this.root, "Earth/Layer/0/0/0_0.bil"), createBuffer(64, 7));
+
+        PackFileStore fileStore = new PackFileStore(this.root);
+        try
+        {
+            assertEquals(0, fileStore.migrate()); // The file is too recent.
+            assertEquals(1, fileStore.getPackStore().packDirectory(this.root, TilePackStore.TILE_PATH_PATTERN, 0));
+
+            URL url = fileStore.findFile("Earth/Layer/0/0/0_0.bil", false);
+            assertEquals(PackFileStore.PROTOCOL, url.getProtocol());
+            assertTrue(fileStore.containsFile("Earth/Layer/0/0/0_0.bil"));
+            assertEquals(createBuffer(64, 7), WWIO.readURLContentToBuffer(url));
+            assertEquals(createBuffer(64, 7), PackFileStore.getPackedBuffer(url));
+            assertTrue(WWIO.isFileOutOfDate(url, System.currentTimeMillis() + 1000));
+
+            fileStore.removeFile(url);
+            assertNull(fileStore.findFile("Earth/Layer/0/0/0_0.bil", false));
+        }
+        finally
+        {
+            fileStore.getPackStore().close();
+        }
+    }
+
+    protected static ByteBuffer createBuffer(int length, int seed)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (int i = 0; i < length; i++)
+        {
+            buffer.put((byte) (31 * (i + seed)));
+        }
+        buffer.flip();
+
+        return buffer;
+    }
+
+    protected static File writeFile(File file, ByteBuffer buffer) throws IOException
+    {
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        WWIO.saveBuffer(buffer, file);
+        assertTrue(file.setLastModified(System.currentTimeMillis() - 1000));
+
+        return file;
+    }
+
+    /** A store whose compaction stops with an exception after moving its first new pack into place. */
+    /** Fails to finish its compactions a number of times. The first failure happens after one pack is moved. */
+    protected static class InterruptedTilePackStore extends TilePackStore
+    {
+        protected int failures;
+        protected boolean interrupted;
+
+        public InterruptedTilePackStore(File directory, long maxPackSize, int failures)
+        {
+            super(directory, maxPackSize);
+            this.failures = failures;
+        }
+
+        @Override
+        protected void finishCompaction(File compactDir, int numPacks) throws IOException
+        {
+            if (this.failures-- <= 0)
+            {
+                super.finishCompaction(compactDir, numPacks);
+                return;
+            }
+
+            if (!this.interrupted)
+            {
+                this.interrupted = true;
+                File target = new File(this.directory, packName(0));
+                assertTrue(target.delete());
+                assertTrue(new File(compactDir, packName(0)).renameTo(target));
+            }
+            throw new IOException("Interrupted");
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.retrieve;
+
+import com.sun.net.httpserver.*;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class AsyncRetrievalServiceTest
+{
+    protected static final long LATENCY = 300; // milliseconds
+    protected static final String COMPRESSIBLE_CONTENT = new String(new char[4096]).replace('\0', 'a');
+    protected static final AtomicInteger compressedResponses = new AtomicInteger();
+
+    protected HttpServer server;
+    protected ScheduledExecutorService responder;
+    protected String base;
+    protected AsyncRetrievalService service;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        // Responses are sent after a delay without holding a server thread, as a high-latency link would deliver them.
+        this.responder = Executors.newScheduledThreadPool(2);
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1000);
+        this.server.createContext("/", new HttpHandler()
+        {
+            public void handle(final HttpExchange exchange) throws IOException
+            {
+                responder.schedule(new Callable<Void>()
+                {
+                    public Void call() throws Exception
+                    {
+                        respond(exchange);
+                        return null;
+                    }
+                }, LATENCY, TimeUnit.MILLISECONDS);
+            }
+        });
+        this.server.start();
+        this.base = "http://localhost:" + this.server.getAddress().getPort();
+
+        this.service = new AsyncRetrievalService();
+        this.service.setRetrieverPoolSize(2);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.service.shutdown(true);
+        this.server.stop(0);
+        this.responder.shutdownNow();
+    }
+
+    protected static void respond(HttpExchange exchange) throws IOException
+    {
+        String path = exchange.getRequestURI().getPath();
+        if (path.startsWith("/moved"))
+        {
+            exchange.getResponseHeaders().add("Location", "/tile/moved");
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_MOVED_TEMP, -1);
+        }
+        else if (path.startsWith("/compressed"))
+        {
+            // The body is compressed only if the client accepts gzip.
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (accepted != null && accepted.contains("gzip"))
+            {
+                compressedResponses.incrementAndGet();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                GZIPOutputStream gzip = new GZIPOutputStream(body);
+                gzip.write(COMPRESSIBLE_CONTENT.getBytes("UTF-8"));
+                gzip.close();
+            }
+            else
+            {
+                body.write(COMPRESSIBLE_CONTENT.getBytes("UTF-8"));
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.size());
+            exchange.getResponseBody().write(body.toByteArray());
+        }
+        else if (path.startsWith("/large"))
+        {
+            byte[] body = new byte[100000];
+            exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+            exchange.getResponseBody().write(body);
+        }
+        else if (path.startsWith("/tile"))
+        {
+            byte[] body = path.getBytes("UTF-8");
+            exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+            exchange.getResponseBody().write(body);
+        }
+        else
+        {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+        }
+        exchange.close();
+    }
+
+    /** Tests that many retrievals wait on the network at once, far more than there are threads. */
+    @Test
+    public void testConcurrentRetrievals() throws Exception
+    {
+        int count = 200;
+        List<RetrievalFuture> futures = new ArrayList<RetrievalFuture>();
+        List<ContentPostProcessor> postProcessors = new ArrayList<ContentPostProcessor>();
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < count; i++)
+        {
+            ContentPostProcessor pp = new ContentPostProcessor();
+            postProcessors.add(pp);
+            futures.add(this.service.runRetriever(new HTTPRetriever(new URL(this.base + "/tile/" + i), pp), i + 1));
+        }
+        for (RetrievalFuture future : futures)
+        {
+            assertEquals(Retriever.RETRIEVER_STATE_SUCCESSFUL, future.get(20, TimeUnit.SECONDS).getState());
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        for (int i = 0; i < count; i++)
+        {
+            assertEquals("/tile/" + i, postProcessors.get(i).content);
+        }
+
+        // Two threads retrieving one tile at a time would need count / 2 * LATENCY.
+        assertTrue("elapsed " + elapsed, elapsed < count / 4 * LATENCY);
+
+        // Finished retrievals leave the index just after their futures complete.
+        for (int i = 0; i < 100 && this.service.getNumRetrieversPending() > 0; i++)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(0, this.service.getNumRetrieversPending());
+    }
+
+    /** Tests that redirects are followed, and that errors reach the retriever as they do from a blocking connection. */
+    @Test
+    public void testResponses() throws Exception
+    {
+        ContentPostProcessor pp = new ContentPostProcessor();
+        HTTPRetriever moved = new HTTPRetriever(new URL(this.base + "/moved"), pp);
+        this.service.runRetriever(moved, 1).get(10, TimeUnit.SECONDS);
+        assertEquals(HttpURLConnection.HTTP_OK, moved.getResponseCode());
+        assertEquals("/tile/moved", pp.content);
+
+        HTTPRetriever missing = new HTTPRetriever(new URL(this.base + "/missing"), null);
+        this.service.runRetriever(missing, 1).get(10, TimeUnit.SECONDS);
+        assertEquals(HttpURLConnection.HTTP_NOT_FOUND, missing.getResponseCode());
+        assertNull(missing.getBuffer());
+
+        // Find a port nothing listens on.
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+
+        HTTPRetriever refused = new HTTPRetriever(new URL("http://localhost:" + port + "/tile/0"), null);
+        try
+        {
+            this.service.runRetriever(refused, 1).get(10, TimeUnit.SECONDS);
+            fail("Expected the connection to be refused");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof ConnectException);
+            assertEquals(Retriever.RETRIEVER_STATE_ERROR, refused.getState());
+        }
+    }
+
+    /** Tests that a 304 response ends with its headers, although its Content-Length gives the size of the content. */
+    @Test
+    public void testNotModifiedWithContentLength() throws Exception
+    {
+        final ServerSocket socket = new ServerSocket(0);
+        Thread server = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    Socket connection = socket.accept();
+                    BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(),
+                        "ISO-8859-1"));
+                    String line;
+                    while ((line = in.readLine()) != null && line.length() > 0)
+                    {
+                        // Read the request's headers.
+                    }
+                    OutputStream out = connection.getOutputStream();
+                    out.write(("HTTP/1.1 304 Not Modified\r\nContent-Length: 1234\r\nETag: \"v1\"\r\n\r\n")
+                        .getBytes("ISO-8859-1"));
+                    out.flush();
+                    connection.close();
+                }
+                catch (IOException e)
+                {
+                    // The retrieval fails and the test reports it.
+                }
+            }
+        };
+        server.setDaemon(true);
+        server.start();
+
+        try
+        {
+            HTTPRetriever retriever = new HTTPRetriever(
+                new URL("http://localhost:" + socket.getLocalPort() + "/tile/0"), null);
+            this.service.runRetriever(retriever, 1).get(10, TimeUnit.SECONDS);
+            assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, retriever.getResponseCode());
+            assertEquals(Retriever.RETRIEVER_STATE_SUCCESSFUL, retriever.getState());
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    /** Tests that content is transferred compressed and inflated as it's read, by both retrieval services. */
+    @Test
+    public void testCompressedTransfer() throws Exception
+    {
+        compressedResponses.set(0);
+        BasicRetrievalService blockingService = new BasicRetrievalService();
+        try
+        {
+            for (RetrievalService service : new RetrievalService[] {this.service, blockingService})
+            {
+                ContentPostProcessor pp = new ContentPostProcessor();
+                HTTPRetriever retriever = new HTTPRetriever(new URL(this.base + "/compressed"), pp);
+                service.runRetriever(retriever, 1).get(10, TimeUnit.SECONDS);
+                assertEquals(Retriever.RETRIEVER_STATE_SUCCESSFUL, retriever.getState());
+                assertEquals(COMPRESSIBLE_CONTENT, pp.content);
+                assertEquals(COMPRESSIBLE_CONTENT.length(), retriever.getContentLength());
+            }
+            assertEquals(2, compressedResponses.get());
+        }
+        finally
+        {
+            blockingService.shutdown(true);
+        }
+    }
+
+    /** Tests that a read timeout of 0 means no timeout, and that responses over the maximum size fail. */
+    @Test
+    public void testLimits() throws Exception
+    {
+        ContentPostProcessor pp = new ContentPostProcessor();
+        HTTPRetriever untimed = new HTTPRetriever(new URL(this.base + "/tile/untimed"), pp);
+        untimed.setReadTimeout(0);
+        this.service.runRetriever(untimed, 1).get(10, TimeUnit.SECONDS);
+        assertEquals(Retriever.RETRIEVER_STATE_SUCCESSFUL, untimed.getState());
+        assertEquals("/tile/untimed", pp.content);
+
+        this.service.setMaxResponseSize(32768);
+        HTTPRetriever large = new HTTPRetriever(new URL(this.base + "/large"), null);
+        try
+        {
+            this.service.runRetriever(large, 1).get(10, TimeUnit.SECONDS);
+            fail("Expected the response to exceed the maximum size");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IOException);
+            assertEquals(Retriever.RETRIEVER_STATE_ERROR, large.getState());
+        }
+    }
+
+    protected static class ContentPostProcessor implements RetrievalPostProcessor
+    {
+        protected volatile String content;
+
+        public ByteBuffer run(Retriever retriever)
+        {
+            ByteBuffer buffer = retriever.getBuffer();
+            if (buffer != null)
+            {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.duplicate().get(bytes);
+                this.content = new String(bytes);
+            }
+            return buffer;
+        }
+    }
+}
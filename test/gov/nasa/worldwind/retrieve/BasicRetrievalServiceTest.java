@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.retrieve;
+
+import com.sun.net.httpserver.*;
+import gov.nasa.worldwind.util.WWIO;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class BasicRetrievalServiceTest
+{
+    protected File file;
+    protected BasicRetrievalService service;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.file = File.createTempFile("BasicRetrievalServiceTest", ".bin");
+        WWIO.saveBuffer(ByteBuffer.wrap(new byte[] {1, 2, 3, 4}), this.file);
+        this.service = new BasicRetrievalService();
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.service.shutdown(true);
+        this.file.delete();
+    }
+
+    /** Tests that requests for the same URL share one retrieval that runs every distinct post-processor. */
+    @Test
+    public void testCoalescing() throws Exception
+    {
+        URL url = this.file.toURI().toURL();
+        CountDownLatch release = new CountDownLatch(1);
+        CountingPostProcessor first = new CountingPostProcessor();
+        CountingPostProcessor second = new CountingPostProcessor();
+
+        BlockingRetriever retriever = new BlockingRetriever(url, first, release);
+        RetrievalFuture future = this.service.runRetriever(retriever, 1);
+        assertNotNull(future);
+        assertTrue(retriever.started.await(10, TimeUnit.SECONDS));
+
+        // A request by another post-processor shares the retrieval; a repeated request is dropped.
+        assertNull(this.service.runRetriever(new BlockingRetriever(url, second, release), 1));
+        assertNull(this.service.runRetriever(new BlockingRetriever(url, first, release), 1));
+        assertTrue(this.service.contains(new BlockingRetriever(url, null, release)));
+        assertEquals(1, this.service.getNumRetrieversPending());
+
+        release.countDown();
+        future.get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, first.count);
+        assertEquals(1, second.count);
+        assertEquals(4, second.length);
+        assertEquals(1, retriever.readCount);
+
+        // Once the retrieval has finished, the URL can be retrieved again.
+        for (int i = 0; i < 100 && this.service.contains(retriever); i++)
+        {
+            Thread.sleep(10);
+        }
+        assertFalse(this.service.contains(retriever));
+        assertNotNull(this.service.runRetriever(new BlockingRetriever(url, second, release), 1));
+    }
+
+    /** Tests that pending retrievals run in the order of their latest priorities, and can be cancelled. */
+    @Test
+    public void testReprioritizationAndCancellation() throws Exception
+    {
+        this.service.setRetrieverPoolSize(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch open = new CountDownLatch(0);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        BlockingRetriever blocker = new BlockingRetriever(this.file.toURI().toURL(), null, release);
+        RetrievalFuture blockerFuture = this.service.runRetriever(blocker, 1);
+        assertTrue(blocker.started.await(10, TimeUnit.SECONDS));
+
+        File[] files = new File[3];
+        BlockingRetriever[] retrievers = new BlockingRetriever[files.length];
+        RetrievalFuture[] futures = new RetrievalFuture[files.length];
+        try
+        {
+            for (int i = 0; i < files.length; i++)
+            {
+                files[i] = File.createTempFile("BasicRetrievalServiceTest", ".bin");
+                WWIO.saveBuffer(ByteBuffer.wrap(new byte[] {(byte) i}), files[i]);
+                retrievers[i] = new BlockingRetriever(files[i].toURI().toURL(), null, open);
+                retrievers[i].order = order;
+                futures[i] = this.service.runRetriever(retrievers[i], i + 1);
+            }
+
+            // The last retrieval is re-scored once the first two have been requested in an earlier period, and the
+            // first is no longer needed.
+            Thread.sleep(600);
+            assertTrue(this.service.updatePriority(retrievers[2], 0.5));
+            assertTrue(this.service.cancel(retrievers[0]));
+            assertFalse(this.service.cancel(retrievers[0]));
+            assertFalse(this.service.cancel(blocker));
+            assertTrue(this.service.updatePriority(blocker, 1));
+
+            release.countDown();
+            blockerFuture.get(10, TimeUnit.SECONDS);
+            futures[1].get(10, TimeUnit.SECONDS);
+            futures[2].get(10, TimeUnit.SECONDS);
+
+            assertTrue(futures[0].isCancelled());
+            assertEquals(0, retrievers[0].readCount);
+            assertEquals(Arrays.asList(retrievers[2].getName(), retrievers[1].getName()), order);
+            assertFalse(this.service.updatePriority(retrievers[0], 1));
+        }
+        finally
+        {
+            for (File file : files)
+            {
+                if (file != null)
+                    file.delete();
+            }
+        }
+    }
+
+    /** Tests that each change of a pending retrieval's priority takes effect at once. */
+    @Test
+    public void testRepeatedReprioritization() throws Exception
+    {
+        this.service.setRetrieverPoolSize(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch open = new CountDownLatch(0);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        BlockingRetriever blocker = new BlockingRetriever(this.file.toURI().toURL(), null, release);
+        RetrievalFuture blockerFuture = this.service.runRetriever(blocker, 1);
+        assertTrue(blocker.started.await(10, TimeUnit.SECONDS));
+
+        File[] files = new File[3];
+        BlockingRetriever[] retrievers = new BlockingRetriever[files.length];
+        RetrievalFuture[] futures = new RetrievalFuture[files.length];
+        try
+        {
+            for (int i = 0; i < files.length; i++)
+            {
+                files[i] = File.createTempFile("BasicRetrievalServiceTest", ".bin");
+                WWIO.saveBuffer(ByteBuffer.wrap(new byte[] {(byte) i}), files[i]);
+                retrievers[i] = new BlockingRetriever(files[i].toURI().toURL(), null, open);
+                retrievers[i].order = order;
+                futures[i] = this.service.runRetriever(retrievers[i], i + 1);
+            }
+
+            assertTrue(this.service.updatePriority(retrievers[2], 0.5));
+            assertTrue(this.service.updatePriority(retrievers[1], 0.25));
+
+            release.countDown();
+            blockerFuture.get(10, TimeUnit.SECONDS);
+            for (RetrievalFuture future : futures)
+            {
+                future.get(10, TimeUnit.SECONDS);
+            }
+
+            assertEquals(Arrays.asList(retrievers[1].getName(), retrievers[2].getName(), retrievers[0].getName()),
+                order);
+        }
+        finally
+        {
+            for (File file : files)
+            {
+                if (file != null)
+                    file.delete();
+            }
+        }
+    }
+
+    /** Tests that cancelling a shared retrieval detaches only the caller's post-processor. */
+    @Test
+    public void testCancelSharedRetrieval() throws Exception
+    {
+        this.service.setRetrieverPoolSize(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch open = new CountDownLatch(0);
+
+        BlockingRetriever blocker = new BlockingRetriever(this.file.toURI().toURL(), null, release);
+        RetrievalFuture blockerFuture = this.service.runRetriever(blocker, 1);
+        assertTrue(blocker.started.await(10, TimeUnit.SECONDS));
+
+        File shared = File.createTempFile("BasicRetrievalServiceTest", ".bin");
+        try
+        {
+            WWIO.saveBuffer(ByteBuffer.wrap(new byte[] {5, 6}), shared);
+            URL url = shared.toURI().toURL();
+            CountingPostProcessor first = new CountingPostProcessor();
+            CountingPostProcessor second = new CountingPostProcessor();
+
+            RetrievalFuture future = this.service.runRetriever(new BlockingRetriever(url, first, open), 1);
+            assertNull(this.service.runRetriever(new BlockingRetriever(url, second, open), 2));
+
+            // The retrieval continues for the second request without the first's post-processor.
+            assertTrue(this.service.cancel(new BlockingRetriever(url, first, open)));
+            assertFalse(this.service.cancel(new BlockingRetriever(url, first, open)));
+            assertTrue(this.service.contains(new BlockingRetriever(url, null, open)));
+
+            release.countDown();
+            blockerFuture.get(10, TimeUnit.SECONDS);
+            future.get(10, TimeUnit.SECONDS);
+
+            assertFalse(future.isCancelled());
+            assertEquals(0, first.count);
+            assertEquals(1, second.count);
+            assertEquals(2, second.length);
+        }
+        finally
+        {
+            shared.delete();
+        }
+    }
+
+    /** Tests that retrievals from one host are limited, and that the limit backs off when the host is overloaded. */
+    @Test
+    public void testHostConnectionLimits() throws Exception
+    {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                int n = inFlight.incrementAndGet();
+                maxInFlight.set(Math.max(maxInFlight.get(), n));
+                try
+                {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                inFlight.decrementAndGet();
+
+                byte[] body = new byte[] {1, 2, 3};
+                boolean busy = exchange.getRequestURI().getPath().startsWith("/busy");
+                exchange.sendResponseHeaders(busy ? HttpURLConnection.HTTP_UNAVAILABLE : HttpURLConnection.HTTP_OK,
+                    body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            }
+        });
+        server.start();
+
+        try
+        {
+            String base = "http://localhost:" + server.getAddress().getPort();
+            this.service.setRetrieverPoolSize(6);
+            this.service.setHostConnectionLimit(2);
+
+            List<RetrievalFuture> futures = new ArrayList<RetrievalFuture>();
+            for (int i = 0; i < 6; i++)
+            {
+                futures.add(this.service.runRetriever(new HTTPRetriever(new URL(base + "/tile/" + i), null), i + 1));
+            }
+            for (RetrievalFuture future : futures)
+            {
+                assertEquals(Retriever.RETRIEVER_STATE_SUCCESSFUL, future.get(10, TimeUnit.SECONDS).getState());
+            }
+            assertEquals(2, maxInFlight.get());
+            assertEquals(2, this.service.getHostConnectionSlots(new URL(base)));
+
+            HTTPRetriever busy = new HTTPRetriever(new URL(base + "/busy"), null);
+            this.service.runRetriever(busy, 1).get(10, TimeUnit.SECONDS);
+            assertEquals(HttpURLConnection.HTTP_UNAVAILABLE, busy.getResponseCode());
+            for (int i = 0; i < 100 && this.service.getHostConnectionSlots(new URL(base)) > 1; i++)
+            {
+                Thread.sleep(10);
+            }
+            assertEquals(1, this.service.getHostConnectionSlots(new URL(base)));
+        }
+        finally
+        {
+            server.stop(0);
+        }
+    }
+
+    protected static class BlockingRetriever extends URLRetriever
+    {
+        protected final CountDownLatch started = new CountDownLatch(1);
+        protected final CountDownLatch release;
+        protected volatile int readCount;
+        protected List<String> order;
+
+        public BlockingRetriever(URL url, RetrievalPostProcessor postProcessor, CountDownLatch release)
+        {
+            super(url, postProcessor);
+            this.release = release;
+        }
+
+        @Override
+        protected ByteBuffer doRead(URLConnection connection) throws Exception
+        {
+            this.readCount++;
+            if (this.order != null)
+                this.order.add(this.getName());
+            this.started.countDown();
+            this.release.await();
+            return super.doRead(connection);
+        }
+    }
+
+    protected static class CountingPostProcessor implements RetrievalPostProcessor
+    {
+        protected volatile int count;
+        protected volatile int length;
+
+        public ByteBuffer run(Retriever retriever)
+        {
+            this.count++;
+            this.length = retriever.getBuffer() != null ? retriever.getBuffer().remaining() : -1;
+            return retriever.getBuffer();
+        }
+    }
+}
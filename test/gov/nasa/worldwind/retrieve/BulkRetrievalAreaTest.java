@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.util.*;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class BulkRetrievalAreaTest
+{
+    protected static final double EARTH_RADIUS = 6378137;
+    protected static final double NEAR = 2000 / EARTH_RADIUS;
+    protected static final double FAR = 20000 / EARTH_RADIUS;
+    protected static final double FINE = 10 / EARTH_RADIUS;
+    protected static final double COARSE = 100 / EARTH_RADIUS;
+
+    /** Tests that a corridor covers its route at each band's resolution, with far less area than its bounding sector. */
+    @Test
+    public void testCorridor()
+    {
+        List<LatLon> route = Arrays.asList(LatLon.fromDegrees(30, -100), LatLon.fromDegrees(40, -90),
+            LatLon.fromDegrees(40, -80));
+        BulkRetrievalArea area = BulkRetrievalArea.fromCorridor(route, new double[] {NEAR, FAR},
+            new double[] {FINE, COARSE});
+
+        assertEquals(FINE, area.getResolution(), 0);
+        assertTrue(area.getSector().contains(Sector.boundingSector(route)));
+
+        // Every location within each band's distance of the route is in a part at the band's resolution.
+        for (int i = 0; i < route.size() - 1; i++)
+        {
+            for (double t = 0; t <= 1; t += 0.01)
+            {
+                LatLon location = LatLon.interpolateGreatCircle(t, route.get(i), route.get(i + 1));
+                Angle azimuth = LatLon.greatCircleAzimuth(route.get(i), route.get(i + 1));
+                for (double side : new double[] {-1, 1})
+                {
+                    Angle across = azimuth.addDegrees(90 * side);
+                    assertTrue(isCovered(area, LatLon.greatCircleEndPosition(location, across.radians, NEAR * 0.99),
+                        FINE));
+                    assertTrue(isCovered(area, LatLon.greatCircleEndPosition(location, across.radians, FAR * 0.99),
+                        COARSE));
+                }
+            }
+        }
+
+        // The finely resolved parts cover a small multiple of the near band's area.
+        double routeLength = 0;
+        for (int i = 0; i < route.size() - 1; i++)
+        {
+            routeLength += LatLon.greatCircleDistance(route.get(i), route.get(i + 1)).radians;
+        }
+        double fineArea = 0;
+        for (BulkRetrievalArea.Part part : area.getParts())
+        {
+            if (part.getResolution() == FINE)
+                fineArea += computeArea(part.getSector());
+        }
+        double bandArea = routeLength * 2 * NEAR;
+        assertTrue("area ratio " + fineArea / bandArea, fineArea < 4 * bandArea);
+        assertTrue(fineArea < computeArea(area.getSector()) / 50);
+    }
+
+    /** Tests that a corridor crossing the antimeridian is covered on both sides rather than around the globe. */
+    @Test
+    public void testCorridorAcrossAntimeridian()
+    {
+        List<LatLon> route = Arrays.asList(LatLon.fromDegrees(10, 179), LatLon.fromDegrees(10, -179));
+        BulkRetrievalArea area = BulkRetrievalArea.fromCorridor(route, new double[] {NEAR}, new double[] {FINE});
+
+        for (BulkRetrievalArea.Part part : area.getParts())
+        {
+            assertTrue(part.getSector().getDeltaLonDegrees() < 5);
+        }
+        assertTrue(isCovered(area, LatLon.fromDegrees(10, 179.99), FINE));
+        assertTrue(isCovered(area, LatLon.fromDegrees(10, -179.99), FINE));
+        assertFalse(isCovered(area, LatLon.fromDegrees(10, 0), FINE));
+    }
+
+    /** Tests that an area is clipped to a dataset's coverage. */
+    @Test
+    public void testIntersection()
+    {
+        BulkRetrievalArea area = new BulkRetrievalArea(Arrays.asList(Sector.fromDegrees(0, 10, 0, 10),
+            Sector.fromDegrees(20, 30, 20, 30)), FINE);
+
+        BulkRetrievalArea clipped = area.intersection(Sector.fromDegrees(5, 15, 5, 15));
+        assertEquals(1, clipped.getParts().size());
+        assertEquals(Sector.fromDegrees(5, 10, 5, 10), clipped.getSector());
+        assertEquals(FINE, clipped.getResolution(), 0);
+
+        assertSame(area.getParts().get(1), area.intersection(Sector.fromDegrees(0, 90, 15, 180)).getParts().get(0));
+        assertNull(area.intersection(Sector.fromDegrees(-10, -5, 0, 10)));
+        assertEquals(area, area.intersection(Sector.FULL_SPHERE));
+    }
+
+    /** Tests that tiles shared by overlapping sectors are counted once. */
+    @Test
+    public void testCountTiles()
+    {
+        AVList params = new AVListImpl();
+        params.setValue(AVKey.SECTOR, Sector.FULL_SPHERE);
+        params.setValue(AVKey.LEVEL_ZERO_TILE_DELTA, LatLon.fromDegrees(36, 36));
+        params.setValue(AVKey.NUM_LEVELS, 8);
+        params.setValue(AVKey.NUM_EMPTY_LEVELS, 0);
+        params.setValue(AVKey.TILE_WIDTH, 512);
+        params.setValue(AVKey.TILE_HEIGHT, 512);
+        params.setValue(AVKey.DATA_CACHE_NAME, "Earth/Test");
+        params.setValue(AVKey.DATASET_NAME, "test");
+        params.setValue(AVKey.FORMAT_SUFFIX, ".png");
+        LevelSet levels = new LevelSet(params);
+
+        Sector a = Sector.fromDegrees(1, 9, 1, 9);
+        Sector b = Sector.fromDegrees(5, 13, 6, 20);
+        Sector c = Sector.fromDegrees(-30, -20, 100, 110);
+        for (int levelNumber = 0; levelNumber < 6; levelNumber++)
+        {
+            List<Sector> sectors = Arrays.asList(a, b, c, a);
+            assertEquals(countDistinctTiles(levels, sectors, levelNumber),
+                BulkRetrievalThread.countTilesInSectors(levels, sectors, levelNumber));
+            assertEquals(countDistinctTiles(levels, Arrays.asList(a), levelNumber),
+                BulkRetrievalThread.countTilesInSectors(levels, Arrays.asList(a, a), levelNumber));
+        }
+    }
+
+    protected static long countDistinctTiles(LevelSet levels, List<Sector> sectors, int levelNumber)
+    {
+        Level level = levels.getLevel(levelNumber);
+        Set<String> tiles = new HashSet<String>();
+        for (Sector sector : sectors)
+        {
+            int nwRow = Tile.computeRow(level.getTileDelta().getLatitude(), sector.getMaxLatitude(),
+                levels.getTileOrigin().getLatitude());
+            int seRow = Tile.computeRow(level.getTileDelta().getLatitude(), sector.getMinLatitude(),
+                levels.getTileOrigin().getLatitude());
+            int nwCol = Tile.computeColumn(level.getTileDelta().getLongitude(), sector.getMinLongitude(),
+                levels.getTileOrigin().getLongitude());
+            int seCol = Tile.computeColumn(level.getTileDelta().getLongitude(), sector.getMaxLongitude(),
+                levels.getTileOrigin().getLongitude());
+            for (int row = seRow; row <= nwRow; row++)
+            {
+                for (int col = nwCol; col <= seCol; col++)
+                {
+                    tiles.add(row + "," + col);
+                }
+            }
+        }
+
+        return tiles.size();
+    }
+
+    protected static boolean isCovered(BulkRetrievalArea area, LatLon location, double resolution)
+    {
+        for (BulkRetrievalArea.Part part : area.getParts())
+        {
+            if (part.getResolution() <= resolution && part.getSector().contains(location))
+                return true;
+        }
+
+        return false;
+    }
+
+    protected static double computeArea(Sector sector)
+    {
+        return sector.getDeltaLatRadians() * sector.getDeltaLonRadians() * sector.getCentroid().getLatitude().cos();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.cache.*;
+import gov.nasa.worldwind.util.WWIO;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class BulkRetrievalJournalTest
+{
+    protected static final String PATH = "Earth/Test/BulkRetrieval/1234.journal";
+
+    protected File root;
+    protected FileStore fileStore;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.root = File.createTempFile("BulkRetrievalJournalTest", "");
+        assertTrue(this.root.delete());
+        assertTrue(this.root.mkdirs());
+        this.fileStore = new BasicDataFileStore(this.root);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        WWIO.deleteDirectory(this.root);
+        this.root.delete();
+    }
+
+    /** Tests that a reopened journal resumes with the units completed before, and that finishing removes it. */
+    @Test
+    public void testResume()
+    {
+        BulkRetrievalJournal journal = new BulkRetrievalJournal(this.fileStore, PATH, "sector 5");
+        assertFalse(journal.isCompleted("0/0"));
+        journal.markCompleted("0/0");
+        journal.markCompleted("1/0");
+        journal.markCompleted("1/0");
+        assertEquals(2, journal.getCompletedCount());
+
+        // An interrupted retrieval leaves its journal behind.
+        journal = new BulkRetrievalJournal(this.fileStore, PATH, "sector 5");
+        assertEquals(2, journal.getCompletedCount());
+        assertTrue(journal.isCompleted("0/0"));
+        assertTrue(journal.isCompleted("1/0"));
+        assertFalse(journal.isCompleted("1/1"));
+
+        journal.markCompleted("1/1");
+        journal = new BulkRetrievalJournal(this.fileStore, PATH, "sector 5");
+        assertEquals(3, journal.getCompletedCount());
+
+        // A finished retrieval removes its journal.
+        journal.delete();
+        assertNull(this.fileStore.findFile(PATH, false));
+        assertEquals(0, new BulkRetrievalJournal(this.fileStore, PATH, "sector 5").getCompletedCount());
+    }
+
+    /** Tests that a journal written for another retrieval is not used, and is replaced. */
+    @Test
+    public void testOtherRetrieval()
+    {
+        BulkRetrievalJournal journal = new BulkRetrievalJournal(this.fileStore, PATH, "sector 5");
+        journal.markCompleted("0/0");
+
+        journal = new BulkRetrievalJournal(this.fileStore, PATH, "sector 6");
+        assertFalse(journal.isCompleted("0/0"));
+        journal.markCompleted("0/1");
+
+        journal = new BulkRetrievalJournal(this.fileStore, PATH, "sector 6");
+        assertEquals(1, journal.getCompletedCount());
+        assertTrue(journal.isCompleted("0/1"));
+        assertEquals(0, new BulkRetrievalJournal(this.fileStore, PATH, "sector 5").getCompletedCount());
+    }
+}
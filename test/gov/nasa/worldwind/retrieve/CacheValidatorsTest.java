@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.retrieve;
+
+import com.sun.net.httpserver.*;
+import gov.nasa.worldwind.cache.*;
+import gov.nasa.worldwind.util.WWIO;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.text.*;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class CacheValidatorsTest
+{
+    protected static final String PATH = "Earth/Test/1/1/1_1.png";
+    protected static final String LAST_MODIFIED = "Tue, 15 Nov 1994 12:45:26 GMT";
+
+    protected File root;
+    protected FileStore fileStore;
+    protected HttpServer server;
+    protected volatile String version = "v1";
+    protected volatile String ifModifiedSince;
+    protected final AtomicInteger fullResponses = new AtomicInteger();
+    protected URL url;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.root = File.createTempFile("CacheValidatorsTest", "");
+        assertTrue(this.root.delete());
+        assertTrue(this.root.mkdirs());
+        this.fileStore = new BasicDataFileStore(this.root);
+
+        // Serves a tile whose entity tag is its version, answering a request for the current version with 304.
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/", new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                String entityTag = "\"" + version + "\"";
+                ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+                exchange.getResponseHeaders().add("ETag", entityTag);
+                exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+
+                if (entityTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+                {
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+                }
+                else
+                {
+                    byte[] body = version.getBytes("UTF-8");
+                    fullResponses.incrementAndGet();
+                    exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+                    exchange.getResponseBody().write(body);
+                }
+                exchange.close();
+            }
+        });
+        this.server.start();
+        this.url = new URL("http://localhost:" + this.server.getAddress().getPort() + "/tile");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        this.server.stop(0);
+        WWIO.deleteDirectory(this.root);
+        this.root.delete();
+    }
+
+    /** Tests revalidation of a cached file through blocking connections. */
+    @Test
+    public void testBlockingRevalidation() throws Exception
+    {
+        BasicRetrievalService service = new BasicRetrievalService();
+        try
+        {
+            this.runRevalidation(service);
+        }
+        finally
+        {
+            service.shutdown(true);
+        }
+    }
+
+    /** Tests revalidation of a cached file through the asynchronous retrieval service's own requests. */
+    @Test
+    public void testAsyncRevalidation() throws Exception
+    {
+        AsyncRetrievalService service = new AsyncRetrievalService();
+        try
+        {
+            this.runRevalidation(service);
+        }
+        finally
+        {
+            service.shutdown(true);
+        }
+    }
+
+    protected void runRevalidation(RetrievalService service) throws Exception
+    {
+        // The first retrieval is unconditional and saves the validators with the file.
+        assertNull(CacheValidators.read(this.fileStore, PATH));
+        HTTPRetriever retriever = this.retrieve(service);
+        assertFalse(retriever.isConditional());
+        assertEquals(HttpURLConnection.HTTP_OK, retriever.getResponseCode());
+        assertEquals("v1", this.readFile());
+
+        CacheValidators validators = CacheValidators.read(this.fileStore, PATH);
+        assertNotNull(validators);
+        assertEquals("\"v1\"", validators.getEntityTag());
+        assertEquals(parseDate(LAST_MODIFIED), validators.getLastModified());
+
+        // Once the file has aged past an expiry time, a conditional retrieval finds it current and renews it.
+        long expiryTime = System.currentTimeMillis() - 1000;
+        File validatorsFile = new File(this.root, PATH + CacheValidators.SUFFIX);
+        assertTrue(validatorsFile.setLastModified(expiryTime - 3600000));
+        assertTrue(CacheValidators.read(this.fileStore, PATH).isExpired(expiryTime));
+
+        retriever = this.retrieve(service);
+        assertTrue(retriever.isConditional());
+        assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, retriever.getResponseCode());
+        assertEquals(parseDate(LAST_MODIFIED), parseDate(this.ifModifiedSince));
+        assertFalse(CacheValidators.read(this.fileStore, PATH).isExpired(expiryTime));
+        assertEquals("v1", this.readFile());
+        assertEquals(1, this.fullResponses.get());
+
+        // A changed resource replaces the cached file and its validators.
+        this.version = "v2";
+        retriever = this.retrieve(service);
+        assertTrue(retriever.isConditional());
+        assertEquals(HttpURLConnection.HTTP_OK, retriever.getResponseCode());
+        assertEquals("v2", this.readFile());
+        assertEquals("\"v2\"", CacheValidators.read(this.fileStore, PATH).getEntityTag());
+        assertEquals(2, this.fullResponses.get());
+
+        // Validators of a file no longer in the file store are not used.
+        this.fileStore.removeFile(this.fileStore.findFile(PATH, false));
+        assertNull(CacheValidators.read(this.fileStore, PATH));
+    }
+
+    /** Tests that validators are packed with their tile, read from the pack and renewed there. */
+    @Test
+    public void testPackedValidators() throws Exception
+    {
+        PackFileStore packFileStore = new PackFileStore(this.root);
+        this.fileStore = packFileStore;
+        BasicRetrievalService service = new BasicRetrievalService();
+        try
+        {
+            this.retrieve(service);
+
+            // Age the tile and its validators past the packing delay, and pack them.
+            long retrievalTime = System.currentTimeMillis() - 3600000;
+            assertTrue(new File(this.root, PATH).setLastModified(retrievalTime));
+            assertTrue(new File(this.root, PATH + CacheValidators.SUFFIX).setLastModified(retrievalTime));
+            packFileStore.migrate();
+            assertTrue(packFileStore.getPackStore().contains(PATH + CacheValidators.SUFFIX));
+            assertFalse(new File(this.root, PATH + CacheValidators.SUFFIX).exists());
+
+            CacheValidators validators = CacheValidators.read(this.fileStore, PATH);
+            assertNotNull(validators);
+            assertEquals("\"v1\"", validators.getEntityTag());
+            assertEquals(retrievalTime, validators.getValidationTime());
+
+            long expiryTime = System.currentTimeMillis() - 1000;
+            assertTrue(validators.isExpired(expiryTime));
+            assertTrue(CacheValidators.markValidated(this.fileStore, PATH));
+            assertFalse(CacheValidators.read(this.fileStore, PATH).isExpired(expiryTime));
+        }
+        finally
+        {
+            service.shutdown(true);
+            packFileStore.getPackStore().close();
+        }
+    }
+
+    protected HTTPRetriever retrieve(RetrievalService service) throws Exception
+    {
+        HTTPRetriever retriever = new HTTPRetriever(this.url, new TilePostProcessor());
+        CacheValidators validators = CacheValidators.read(this.fileStore, PATH);
+        if (validators != null)
+            validators.applyTo(retriever);
+
+        service.runRetriever(retriever, 1).get(10, TimeUnit.SECONDS);
+        assertEquals(Retriever.RETRIEVER_STATE_SUCCESSFUL, retriever.getState());
+
+        // Wait for the retrieval to leave the service, so that the next one isn't coalesced with it.
+        for (int i = 0; i < 100 && service.contains(retriever); i++)
+        {
+            Thread.sleep(10);
+        }
+
+        return retriever;
+    }
+
+    protected static long parseDate(String date) throws ParseException
+    {
+        return new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US).parse(date).getTime();
+    }
+
+    protected String readFile() throws IOException
+    {
+        return WWIO.readTextFile(new File(this.root, PATH));
+    }
+
+    /** Saves retrieved tiles and their validators to the file store, as the tiled layers' post-processors do. */
+    protected class TilePostProcessor extends AbstractRetrievalPostProcessor
+    {
+        @Override
+        protected File doGetOutputFile()
+        {
+            return fileStore.newFile(PATH);
+        }
+
+        @Override
+        protected ByteBuffer handleSuccessfulRetrieval()
+        {
+            ByteBuffer buffer = super.handleSuccessfulRetrieval();
+            if (buffer != null)
+                CacheValidators.save(fileStore, PATH, (HTTPRetriever) this.getRetriever());
+
+            return buffer;
+        }
+
+        @Override
+        protected void handleNotModified()
+        {
+            assertTrue(CacheValidators.markValidated(fileStore, PATH));
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.retrieve;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class RetrievalPipelineTest
+{
+    protected RetrievalPipeline pipeline;
+
+    @Before
+    public void setUp()
+    {
+        this.pipeline = new RetrievalPipeline(1, 1, 1);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.pipeline.shutdown(true);
+    }
+
+    /** Tests that work overflowing a stage's queue runs on the thread handing it over, and that all work is counted. */
+    @Test
+    public void testOverflowRunsOnCaller() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        final AtomicReference<Thread> overflowThread = new AtomicReference<Thread>();
+
+        // The first task occupies the stage's thread and the second its queue, so the third overflows.
+        this.pipeline.process(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }
+        });
+        for (int i = 0; i < 100 && this.pipeline.getProcessingStage().getActiveCount() == 0; i++)
+        {
+            Thread.sleep(10);
+        }
+        this.pipeline.process(new Counter(done));
+        this.pipeline.process(new Runnable()
+        {
+            public void run()
+            {
+                overflowThread.set(Thread.currentThread());
+                done.countDown();
+            }
+        });
+
+        assertSame(Thread.currentThread(), overflowThread.get());
+        assertEquals(1, this.pipeline.getProcessingStage().getQueueDepth());
+        assertEquals(1, this.pipeline.getProcessingStage().getMaxQueueDepth());
+        assertEquals(1, this.pipeline.getProcessingStage().getOverflowCount());
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 100 && this.pipeline.getProcessingStage().getTaskCount() < 3; i++)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(3, this.pipeline.getProcessingStage().getTaskCount());
+        assertEquals(0, this.pipeline.getProcessingStage().getQueueDepth());
+        assertTrue(this.pipeline.getProcessingStage().getAverageWaitTime() >= 0);
+        assertFalse(this.pipeline.getPerformanceStatistics().isEmpty());
+    }
+
+    /** Tests that processing threads write on the disk stage, and that other threads write themselves. */
+    @Test
+    public void testWritesRunOnDiskStage() throws Exception
+    {
+        final AtomicReference<Thread> writeThread = new AtomicReference<Thread>();
+        final RetrievalPipeline.FileWrite write = new RetrievalPipeline.FileWrite()
+        {
+            public void write() throws IOException
+            {
+                writeThread.set(Thread.currentThread());
+            }
+        };
+
+        RetrievalPipeline.write(write);
+        assertSame(Thread.currentThread(), writeThread.get());
+
+        final AtomicReference<Thread> processingThread = new AtomicReference<Thread>();
+        final AtomicReference<Thread> writtenBy = new AtomicReference<Thread>();
+        final CountDownLatch done = new CountDownLatch(1);
+        this.pipeline.process(new Runnable()
+        {
+            public void run()
+            {
+                processingThread.set(Thread.currentThread());
+                try
+                {
+                    RetrievalPipeline.write(write);
+                    writtenBy.set(writeThread.get()); // the write is complete when write returns
+                }
+                catch (IOException e)
+                {
+                    fail(e.getMessage());
+                }
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertNotNull(writtenBy.get());
+        assertNotSame(processingThread.get(), writtenBy.get());
+
+        // The stage counts a task complete shortly after the task's result is available.
+        long deadline = System.currentTimeMillis() + 10000;
+        while (this.pipeline.getDiskStage().getCompletedTaskCount() < 1 && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(1, this.pipeline.getDiskStage().getCompletedTaskCount());
+    }
+
+    /** Tests that a failed write's exception reaches the thread that asked for the write. */
+    @Test(expected = IOException.class)
+    public void testWriteFailureIsRethrown() throws Throwable
+    {
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Future<?> future = this.pipeline.getProcessingStage().submit(new Callable<Void>()
+        {
+            public Void call() throws Exception
+            {
+                RetrievalPipeline.write(new RetrievalPipeline.FileWrite()
+                {
+                    public void write() throws IOException
+                    {
+                        throw new IOException("disk full");
+                    }
+                });
+                return null;
+            }
+        });
+
+        try
+        {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        catch (ExecutionException e)
+        {
+            failure.set(e.getCause());
+        }
+
+        throw failure.get();
+    }
+
+    protected static class Counter implements Runnable
+    {
+        protected final CountDownLatch latch;
+
+        public Counter(CountDownLatch latch)
+        {
+            this.latch = latch;
+        }
+
+        public void run()
+        {
+            this.latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.retrieve;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class RetrievalThrottleTest
+{
+    /** Tests that a throttle without budgets allows every request. */
+    @Test
+    public void testUnlimited()
+    {
+        RetrievalThrottle throttle = new RetrievalThrottle(0, 0);
+        assertFalse(throttle.isLimited());
+        for (int i = 0; i < 1000; i++)
+        {
+            assertTrue(throttle.tryAcquire());
+            throttle.consumeBytes(1000000);
+        }
+        assertEquals(0, throttle.getDelay());
+    }
+
+    /** Tests that requests beyond one second's budget wait until the budget recovers. */
+    @Test
+    public void testRequestBudget() throws Exception
+    {
+        RetrievalThrottle throttle = new RetrievalThrottle(10, 0);
+        for (int i = 0; i < 10; i++)
+        {
+            assertTrue(throttle.tryAcquire());
+        }
+        assertFalse(throttle.tryAcquire());
+
+        long delay = throttle.getDelay();
+        assertTrue("delay " + delay, delay > 0 && delay <= 100);
+
+        Thread.sleep(delay + 20);
+        assertTrue(throttle.tryAcquire());
+        assertFalse(throttle.tryAcquire());
+    }
+
+    /** Tests that a released request can be taken again, but doesn't raise the budget above its capacity. */
+    @Test
+    public void testRelease()
+    {
+        RetrievalThrottle throttle = new RetrievalThrottle(10, 0);
+        for (int i = 0; i < 10; i++)
+        {
+            assertTrue(throttle.tryAcquire());
+        }
+        assertFalse(throttle.tryAcquire());
+
+        throttle.release();
+        assertTrue(throttle.tryAcquire());
+        assertFalse(throttle.tryAcquire());
+
+        RetrievalThrottle full = new RetrievalThrottle(2, 0);
+        full.release();
+        assertTrue(full.tryAcquire());
+        assertTrue(full.tryAcquire());
+        assertFalse(full.tryAcquire());
+    }
+
+    /** Tests that an overdrawn byte budget holds further requests until it has recovered. */
+    @Test
+    public void testByteBudget() throws Exception
+    {
+        RetrievalThrottle throttle = new RetrievalThrottle(0, 10000);
+        assertTrue(throttle.tryAcquire());
+        throttle.consumeBytes(12000);
+        assertFalse(throttle.tryAcquire());
+
+        long delay = throttle.getDelay();
+        assertTrue("delay " + delay, delay > 100 && delay <= 200);
+
+        Thread.sleep(delay + 20);
+        assertTrue(throttle.tryAcquire());
+    }
+
+    /** Tests that the average rate of requests made as soon as they're allowed stays within the budget. */
+    @Test
+    public void testAverageRate() throws Exception
+    {
+        RetrievalThrottle throttle = new RetrievalThrottle(50, 0);
+        int count = 0;
+        long start = System.currentTimeMillis();
+        while (System.currentTimeMillis() - start < 1000)
+        {
+            if (throttle.tryAcquire())
+                count++;
+            else
+                Thread.sleep(Math.max(throttle.getDelay(), 1));
+        }
+
+        // One second's burst plus one second's allowance.
+        assertTrue("count " + count, count >= 90 && count <= 101);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import gov.nasa.worldwind.terrain.ZeroElevationModel;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class TilePrefetcherTest
+{
+    protected Globe globe;
+    protected TilePrefetcher prefetcher;
+
+    @Before
+    public void setUp()
+    {
+        this.globe = new EllipsoidalGlobe(Earth.WGS84_EQUATORIAL_RADIUS, Earth.WGS84_POLAR_RADIUS, Earth.WGS84_ES,
+            new ZeroElevationModel());
+        this.prefetcher = new TilePrefetcher(new RetrievalThrottle(0, 0), 2000);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.prefetcher.dispose();
+    }
+
+    /** Tests that a view panning at a steady rate is extrapolated along its path by the look-ahead time. */
+    @Test
+    public void testPanIsExtrapolated()
+    {
+        this.prefetcher.addSample(new TilePrefetcher.ViewSample(0, LatLon.fromDegrees(10, 20), 100000));
+        this.prefetcher.addSample(new TilePrefetcher.ViewSample(250, LatLon.fromDegrees(10, 20.5), 100000));
+        this.prefetcher.addSample(new TilePrefetcher.ViewSample(500, LatLon.fromDegrees(10, 21), 100000));
+
+        TilePrefetcher.Prediction prediction = this.prefetcher.predictMotion(this.globe, Angle.fromDegrees(45));
+        assertNotNull(prediction);
+        assertEquals(10, prediction.getCenter().getLatitude().degrees, 1e-9);
+        assertEquals(25, prediction.getCenter().getLongitude().degrees, 1e-9);
+        assertEquals(100000, prediction.getDistance(), 1e-6);
+        assertTrue(prediction.getSector().contains(prediction.getCenter()));
+    }
+
+    /** Tests that a view zooming in is extrapolated at its rate of change in proportion. */
+    @Test
+    public void testZoomIsExtrapolated()
+    {
+        this.prefetcher.addSample(new TilePrefetcher.ViewSample(0, LatLon.fromDegrees(10, 20), 100000));
+        this.prefetcher.addSample(new TilePrefetcher.ViewSample(500, LatLon.fromDegrees(10, 20), 50000));
+
+        TilePrefetcher.Prediction prediction = this.prefetcher.predictMotion(this.globe, Angle.fromDegrees(45));
+        assertNotNull(prediction);
+        assertEquals(50000 * Math.pow(0.5, 4), prediction.getDistance(), 1e-6);
+    }
+
+    /** Tests that a view crossing the antimeridian is extrapolated across it. */
+    @Test
+    public void testPanAcrossAntimeridian()
+    {
+        this.prefetcher.addSample(new TilePrefetcher.ViewSample(0, LatLon.fromDegrees(0, 179), 100000));
+        this.prefetcher.addSample(new TilePrefetcher.ViewSample(500, LatLon.fromDegrees(0, 179.5), 100000));
+
+        TilePrefetcher.Prediction prediction = this.prefetcher.predictMotion(this.globe, Angle.fromDegrees(45));
+        assertNotNull(prediction);
+        assertEquals(-178.5, prediction.getCenter().getLongitude().degrees, 1e-9);
+    }
+
+    /** Tests that a still or barely moving view is not predicted to need other tiles. */
+    @Test
+    public void testStillViewIsNotPredicted()
+    {
+        this.prefetcher.addSample(new TilePrefetcher.ViewSample(0, LatLon.fromDegrees(10, 20), 100000));
+        assertNull(this.prefetcher.predictMotion(this.globe, Angle.fromDegrees(45)));
+
+        this.prefetcher.addSample(new TilePrefetcher.ViewSample(500, LatLon.fromDegrees(10, 20), 100000));
+        assertNull(this.prefetcher.predictMotion(this.globe, Angle.fromDegrees(45)));
+
+        this.prefetcher.addSample(new TilePrefetcher.ViewSample(1000, LatLon.fromDegrees(10, 20.00001), 100000));
+        assertNull(this.prefetcher.predictMotion(this.globe, Angle.fromDegrees(45)));
+    }
+
+    /** Tests that prefetched tiles are counted as used when drawn and as unused once the use period has passed. */
+    @Test
+    public void testUsageIsCounted()
+    {
+        this.prefetcher.setUsePeriod(1000);
+
+        assertTrue(this.prefetcher.submit("a", new NoOp()));
+        assertTrue(this.prefetcher.submit("b", new NoOp()));
+        assertFalse(this.prefetcher.submit("a", new NoOp()));
+        assertTrue(this.prefetcher.submit("c", new NoOp()));
+        this.prefetcher.cancel("c");
+        assertEquals(2, this.prefetcher.getRequestCount());
+
+        this.prefetcher.markUsed("a");
+        this.prefetcher.markUsed("a");
+        this.prefetcher.markUsed("x");
+        assertEquals(1, this.prefetcher.getUsedCount());
+        assertEquals(1, this.prefetcher.getPendingCount());
+
+        this.prefetcher.expireUnusedTiles(System.currentTimeMillis() + 2000);
+        assertEquals(1, this.prefetcher.getUnusedCount());
+        assertEquals(0, this.prefetcher.getPendingCount());
+        assertEquals(0.5, this.prefetcher.getUseRate(), 0);
+
+        // An expired tile may be requested again.
+        assertTrue(this.prefetcher.submit("b", new NoOp()));
+    }
+
+    /** Tests that a prediction's texel size follows the layers' and tessellator's level of detail criterion. */
+    @Test
+    public void testTexelSize()
+    {
+        TilePrefetcher.Prediction prediction = new TilePrefetcher.Prediction(this.globe, LatLon.fromDegrees(0, 0),
+            1e6, Angle.fromDegrees(45));
+        assertEquals(1e6 * 0.01 / this.globe.getRadius(), prediction.computeTexelSize(2), 1e-12);
+
+        // A narrower field of view shows more detail.
+        prediction = new TilePrefetcher.Prediction(this.globe, LatLon.fromDegrees(0, 0), 1e6, Angle.fromDegrees(20));
+        assertTrue(prediction.computeTexelSize(2) < 1e6 * 0.01 / this.globe.getRadius());
+    }
+
+    protected static class NoOp implements Runnable
+    {
+        public void run()
+        {
+        }
+    }
+}
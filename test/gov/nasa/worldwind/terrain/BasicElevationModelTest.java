@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.util.*;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.DoubleBuffer;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class BasicElevationModelTest
+{
+    protected static final Sector SECTOR = Sector.fromDegrees(10, 25.3, -40, -21.7);
+    protected static final int TARGET_LEVEL = 3;
+
+    protected GridElevationModel elevationModel;
+
+    @Before
+    public void setUp()
+    {
+        this.elevationModel = new GridElevationModel(new Random(3));
+    }
+
+    /** Tests that the tile grid finds the tile that the tile set's first match provides, and that its cells are used. */
+    @Test
+    public void testGridMatchesTileSet()
+    {
+        BasicElevationModel.Elevations elevations = this.elevationModel.getElevations(SECTOR,
+            this.elevationModel.getLevels(), TARGET_LEVEL);
+        assertNotNull(elevations.grid);
+
+        Random random = new Random(5);
+        for (int i = 0; i < 20000; i++)
+        {
+            // Half the locations are on tile edges, where neighbouring tiles share the location.
+            double lat = SECTOR.getMinLatitude().degrees - 1 + random.nextDouble() * (SECTOR.getDeltaLatDegrees() + 2);
+            double lon = SECTOR.getMinLongitude().degrees - 1 + random.nextDouble() * (SECTOR.getDeltaLonDegrees() + 2);
+            if (random.nextBoolean())
+                lat = 1.25 * Math.round(lat / 1.25);
+            if (random.nextBoolean())
+                lon = 1.25 * Math.round(lon / 1.25);
+
+            assertSame(lat + ", " + lon, elevations.findTile(lat, lon), elevations.getTile(lat, lon));
+        }
+    }
+
+    /** Tests that batch elevations are those of the tile set's first matching tile. */
+    @Test
+    public void testBatchElevations()
+    {
+        BasicElevationModel.Elevations elevations = this.elevationModel.getElevations(SECTOR,
+            this.elevationModel.getLevels(), TARGET_LEVEL);
+
+        Random random = new Random(9);
+        double[] lats = new double[5000];
+        double[] lons = new double[lats.length];
+        for (int i = 0; i < lats.length; i++)
+        {
+            lats[i] = 9 + random.nextDouble() * 18;
+            lons[i] = -41 + random.nextDouble() * 21;
+        }
+
+        double[] actual = new double[lats.length];
+        elevations.getElevations(lats, lons, actual);
+
+        for (int i = 0; i < lats.length; i++)
+        {
+            BasicElevationModel.ElevationTile tile = elevations.findTile(lats[i], lons[i]);
+            double expected = tile != null ? this.elevationModel.lookupElevation(Angle.fromDegrees(lats[i]),
+                Angle.fromDegrees(lons[i]), tile) : Double.NaN;
+            assertEquals(lats[i] + ", " + lons[i], expected, actual[i], 0);
+        }
+    }
+
+    /**
+     * An elevation model whose level zero tiles and a random subset of its other tiles are in memory. Each tile's
+     * elevations identify the tile.
+     */
+    protected static class GridElevationModel extends BasicElevationModel
+    {
+        protected Map<TileKey, ElevationTile> tiles = new HashMap<TileKey, ElevationTile>();
+        protected Random random;
+
+        public GridElevationModel(Random random)
+        {
+            super(createParams());
+            this.random = random;
+        }
+
+        protected static AVList createParams()
+        {
+            AVList params = new AVListImpl();
+            params.setValue(AVKey.SECTOR, Sector.FULL_SPHERE);
+            params.setValue(AVKey.LEVEL_ZERO_TILE_DELTA, LatLon.fromDegrees(20, 20));
+            params.setValue(AVKey.NUM_LEVELS, 5);
+            params.setValue(AVKey.TILE_WIDTH, 16);
+            params.setValue(AVKey.TILE_HEIGHT, 16);
+            params.setValue(AVKey.DATA_CACHE_NAME, "Test/BasicElevationModelTest");
+            params.setValue(AVKey.DATASET_NAME, "test");
+            params.setValue(AVKey.FORMAT_SUFFIX, ".bil");
+            params.setValue(AVKey.NETWORK_RETRIEVAL_ENABLED, false);
+            return params;
+        }
+
+        @Override
+        protected ElevationTile getTileFromMemory(TileKey key)
+        {
+            if (!this.tiles.containsKey(key))
+            {
+                ElevationTile tile = null;
+                if (key.getLevelNumber() == 0 || this.random.nextBoolean())
+                {
+                    tile = this.createTile(key);
+                    double[] values = new double[tile.getWidth() * tile.getHeight()];
+                    for (int i = 0; i < values.length; i++)
+                    {
+                        values[i] = 1000 * key.getLevelNumber() + 10 * key.getRow() + key.getColumn() + i;
+                    }
+                    tile.setElevations(new BufferWrapper.DoubleBufferWrapper(DoubleBuffer.wrap(values)), this);
+                }
+                this.tiles.put(key, tile);
+            }
+
+            return this.tiles.get(key);
+        }
+
+        @Override
+        protected void requestTile(TileKey key)
+        {
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class HorizonCullerTest
+{
+    /** A ridge 3000 meters high, east of the eye. */
+    protected static final Sector RIDGE = Sector.fromDegrees(-0.3, 0.3, 0.2, 0.25);
+
+    protected Globe globe;
+    protected HorizonCuller culler;
+
+    @Before
+    public void setUp()
+    {
+        this.globe = new EllipsoidalGlobe(Earth.WGS84_EQUATORIAL_RADIUS, Earth.WGS84_POLAR_RADIUS, Earth.WGS84_ES,
+            new RidgeElevationModel());
+        this.culler = new HorizonCuller();
+    }
+
+    /** Tests that extents behind the horizon are culled and that nearby extents are not. */
+    @Test
+    public void testBeyondHorizon()
+    {
+        this.culler.update(this.globe, 1, this.globe.computePointFromPosition(Position.fromDegrees(0, 0, 1000)));
+
+        assertFalse(this.culler.isBeyondHorizon(this.computeExtent(Sector.fromDegrees(-1, 1, 0.5, 1))));
+        assertTrue(this.culler.isBeyondHorizon(this.computeExtent(Sector.fromDegrees(-1, 1, 30, 31))));
+        assertTrue(this.culler.isBeyondHorizon(this.computeExtent(Sector.fromDegrees(-1, 1, 179, 180))));
+        assertTrue(this.culler.isBeyondHorizon(this.computeExtent(Sector.fromDegrees(40, 41, -10, -9))));
+    }
+
+    /** Tests that every point of the extents culled by the horizon is hidden by the globe. */
+    @Test
+    public void testHorizonIsConservative()
+    {
+        Random random = new Random(7);
+        for (int n = 0; n < 200; n++)
+        {
+            Position eye = Position.fromDegrees(random.nextDouble() * 160 - 80, random.nextDouble() * 360 - 180,
+                Math.pow(10, 1 + random.nextDouble() * 6));
+            Vec4 eyePoint = this.globe.computePointFromPosition(eye);
+            this.culler.update(this.globe, 1, eyePoint);
+
+            for (int i = 0; i < 50; i++)
+            {
+                double size = Math.pow(2, -random.nextInt(8));
+                double lat = eye.getLatitude().degrees + (random.nextDouble() - 0.5) * 40;
+                double lon = eye.getLongitude().degrees + (random.nextDouble() - 0.5) * 40;
+                lat = Math.max(-89, Math.min(89 - size, lat));
+                lon = Math.max(-180, Math.min(180 - size, lon));
+                Sector sector = Sector.fromDegrees(lat, lat + size, lon, lon + size);
+
+                if (this.culler.isBeyondHorizon(this.computeExtent(sector)))
+                    this.assertHidden(eyePoint, sector, this.globe.getMinAndMaxElevations(sector)[1]);
+            }
+        }
+    }
+
+    /** Tests that extents behind a nearby ridge are occluded, and that extents beside or above it are not. */
+    @Test
+    public void testOccluded()
+    {
+        this.culler.update(this.globe, 1, this.globe.computePointFromPosition(Position.fromDegrees(0, 0, 100)));
+        this.culler.setOccluders(
+            Arrays.asList(this.createTile(RIDGE), this.createTile(Sector.fromDegrees(1, 2, 1, 2))));
+        assertTrue(this.culler.getOccluderCount() > 0);
+
+        assertTrue(this.culler.isOccluded(this.computeExtent(Sector.fromDegrees(-0.02, 0.02, 0.4, 0.44))));
+        assertFalse(this.culler.isOccluded(this.computeExtent(Sector.fromDegrees(-0.02, 0.02, 0.1, 0.14))));
+        assertFalse(this.culler.isOccluded(this.computeExtent(Sector.fromDegrees(0.8, 0.84, 0.4, 0.44))));
+        assertFalse(this.culler.isOccluded(this.computeExtent(RIDGE)));
+
+        // From high above the ridge, nothing behind it is hidden.
+        this.culler.update(this.globe, 1, this.globe.computePointFromPosition(Position.fromDegrees(0, 0, 50000)));
+        this.culler.setOccluders(Arrays.asList(this.createTile(RIDGE)));
+        assertFalse(this.culler.isOccluded(this.computeExtent(Sector.fromDegrees(-0.02, 0.02, 0.4, 0.44))));
+    }
+
+    /** Tests that 2D globes are not culled. */
+    @Test
+    public void testFlatGlobe()
+    {
+        Globe flat = new FlatGlobe(Earth.WGS84_EQUATORIAL_RADIUS, Earth.WGS84_POLAR_RADIUS, Earth.WGS84_ES,
+            new ZeroElevationModel());
+        this.culler.update(flat, 1, flat.computePointFromPosition(Position.fromDegrees(0, 0, 1000)));
+
+        assertFalse(this.culler.isBeyondHorizon(
+            Sector.computeBoundingBox(flat, 1, Sector.fromDegrees(-1, 1, 30, 31))));
+    }
+
+    protected Extent computeExtent(Sector sector)
+    {
+        return Sector.computeBoundingBox(this.globe, 1, sector);
+    }
+
+    protected RectangularTessellator.RectTile createTile(Sector sector)
+    {
+        return new RectangularTessellator.RectTile(null, this.computeExtent(sector), 10, 20, sector);
+    }
+
+    /** Asserts that the lines from the eye to points of a sector pass through the sphere beneath the terrain. */
+    protected void assertHidden(Vec4 eyePoint, Sector sector, double maxElevation)
+    {
+        double radius = this.globe.getPolarRadius() + Math.min(0, this.globe.getMinElevation());
+        for (int j = 0; j <= 4; j++)
+        {
+            for (int i = 0; i <= 4; i++)
+            {
+                Angle lat = Angle.mix(j / 4d, sector.getMinLatitude(), sector.getMaxLatitude());
+                Angle lon = Angle.mix(i / 4d, sector.getMinLongitude(), sector.getMaxLongitude());
+                Vec4 point = this.globe.computePointFromPosition(lat, lon, maxElevation);
+
+                // The distance from the globe's center to the segment between the eye and the point.
+                Vec4 d = point.subtract3(eyePoint);
+                double t = Math.max(0, Math.min(1, -eyePoint.dot3(d) / d.dot3(d)));
+                double distance = eyePoint.add3(d.multiply3(t)).getLength3();
+                assertTrue(sector + " from " + eyePoint, distance < radius);
+            }
+        }
+    }
+
+    /** An elevation model with a ridge 3000 meters high and zero elevation elsewhere. */
+    protected static class RidgeElevationModel extends ZeroElevationModel
+    {
+        @Override
+        public double getMaxElevation()
+        {
+            return 3000;
+        }
+
+        @Override
+        public double[] getExtremeElevations(Sector sector)
+        {
+            if (RIDGE.contains(sector))
+                return new double[] {3000, 3000};
+
+            return new double[] {0, sector.intersects(RIDGE) ? 3000 : 1};
+        }
+    }
+}
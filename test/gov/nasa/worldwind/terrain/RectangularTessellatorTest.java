@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.terrain;
+
+import com.jogamp.common.nio.Buffers;
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.cache.MemoryCache;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import gov.nasa.worldwind.layers.LayerList;
+import gov.nasa.worldwind.render.*;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.FloatBuffer;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class RectangularTessellatorTest
+{
+    protected WavyElevationModel elevationModel;
+    protected Globe globe;
+    protected RectangularTessellator tessellator;
+    protected DrawContext dc;
+
+    @Before
+    public void setUp()
+    {
+        this.elevationModel = new WavyElevationModel();
+        this.globe = new EllipsoidalGlobe(Earth.WGS84_EQUATORIAL_RADIUS, Earth.WGS84_POLAR_RADIUS, Earth.WGS84_ES,
+            this.elevationModel);
+        this.tessellator = new RectangularTessellator();
+
+        // Vertices are computed without GL when vertex buffer objects are not in use.
+        this.dc = new DrawContextImpl();
+        this.dc.setModel(new BasicModel(this.globe, new LayerList()));
+        this.dc.setVerticalExaggeration(1);
+        GLRuntimeCapabilities caps = new GLRuntimeCapabilities();
+        caps.setVertexBufferObjectEnabled(false);
+        this.dc.setGLRuntimeCapabilities(caps);
+
+        if (!WorldWind.getMemoryCacheSet().containsCache(RectangularTessellator.CACHE_ID))
+        {
+            MemoryCache cache = WorldWind.getMemoryCacheSet().createCache(8500000, 10000000);
+            WorldWind.getMemoryCacheSet().addCache(RectangularTessellator.CACHE_ID, cache);
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.elevationModel.gate.countDown();
+    }
+
+    /** Tests that the primitive vertex path computes exactly the vertices of the per-location path. */
+    @Test
+    public void testVerticesMatchLocations()
+    {
+        this.assertVerticesMatch(Sector.fromDegrees(30, 36, -120, -114), 20, 1, true);
+        this.assertVerticesMatch(Sector.fromDegrees(-12.5, -10, 43.1, 45.6), 15, 2.5, false);
+        this.assertVerticesMatch(Sector.fromDegrees(-90, -54, 144, 180), 20, 0, true);
+    }
+
+    /** Tests that vertices computed on the vertex pool are those computed on the calling thread. */
+    @Test
+    public void testParallelVertices()
+    {
+        RectangularTessellator.RectTile top = this.createTopLevelTile();
+        List<RectangularTessellator.RectTile> tiles = Arrays.asList(this.tessellator.split(this.dc, top));
+
+        this.tessellator.parallelism = 4;
+        this.tessellator.maxFrameWait = 10000;
+        this.tessellator.currentTiles.addAll(tiles);
+        this.tessellator.makeVertsInParallel(this.dc);
+
+        assertEquals(tiles, this.tessellator.currentTiles);
+        assertTrue(this.tessellator.pendingVertices.isEmpty());
+        for (RectangularTessellator.RectTile tile : tiles)
+        {
+            assertNotNull(tile.ri);
+            this.assertVerticesEqual(tile, tile.ri.vertices);
+        }
+    }
+
+    /** Tests that a tile whose vertices are not ready by the frame's deadline is drawn as its parent. */
+    @Test
+    public void testMissingVerticesDrawParent() throws Exception
+    {
+        RectangularTessellator.RectTile top = this.createTopLevelTile();
+        this.tessellator.parallelism = 4;
+        this.tessellator.maxFrameWait = 10000;
+        this.tessellator.currentTiles.add(top);
+        this.tessellator.makeVertsInParallel(this.dc);
+        assertNotNull(top.ri);
+
+        // Hold the children's vertices back until the frame has given up on them.
+        this.elevationModel.gate = new CountDownLatch(1);
+        this.tessellator.maxFrameWait = 0;
+        List<RectangularTessellator.RectTile> tiles = Arrays.asList(this.tessellator.split(this.dc, top));
+        this.tessellator.currentTiles.clear();
+        this.tessellator.currentTiles.addAll(tiles);
+        this.tessellator.makeVertsInParallel(this.dc);
+
+        assertEquals(Arrays.asList(top), this.tessellator.currentTiles);
+        assertEquals(4, this.tessellator.pendingVertices.size());
+        assertTrue(this.dc.getRedrawRequested() > 0);
+
+        // The children are drawn once their vertices are ready.
+        this.elevationModel.gate.countDown();
+        for (RectangularTessellator.VertexTask task : this.tessellator.pendingVertices.values())
+        {
+            task.quietlyJoin();
+        }
+        this.tessellator.currentTiles.clear();
+        this.tessellator.currentTiles.addAll(tiles);
+        this.tessellator.makeVertsInParallel(this.dc);
+
+        assertEquals(tiles, this.tessellator.currentTiles);
+        assertTrue(this.tessellator.pendingVertices.isEmpty());
+        for (RectangularTessellator.RectTile tile : tiles)
+        {
+            this.assertVerticesEqual(tile, tile.ri.vertices);
+        }
+    }
+
+    /** Tests that a tile whose vertices fail is not computed again until the retry delay has passed. */
+    @Test
+    public void testFailedVerticesBackOff()
+    {
+        RectangularTessellator.RectTile top = this.createTopLevelTile();
+        this.tessellator.parallelism = 4;
+        this.tessellator.maxFrameWait = 10000;
+
+        this.elevationModel.failing = true;
+        this.tessellator.currentTiles.add(top);
+        this.tessellator.makeVertsInParallel(this.dc);
+        assertTrue(this.tessellator.currentTiles.isEmpty());
+        assertEquals(1, this.tessellator.failedVertices.size());
+
+        // The next frame neither submits the tile again nor draws it.
+        this.elevationModel.failing = false;
+        this.tessellator.currentTiles.add(top);
+        this.tessellator.makeVertsInParallel(this.dc);
+        assertTrue(this.tessellator.currentTiles.isEmpty());
+        assertTrue(this.tessellator.pendingVertices.isEmpty());
+        assertNull(top.ri);
+
+        // Once the retry delay has passed, the tile's vertices are computed again.
+        for (Map.Entry<RectangularTessellator.CacheKey, Long> entry : this.tessellator.failedVertices.entrySet())
+        {
+            entry.setValue(entry.getValue() - RectangularTessellator.FAILED_VERTICES_RETRY_DELAY);
+        }
+        this.tessellator.currentTiles.add(top);
+        this.tessellator.makeVertsInParallel(this.dc);
+        assertEquals(Arrays.asList(top), this.tessellator.currentTiles);
+        assertNotNull(top.ri);
+        assertTrue(this.tessellator.failedVertices.isEmpty());
+    }
+
+    /** Tests that quantized vertices are within the quantization tolerance and take half the memory. */
+    @Test
+    public void testQuantizedVertices()
+    {
+        RectangularTessellator.RectTile tile = this.tessellator.createTile(this.dc,
+            Sector.fromDegrees(30, 30.234375, -120, -119.765625), 8);
+        this.tessellator.quantizeVertices = true;
+        this.tessellator.buildVerts(this.dc, tile, true);
+        assertTrue(tile.ri.isQuantized());
+
+        FloatBuffer expected = Buffers.newDirectFloatBuffer(3 * tile.ri.getVertexCount());
+        this.tessellator.computeVertices(this.globe, tile, 1, true, tile.ri.getReferenceCenter(), expected);
+        double tolerance = RectangularTessellator.QUANTIZATION_TOLERANCE * tile.getCellSize() * this.globe.getRadius();
+
+        float[] vertex = new float[3];
+        for (int i = 0; i < tile.ri.getVertexCount(); i++)
+        {
+            tile.ri.getVertex(i, vertex);
+            for (int j = 0; j < 3; j++)
+            {
+                assertEquals("coordinate " + (3 * i + j), expected.get(3 * i + j), vertex[j], tolerance);
+            }
+        }
+
+        RectangularTessellator.RenderInfo floatInfo = new RectangularTessellator.RenderInfo(this.dc, tile.density,
+            expected, tile.ri.getReferenceCenter());
+        assertTrue(tile.ri.getSizeInBytes() < 0.55 * floatInfo.getSizeInBytes());
+
+        // Vertices that can't meet the tolerance are not quantized.
+        assertNull(RectangularTessellator.QuantizedVertices.quantize(expected, 1e-3));
+    }
+
+    protected RectangularTessellator.RectTile createTopLevelTile()
+    {
+        return this.tessellator.createTile(this.dc, Sector.fromDegrees(0, 60, 0, 60), 0);
+    }
+
+    protected void assertVerticesEqual(RectangularTessellator.RectTile tile, FloatBuffer vertices)
+    {
+        FloatBuffer expected = Buffers.newDirectFloatBuffer(vertices.capacity());
+        this.tessellator.computeVertices(this.globe, tile, 1, true,
+            this.globe.computePointFromPosition(tile.sector.getCentroid(), 0), expected);
+
+        for (int i = 0; i < expected.capacity(); i++)
+        {
+            assertEquals("coordinate " + i, expected.get(i), vertices.get(i), 0);
+        }
+    }
+
+    protected void assertVerticesMatch(Sector sector, int density, double verticalExaggeration, boolean makeSkirts)
+    {
+        RectangularTessellator.RectTile tile = new RectangularTessellator.RectTile(this.tessellator, null, 0, density,
+            sector);
+        Vec4 refCenter = this.globe.computePointFromPosition(sector.getCentroid(), 0);
+
+        FloatBuffer expected = this.computeVerticesFromLocations(tile, verticalExaggeration, makeSkirts, refCenter);
+        FloatBuffer actual = Buffers.newDirectFloatBuffer(expected.capacity());
+        this.tessellator.computeVertices(this.globe, tile, verticalExaggeration, makeSkirts, refCenter, actual);
+
+        assertEquals(expected.capacity(), actual.position());
+        for (int i = 0; i < expected.capacity(); i++)
+        {
+            assertEquals("coordinate " + i, expected.get(i), actual.get(i), 0);
+        }
+    }
+
+    /** The per-location computation that the tessellator used before computing vertices from primitive arrays. */
+    protected FloatBuffer computeVerticesFromLocations(RectangularTessellator.RectTile tile,
+        double verticalExaggeration, boolean makeSkirts, Vec4 refCenter)
+    {
+        ArrayList<LatLon> latlons = this.tessellator.computeLocations(tile);
+        double[] elevations = new double[latlons.size()];
+        this.globe.getElevations(tile.sector, latlons, tile.getResolution(), elevations);
+
+        Double exaggeratedMinElevation = makeSkirts ? this.globe.getMinElevation() : null;
+        if (exaggeratedMinElevation != null && (exaggeratedMinElevation < 0 || verticalExaggeration <= 0))
+            exaggeratedMinElevation *= verticalExaggeration;
+
+        FloatBuffer verts = Buffers.newDirectFloatBuffer(3 * latlons.size());
+        Iterator<LatLon> iter = latlons.iterator();
+        for (int j = 0, k = 0; j <= tile.density + 2; j++)
+        {
+            for (int i = 0; i <= tile.density + 2; i++)
+            {
+                LatLon latlon = iter.next();
+                double elevation = verticalExaggeration * elevations[k++];
+                if (exaggeratedMinElevation != null &&
+                    (j == 0 || j >= tile.density + 2 || i == 0 || i >= tile.density + 2))
+                    elevation = exaggeratedMinElevation;
+
+                Vec4 p = this.globe.computePointFromPosition(latlon.getLatitude(), latlon.getLongitude(), elevation);
+                verts.put((float) (p.x - refCenter.x));
+                verts.put((float) (p.y - refCenter.y));
+                verts.put((float) (p.z - refCenter.z));
+            }
+        }
+
+        return verts;
+    }
+
+    /** An elevation model whose elevations vary smoothly everywhere, so that every vertex has a distinct elevation. */
+    protected static class WavyElevationModel extends ZeroElevationModel
+    {
+        /** Elevations wait for this latch, so that tests can hold vertex computation back. */
+        protected volatile CountDownLatch gate = new CountDownLatch(0);
+        /** Elevations fail while this is true, so that tests can make vertex computation fail. */
+        protected volatile boolean failing;
+
+        protected static double computeElevation(double latitude, double longitude)
+        {
+            return 3000 * Math.sin(latitude * 0.7) * Math.cos(longitude * 0.4) + 500;
+        }
+
+        @Override
+        public double getMinElevation()
+        {
+            return -2500;
+        }
+
+        @Override
+        public double getMaxElevation()
+        {
+            return 3500;
+        }
+
+        @Override
+        public double getUnmappedElevation(Angle latitude, Angle longitude)
+        {
+            return computeElevation(latitude.degrees, longitude.degrees);
+        }
+
+        @Override
+        public double getElevations(Sector sector, List<? extends LatLon> latlons, double targetResolution,
+            double[] buffer)
+        {
+            for (int i = 0; i < latlons.size(); i++)
+            {
+                buffer[i] = computeElevation(latlons.get(i).getLatitude().degrees,
+                    latlons.get(i).getLongitude().degrees);
+            }
+
+            return targetResolution;
+        }
+
+        @Override
+        public double getElevations(Sector sector, double[] latitudes, double[] longitudes, double targetResolution,
+            double[] buffer)
+        {
+            try
+            {
+                this.gate.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            if (this.failing)
+                throw new IllegalStateException("failing");
+
+            for (int i = 0; i < latitudes.length; i++)
+            {
+                buffer[i] = computeElevation(latitudes[i], longitudes[i]);
+            }
+
+            return targetResolution;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest
+{
+    /** Tests that durations are counted by the bucket of their power of two. */
+    @Test
+    public void testBucketing()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(-5);
+        histogram.record(2);
+        histogram.record(3);
+        histogram.record(1023);
+        histogram.record(1024);
+        histogram.record(Long.MAX_VALUE);
+
+        long[] counts = histogram.getBucketCounts();
+        assertEquals(LatencyHistogram.NUM_BUCKETS, counts.length);
+        assertEquals(3, counts[0]); // 0, 1 and the negative duration
+        assertEquals(2, counts[1]); // 2 and 3
+        assertEquals(1, counts[9]); // 1023
+        assertEquals(1, counts[10]); // 1024
+        assertEquals(1, counts[62]); // Long.MAX_VALUE
+        assertEquals(8, histogram.getCount());
+    }
+
+    /** Tests that percentiles are the upper bounds of the buckets holding them. */
+    @Test
+    public void testPercentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getMean(), 0);
+
+        for (int i = 0; i < 90; i++)
+        {
+            histogram.record(100); // bucket 6, 64 to 127
+        }
+        for (int i = 0; i < 10; i++)
+        {
+            histogram.record(5000); // bucket 12, 4096 to 8191
+        }
+
+        assertEquals(127, histogram.getPercentile(0));
+        assertEquals(127, histogram.getPercentile(50));
+        assertEquals(127, histogram.getPercentile(90));
+        assertEquals(8191, histogram.getPercentile(91));
+        assertEquals(8191, histogram.getPercentile(100));
+        assertEquals(590, histogram.getMean(), 1e-9);
+    }
+
+    /** Tests that adding histograms sums their counts. */
+    @Test
+    public void testAdd()
+    {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        b.record(10);
+        b.record(3000);
+
+        a.add(b);
+        assertEquals(3, a.getCount());
+        assertEquals(2, a.getBucketCounts()[3]);
+        assertEquals(1, a.getBucketCounts()[11]);
+        assertEquals(1, b.getBucketCounts()[3]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPercentileOutOfRange()
+    {
+        new LatencyHistogram().getPercentile(101);
+    }
+}
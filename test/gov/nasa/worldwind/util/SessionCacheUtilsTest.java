@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.cache.ConcurrentSessionCache;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.beans.*;
+import java.net.URL;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class SessionCacheUtilsTest
+{
+    /**
+     * Tests that a thread waiting for another thread's load of the same key is notified through its own listener, and
+     * has its absent resource list updated, when the load completes.
+     */
+    @Test
+    public void testWaiterIsNotified() throws Exception
+    {
+        final ConcurrentSessionCache cache = new ConcurrentSessionCache();
+        final String key = "http://localhost/capabilities";
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        Thread loader = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    cache.load(key, new Callable<Object>()
+                    {
+                        public Object call() throws Exception
+                        {
+                            loading.countDown();
+                            release.await();
+                            return "capabilities";
+                        }
+                    });
+                }
+                catch (Exception e)
+                {
+                    fail(e.getMessage());
+                }
+            }
+        });
+        loader.start();
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+        final AtomicInteger notifications = new AtomicInteger();
+        final AbsentResourceList absentResources = new AbsentResourceList();
+        absentResources.markResourceAbsent(7);
+        Thread waiter = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    SessionCacheUtils.retrieveSessionData(new URL(key), cache, key, absentResources, 7,
+                        new PropertyChangeListener()
+                        {
+                            public void propertyChange(PropertyChangeEvent event)
+                            {
+                                if ("retrieved".equals(event.getPropertyName()))
+                                    notifications.incrementAndGet();
+                            }
+                        }, "retrieved");
+                }
+                catch (Exception e)
+                {
+                    fail(e.getMessage());
+                }
+            }
+        });
+        waiter.start();
+
+        // Give the waiter time to start waiting for the load, then let the load finish.
+        Thread.sleep(200);
+        release.countDown();
+        loader.join(10000);
+        waiter.join(10000);
+
+        assertEquals("capabilities", cache.get(key));
+        assertEquals(1, notifications.get());
+        assertFalse(absentResources.isResourceAbsent(7));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.cache.BasicDataFileStore;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class WWIOTest
+{
+    protected File root;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.root = File.createTempFile("WWIOTest", "");
+        assertTrue(this.root.delete());
+        assertTrue(this.root.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        WWIO.deleteDirectory(this.root);
+        this.root.delete();
+    }
+
+    /**
+     * Tests that files a file store keeps compressed are inflated by the readers of such files, that other gzip files
+     * are not, and that the general readers read every file as it is.
+     */
+    @Test
+    public void testCompressedContent() throws Exception
+    {
+        byte[] elevations = new byte[8192];
+        for (int i = 0; i < elevations.length; i += 2)
+        {
+            elevations[i] = (byte) (i / 64);
+        }
+
+        File compressed = new File(this.root, "1_1.bil");
+        WWIO.saveBufferToCompressedFile(ByteBuffer.wrap(elevations), compressed);
+        File gzip = new File(this.root, "1_2.bil.gz");
+        WWIO.saveBufferToGZipFile(ByteBuffer.wrap(elevations), gzip);
+        File plain = new File(this.root, "1_3.bil");
+        WWIO.saveBuffer(ByteBuffer.wrap(elevations), plain);
+        assertTrue(compressed.length() < plain.length() / 3);
+
+        assertTrue(WWIO.isCompressedContent(WWIO.readFileToBuffer(compressed)));
+        assertFalse(WWIO.isCompressedContent(WWIO.readFileToBuffer(gzip)));
+        assertFalse(WWIO.isCompressedContent(WWIO.readFileToBuffer(plain)));
+        assertFalse(WWIO.isCompressedContent(ByteBuffer.allocate(4)));
+
+        ByteBuffer expected = ByteBuffer.wrap(elevations);
+        assertEquals(expected, WWIO.inflateIfCompressed(WWIO.readFileToBuffer(compressed)));
+        assertEquals(expected, WWIO.readGZipFileToBuffer(compressed));
+        ByteBuffer buffer = WWIO.readFileToBuffer(gzip);
+        assertSame(buffer, WWIO.inflateIfCompressed(buffer));
+
+        // The general readers don't inflate.
+        assertEquals(WWIO.readFileToBuffer(compressed), WWIO.readURLContentToBuffer(compressed.toURI().toURL()));
+        assertEquals(expected, WWIO.readURLContentToBuffer(plain.toURI().toURL()));
+
+        for (File file : new File[] {compressed, gzip, plain})
+        {
+            InputStream stream = WWIO.openInflatingStream(WWIO.openStream(file));
+            try
+            {
+                assertEquals(file.getName(), file == gzip ? WWIO.readFileToBuffer(gzip) : expected,
+                    WWIO.readStreamToBuffer(stream));
+            }
+            finally
+            {
+                WWIO.closeStream(stream, file.getPath());
+            }
+        }
+    }
+
+    /** Tests that a file store compresses only the content types it's configured to when compression is enabled. */
+    @Test
+    public void testFileStoreCompression()
+    {
+        BasicDataFileStore fileStore = new BasicDataFileStore(this.root);
+        assertFalse(fileStore.isCompressed("Earth/SRTM/1/1/1_1.bil"));
+
+        fileStore.setCompressContent(true);
+        assertTrue(fileStore.isCompressed("Earth/SRTM/1/1/1_1.bil"));
+        assertTrue(fileStore.isCompressed("capabilities.XML"));
+        assertTrue(fileStore.isCompressed("places.geojson"));
+        assertFalse(fileStore.isCompressed("Earth/BMNG/1/1/1_1.dds"));
+        assertFalse(fileStore.isCompressed("places.kmz"));
+    }
+}
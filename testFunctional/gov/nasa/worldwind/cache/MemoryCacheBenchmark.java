@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the multi-threaded throughput of {@link BasicMemoryCache} and {@link ConcurrentMemoryCache}. Each thread
+ * performs a mix of lookups and adds over a key space larger than the cache, approximating the render thread looking
+ * up tiles while retrieval and task threads add them. Run with the number of threads as an optional argument.
+ */
+public class MemoryCacheBenchmark
+{
+    protected static final int KEY_SPACE = 200000;
+    protected static final long ENTRY_SIZE = 1000;
+    protected static final long CAPACITY = 50000 * ENTRY_SIZE;
+    protected static final int OPERATIONS_PER_THREAD = 2000000;
+    /** Percentage of operations that are lookups. The remainder add the key when the lookup misses. */
+    protected static final int LOOKUP_PERCENT = 90;
+
+    public static void main(String[] args) throws Exception
+    {
+        int numThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+
+        // Warm up both implementations so the JIT compiles them before measuring.
+        run(new BasicMemoryCache((long) (0.85 * CAPACITY), CAPACITY), numThreads);
+        run(new ConcurrentMemoryCache((long) (0.85 * CAPACITY), CAPACITY), numThreads);
+
+        for (int i = 0; i < 3; i++)
+        {
+            report("BasicMemoryCache", new BasicMemoryCache((long) (0.85 * CAPACITY), CAPACITY), numThreads);
+            report("ConcurrentMemoryCache", new ConcurrentMemoryCache((long) (0.85 * CAPACITY), CAPACITY),
+                numThreads);
+        }
+    }
+
+    protected static void report(String name, MemoryCache cache, int numThreads) throws Exception
+    {
+        AtomicLong hits = new AtomicLong();
+        long elapsed = run(cache, numThreads, hits);
+        long ops = (long) numThreads * OPERATIONS_PER_THREAD;
+
+        System.out.printf("%-22s threads %2d  %8.0f kops/s  hit ratio %.3f%n", name, numThreads,
+            ops / (elapsed / 1e3), hits.get() / (double) (ops * LOOKUP_PERCENT / 100));
+    }
+
+    protected static long run(MemoryCache cache, int numThreads) throws Exception
+    {
+        return run(cache, numThreads, new AtomicLong());
+    }
+
+    protected static long run(final MemoryCache cache, int numThreads, final AtomicLong hits) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        final CountDownLatch start = new CountDownLatch(1);
+        Future<?>[] futures = new Future<?>[numThreads];
+
+        for (int t = 0; t < numThreads; t++)
+        {
+            final long seed = t;
+            futures[t] = executor.submit(new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    Random random = new Random(seed);
+                    long localHits = 0;
+                    start.await();
+
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++)
+                    {
+                        // Skew the key distribution so a hot set exists, as it does for tiles near the eye.
+                        double r = random.nextDouble();
+                        Integer key = (int) (r * r * r * KEY_SPACE);
+
+                        if (random.nextInt(100) < LOOKUP_PERCENT)
+                        {
+                            if (cache.getObject(key) != null)
+                                localHits++;
+                        }
+                        else if (!cache.contains(key))
+                        {
+                            cache.add(key, key, ENTRY_SIZE);
+                        }
+                    }
+
+                    hits.addAndGet(localHits);
+                    return null;
+                }
+            });
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures)
+        {
+            future.get();
+        }
+        long elapsed = (System.nanoTime() - startTime) / 1000;
+
+        executor.shutdown();
+
+        return elapsed;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Replays a memory cache access trace against {@link BasicMemoryCache}, {@link ConcurrentMemoryCache} and {@link
+ * ScanResistantMemoryCache} and prints the hit ratio of each. A trace has one operation per line: <code>G key</code>
+ * for a lookup, <code>A key size</code> for an add, and <code>L key size</code> for a lookup followed by an add if the
+ * lookup missed. Record a trace from a running application with {@link TraceRecordingMemoryCache}.
+ * <p/>
+ * Usage: <code>MemoryCacheTraceSimulator [traceFile [capacity]]</code>. Without a trace file, a synthetic tile trace
+ * is generated: a view hovering over a region for many frames, interrupted by fast pans across tiles that are seen
+ * once, and a bulk retrieval that touches a large sector once.
+ */
+public class MemoryCacheTraceSimulator
+{
+    protected static class Operation
+    {
+        protected final char type;
+        protected final String key;
+        protected final long size;
+
+        public Operation(char type, String key, long size)
+        {
+            this.type = type;
+            this.key = key;
+            this.size = size;
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        List<Operation> trace = args.length > 0 ? readTrace(new File(args[0])) : syntheticTrace();
+        long capacity = args.length > 1 ? Long.parseLong(args[1]) : 2000L * 100000L;
+
+        System.out.printf("%d operations, capacity %d%n", trace.size(), capacity);
+        report("BasicMemoryCache", new BasicMemoryCache((long) (0.85 * capacity), capacity), trace);
+        report("ConcurrentMemoryCache", new ConcurrentMemoryCache((long) (0.85 * capacity), capacity), trace);
+        report("ScanResistantMemoryCache", new ScanResistantMemoryCache((long) (0.85 * capacity), capacity), trace);
+    }
+
+    protected static void report(String name, MemoryCache cache, List<Operation> trace)
+    {
+        long lookups = 0;
+        long hits = 0;
+
+        for (Operation op : trace)
+        {
+            if (op.type == 'A')
+            {
+                cache.add(op.key, op.key, op.size);
+                continue;
+            }
+
+            lookups++;
+            if (cache.getObject(op.key) != null)
+                hits++;
+            else if (op.type == 'L')
+                cache.add(op.key, op.key, op.size);
+        }
+
+        System.out.printf("%-26s hit ratio %.4f  misses %d%n", name, hits / (double) lookups, lookups - hits);
+    }
+
+    protected static List<Operation> readTrace(File file) throws IOException
+    {
+        List<Operation> trace = new ArrayList<Operation>();
+
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens.length >= 2 && tokens[0].equals("G"))
+                    trace.add(new Operation('G', tokens[1], 0));
+                else if (tokens.length >= 3 && (tokens[0].equals("A") || tokens[0].equals("L")))
+                    trace.add(new Operation(tokens[0].charAt(0), tokens[1], Long.parseLong(tokens[2])));
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        return trace;
+    }
+
+    /**
+     * Generates a trace resembling tiled image layer access: each frame looks up the level 0 to 3 tiles covering the
+     * globe and a block of high resolution tiles around the eye, adding each tile the first time it misses.
+     *
+     * @return the synthetic trace.
+     */
+    protected static List<Operation> syntheticTrace()
+    {
+        List<Operation> trace = new ArrayList<Operation>();
+        Random random = new Random(1);
+        long tileSize = 100000;
+        int eyeRow = 500;
+        int eyeCol = 500;
+
+        for (int frame = 0; frame < 3000; frame++)
+        {
+            // Drift slowly so the working set changes gradually.
+            if (frame % 50 == 0)
+            {
+                eyeRow += random.nextInt(3) - 1;
+                eyeCol += random.nextInt(3) - 1;
+            }
+
+            if (frame % 500 == 250) // a fast pan touches a row of tiles once each
+            {
+                for (int col = 0; col < 3000; col++)
+                {
+                    frameAccess(trace, "Earth/10/" + (eyeRow + 400) + "/" + col, tileSize);
+                }
+            }
+            else if (frame == 2000) // a bulk retrieval sweeps a sector
+            {
+                for (int row = 0; row < 60; row++)
+                {
+                    for (int col = 0; col < 100; col++)
+                    {
+                        frameAccess(trace, "Earth/11/" + row + "/" + col, tileSize);
+                    }
+                }
+            }
+
+            for (int level = 0; level < 4; level++)
+            {
+                int n = 1 << level;
+                for (int row = 0; row < n; row++)
+                {
+                    for (int col = 0; col < 2 * n; col++)
+                    {
+                        frameAccess(trace, "Earth/" + level + "/" + row + "/" + col, tileSize);
+                    }
+                }
+            }
+
+            for (int row = eyeRow - 15; row <= eyeRow + 15; row++)
+            {
+                for (int col = eyeCol - 15; col <= eyeCol + 15; col++)
+                {
+                    frameAccess(trace, "Earth/10/" + row + "/" + col, tileSize);
+                }
+            }
+        }
+
+        return trace;
+    }
+
+    protected static void frameAccess(List<Operation> trace, String key, long size)
+    {
+        trace.add(new Operation('L', key, size));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import java.io.*;
+
+/**
+ * A {@link BasicMemoryCache} that appends every lookup and add to a trace file readable by {@link
+ * MemoryCacheTraceSimulator}. To record the tile caches of an application, put this class on the class path, set the
+ * configuration property <code>gov.nasa.worldwind.avkey.MemoryCacheClassName</code> to its name, and set the system
+ * property <code>gov.nasa.worldwind.cache.TraceFile</code> to the trace file path. All caches write to the same file,
+ * with keys prefixed by the cache's identity so the caches can be told apart.
+ */
+public class TraceRecordingMemoryCache extends BasicMemoryCache
+{
+    protected static PrintWriter writer;
+
+    protected static synchronized void record(String line)
+    {
+        if (writer == null)
+        {
+            String path = System.getProperty("gov.nasa.worldwind.cache.TraceFile", "memorycache-trace.txt");
+            try
+            {
+                writer = new PrintWriter(new BufferedWriter(new FileWriter(path, true)), false);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+
+            Runtime.getRuntime().addShutdownHook(new Thread()
+            {
+                public void run()
+                {
+                    writer.close();
+                }
+            });
+        }
+
+        writer.println(line);
+    }
+
+    public TraceRecordingMemoryCache(long loWater, long capacity)
+    {
+        super(loWater, capacity);
+    }
+
+    @Override
+    public Object getObject(Object key)
+    {
+        if (key != null)
+            record("G " + this.traceKey(key));
+
+        return super.getObject(key);
+    }
+
+    @Override
+    public boolean add(Object key, Object clientObject, long clientObjectSize)
+    {
+        if (key != null)
+            record("A " + this.traceKey(key) + " " + clientObjectSize);
+
+        return super.add(key, clientObject, clientObjectSize);
+    }
+
+    protected String traceKey(Object key)
+    {
+        return System.identityHashCode(this) + ":" + key.toString().replaceAll("\\s", "_");
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.retrieve;
+
+import com.sun.net.httpserver.*;
+
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Compares the throughput of {@link BasicRetrievalService} and {@link AsyncRetrievalService} over a high-latency
+ * link. A local HTTP server stands in for a tile server, answering each request with a tile-sized response after an
+ * injected delay. Run with the number of tiles and the latency in milliseconds as optional arguments.
+ */
+public class RetrievalServiceBenchmark
+{
+    protected static final int TILE_SIZE = 16384;
+
+    public static void main(String[] args) throws Exception
+    {
+        int numTiles = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long latency = args.length > 1 ? Long.parseLong(args[1]) : 250;
+
+        final byte[] tile = new byte[TILE_SIZE];
+        final ScheduledExecutorService responder = Executors.newScheduledThreadPool(4);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        final long delay = latency;
+        server.createContext("/", new HttpHandler()
+        {
+            public void handle(final HttpExchange exchange) throws IOException
+            {
+                responder.schedule(new Callable<Void>()
+                {
+                    public Void call() throws Exception
+                    {
+                        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, tile.length);
+                        exchange.getResponseBody().write(tile);
+                        exchange.close();
+                        return null;
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+
+        String base = "http://localhost:" + server.getAddress().getPort();
+        try
+        {
+            for (int i = 0; i < 2; i++)
+            {
+                report("BasicRetrievalService", new BasicRetrievalService(), base, numTiles, latency);
+                report("AsyncRetrievalService", new AsyncRetrievalService(), base, numTiles, latency);
+            }
+        }
+        finally
+        {
+            server.stop(0);
+            responder.shutdownNow();
+            System.exit(0);
+        }
+    }
+
+    protected static void report(String name, RetrievalService service, String base, int numTiles, long latency)
+        throws Exception
+    {
+        long start = System.currentTimeMillis();
+        List<RetrievalFuture> futures = new ArrayList<RetrievalFuture>(numTiles);
+        for (int i = 0; i < numTiles; i++)
+        {
+            // Distinct URLs on each run, so that no retrieval is coalesced with one from an earlier run.
+            URL url = new URL(base + "/" + name + "/" + start + "/" + i);
+            futures.add(service.runRetriever(new HTTPRetriever(url, new RetrievalPostProcessor()
+            {
+                public ByteBuffer run(Retriever retriever)
+                {
+                    return retriever.getBuffer();
+                }
+            }), i + 1));
+        }
+
+        int failed = 0;
+        for (RetrievalFuture future : futures)
+        {
+            try
+            {
+                if (future.get().getBuffer() == null)
+                    failed++;
+            }
+            catch (Exception e)
+            {
+                failed++;
+            }
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        service.shutdown(true);
+
+        // Tiles left on the queue longer than the stale request limit are cancelled, and count as failed.
+        System.out.printf("%-22s tiles %5d  latency %4d ms  %7.1f retrieved/s  %4d failed  threads %d%n", name,
+            numTiles, latency, (numTiles - failed) / (elapsed / 1e3), failed, Thread.activeCount());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.util.*;
+
+import java.nio.DoubleBuffer;
+import java.util.*;
+
+/**
+ * Compares the lookup of elevations through {@link BasicElevationModel.Elevations}' row and column grid of tiles with
+ * the test of every tile in its tile set that it replaces. Reports lookups per second for single locations, for the
+ * batch entry point and for the tile set, over sectors spanning increasing numbers of tiles. Run with the number of
+ * lookups as an optional argument.
+ */
+public class ElevationLookupBenchmark
+{
+    public static void main(String[] args)
+    {
+        int numLookups = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        InMemoryElevationModel model = new InMemoryElevationModel();
+        Level level = model.getLevels().getLevel(InMemoryElevationModel.TARGET_LEVEL);
+        double delta = level.getTileDelta().getLatitude().degrees;
+
+        for (int size = 2; size <= 32; size *= 2)
+        {
+            Sector sector = Sector.fromDegrees(10, 10 + size * delta, 20, 20 + size * delta);
+            BasicElevationModel.Elevations elevations = model.getElevations(sector, model.getLevels(),
+                level.getLevelNumber());
+
+            Random random = new Random(1);
+            double[] lats = new double[numLookups];
+            double[] lons = new double[numLookups];
+            for (int i = 0; i < numLookups; i++)
+            {
+                lats[i] = sector.getMinLatitude().degrees + random.nextDouble() * sector.getDeltaLatDegrees();
+                lons[i] = sector.getMinLongitude().degrees + random.nextDouble() * sector.getDeltaLonDegrees();
+            }
+            double[] out = new double[numLookups];
+
+            // Warm up each path so the JIT compiles it before measuring.
+            for (int i = 0; i < 3; i++)
+            {
+                runSet(model, elevations, lats, lons, out);
+                runGrid(elevations, lats, lons, out);
+                runBatch(elevations, lats, lons, out);
+            }
+
+            report("tile set", size, runSet(model, elevations, lats, lons, out), numLookups);
+            report("grid", size, runGrid(elevations, lats, lons, out), numLookups);
+            report("grid batch", size, runBatch(elevations, lats, lons, out), numLookups);
+        }
+    }
+
+    protected static void report(String name, int size, long elapsed, int numLookups)
+    {
+        System.out.printf("%-12s %4d tiles  %10.0f lookups/s%n", name, size * size, numLookups / (elapsed / 1e9));
+    }
+
+    /** The lookup that tests every tile in the tile set, as elevations did before indexing their tiles. */
+    protected static long runSet(BasicElevationModel model, BasicElevationModel.Elevations elevations,
+        double[] lats, double[] lons, double[] out)
+    {
+        long start = System.nanoTime();
+        for (int i = 0; i < lats.length; i++)
+        {
+            BasicElevationModel.ElevationTile tile = elevations.findTile(lats[i], lons[i]);
+            out[i] = tile != null ? model.lookupElevation(Math.toRadians(lats[i]), Math.toRadians(lons[i]), tile)
+                : Double.NaN;
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    protected static long runGrid(BasicElevationModel.Elevations elevations, double[] lats, double[] lons,
+        double[] out)
+    {
+        long start = System.nanoTime();
+        for (int i = 0; i < lats.length; i++)
+        {
+            out[i] = elevations.getElevation(lats[i], lons[i]);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    protected static long runBatch(BasicElevationModel.Elevations elevations, double[] lats, double[] lons,
+        double[] out)
+    {
+        long start = System.nanoTime();
+        elevations.getElevations(lats, lons, out);
+
+        return System.nanoTime() - start;
+    }
+
+    /** An elevation model whose tiles are all in memory, so that lookups never wait for retrieval. */
+    protected static class InMemoryElevationModel extends BasicElevationModel
+    {
+        protected static final int TARGET_LEVEL = 5;
+
+        protected Map<TileKey, ElevationTile> tiles = new HashMap<TileKey, ElevationTile>();
+
+        public InMemoryElevationModel()
+        {
+            super(createParams());
+        }
+
+        protected static AVList createParams()
+        {
+            AVList params = new AVListImpl();
+            params.setValue(AVKey.SECTOR, Sector.FULL_SPHERE);
+            params.setValue(AVKey.LEVEL_ZERO_TILE_DELTA, LatLon.fromDegrees(20, 20));
+            params.setValue(AVKey.NUM_LEVELS, TARGET_LEVEL + 1);
+            params.setValue(AVKey.TILE_WIDTH, 150);
+            params.setValue(AVKey.TILE_HEIGHT, 150);
+            params.setValue(AVKey.DATA_CACHE_NAME, "Benchmark/ElevationLookupBenchmark");
+            params.setValue(AVKey.DATASET_NAME, "benchmark");
+            params.setValue(AVKey.FORMAT_SUFFIX, ".bil");
+            params.setValue(AVKey.NETWORK_RETRIEVAL_ENABLED, false);
+            return params;
+        }
+
+        @Override
+        protected ElevationTile getTileFromMemory(TileKey key)
+        {
+            ElevationTile tile = this.tiles.get(key);
+            if (tile == null)
+            {
+                tile = this.createTile(key);
+                double[] values = new double[tile.getWidth() * tile.getHeight()];
+                for (int i = 0; i < values.length; i++)
+                {
+                    values[i] = 1000 * Math.sin(0.01 * i + key.getRow()) * Math.cos(0.02 * i + key.getColumn());
+                }
+                tile.setElevations(new BufferWrapper.DoubleBufferWrapper(DoubleBuffer.wrap(values)), this);
+                this.tiles.put(key, tile);
+            }
+
+            return tile;
+        }
+
+        @Override
+        protected void requestTile(TileKey key)
+        {
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2016 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.terrain;
+
+import com.jogamp.common.nio.Buffers;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.FloatBuffer;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the vertex generation of {@link RectangularTessellator#computeVertices(Globe,
+ * RectangularTessellator.RectTile, double, boolean, Vec4, FloatBuffer)} with the per-location computation it replaces,
+ * which creates a <code>LatLon</code> and a <code>Vec4</code> for every vertex. Reports tiles per second and the bytes
+ * allocated per tile, the memory the tiles' vertices take as floating point and as quantized coordinates, then the rate
+ * at which the tessellator's vertex tasks compute tiles on pools of increasing size. Run with the tile density and the
+ * number of tiles as optional arguments.
+ */
+public class TessellatorBenchmark
+{
+    public static void main(String[] args)
+    {
+        int density = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int numTiles = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+        Globe globe = new EllipsoidalGlobe(Earth.WGS84_EQUATORIAL_RADIUS, Earth.WGS84_POLAR_RADIUS, Earth.WGS84_ES,
+            new WavyElevationModel());
+        RectangularTessellator tessellator = new RectangularTessellator();
+
+        // A band of level 5 tiles, the size the tessellator draws at moderate altitudes.
+        List<RectangularTessellator.RectTile> tiles = new ArrayList<RectangularTessellator.RectTile>();
+        double delta = 36d / 32;
+        for (int i = 0; i < 1000; i++)
+        {
+            double minLat = -45 + (i / 80) * delta;
+            double minLon = -180 + (i % 80) * delta;
+            tiles.add(new RectangularTessellator.RectTile(tessellator, null, 5, density,
+                Sector.fromDegrees(minLat, minLat + delta, minLon, minLon + delta)));
+        }
+
+        FloatBuffer verts = Buffers.newDirectFloatBuffer(3 * (density + 3) * (density + 3));
+
+        // Warm up both paths so the JIT compiles them before measuring.
+        run(false, globe, tessellator, tiles, numTiles, verts);
+        run(true, globe, tessellator, tiles, numTiles, verts);
+
+        for (int i = 0; i < 3; i++)
+        {
+            report("locations", false, globe, tessellator, tiles, numTiles, verts);
+            report("primitive arrays", true, globe, tessellator, tiles, numTiles, verts);
+        }
+
+        reportFootprint(globe, tessellator, tiles);
+
+        for (int parallelism = 1; parallelism <= Runtime.getRuntime().availableProcessors(); parallelism *= 2)
+        {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            runParallel(pool, globe, tiles, numTiles); // warm up the pool's threads
+            long elapsed = runParallel(pool, globe, tiles, numTiles);
+            pool.shutdown();
+
+            System.out.printf("vertex tasks       threads %2d  %8.0f tiles/s%n", parallelism,
+                numTiles / (elapsed / 1e9));
+        }
+    }
+
+    /**
+     * Reports the memory taken by the tiles' vertices as floating point and as quantized coordinates, and the largest
+     * quantization error as a fraction of a tile's cell size.
+     */
+    protected static void reportFootprint(Globe globe, RectangularTessellator tessellator,
+        List<RectangularTessellator.RectTile> tiles)
+    {
+        long floatBytes = 0;
+        long quantizedBytes = 0;
+        int numQuantized = 0;
+        double maxError = 0;
+
+        for (RectangularTessellator.RectTile tile : tiles)
+        {
+            Vec4 refCenter = globe.computePointFromPosition(tile.sector.getCentroid(), 0);
+            FloatBuffer verts = Buffers.newDirectFloatBuffer(3 * (tile.density + 3) * (tile.density + 3));
+            tessellator.computeVertices(globe, tile, 1, true, refCenter, verts);
+            verts.rewind();
+
+            double cellSize = tile.getCellSize() * globe.getRadius();
+            RectangularTessellator.QuantizedVertices quantized = RectangularTessellator.QuantizedVertices.quantize(
+                verts, RectangularTessellator.QUANTIZATION_TOLERANCE * cellSize);
+
+            floatBytes += 4 * verts.limit();
+            if (quantized == null)
+            {
+                quantizedBytes += 4 * verts.limit();
+                continue;
+            }
+
+            numQuantized++;
+            quantizedBytes += quantized.getSizeInBytes();
+            float[] decoded = new float[verts.limit()];
+            quantized.decode(decoded);
+            for (int i = 0; i < decoded.length; i++)
+            {
+                maxError = Math.max(maxError, Math.abs(decoded[i] - verts.get(i)) / cellSize);
+            }
+        }
+
+        System.out.printf("vertex memory      float %8d bytes  quantized %8d bytes (%d of %d tiles)  "
+            + "max error %.5f cells%n", floatBytes, quantizedBytes, numQuantized, tiles.size(), maxError);
+    }
+
+    protected static long runParallel(ForkJoinPool pool, Globe globe, List<RectangularTessellator.RectTile> tiles,
+        int numTiles)
+    {
+        long start = System.nanoTime();
+        List<RectangularTessellator.VertexTask> tasks = new ArrayList<RectangularTessellator.VertexTask>(numTiles);
+        for (int n = 0; n < numTiles; n++)
+        {
+            RectangularTessellator.VertexTask task = new RectangularTessellator.VertexTask(
+                tiles.get(n % tiles.size()), null, globe, 1, true);
+            pool.execute(task);
+            tasks.add(task);
+        }
+
+        for (RectangularTessellator.VertexTask task : tasks)
+        {
+            task.join();
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    protected static void report(String name, boolean primitive, Globe globe, RectangularTessellator tessellator,
+        List<RectangularTessellator.RectTile> tiles, int numTiles, FloatBuffer verts)
+    {
+        long startBytes = getAllocatedBytes();
+        long elapsed = run(primitive, globe, tessellator, tiles, numTiles, verts);
+        long bytes = getAllocatedBytes() - startBytes;
+
+        System.out.printf("%-18s density %2d  %8.0f tiles/s  %8d bytes allocated per tile%n", name,
+            tiles.get(0).density, numTiles / (elapsed / 1e9), bytes / numTiles);
+    }
+
+    protected static long run(boolean primitive, Globe globe, RectangularTessellator tessellator,
+        List<RectangularTessellator.RectTile> tiles, int numTiles, FloatBuffer verts)
+    {
+        long start = System.nanoTime();
+        for (int n = 0; n < numTiles; n++)
+        {
+            RectangularTessellator.RectTile tile = tiles.get(n % tiles.size());
+            Vec4 refCenter = globe.computePointFromPosition(tile.sector.getCentroid(), 0);
+
+            verts.rewind();
+            if (primitive)
+                tessellator.computeVertices(globe, tile, 1, true, refCenter, verts);
+            else
+                computeVerticesFromLocations(globe, tessellator, tile, 1, true, refCenter, verts);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    /** The per-location computation that the tessellator used before computing vertices from primitive arrays. */
+    protected static void computeVerticesFromLocations(Globe globe, RectangularTessellator tessellator,
+        RectangularTessellator.RectTile tile, double verticalExaggeration, boolean makeSkirts, Vec4 refCenter,
+        FloatBuffer verts)
+    {
+        ArrayList<LatLon> latlons = tessellator.computeLocations(tile);
+        double[] elevations = new double[latlons.size()];
+        globe.getElevations(tile.sector, latlons, tile.getResolution(), elevations);
+
+        Double exaggeratedMinElevation = makeSkirts ? globe.getMinElevation() : null;
+        if (exaggeratedMinElevation != null && (exaggeratedMinElevation < 0 || verticalExaggeration <= 0))
+            exaggeratedMinElevation *= verticalExaggeration;
+
+        Iterator<LatLon> iter = latlons.iterator();
+        for (int j = 0, k = 0; j <= tile.density + 2; j++)
+        {
+            for (int i = 0; i <= tile.density + 2; i++)
+            {
+                LatLon latlon = iter.next();
+                double elevation = verticalExaggeration * elevations[k++];
+                if (exaggeratedMinElevation != null &&
+                    (j == 0 || j >= tile.density + 2 || i == 0 || i >= tile.density + 2))
+                    elevation = exaggeratedMinElevation;
+
+                Vec4 p = globe.computePointFromPosition(latlon.getLatitude(), latlon.getLongitude(), elevation);
+                verts.put((float) (p.x - refCenter.x));
+                verts.put((float) (p.y - refCenter.y));
+                verts.put((float) (p.z - refCenter.z));
+            }
+        }
+    }
+
+    protected static long getAllocatedBytes()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        return 0;
+    }
+
+    /** An elevation model computing elevations from the location, so that elevation lookup costs little. */
+    protected static class WavyElevationModel extends ZeroElevationModel
+    {
+        protected static double computeElevation(double latitude, double longitude)
+        {
+            return 3000 * Math.sin(latitude * 0.7) * Math.cos(longitude * 0.4) + 500;
+        }
+
+        @Override
+        public double getMinElevation()
+        {
+            return -2500;
+        }
+
+        @Override
+        public double getElevations(Sector sector, List<? extends LatLon> latlons, double targetResolution,
+            double[] buffer)
+        {
+            for (int i = 0; i < latlons.size(); i++)
+            {
+                buffer[i] = computeElevation(latlons.get(i).getLatitude().degrees,
+                    latlons.get(i).getLongitude().degrees);
+            }
+
+            return targetResolution;
+        }
+
+        @Override
+        public double getElevations(Sector sector, double[] latitudes, double[] longitudes, double targetResolution,
+            double[] buffer)
+        {
+            for (int i = 0; i < latitudes.length; i++)
+            {
+                buffer[i] = computeElevation(latitudes[i], longitudes[i]);
+            }
+
+            return targetResolution;
+        }
+    }
+}